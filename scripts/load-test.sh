@@ -0,0 +1,48 @@
+#!/bin/sh
+# Compares request execution modes (stocks.execution.mode) under load.
+# Starts the application with the same fixed heap in every mode, runs LoadTest against it
+# and collects results in target/load-test-results.csv.
+#
+# Settings (environment variables):
+#   MODES    - execution modes to compare (default "platform virtual", virtual needs Java 21 or newer)
+#   HEAP     - max heap of the application (default 256m)
+#   LEVELS   - numbers of concurrent clients (default "50,200,1000")
+#   DURATION - seconds per concurrency level (default 20)
+#   REQUEST  - get or patch (default patch)
+#   PORT     - port of the application (default 8089)
+set -e
+
+cd "$(dirname "$0")/.."
+
+MODES=${MODES:-"platform virtual"}
+HEAP=${HEAP:-256m}
+LEVELS=${LEVELS:-"50,200,1000"}
+DURATION=${DURATION:-20}
+REQUEST=${REQUEST:-patch}
+PORT=${PORT:-8089}
+JAR=target/payconiq-assignment-1.0.jar
+RESULTS=target/load-test-results.csv
+
+if [ ! -f "$JAR" ]; then
+    mvn -q -DskipTests package
+fi
+
+HEADER=--header
+: > "$RESULTS"
+for MODE in $MODES; do
+    java -Xms"$HEAP" -Xmx"$HEAP" -jar "$JAR" --server.port="$PORT" --stocks.execution.mode="$MODE" \
+        > "target/load-test-$MODE.log" 2>&1 &
+    APP=$!
+    until curl -s -o /dev/null "http://localhost:$PORT/api/stocks/1"; do
+        if ! kill -0 "$APP" 2>/dev/null; then
+            echo "Application failed to start in $MODE mode, see target/load-test-$MODE.log" >&2
+            exit 1
+        fi
+        sleep 1
+    done
+    java src/jmh/java/payconiq/stocks/benchmark/LoadTest.java $HEADER --url "http://localhost:$PORT" --label "$MODE" \
+        --levels "$LEVELS" --duration "$DURATION" --request "$REQUEST" | tee -a "$RESULTS"
+    HEADER=
+    kill "$APP"
+    wait "$APP" || true
+done
@@ -0,0 +1,76 @@
+#!/bin/sh
+# Measures start of the application in different setups: time from launching the JVM to the first answered request,
+# time until /actuator/health reports UP (after the warm-up, when it is on) and resident memory (RSS) at that point.
+# Results are collected in target/startup-results.csv.
+#
+# Setups:
+#   default - the application jar as is
+#   fast    - the application jar with the fast-startup profile
+#   cds     - the fast-startup profile with the class data sharing archive of target/cds, built by: mvn -P cds package
+#
+# Settings (environment variables):
+#   SETUPS    - setups to compare (default "default fast cds")
+#   RUNS      - starts per setup (default 5)
+#   HEAP      - max heap of the application (default 256m)
+#   JAVA_OPTS - extra JVM options for every setup, e.g. -XX:TieredStopAtLevel=1
+#   PORT      - port of the application (default 8089)
+set -e
+
+cd "$(dirname "$0")/.."
+
+SETUPS=${SETUPS:-"default fast cds"}
+RUNS=${RUNS:-5}
+HEAP=${HEAP:-256m}
+PORT=${PORT:-8089}
+JAR=target/payconiq-assignment-1.0.jar
+CDS=$(pwd)/target/cds
+RESULTS=target/startup-results.csv
+
+if [ ! -f "$JAR" ]; then
+    mvn -q -DskipTests package
+fi
+case "$SETUPS" in
+    *cds*)
+        if [ ! -f "$CDS/app.jsa" ]; then
+            mvn -q -P cds -DskipTests package
+        fi
+        ;;
+esac
+
+millis() {
+    echo $(($(date +%s%N) / 1000000))
+}
+
+echo "setup,run,first_request_ms,ready_ms,rss_mb" > "$RESULTS"
+for SETUP in $SETUPS; do
+    case "$SETUP" in
+        default) COMMAND="-jar $JAR" ;;
+        fast) COMMAND="-jar $JAR --spring.profiles.active=fast-startup" ;;
+        cds) COMMAND="-XX:SharedArchiveFile=$CDS/app.jsa -cp $CDS/payconiq-assignment-1.0-classes.jar:$CDS/lib/* payconiq.stocks.Application --spring.profiles.active=fast-startup" ;;
+        *) echo "Unknown setup $SETUP" >&2; exit 1 ;;
+    esac
+    RUN=1
+    while [ "$RUN" -le "$RUNS" ]; do
+        STARTED=$(millis)
+        # shellcheck disable=SC2086
+        java -Xmx"$HEAP" $JAVA_OPTS $COMMAND --server.port="$PORT" > "target/startup-$SETUP.log" 2>&1 &
+        APP=$!
+        until curl -s -f -o /dev/null "http://localhost:$PORT/api/stocks/1"; do
+            if ! kill -0 "$APP" 2>/dev/null; then
+                echo "Application failed to start in $SETUP setup, see target/startup-$SETUP.log" >&2
+                exit 1
+            fi
+            sleep 0.02
+        done
+        FIRST_REQUEST=$(($(millis) - STARTED))
+        until curl -s -f -o /dev/null "http://localhost:$PORT/actuator/health"; do
+            sleep 0.02
+        done
+        READY=$(($(millis) - STARTED))
+        RSS=$(($(awk '/VmRSS/ {print $2}' "/proc/$APP/status") / 1024))
+        echo "$SETUP,$RUN,$FIRST_REQUEST,$READY,$RSS" | tee -a "$RESULTS"
+        kill "$APP"
+        wait "$APP" || true
+        RUN=$((RUN + 1))
+    done
+done
@@ -0,0 +1,78 @@
+package payconiq.stocks.benchmark;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.springframework.boot.SpringApplication;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import payconiq.stocks.Application;
+import payconiq.stocks.repository.StockRepository;
+import payconiq.stocks.request.NewStockRequest;
+import payconiq.stocks.response.NewStockResult;
+import payconiq.stocks.service.StockService;
+
+/**
+ * Starts the application for benchmarks. The web server listens on a random port, as benchmarks call services directly.
+ */
+final class BenchmarkApplication {
+
+    private static final int SEED_BATCH_SIZE = 1000;
+
+    private BenchmarkApplication() {
+    }
+
+    /**
+     * Starts the application and fills the stocks table up to a given size.
+     *
+     * @param tableSize - number of stocks in the table.
+     * @param args      - additional application arguments, e.g. properties.
+     * @return started application context.
+     */
+    static ConfigurableApplicationContext start(int tableSize, String... args) {
+        SpringApplication application = new SpringApplication(Application.class);
+        List<String> arguments = new ArrayList<>(List.of(
+                "--server.port=0",
+                "--spring.main.banner-mode=off",
+                "--logging.level.root=warn"));
+        arguments.addAll(List.of(args));
+        ConfigurableApplicationContext context = application.run(arguments.toArray(new String[0]));
+        seed(context.getBean(StockService.class), context.getBean(StockRepository.class), tableSize);
+        return context;
+    }
+
+    /**
+     * @param stocks - all stocks.
+     * @return ids of all stocks.
+     */
+    static long[] ids(StockRepository stocks) {
+        return stocks.findAllIds().stream().mapToLong(Long::longValue).toArray();
+    }
+
+    /**
+     * Adds stocks through {@link StockService}, so that name and search indexes, caches and candles know them
+     * as they would know stocks added by clients.
+     */
+    private static void seed(StockService stockService, StockRepository stockRepository, int tableSize) {
+        List<NewStockRequest> batch = new ArrayList<>(SEED_BATCH_SIZE);
+        for (long i = stockRepository.count(); i < tableSize; i++) {
+            NewStockRequest stock = new NewStockRequest();
+            stock.setName("Seed Stock " + i);
+            stock.setPrice((double) (1 + i % 100));
+            batch.add(stock);
+            if (batch.size() == SEED_BATCH_SIZE) {
+                addAll(stockService, batch);
+                batch.clear();
+            }
+        }
+        addAll(stockService, batch);
+    }
+
+    private static void addAll(StockService stockService, List<NewStockRequest> batch) {
+        for (NewStockResult result : stockService.addNewStocks(batch)) {
+            if (result.getError() != null) {
+                throw new IllegalStateException("Failed to seed " + result.getName() + ": " + result.getError());
+            }
+        }
+    }
+}
@@ -0,0 +1,158 @@
+package payconiq.stocks.benchmark;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Closed-loop HTTP load generator for comparing execution modes of a running application.
+ * <p>
+ * For every concurrency level keeps that many clients sending requests back to back for a fixed time,
+ * and prints a CSV line: label, concurrency, requests, errors, throughput per second, p50, p99 and max latency in millis.
+ * Uses only JDK classes, so it can be started right from the source:
+ * <pre>
+ * java src/jmh/java/payconiq/stocks/benchmark/LoadTest.java --url http://localhost:8080 --levels 50,200,1000
+ * </pre>
+ * Options: {@code --url}, {@code --label}, {@code --levels}, {@code --duration} (seconds),
+ * {@code --request} ({@code get} of a random stock or {@code patch} of its price, default {@code patch}),
+ * {@code --stocks} (number of stock ids).
+ */
+public final class LoadTest {
+
+    private static final Duration REQUEST_TIMEOUT = Duration.ofSeconds(30);
+
+    private LoadTest() {
+    }
+
+    public static void main(String[] args) throws Exception {
+        Map<String, String> options = parseOptions(args);
+        String url = options.getOrDefault("url", "http://localhost:8080");
+        String label = options.getOrDefault("label", "default");
+        int[] levels = Arrays.stream(options.getOrDefault("levels", "50,200,1000").split("[, ]+"))
+                .mapToInt(Integer::parseInt).toArray();
+        Duration duration = Duration.ofSeconds(Long.parseLong(options.getOrDefault("duration", "20")));
+        boolean patch = "patch".equalsIgnoreCase(options.getOrDefault("request", "patch"));
+        int stocks = Integer.parseInt(options.getOrDefault("stocks", "2"));
+
+        HttpClient client = HttpClient.newBuilder().connectTimeout(REQUEST_TIMEOUT).build();
+        if (options.containsKey("header")) {
+            System.out.println("label,concurrency,requests,errors,throughputPerSecond,p50Millis,p99Millis,maxMillis");
+        }
+        for (int level : levels) {
+            Result result = run(client, url, level, duration, patch, stocks);
+            System.out.printf("%s,%d,%d,%d,%.1f,%.2f,%.2f,%.2f%n", label, level, result.requests, result.errors,
+                    result.requests / (double) duration.toSeconds(),
+                    result.percentile(0.5), result.percentile(0.99), result.percentile(1));
+        }
+    }
+
+    private static Result run(HttpClient client, String url, int concurrency, Duration duration, boolean patch, int stocks)
+            throws InterruptedException {
+        long deadline = System.nanoTime() + duration.toNanos();
+        AtomicLong errors = new AtomicLong();
+        List<long[]> latencies = new ArrayList<>();
+        CountDownLatch finished = new CountDownLatch(concurrency);
+        List<Thread> clients = new ArrayList<>();
+        for (int i = 0; i < concurrency; i++) {
+            long[][] own = {new long[1024]};
+            int[] count = {0};
+            Thread thread = new Thread(() -> {
+                try {
+                    while (System.nanoTime() < deadline) {
+                        long started = System.nanoTime();
+                        if (!send(client, request(url, patch, stocks))) {
+                            errors.incrementAndGet();
+                        }
+                        if (count[0] == own[0].length) {
+                            own[0] = Arrays.copyOf(own[0], count[0] * 2);
+                        }
+                        own[0][count[0]++] = System.nanoTime() - started;
+                    }
+                } finally {
+                    synchronized (latencies) {
+                        latencies.add(Arrays.copyOf(own[0], count[0]));
+                    }
+                    finished.countDown();
+                }
+            }, "load-client-" + i);
+            thread.setDaemon(true);
+            clients.add(thread);
+        }
+        clients.forEach(Thread::start);
+        finished.await();
+        return new Result(latencies.stream().flatMapToLong(Arrays::stream).sorted().toArray(), errors.get());
+    }
+
+    private static HttpRequest request(String url, boolean patch, int stocks) {
+        long id = 1 + ThreadLocalRandom.current().nextInt(stocks);
+        HttpRequest.Builder request = HttpRequest.newBuilder(URI.create(url + "/api/stocks/" + id)).timeout(REQUEST_TIMEOUT);
+        if (!patch) {
+            return request.GET().build();
+        }
+        String body = "{\"price\":" + (1 + ThreadLocalRandom.current().nextInt(10000) / 100d) + "}";
+        return request.header("Content-Type", "application/json")
+                .method("PATCH", HttpRequest.BodyPublishers.ofString(body))
+                .build();
+    }
+
+    private static boolean send(HttpClient client, HttpRequest request) {
+        try {
+            return client.send(request, HttpResponse.BodyHandlers.discarding()).statusCode() < 300;
+        } catch (IOException e) {
+            return false;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        }
+    }
+
+    private static Map<String, String> parseOptions(String[] args) {
+        Map<String, String> options = new HashMap<>();
+        for (int i = 0; i < args.length; i++) {
+            if (!args[i].startsWith("--")) {
+                throw new IllegalArgumentException("Unexpected argument: " + args[i]);
+            }
+            String name = args[i].substring(2);
+            boolean hasValue = i + 1 < args.length && !args[i + 1].startsWith("--");
+            options.put(name, hasValue ? args[++i] : "");
+        }
+        return options;
+    }
+
+    /**
+     * Latencies of all requests of a concurrency level.
+     */
+    private static final class Result {
+
+        private final long[] latencies;
+
+        private final long requests;
+
+        private final long errors;
+
+        private Result(long[] latencies, long errors) {
+            this.latencies = latencies;
+            this.requests = latencies.length;
+            this.errors = errors;
+        }
+
+        private double percentile(double percentile) {
+            if (latencies.length == 0) {
+                return 0;
+            }
+            int index = (int) Math.min(latencies.length - 1, Math.ceil(percentile * latencies.length) - 1);
+            return latencies[Math.max(index, 0)] / 1_000_000d;
+        }
+    }
+}
@@ -0,0 +1,110 @@
+package payconiq.stocks.benchmark;
+
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.web.context.request.ServletWebRequest;
+
+import payconiq.stocks.controller.StockController;
+import payconiq.stocks.repository.StockRepository;
+
+/**
+ * Throughput of {@code GET /api/stocks} and {@code GET /api/stocks/{id}} responses built by {@link StockController},
+ * with json kept by {@link payconiq.stocks.controller.StockResponseCache} and serialized on every request
+ * ({@code responseCache=false}), from a single thread and from {@value #THREADS} threads at once.
+ * <p>
+ * The controller is called directly, so that only building of the response body is measured, without http.
+ * Allocations per response are reported with the gc profiler: {@code -Djmh.args="-prof gc StockResponseBenchmark"}.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class StockResponseBenchmark {
+
+    private static final int THREADS = 4;
+
+    @Param({"100", "10000"})
+    private int tableSize;
+
+    @Param({"true", "false"})
+    private boolean responseCache;
+
+    private ConfigurableApplicationContext context;
+
+    private StockController stockController;
+
+    private long[] ids;
+
+    @Setup(Level.Trial)
+    public void start() {
+        context = BenchmarkApplication.start(tableSize, "--stocks.response-cache.enabled=" + responseCache);
+        stockController = context.getBean(StockController.class);
+        ids = BenchmarkApplication.ids(context.getBean(StockRepository.class));
+    }
+
+    @TearDown(Level.Trial)
+    public void stop() {
+        context.close();
+    }
+
+    @Benchmark
+    public byte[] getStocks() throws Exception {
+        return stocks(null);
+    }
+
+    @Benchmark
+    @Threads(THREADS)
+    public byte[] getStocksContended() throws Exception {
+        return stocks(null);
+    }
+
+    @Benchmark
+    public byte[] getStocksGzip() throws Exception {
+        return stocks("gzip");
+    }
+
+    @Benchmark
+    public byte[] getStock() {
+        return stock(ids[ThreadLocalRandom.current().nextInt(ids.length)]);
+    }
+
+    @Benchmark
+    @Threads(THREADS)
+    public byte[] getStockContended() {
+        return stock(ids[ThreadLocalRandom.current().nextInt(ids.length)]);
+    }
+
+    private byte[] stocks(String acceptEncoding) throws Exception {
+        ServletWebRequest request = request();
+        return stockController.getStocks(acceptEncoding, request, request.getResponse()).getBody();
+    }
+
+    private byte[] stock(long id) {
+        ServletWebRequest request = request();
+        return stockController.getStock(id, request, request.getResponse()).getBody();
+    }
+
+    private static ServletWebRequest request() {
+        return new ServletWebRequest(new MockHttpServletRequest("GET", "/api/stocks"), new MockHttpServletResponse());
+    }
+}
@@ -0,0 +1,74 @@
+package payconiq.stocks.benchmark;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+
+import payconiq.stocks.model.Stock;
+
+/**
+ * Jackson serialization of {@link Stock} lists as done for {@code GET /api/stocks},
+ * with the object mapper configured the same way as in the application.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class StockSerializationBenchmark {
+
+    @Param({"1", "100", "10000"})
+    private int listSize;
+
+    private ObjectMapper objectMapper;
+
+    private List<Stock> stocks;
+
+    @Setup
+    public void prepare() {
+        objectMapper = Jackson2ObjectMapperBuilder.json()
+                .featuresToDisable(SerializationFeature.WRITE_DATES_AS_TIMESTAMPS)
+                .build();
+        Instant now = Instant.now();
+        stocks = new ArrayList<>(listSize);
+        for (int i = 0; i < listSize; i++) {
+            Stock stock = new Stock();
+            stock.setId((long) i);
+            stock.setName("Serialized Stock " + i);
+            stock.setCurrentPrice(1 + i % 1000 / 10d);
+            stock.setLastUpdate(now.minusSeconds(i));
+            stocks.add(stock);
+        }
+    }
+
+    @Benchmark
+    public byte[] writeStocks() throws JsonProcessingException {
+        return objectMapper.writeValueAsBytes(stocks);
+    }
+
+    @Benchmark
+    @Threads(4)
+    public byte[] writeStocksContended() throws JsonProcessingException {
+        return objectMapper.writeValueAsBytes(stocks);
+    }
+}
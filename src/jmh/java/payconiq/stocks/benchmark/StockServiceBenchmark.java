@@ -0,0 +1,138 @@
+package payconiq.stocks.benchmark;
+
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import payconiq.stocks.model.Stock;
+import payconiq.stocks.repository.StockRepository;
+import payconiq.stocks.request.NewStockRequest;
+import payconiq.stocks.service.StockService;
+
+/**
+ * Throughput of {@link StockService} operations at several table sizes,
+ * from a single thread and from {@value #THREADS} threads at once.
+ * <p>
+ * Stocks are picked at random, so lookups and updates hit the cache only as often as real clients would.
+ * {@code addNewStock} grows the table during the run and includes the name uniqueness check.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class StockServiceBenchmark {
+
+    private static final int THREADS = 4;
+
+    private static final int PAGE_SIZE = 20;
+
+    @Param({"100", "10000", "100000"})
+    private int tableSize;
+
+    private ConfigurableApplicationContext context;
+
+    private StockService stockService;
+
+    private long[] ids;
+
+    private final AtomicLong nameSequence = new AtomicLong();
+
+    @Setup(Level.Trial)
+    public void start() {
+        context = BenchmarkApplication.start(tableSize);
+        stockService = context.getBean(StockService.class);
+        ids = BenchmarkApplication.ids(context.getBean(StockRepository.class));
+    }
+
+    @TearDown(Level.Trial)
+    public void stop() {
+        context.close();
+    }
+
+    @Benchmark
+    public Stock lookupStock() {
+        return stockService.lookupStock(randomId());
+    }
+
+    @Benchmark
+    @Threads(THREADS)
+    public Stock lookupStockContended() {
+        return stockService.lookupStock(randomId());
+    }
+
+    @Benchmark
+    public Stock updateStockPrice() {
+        return stockService.updateStockPrice(randomId(), randomPrice());
+    }
+
+    @Benchmark
+    @Threads(THREADS)
+    public Stock updateStockPriceContended() {
+        return stockService.updateStockPrice(randomId(), randomPrice());
+    }
+
+    /**
+     * All threads update the same stock, so they compete for the same row.
+     */
+    @Benchmark
+    @Threads(THREADS)
+    public Stock updateSameStockPriceContended() {
+        return stockService.updateStockPrice(ids[0], randomPrice());
+    }
+
+    @Benchmark
+    public Stock addNewStock() {
+        return stockService.addNewStock(newStockRequest());
+    }
+
+    @Benchmark
+    @Threads(THREADS)
+    public Stock addNewStockContended() {
+        return stockService.addNewStock(newStockRequest());
+    }
+
+    @Benchmark
+    public List<Stock> findPaginated() {
+        return stockService.findPaginated(ThreadLocalRandom.current().nextInt(tableSize / PAGE_SIZE + 1), PAGE_SIZE);
+    }
+
+    @Benchmark
+    @Threads(THREADS)
+    public List<Stock> findPaginatedContended() {
+        return stockService.findPaginated(ThreadLocalRandom.current().nextInt(tableSize / PAGE_SIZE + 1), PAGE_SIZE);
+    }
+
+    private long randomId() {
+        return ids[ThreadLocalRandom.current().nextInt(ids.length)];
+    }
+
+    private static double randomPrice() {
+        return 1 + ThreadLocalRandom.current().nextInt(10000) / 100d;
+    }
+
+    private NewStockRequest newStockRequest() {
+        NewStockRequest request = new NewStockRequest();
+        request.setName("Benchmark Stock " + nameSequence.incrementAndGet());
+        request.setPrice(randomPrice());
+        return request;
+    }
+}
@@ -4,20 +4,27 @@ import java.time.Instant;
 import java.time.LocalDateTime;
 import java.time.Month;
 import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.List;
 
 import javax.annotation.PostConstruct;
 
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.boot.SpringApplication;
 import org.springframework.boot.autoconfigure.SpringBootApplication;
+import org.springframework.context.annotation.Lazy;
 
 import payconiq.stocks.model.Stock;
 import payconiq.stocks.repository.StockRepository;
+import payconiq.stocks.service.cluster.ClusterService;
+import payconiq.stocks.service.persistence.StockJournal;
 
 /**
  * Stocks Application main class. Is driven by Spring Boot 2.
  */
 @SpringBootApplication
+@Lazy(false)
 public class Application {
 
     /**
@@ -32,14 +39,25 @@ public class Application {
     @Autowired
     private StockRepository stockRepository;
 
+    @Autowired(required = false)
+    private ClusterService clusterService;
+
+    @Autowired(required = false)
+    private StockJournal stockJournal;
+
+    @Value("${stocks.replication.role:none}")
+    private String replicationRole;
+
    
     /**
      * Initial state of the application on startup.
      * Is used for tests as well, so, when it will be decided
      * to remove it from here, it should be moved to test scope bean.
+     * Initial stocks are inserted in a single transaction with a single JDBC batch.
      */
     @PostConstruct
     void prepareStocks() {
+        List<Stock> stocks = new ArrayList<>();
        
         Instant stock1Update2 = LocalDateTime.of(2019, Month.DECEMBER, 11, 22, 58, 34).toInstant(ZoneOffset.UTC);
 
@@ -47,7 +65,7 @@ public class Application {
         stock1.setName("London Stock");
         stock1.setCurrentPrice(2d);
         stock1.setLastUpdate(stock1Update2);
-        stockRepository.saveAndFlush(stock1);
+        seed(stocks, stock1);
 
         
 
@@ -58,7 +76,23 @@ public class Application {
         stock2.setName("NewYork Stock");
         stock2.setCurrentPrice(1.9);
         stock2.setLastUpdate(stock2Update3);
-        stockRepository.saveAndFlush(stock2);
+        seed(stocks, stock2);
 
+        if (!stocks.isEmpty()) {
+            stockRepository.saveAll(stocks);
+        }
+    }
+
+    /**
+     * Adds an initial stock to those to be saved, in cluster mode only on the node owning its name.
+     * Replicas get initial stocks from the primary, stocks recovered in "persistence" mode are not seeded again.
+     */
+    private void seed(List<Stock> stocks, Stock stock) {
+        if ("replica".equals(replicationRole) || stockJournal != null && stockJournal.isRecovered()) {
+            return;
+        }
+        if (clusterService == null || clusterService.isLocalName(stock.getName())) {
+            stocks.add(stock);
+        }
     }
 }
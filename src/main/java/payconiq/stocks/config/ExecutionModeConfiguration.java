@@ -0,0 +1,67 @@
+package payconiq.stocks.config;
+
+import java.lang.reflect.Method;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import javax.annotation.PreDestroy;
+
+import org.apache.coyote.ProtocolHandler;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.web.embedded.tomcat.TomcatProtocolHandlerCustomizer;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+/**
+ * Request execution mode of the web server, chosen by {@code stocks.execution.mode}:
+ * <ul>
+ * <li>{@code platform} - requests are served by the pool of Tomcat worker threads (default);</li>
+ * <li>{@code virtual} - every request is served by its own virtual thread, so requests blocked on the database
+ * or on slow clients don't hold worker threads. Needs Java 21 or newer, falls back to {@code platform} on older JVMs.</li>
+ * </ul>
+ * Virtual threads are created through reflection, as the application is built for Java 11.
+ */
+@Configuration
+public class ExecutionModeConfiguration {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(ExecutionModeConfiguration.class);
+
+    private ExecutorService virtualThreadExecutor;
+
+    @Bean
+    @ConditionalOnProperty(name = "stocks.execution.mode", havingValue = "virtual")
+    public TomcatProtocolHandlerCustomizer<ProtocolHandler> virtualThreadsCustomizer() {
+        return protocolHandler -> {
+            ExecutorService executor = newVirtualThreadExecutor();
+            if (executor == null) {
+                LOGGER.warn("Virtual threads need Java 21 or newer, requests are served by platform threads on Java {}",
+                        Runtime.version().feature());
+                return;
+            }
+            virtualThreadExecutor = executor;
+            protocolHandler.setExecutor(executor);
+            LOGGER.info("Requests are served by virtual threads");
+        };
+    }
+
+    @PreDestroy
+    void shutdown() {
+        if (virtualThreadExecutor != null) {
+            virtualThreadExecutor.shutdown();
+        }
+    }
+
+    /**
+     * @return executor starting a virtual thread per task or null when the JVM has no virtual threads.
+     */
+    private static ExecutorService newVirtualThreadExecutor() {
+        try {
+            Method factory = Executors.class.getMethod("newVirtualThreadPerTaskExecutor");
+            return (ExecutorService) factory.invoke(null);
+        } catch (ReflectiveOperationException e) {
+            return null;
+        }
+    }
+}
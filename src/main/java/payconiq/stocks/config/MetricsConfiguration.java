@@ -0,0 +1,31 @@
+package payconiq.stocks.config;
+
+import javax.persistence.EntityManagerFactory;
+
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.boot.autoconfigure.transaction.TransactionManagerCustomizers;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import io.micrometer.core.instrument.MeterRegistry;
+
+/**
+ * Metrics which can't be bound from outside of the instrumented components.
+ * Service and cache metrics are bound by {@link payconiq.stocks.service.metrics.StockMetrics},
+ * connection pool and Hibernate metrics are bound by Spring Boot.
+ */
+@Configuration
+public class MetricsConfiguration {
+
+    /**
+     * Replaces the transaction manager of Spring Boot with the one recording durations of transactions.
+     */
+    @Bean
+    public PlatformTransactionManager transactionManager(EntityManagerFactory entityManagerFactory, MeterRegistry registry,
+                                                         ObjectProvider<TransactionManagerCustomizers> customizers) {
+        TimedJpaTransactionManager transactionManager = new TimedJpaTransactionManager(entityManagerFactory, registry);
+        customizers.ifAvailable(transactionManagerCustomizers -> transactionManagerCustomizers.customize(transactionManager));
+        return transactionManager;
+    }
+}
@@ -0,0 +1,126 @@
+package payconiq.stocks.config;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.ApplicationArguments;
+import org.springframework.boot.ApplicationRunner;
+import org.springframework.boot.SpringApplication;
+import org.springframework.boot.actuate.health.Health;
+import org.springframework.boot.actuate.health.HealthIndicator;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.ApplicationContext;
+import org.springframework.core.env.Environment;
+import org.springframework.stereotype.Component;
+
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import payconiq.stocks.model.Stock;
+import payconiq.stocks.service.cluster.ClusterService;
+
+/**
+ * Warms the application up right after start, while {@code /actuator/health} still reports {@code OUT_OF_SERVICE},
+ * so that a load balancer sends traffic only to a warmed up instance.
+ * <p>
+ * Sends {@code stocks.warm-up.requests} read requests of {@link payconiq.stocks.controller.StockController}
+ * to the application itself over http: the first page of stocks and every stock of it by id in turn,
+ * so that the whole request path is loaded and compiled by the JIT and the stocks cache holds the first stocks.
+ * Writes are not sent, as they would change stocks. A failed warm-up is logged and doesn't keep the instance out of service.
+ * <p>
+ * With {@code stocks.warm-up.exit} the application exits after the warm-up, which is used to record
+ * a class data sharing archive of all classes the application needs (see the {@code cds} build profile).
+ */
+@Component
+@ConditionalOnProperty(name = "stocks.warm-up.enabled", havingValue = "true")
+public class StartupWarmUp implements ApplicationRunner, HealthIndicator {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(StartupWarmUp.class);
+
+    /**
+     * Every n-th warm-up request reads a page of stocks, the others read a single stock.
+     */
+    private static final int PAGE_EVERY = 10;
+
+    @Autowired
+    private ApplicationContext applicationContext;
+
+    @Autowired
+    private Environment environment;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @Autowired(required = false)
+    private ClusterService clusterService;
+
+    @Value("${stocks.warm-up.requests:1000}")
+    private int requests;
+
+    @Value("${stocks.page.max-size:1000}")
+    private int pageSize;
+
+    @Value("${stocks.warm-up.exit:false}")
+    private boolean exit;
+
+    private volatile boolean warmedUp;
+
+    @Override
+    public void run(ApplicationArguments args) throws InterruptedException {
+        long started = System.nanoTime();
+        int failed = 0;
+        int sent = 0;
+        try {
+            HttpClient httpClient = HttpClient.newBuilder().connectTimeout(Duration.ofSeconds(5)).build();
+            String stocksUrl = "http://localhost:" + environment.getProperty("local.server.port") + "/api/stocks";
+            String pageUrl = stocksUrl + "?limit=" + pageSize;
+            List<Stock> stocks = null;
+            for (; sent < requests; sent++) {
+                boolean page = stocks == null || stocks.isEmpty() || sent % PAGE_EVERY == 0;
+                URI uri = URI.create(page ? pageUrl : stocksUrl + "/" + stocks.get(sent % stocks.size()).getId());
+                HttpResponse<String> response = httpClient.send(request(uri), HttpResponse.BodyHandlers.ofString());
+                if (response.statusCode() != 200) {
+                    failed++;
+                } else if (stocks == null) {
+                    stocks = objectMapper.readValue(response.body(), new TypeReference<List<Stock>>() {
+                    });
+                }
+            }
+        } catch (IOException e) {
+            LOGGER.warn("Warm-up stopped after {} requests", sent, e);
+        } finally {
+            warmedUp = true;
+        }
+        LOGGER.info("Warmed up with {} requests in {} ms, {} failed", sent,
+                TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - started), failed);
+        if (exit) {
+            System.exit(SpringApplication.exit(applicationContext));
+        }
+    }
+
+    @Override
+    public Health health() {
+        return warmedUp ? Health.up().build() : Health.outOfService().withDetail("warmUp", "in progress").build();
+    }
+
+    /**
+     * Builds a warm-up request, which in cluster mode is marked as forwarded, so that it is served by this node.
+     */
+    private HttpRequest request(URI uri) {
+        HttpRequest.Builder request = HttpRequest.newBuilder(uri).timeout(Duration.ofSeconds(5));
+        if (clusterService != null) {
+            clusterService.markForwarded(request);
+        }
+        return request.build();
+    }
+}
@@ -0,0 +1,110 @@
+package payconiq.stocks.config;
+
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+
+import javax.persistence.EntityManagerFactory;
+
+import org.springframework.orm.jpa.JpaTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.DefaultTransactionStatus;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+
+/**
+ * {@link JpaTransactionManager} recording durations of database transactions, from begin to the end of commit or rollback,
+ * as {@code stocks.transactions} timer tagged by {@code outcome}: {@code commit}, {@code rollback}
+ * or {@code failed} when commit or rollback threw.
+ * <p>
+ * Start times are kept in a per thread stack of primitives, so nested transactions
+ * ({@link TransactionDefinition#PROPAGATION_REQUIRES_NEW}) are measured separately without allocating.
+ */
+public class TimedJpaTransactionManager extends JpaTransactionManager {
+
+    private static final int COMMIT = 0;
+
+    private static final int ROLLBACK = 1;
+
+    private static final int FAILED = 2;
+
+    private final Timer[] timers = new Timer[3];
+
+    private final ThreadLocal<Clock> clocks = ThreadLocal.withInitial(Clock::new);
+
+    public TimedJpaTransactionManager(EntityManagerFactory entityManagerFactory, MeterRegistry registry) {
+        super(entityManagerFactory);
+        String[] outcomes = {"commit", "rollback", "failed"};
+        for (int i = 0; i < outcomes.length; i++) {
+            timers[i] = Timer.builder("stocks.transactions")
+                    .description("Duration of database transactions")
+                    .tag("outcome", outcomes[i])
+                    .publishPercentiles(0.5, 0.99, 0.999)
+                    .register(registry);
+        }
+    }
+
+    @Override
+    protected void doBegin(Object transaction, TransactionDefinition definition) {
+        super.doBegin(transaction, definition);
+        clocks.get().push(System.nanoTime());
+    }
+
+    @Override
+    protected void doCommit(DefaultTransactionStatus status) {
+        super.doCommit(status);
+        clocks.get().outcome(COMMIT);
+    }
+
+    @Override
+    protected void doRollback(DefaultTransactionStatus status) {
+        super.doRollback(status);
+        clocks.get().outcome(ROLLBACK);
+    }
+
+    @Override
+    protected void doCleanupAfterCompletion(Object transaction) {
+        try {
+            super.doCleanupAfterCompletion(transaction);
+        } finally {
+            Clock clock = clocks.get();
+            if (clock.depth > 0) {
+                int outcome = clock.outcomes[clock.depth - 1];
+                long started = clock.pop();
+                timers[outcome].record(System.nanoTime() - started, TimeUnit.NANOSECONDS);
+            }
+        }
+    }
+
+    /**
+     * Start times and outcomes of transactions of a thread, the innermost last.
+     */
+    private static final class Clock {
+
+        private long[] starts = new long[4];
+
+        private int[] outcomes = new int[4];
+
+        private int depth;
+
+        private void push(long started) {
+            if (depth == starts.length) {
+                starts = Arrays.copyOf(starts, depth * 2);
+                outcomes = Arrays.copyOf(outcomes, depth * 2);
+            }
+            starts[depth] = started;
+            outcomes[depth] = FAILED;
+            depth++;
+        }
+
+        private void outcome(int outcome) {
+            if (depth > 0) {
+                outcomes[depth - 1] = outcome;
+            }
+        }
+
+        private long pop() {
+            return starts[--depth];
+        }
+    }
+}
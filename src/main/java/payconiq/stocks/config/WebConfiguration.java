@@ -0,0 +1,22 @@
+package payconiq.stocks.config;
+
+import java.util.List;
+
+import org.springframework.context.annotation.Configuration;
+import org.springframework.http.converter.HttpMessageConverter;
+import org.springframework.web.servlet.config.annotation.WebMvcConfigurer;
+
+import payconiq.stocks.controller.StockWireMessageConverter;
+
+/**
+ * Adds the binary {@link payconiq.stocks.controller.StockWireFormat} to the message converters of Spring MVC.
+ * The converter is appended after the default ones, so that json is still chosen for {@code Accept: *}{@code /*}.
+ */
+@Configuration
+public class WebConfiguration implements WebMvcConfigurer {
+
+    @Override
+    public void extendMessageConverters(List<HttpMessageConverter<?>> converters) {
+        converters.add(new StockWireMessageConverter());
+    }
+}
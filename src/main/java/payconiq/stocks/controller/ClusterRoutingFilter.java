@@ -0,0 +1,197 @@
+package payconiq.stocks.controller;
+
+import java.io.BufferedReader;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.net.http.HttpResponse;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.Map;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import javax.servlet.FilterChain;
+import javax.servlet.ReadListener;
+import javax.servlet.ServletException;
+import javax.servlet.ServletInputStream;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletRequestWrapper;
+import javax.servlet.http.HttpServletResponse;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.InvalidMediaTypeException;
+import org.springframework.http.MediaType;
+import org.springframework.stereotype.Component;
+import org.springframework.util.StreamUtils;
+import org.springframework.web.filter.OncePerRequestFilter;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import payconiq.stocks.exception.NodeUnavailableException;
+import payconiq.stocks.request.NewStockRequest;
+import payconiq.stocks.service.cluster.ClusterService;
+
+/**
+ * Routes requests for a single stock to the node owning it in cluster mode, see {@link ClusterService}:
+ * requests for {@code /api/stocks/{id}} and its history, candles and alerts go to the owner of the id,
+ * a new stock is created by the owner of its name. Other requests are served by the node which received them.
+ */
+@Component
+@ConditionalOnProperty(name = "stocks.cluster.enabled", havingValue = "true")
+public class ClusterRoutingFilter extends OncePerRequestFilter {
+
+    private static final String STOCKS_PATH = "/api/stocks";
+
+    private static final Pattern STOCK_PATH = Pattern.compile(STOCKS_PATH
+            + "/(\\d{1,18})(?:/history|/candles|/alerts(?:/\\d{1,18})?)?/?");
+
+    private static final MediaType WIRE_FORMAT = MediaType.parseMediaType(StockWireFormat.MEDIA_TYPE);
+
+    @Autowired
+    private ClusterService clusterService;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain chain)
+            throws ServletException, IOException {
+        if (clusterService.isForwarded(request.getHeader(ClusterService.FORWARDED_HEADER),
+                request.getHeader(ClusterService.SECRET_HEADER))) {
+            chain.doFilter(request, response);
+            return;
+        }
+        String path = request.getRequestURI().substring(request.getContextPath().length());
+        Matcher stockPath = STOCK_PATH.matcher(path);
+        if (stockPath.matches()) {
+            String owner = clusterService.ownerOf(Long.parseLong(stockPath.group(1)));
+            if (!owner.equals(clusterService.getSelf())) {
+                forward(owner, request, StreamUtils.copyToByteArray(request.getInputStream()), response);
+                return;
+            }
+        } else if (STOCKS_PATH.equals(path) && HttpMethod.POST.matches(request.getMethod())) {
+            byte[] body = StreamUtils.copyToByteArray(request.getInputStream());
+            String name = newStockName(request.getContentType(), body);
+            if (name != null && !clusterService.isLocalName(name)) {
+                forward(clusterService.ownerOfName(name), request, body, response);
+                return;
+            }
+            chain.doFilter(new CachedBodyRequest(request, body), response);
+            return;
+        }
+        chain.doFilter(request, response);
+    }
+
+    private void forward(String owner, HttpServletRequest request, byte[] body, HttpServletResponse response)
+            throws IOException {
+        HttpResponse<byte[]> forwarded;
+        try {
+            forwarded = clusterService.forward(owner, request, body);
+        } catch (NodeUnavailableException e) {
+            response.sendError(HttpServletResponse.SC_BAD_GATEWAY, e.getMessage());
+            return;
+        }
+        response.setStatus(forwarded.statusCode());
+        for (Map.Entry<String, List<String>> header : forwarded.headers().map().entrySet()) {
+            if (!ClusterService.isHopHeader(header.getKey()) && !header.getKey().startsWith(":")) {
+                for (String value : header.getValue()) {
+                    response.addHeader(header.getKey(), value);
+                }
+            }
+        }
+        response.setContentLength(forwarded.body().length);
+        response.getOutputStream().write(forwarded.body());
+    }
+
+    /**
+     * @param contentType - content type of request adding a stock, json or {@link StockWireFormat#MEDIA_TYPE}.
+     * @param body        - body of request adding a stock.
+     * @return name of new stock or null when the body is not a correct request, which is then rejected locally.
+     */
+    private String newStockName(String contentType, byte[] body) {
+        try {
+            NewStockRequest newStockRequest = isWireFormat(contentType)
+                    ? new StockWireFormat.Reader(body).readNewStock()
+                    : objectMapper.readValue(body, NewStockRequest.class);
+            return newStockRequest == null || newStockRequest.getName() == null || newStockRequest.getName().isBlank()
+                    ? null
+                    : newStockRequest.getName();
+        } catch (IOException e) {
+            return null;
+        }
+    }
+
+    private static boolean isWireFormat(String contentType) {
+        try {
+            return contentType != null && WIRE_FORMAT.includes(MediaType.parseMediaType(contentType));
+        } catch (InvalidMediaTypeException e) {
+            return false;
+        }
+    }
+
+    /**
+     * Request which body has been read already by the filter.
+     */
+    private static final class CachedBodyRequest extends HttpServletRequestWrapper {
+
+        private final byte[] body;
+
+        private CachedBodyRequest(HttpServletRequest request, byte[] body) {
+            super(request);
+            this.body = body;
+        }
+
+        @Override
+        public ServletInputStream getInputStream() {
+            ByteArrayInputStream input = new ByteArrayInputStream(body);
+            return new ServletInputStream() {
+                @Override
+                public boolean isFinished() {
+                    return input.available() == 0;
+                }
+
+                @Override
+                public boolean isReady() {
+                    return true;
+                }
+
+                @Override
+                public void setReadListener(ReadListener readListener) {
+                    // the whole body is in memory, so it is available at once
+                    try {
+                        if (!isFinished()) {
+                            readListener.onDataAvailable();
+                        }
+                        if (isFinished()) {
+                            readListener.onAllDataRead();
+                        }
+                    } catch (IOException e) {
+                        readListener.onError(e);
+                    }
+                }
+
+                @Override
+                public int read() {
+                    return input.read();
+                }
+
+                @Override
+                public int read(byte[] buffer, int offset, int length) {
+                    return input.read(buffer, offset, length);
+                }
+            };
+        }
+
+        @Override
+        public BufferedReader getReader() {
+            Charset charset = getCharacterEncoding() == null
+                    ? StandardCharsets.UTF_8
+                    : Charset.forName(getCharacterEncoding());
+            return new BufferedReader(new InputStreamReader(getInputStream(), charset));
+        }
+    }
+}
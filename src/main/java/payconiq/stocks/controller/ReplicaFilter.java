@@ -0,0 +1,84 @@
+package payconiq.stocks.controller;
+
+import java.io.IOException;
+import java.time.Duration;
+
+import javax.servlet.FilterChain;
+import javax.servlet.ServletException;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpMethod;
+import org.springframework.stereotype.Component;
+import org.springframework.web.filter.OncePerRequestFilter;
+
+import payconiq.stocks.service.replication.ReplicaSync;
+import payconiq.stocks.service.replication.ReplicationNode;
+
+/**
+ * Keeps a replica read-only and gives clients "read your writes":
+ * changes of stocks are rejected with 405 Method Not Allowed, and a read with position of the primary
+ * change log in {@value ReplicationNode#POSITION_HEADER} waits up to {@code stocks.replication.max-wait}
+ * until the replica has applied changes up to it, 503 Service Unavailable is returned afterwards.
+ */
+@Component
+@ConditionalOnProperty(name = "stocks.replication.role", havingValue = "replica")
+public class ReplicaFilter extends OncePerRequestFilter {
+
+    private static final String STOCKS_PATH = "/api/stocks";
+
+    @Autowired
+    private ReplicaSync replicaSync;
+
+    @Value("${stocks.replication.primary-url}")
+    private String primaryUrl;
+
+    @Value("${stocks.replication.max-wait:1s}")
+    private Duration maxWait;
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain chain)
+            throws ServletException, IOException {
+        String path = request.getRequestURI().substring(request.getContextPath().length());
+        if (!path.equals(STOCKS_PATH) && !path.startsWith(STOCKS_PATH + "/")) {
+            chain.doFilter(request, response);
+            return;
+        }
+        HttpMethod method = HttpMethod.resolve(request.getMethod());
+        if (method != HttpMethod.GET && method != HttpMethod.HEAD && method != HttpMethod.OPTIONS) {
+            response.setHeader(HttpHeaders.ALLOW, "GET, HEAD, OPTIONS");
+            response.sendError(HttpServletResponse.SC_METHOD_NOT_ALLOWED,
+                    "Replica is read-only, stocks are changed at " + primaryUrl);
+            return;
+        }
+        String position = request.getHeader(ReplicationNode.POSITION_HEADER);
+        if (position != null) {
+            long target;
+            try {
+                target = Long.parseLong(position.trim());
+            } catch (NumberFormatException e) {
+                response.sendError(HttpServletResponse.SC_BAD_REQUEST,
+                        ReplicationNode.POSITION_HEADER + " should be a position of the change log");
+                return;
+            }
+            boolean reached;
+            try {
+                reached = replicaSync.awaitPosition(target, maxWait);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                reached = false;
+            }
+            if (!reached) {
+                response.setHeader(HttpHeaders.RETRY_AFTER, "1");
+                response.sendError(HttpServletResponse.SC_SERVICE_UNAVAILABLE,
+                        "Replica hasn't applied changes up to position " + target + " yet");
+                return;
+            }
+        }
+        chain.doFilter(request, response);
+    }
+}
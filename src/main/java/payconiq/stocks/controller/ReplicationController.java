@@ -0,0 +1,59 @@
+package payconiq.stocks.controller;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.lang.NonNull;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+
+import payconiq.stocks.exception.IncorrectRequestException;
+import payconiq.stocks.response.ChangeBatch;
+import payconiq.stocks.response.StockChange;
+import payconiq.stocks.service.StockService;
+import payconiq.stocks.service.replication.StockChangeLog;
+
+/**
+ * REST controller of the primary serving its change log to replicas.
+ */
+@RestController
+@RequestMapping("/api/replication")
+@ConditionalOnProperty(name = "stocks.replication.role", havingValue = "primary")
+public class ReplicationController {
+
+    @Autowired
+    private StockChangeLog stockChangeLog;
+
+    @Autowired
+    private StockService stockService;
+
+    /**
+     * Returns changes of stocks following a given position of the change log.
+     * Without position, or when the position is no longer kept in the log, returns a snapshot of all stocks
+     * as of the current position.
+     *
+     * @param after - optional position to read after.
+     * @param limit - max number of changes.
+     * @return changes following the position or snapshot of all stocks.
+     * @throws IncorrectRequestException when the position is ahead of the log or limit is not positive.
+     */
+    @GetMapping("/changes")
+    @NonNull
+    public ChangeBatch getChanges(@RequestParam(required = false) Long after, @RequestParam int limit) {
+        if (after != null) {
+            ChangeBatch changes = stockChangeLog.read(after, limit);
+            if (changes != null) {
+                return changes;
+            }
+        }
+        // changes committed while reading are in the snapshot and in the log after the position
+        long position = stockChangeLog.committedPosition();
+        List<StockChange> snapshot = new ArrayList<>();
+        stockService.forEachStock(stock -> snapshot.add(StockChange.saved(position, stock)));
+        return new ChangeBatch(position, position, true, snapshot);
+    }
+}
@@ -0,0 +1,37 @@
+package payconiq.stocks.controller;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.core.MethodParameter;
+import org.springframework.http.MediaType;
+import org.springframework.http.converter.HttpMessageConverter;
+import org.springframework.http.server.ServerHttpRequest;
+import org.springframework.http.server.ServerHttpResponse;
+import org.springframework.web.bind.annotation.ControllerAdvice;
+import org.springframework.web.servlet.mvc.method.annotation.ResponseBodyAdvice;
+
+import payconiq.stocks.service.replication.ReplicationNode;
+
+/**
+ * Adds position of the change log this node is up to date with to responses of {@link StockController}
+ * when replication is on. A client passes the position returned by the primary with a write
+ * to a replica to read its own write.
+ */
+@ControllerAdvice(assignableTypes = StockController.class)
+public class ReplicationPositionAdvice implements ResponseBodyAdvice<Object> {
+
+    @Autowired(required = false)
+    private ReplicationNode replicationNode;
+
+    @Override
+    public boolean supports(MethodParameter returnType, Class<? extends HttpMessageConverter<?>> converterType) {
+        return replicationNode != null;
+    }
+
+    @Override
+    public Object beforeBodyWrite(Object body, MethodParameter returnType, MediaType selectedContentType,
+                                  Class<? extends HttpMessageConverter<?>> selectedConverterType,
+                                  ServerHttpRequest request, ServerHttpResponse response) {
+        response.getHeaders().set(ReplicationNode.POSITION_HEADER, Long.toString(replicationNode.position()));
+        return body;
+    }
+}
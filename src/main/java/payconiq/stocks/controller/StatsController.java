@@ -0,0 +1,106 @@
+package payconiq.stocks.controller;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.ResponseEntity;
+import org.springframework.lang.NonNull;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+
+import payconiq.stocks.response.AlertStats;
+import payconiq.stocks.response.CacheStats;
+import payconiq.stocks.response.PersistenceStats;
+import payconiq.stocks.response.ReplicationStats;
+import payconiq.stocks.response.WriteBehindStats;
+import payconiq.stocks.service.PriceWriteBehind;
+import payconiq.stocks.service.StockCache;
+import payconiq.stocks.service.alert.PriceAlertService;
+import payconiq.stocks.service.persistence.StockJournal;
+import payconiq.stocks.service.replication.ReplicationNode;
+
+/**
+ * REST controller exposing runtime statistics of the application.
+ */
+@RestController
+@RequestMapping("/api/stats")
+public class StatsController {
+
+    @Autowired
+    private StockCache stockCache;
+
+    @Autowired
+    private PriceAlertService priceAlertService;
+
+    @Autowired(required = false)
+    private PriceWriteBehind priceWriteBehind;
+
+    @Autowired(required = false)
+    private ReplicationNode replicationNode;
+
+    @Autowired(required = false)
+    private StockJournal stockJournal;
+
+    /**
+     * Returns counters of {@link StockCache}.
+     *
+     * @return hit/miss/eviction counters of stocks cache.
+     */
+    @GetMapping("/cache")
+    @NonNull
+    public CacheStats getCacheStats() {
+        return stockCache.stats();
+    }
+
+    /**
+     * Returns number of pending price alerts and delivery counters of fired ones.
+     *
+     * @return counters of {@link PriceAlertService}.
+     */
+    @GetMapping("/alerts")
+    @NonNull
+    public AlertStats getAlertStats() {
+        return priceAlertService.stats();
+    }
+
+    /**
+     * Returns queue depth and commit latency of price updates in "write-behind" mode.
+     *
+     * @return write-behind counters or 404 when the mode is off.
+     */
+    @GetMapping("/write-behind")
+    @NonNull
+    public ResponseEntity<WriteBehindStats> getWriteBehindStats() {
+        if (priceWriteBehind == null) {
+            return ResponseEntity.notFound().build();
+        }
+        return ResponseEntity.ok(priceWriteBehind.stats());
+    }
+
+    /**
+     * Returns replication position and lag of this node.
+     *
+     * @return replication position and lag or 404 when replication is off.
+     */
+    @GetMapping("/replication")
+    @NonNull
+    public ResponseEntity<ReplicationStats> getReplicationStats() {
+        if (replicationNode == null) {
+            return ResponseEntity.notFound().build();
+        }
+        return ResponseEntity.ok(replicationNode.stats());
+    }
+
+    /**
+     * Returns log positions and group commit counters in "persistence" mode.
+     *
+     * @return persistence counters or 404 when the mode is off.
+     */
+    @GetMapping("/persistence")
+    @NonNull
+    public ResponseEntity<PersistenceStats> getPersistenceStats() {
+        if (stockJournal == null) {
+            return ResponseEntity.notFound().build();
+        }
+        return ResponseEntity.ok(stockJournal.stats());
+    }
+}
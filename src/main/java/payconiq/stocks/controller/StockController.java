@@ -1,28 +1,73 @@
 package payconiq.stocks.controller;
 
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.UncheckedIOException;
 import java.net.URI;
+import java.net.URLEncoder;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.util.ArrayList;
 import java.util.Collection;
 import java.util.List;
 
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.lang.NonNull;
+import org.springframework.lang.Nullable;
 import org.springframework.web.bind.annotation.DeleteMapping;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.PatchMapping;
 import org.springframework.web.bind.annotation.PathVariable;
 import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestHeader;
 import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.ResponseBody;
 import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.context.request.WebRequest;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
 import org.springframework.web.servlet.support.ServletUriComponentsBuilder;
 
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.fasterxml.jackson.databind.SerializationFeature;
+
 import payconiq.stocks.exception.IncorrectRequestException;
+import payconiq.stocks.exception.StockVersionMismatchException;
 import payconiq.stocks.model.Stock;
+import payconiq.stocks.request.NewPriceAlertRequest;
 import payconiq.stocks.request.NewStockRequest;
 import payconiq.stocks.request.PriceUpdateRequest;
+import payconiq.stocks.request.StockPriceUpdateRequest;
+import payconiq.stocks.response.Candle;
+import payconiq.stocks.response.NewStockResult;
+import payconiq.stocks.response.PriceAlert;
+import payconiq.stocks.response.PriceUpdateResult;
+import payconiq.stocks.response.StockMove;
 import payconiq.stocks.service.StockService;
+import payconiq.stocks.service.alert.PriceAlertService;
+import payconiq.stocks.service.bulk.ImportResult;
+import payconiq.stocks.service.bulk.StockBinaryFormat;
+import payconiq.stocks.service.bulk.StockCsvFormat;
+import payconiq.stocks.service.bulk.StockImportService;
+import payconiq.stocks.service.bulk.StockRowReader;
+import payconiq.stocks.service.bulk.StockWriter;
+import payconiq.stocks.service.candle.CandleService;
+import payconiq.stocks.service.cluster.ClusterService;
+import payconiq.stocks.service.history.PriceHistoryService;
+import payconiq.stocks.service.leaderboard.StockLeaderboard;
+import payconiq.stocks.service.search.StockSearchIndex;
+import payconiq.stocks.service.stream.PriceStreamService;
 
 /**
  * Main Stocks REST controller
@@ -31,49 +76,505 @@ import payconiq.stocks.service.StockService;
 @RequestMapping("/api/stocks")
 public class StockController {
 
+    private static final long NANOS_PER_SECOND = 1_000_000_000L;
+
+    /**
+     * Suffix of the ETag of a gzip compressed list, which differs from the uncompressed one byte by byte.
+     */
+    private static final String GZIP_ETAG_SUFFIX = "-gz";
+
+    /**
+     * Suffix of the ETag of stocks in {@link StockWireFormat}, which differ from json of the same stocks.
+     */
+    private static final String WIRE_ETAG_SUFFIX = "-wire";
+
+    /**
+     * Vary of a single stock, which is sent as json or in {@link StockWireFormat} depending on Accept.
+     */
+    private static final String VARY_STOCK = HttpHeaders.ACCEPT;
+
+    /**
+     * Vary of the list of stocks, which is also sent gzip compressed depending on Accept-Encoding.
+     */
+    private static final String VARY_STOCKS = HttpHeaders.ACCEPT + ", " + HttpHeaders.ACCEPT_ENCODING;
+
     @Autowired
     private StockService stockService;
 
+    @Autowired
+    private PriceHistoryService priceHistoryService;
+
+    @Autowired
+    private CandleService candleService;
+
+    @Autowired
+    private PriceStreamService priceStreamService;
+
+    @Autowired
+    private PriceAlertService priceAlertService;
+
+    @Autowired
+    private StockLeaderboard stockLeaderboard;
+
+    @Autowired
+    private StockResponseCache stockResponseCache;
+
+    @Autowired
+    private StockImportService stockImportService;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    /**
+     * Is present only in cluster mode, see {@link ClusterService}.
+     */
+    @Autowired(required = false)
+    private ClusterService clusterService;
+
     /**
      * Returns list of all {@link Stock}s.
+     * Responds with 304 Not Modified when no stock has changed since the version
+     * in If-None-Match or the time in If-Modified-Since.
+     * Json of the list is kept by {@link StockResponseCache} until any stock changes,
+     * it is sent gzip compressed when Accept-Encoding allows it, with its own ETag.
+     * In cluster mode stocks are gathered from all nodes, without checking conditional headers.
      *
-     * @return list of all {@link Stock}s.
+     * @param acceptEncoding - Accept-Encoding header of the request.
+     * @param request        - request to check conditional headers of.
+     * @param response       - response to set Vary of.
+     * @return json of all {@link Stock}s or null when not modified.
+     * @throws payconiq.stocks.exception.NodeUnavailableException when one of nodes is unavailable.
      */
     @GetMapping
-    @NonNull
-    public Collection<Stock> getStocks() {
+    @Nullable
+    public ResponseEntity<byte[]> getStocks(@RequestHeader(name = HttpHeaders.ACCEPT_ENCODING, required = false)
+                                                    String acceptEncoding,
+                                            WebRequest request, HttpServletResponse response) throws IOException {
+        response.setHeader(HttpHeaders.VARY, VARY_STOCKS);
+        if (isClusterRequest(request)) {
+            return json(objectMapper.writeValueAsBytes(clusterService.gather("/api/stocks", stockService::getAllStocks)));
+        }
+        boolean gzip = acceptsGzip(acceptEncoding);
+        String version = stockService.getCollectionVersion();
+        if (request.checkNotModified(gzip ? version + GZIP_ETAG_SUFFIX : version,
+                stockService.getCollectionLastModified())) {
+            return null;
+        }
+        StockResponseCache.CollectionJson stocks = stockResponseCache.collectionJson(version, stockService::getAllStocks);
+        if (!gzip) {
+            return json(stocks.json());
+        }
+        return ResponseEntity.ok()
+                .contentType(MediaType.APPLICATION_JSON)
+                .header(HttpHeaders.CONTENT_ENCODING, "gzip")
+                .body(stocks.gzip());
+    }
+
+    /**
+     * Returns list of all {@link Stock}s in {@link StockWireFormat}, chosen by Accept.
+     * Conditional headers are checked as for json with an ETag of its own, the encoded list is not cached.
+     *
+     * @param request  - request to check conditional headers of.
+     * @param response - response to set Vary of.
+     * @return all {@link Stock}s or null when not modified.
+     * @throws payconiq.stocks.exception.NodeUnavailableException when one of nodes is unavailable.
+     */
+    @GetMapping(produces = StockWireFormat.MEDIA_TYPE)
+    @Nullable
+    public Collection<Stock> getStocksWire(WebRequest request, HttpServletResponse response) {
+        response.setHeader(HttpHeaders.VARY, VARY_STOCKS);
+        if (isClusterRequest(request)) {
+            return clusterService.gather("/api/stocks", stockService::getAllStocks);
+        }
+        if (request.checkNotModified(stockService.getCollectionVersion() + WIRE_ETAG_SUFFIX,
+                stockService.getCollectionLastModified())) {
+            return null;
+        }
         return stockService.getAllStocks();
     }
 
+    /**
+     * Returns page of {@link Stock}s following a given id, ordered by id.
+     * When the page is full, link to the next page is returned in the Link header.
+     *
+     * In cluster mode a page is requested from every node and the first stocks of all pages are returned.
+     *
+     * @param after   - optional id to start after, exclusive.
+     * @param limit   - max number of stocks to return.
+     * @param request - request to check whether it was sent by another node.
+     * @return page of {@link Stock}s.
+     * @throws IncorrectRequestException                          when limit is not positive or too big.
+     * @throws payconiq.stocks.exception.NodeUnavailableException when one of nodes is unavailable.
+     */
+    @GetMapping(params = "limit")
+    @NonNull
+    public ResponseEntity<List<Stock>> getStocksAfter(@RequestParam(required = false) Long after,
+                                                      @RequestParam int limit,
+                                                      WebRequest request) {
+        List<Stock> stocks;
+        if (isClusterRequest(request)) {
+            String query = "/api/stocks?limit=" + limit + (after == null ? "" : "&after=" + after);
+            stocks = clusterService.gather(query, () -> stockService.findAfter(after, limit));
+            stocks = stocks.subList(0, Math.min(limit, stocks.size()));
+        } else {
+            stocks = stockService.findAfter(after, limit);
+        }
+        if (stocks.size() < limit) {
+            return ResponseEntity.ok(stocks);
+        }
+        URI next = ServletUriComponentsBuilder.fromCurrentRequestUri()
+                .queryParam("after", stocks.get(stocks.size() - 1).getId())
+                .queryParam("limit", limit)
+                .build().toUri();
+        return ResponseEntity.ok().header(HttpHeaders.LINK, "<" + next + ">; rel=\"next\"").body(stocks);
+    }
+
+    /**
+     * Searches {@link Stock}s which names start with or contain a query, case and whitespace are ignored.
+     * Names start with the query in the first returned stocks, ordered by name, the other names contain it.
+     *
+     * In cluster mode matches of all nodes are merged in the same order.
+     *
+     * @param q       - part of stock name, at least 3 characters long to match inside of names.
+     * @param limit   - max number of stocks to return.
+     * @param request - request to check whether it was sent by another node.
+     * @return matching {@link Stock}s.
+     * @throws IncorrectRequestException                          when query is empty or limit is not positive or too big.
+     * @throws payconiq.stocks.exception.NodeUnavailableException when one of nodes is unavailable.
+     */
+    @GetMapping("/search")
+    @NonNull
+    public List<Stock> searchStocks(@RequestParam String q,
+                                    @RequestParam(defaultValue = "10") int limit,
+                                    WebRequest request) {
+        if (!isClusterRequest(request)) {
+            return stockService.searchStocks(q, limit);
+        }
+        String query = "/api/stocks/search?q=" + URLEncoder.encode(q, StandardCharsets.UTF_8) + "&limit=" + limit;
+        List<Stock> stocks = new ArrayList<>(clusterService.gather(query, () -> stockService.searchStocks(q, limit)));
+        stocks.sort(StockSearchIndex.relevance(Stock.normalizeName(q)));
+        return stocks.subList(0, Math.min(limit, stocks.size()));
+    }
+
+    /**
+     * Returns stocks which moved most since the open of the day, without querying the database.
+     * With {@code by=change} biggest gainers come first, with {@code order=asc} biggest losers,
+     * with {@code by=active} stocks with most price updates come first.
+     * Stocks not updated since the open are not listed. In cluster mode only stocks of this node are listed.
+     *
+     * @param by    - {@code change} or {@code active}.
+     * @param order - {@code desc} for biggest values first, {@code asc} for smallest values first.
+     * @param n     - max number of stocks.
+     * @return price moves of top stocks.
+     * @throws IncorrectRequestException when by or order are unknown or n is not positive or too big.
+     */
+    @GetMapping("/top")
+    @NonNull
+    public List<StockMove> getTopStocks(@RequestParam(defaultValue = StockLeaderboard.BY_CHANGE) String by,
+                                        @RequestParam(defaultValue = "desc") String order,
+                                        @RequestParam(defaultValue = "10") int n) {
+        if (!"desc".equals(order) && !"asc".equals(order)) {
+            throw new IncorrectRequestException("Order of top stocks should be asc or desc");
+        }
+        return stockLeaderboard.top(by, "asc".equals(order), n);
+    }
+
+    /**
+     * Streams all {@link Stock}s as a json array ordered by id,
+     * without loading the whole list in memory.
+     *
+     * @param response - response to write stocks to.
+     * @throws IOException when response can't be written.
+     */
+    @GetMapping("/stream")
+    public void streamStocks(HttpServletResponse response) throws IOException {
+        ObjectWriter stockWriter = objectMapper.writerFor(Stock.class)
+                .without(SerializationFeature.FLUSH_AFTER_WRITE_VALUE);
+        response.setContentType(MediaType.APPLICATION_JSON_VALUE);
+        try (JsonGenerator json = objectMapper.getFactory().createGenerator(response.getOutputStream())) {
+            json.writeStartArray();
+            stockService.forEachStock(stock -> {
+                try {
+                    stockWriter.writeValue(json, stock);
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            });
+            json.writeEndArray();
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+    }
+
+    /**
+     * Streams all {@link Stock}s ordered by id in CSV or, when requested in the Accept header, in binary format.
+     *
+     * @param accept   - Accept header of the request.
+     * @param response - response to write stocks to.
+     * @throws IOException when response can't be written.
+     */
+    @GetMapping(path = "/export", produces = {StockCsvFormat.MEDIA_TYPE, StockBinaryFormat.MEDIA_TYPE})
+    public void exportStocks(@RequestHeader(name = HttpHeaders.ACCEPT, required = false) String accept,
+                             HttpServletResponse response) throws IOException {
+        StockWriter writer;
+        if (accepts(accept, StockBinaryFormat.MEDIA_TYPE)) {
+            response.setContentType(StockBinaryFormat.MEDIA_TYPE);
+            writer = StockBinaryFormat.writer(response.getOutputStream());
+        } else {
+            response.setContentType(StockCsvFormat.MEDIA_TYPE + ";charset=UTF-8");
+            writer = StockCsvFormat.writer(new OutputStreamWriter(response.getOutputStream(), StandardCharsets.UTF_8));
+        }
+        try {
+            stockService.forEachStock(stock -> {
+                try {
+                    writer.write(stock);
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            });
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+        writer.finish();
+    }
+
+    /**
+     * Imports stocks from CSV with name and price columns.
+     * Rows are read and inserted in chunks, so chunks inserted before a failure stay inserted.
+     *
+     * @param request  - request to read CSV from.
+     * @param response - response to write errors of rows and numbers of imported and failed rows to.
+     * @throws IncorrectRequestException when there is no name or price column.
+     * @throws IOException               when request can't be read or response can't be written.
+     */
+    @PostMapping(path = "/import", consumes = StockCsvFormat.MEDIA_TYPE)
+    public void importCsv(HttpServletRequest request, HttpServletResponse response) throws IOException {
+        Charset charset = request.getCharacterEncoding() == null
+                ? StandardCharsets.UTF_8
+                : Charset.forName(request.getCharacterEncoding());
+        importStocks(StockCsvFormat.reader(new InputStreamReader(request.getInputStream(), charset)), response);
+    }
+
+    /**
+     * Imports stocks in binary format, see {@link StockBinaryFormat}.
+     *
+     * @param request  - request to read stocks from.
+     * @param response - response to write errors of rows and numbers of imported and failed rows to.
+     * @throws IncorrectRequestException when request is not in binary format.
+     * @throws IOException               when request can't be read or response can't be written.
+     */
+    @PostMapping(path = "/import", consumes = StockBinaryFormat.MEDIA_TYPE)
+    public void importBinary(HttpServletRequest request, HttpServletResponse response) throws IOException {
+        importStocks(StockBinaryFormat.reader(request.getInputStream()), response);
+    }
+
+    /**
+     * Subscribes to price changes of given stocks as server-sent events.
+     * Current price of every stock is sent first as a {@code price} event, followed by every change.
+     * When a client can't keep up, only the latest price of each stock is sent.
+     * A {@code deleted} event is sent when a stock is deleted.
+     *
+     * @param ids - ids of stocks to subscribe to.
+     * @return emitter of price events.
+     * @throws payconiq.stocks.exception.StockNotFoundException   when there is no stock with one of ids.
+     * @throws IncorrectRequestException                          when there are too many ids.
+     * @throws payconiq.stocks.exception.TooManyRequestsException when there are too many subscribers.
+     */
+    @GetMapping(path = "/subscribe", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    @NonNull
+    public SseEmitter subscribe(@RequestParam List<Long> ids) {
+        return priceStreamService.subscribe(ids, stockService::lookupStock);
+    }
+
     /**
      * Returns {@link Stock} by its id.
+     * Responds with 304 Not Modified when the stock matches If-None-Match or If-Modified-Since.
+     * ETag of the stock can be passed in If-Match of a price update to apply the update only to this version of the stock.
      *
-     * @param id - id of stock to lookup.
-     * @return {@link Stock} by its id.
+     * @param id       - id of stock to lookup.
+     * @param request  - request to check conditional headers of.
+     * @param response - response to set Vary of.
+     * @return json of {@link Stock} by its id or null when not modified.
      * @throws payconiq.stocks.exception.StockNotFoundException when there is no stock with such id.
      */
     @GetMapping("/{id}")
+    @Nullable
+    public ResponseEntity<byte[]> getStock(@PathVariable long id, WebRequest request, HttpServletResponse response) {
+        response.setHeader(HttpHeaders.VARY, VARY_STOCK);
+        Stock stock = stockService.lookupStock(id);
+        Instant lastUpdate = stock.getLastUpdate();
+        if (request.checkNotModified(eTag(stock), lastUpdate.toEpochMilli())) {
+            return null;
+        }
+        return json(stockResponseCache.stockJson(stock));
+    }
+
+    /**
+     * Returns {@link Stock} by its id in {@link StockWireFormat}, chosen by Accept.
+     * Conditional headers are checked as for json with an ETag of its own, which is accepted in If-Match as well.
+     *
+     * @param id       - id of stock to lookup.
+     * @param request  - request to check conditional headers of.
+     * @param response - response to set Vary of.
+     * @return {@link Stock} by its id or null when not modified.
+     * @throws payconiq.stocks.exception.StockNotFoundException when there is no stock with such id.
+     */
+    @GetMapping(path = "/{id}", produces = StockWireFormat.MEDIA_TYPE)
+    @Nullable
+    public Stock getStockWire(@PathVariable long id, WebRequest request, HttpServletResponse response) {
+        response.setHeader(HttpHeaders.VARY, VARY_STOCK);
+        Stock stock = stockService.lookupStock(id);
+        if (request.checkNotModified(eTag(stock) + WIRE_ETAG_SUFFIX, stock.getLastUpdate().toEpochMilli())) {
+            return null;
+        }
+        return stock;
+    }
+
+    /**
+     * Streams price history of a given stock, newest price first.
+     *
+     * @param id       - id of stock.
+     * @param from     - optional start of the period in ISO-8601 format.
+     * @param to       - optional end of the period in ISO-8601 format.
+     * @param response - response to write prices which were actual within the period to.
+     * @throws payconiq.stocks.exception.StockNotFoundException when there is no stock with such id.
+     * @throws IOException                                      when response can't be written.
+     */
+    @GetMapping("/{id}/history")
+    public void getPriceHistory(@PathVariable long id,
+                                @RequestParam(required = false) Instant from,
+                                @RequestParam(required = false) Instant to,
+                                HttpServletResponse response) throws IOException {
+        stockService.lookupStock(id);
+        response.setContentType(MediaType.APPLICATION_JSON_VALUE);
+        try (JsonGenerator json = objectMapper.getFactory().createGenerator(response.getOutputStream())) {
+            priceHistoryService.writeHistory(id, from, to, json);
+        }
+    }
+
+    /**
+     * Returns latest open/high/low/close candles of a given stock, oldest first.
+     * The last candle is the current one and is still changing.
+     *
+     * @param id       - id of stock.
+     * @param interval - interval of candles, e.g. 1m, 5m, 1h or 1d.
+     * @param limit    - optional max number of candles.
+     * @return latest candles.
+     * @throws payconiq.stocks.exception.StockNotFoundException when there is no stock with such id.
+     * @throws IncorrectRequestException                        when interval is not supported.
+     */
+    @GetMapping("/{id}/candles")
+    @NonNull
+    public List<Candle> getCandles(@PathVariable long id,
+                                   @RequestParam String interval,
+                                   @RequestParam(required = false) Integer limit) {
+        stockService.lookupStock(id);
+        return candleService.getCandles(id, interval, limit);
+    }
+
+    /**
+     * Adds a price alert of a given stock, which is posted to its callback url once when a price update crosses its price.
+     *
+     * @param id      - id of stock.
+     * @param request - price, optional direction and callback url of the alert.
+     * @return added alert with its location.
+     * @throws payconiq.stocks.exception.StockNotFoundException  when there is no stock with such id.
+     * @throws IncorrectRequestException                         when price is 0 or below or callback url is not valid.
+     * @throws payconiq.stocks.exception.TooManyRequestsException when the stock has too many alerts.
+     */
+    @PostMapping("/{id}/alerts")
+    @NonNull
+    public ResponseEntity<PriceAlert> addAlert(@PathVariable long id, @RequestBody @NonNull NewPriceAlertRequest request) {
+        PriceAlert alert = priceAlertService.addAlert(stockService.lookupStock(id), request);
+        URI location = ServletUriComponentsBuilder.fromCurrentRequest().path("/{alertId}")
+                .buildAndExpand(alert.getId()).toUri();
+        return ResponseEntity.created(location).body(alert);
+    }
+
+    /**
+     * Returns pending price alerts of a given stock.
+     *
+     * @param id - id of stock.
+     * @return pending alerts, rising ones first, each direction in order of alert price.
+     * @throws payconiq.stocks.exception.StockNotFoundException when there is no stock with such id.
+     */
+    @GetMapping("/{id}/alerts")
+    @NonNull
+    public List<PriceAlert> getAlerts(@PathVariable long id) {
+        stockService.lookupStock(id);
+        return priceAlertService.getAlerts(id);
+    }
+
+    /**
+     * Returns a pending price alert of a given stock.
+     *
+     * @param id      - id of stock.
+     * @param alertId - id of alert.
+     * @return pending alert.
+     * @throws payconiq.stocks.exception.AlertNotFoundException when the stock has no such pending alert.
+     */
+    @GetMapping("/{id}/alerts/{alertId}")
     @NonNull
-    public Stock getStock(@PathVariable long id) {
-        return stockService.lookupStock(id);
+    public PriceAlert getAlert(@PathVariable long id, @PathVariable long alertId) {
+        return priceAlertService.getAlert(id, alertId);
     }
 
+    /**
+     * Deletes a pending price alert of a given stock.
+     *
+     * @param id      - id of stock.
+     * @param alertId - id of alert.
+     * @return 204 No Content.
+     * @throws payconiq.stocks.exception.AlertNotFoundException when the stock has no such pending alert.
+     */
+    @DeleteMapping("/{id}/alerts/{alertId}")
+    @NonNull
+    public ResponseEntity<Void> deleteAlert(@PathVariable long id, @PathVariable long alertId) {
+        priceAlertService.deleteAlert(id, alertId);
+        return ResponseEntity.noContent().build();
+    }
 
     /**
      * Updates a price of a given stock.
+     * When expected version is given in the request or ETag of the stock in If-Match,
+     * the update is applied only when the stock hasn't changed since.
+     * In "write-behind" mode an unconditional update is queued and 202 Accepted is returned before it is written.
      *
      * @param priceUpdateRequest - {@link PriceUpdateRequest} of price update.
      * @param id                 - id of stock to update.
-     * @return update result response.
-     * @throws payconiq.stocks.exception.StockNotFoundException when there is no stock with such id.
-     * @throws IncorrectRequestException                        when price is 0 or below.
+     * @param ifMatch            - optional ETag of the stock the update is based on.
+     * @return update result response with ETag of the updated stock.
+     * @throws payconiq.stocks.exception.StockNotFoundException        when there is no stock with such id.
+     * @throws IncorrectRequestException                               when price is 0 or below or versions in the request differ.
+     * @throws payconiq.stocks.exception.StockVersionMismatchException when the stock has changed since expected version.
+     * @throws payconiq.stocks.exception.ConcurrentUpdateException     when the update kept conflicting with concurrent updates.
+     * @throws payconiq.stocks.exception.TooManyRequestsException      when the write-behind queue is full.
      */
     @PatchMapping("/{id}")
     @ResponseBody
     @NonNull
-    public ResponseEntity<?> updatePrice(@RequestBody @NonNull PriceUpdateRequest priceUpdateRequest, @PathVariable long id) {
-        stockService.updateStockPrice(id, priceUpdateRequest.getPrice());
-        return ResponseEntity.ok("Stock price updated");
+    public ResponseEntity<?> updatePrice(@RequestBody @NonNull PriceUpdateRequest priceUpdateRequest, @PathVariable long id,
+                                         @RequestHeader(name = HttpHeaders.IF_MATCH, required = false) String ifMatch) {
+        Long expectedVersion = expectedVersion(id, priceUpdateRequest.getExpectedVersion(), ifMatch);
+        if (expectedVersion == null && stockService.enqueueStockPrice(id, priceUpdateRequest.getPrice())) {
+            return ResponseEntity.accepted().body("Stock price update accepted");
+        }
+        Stock stock = stockService.updateStockPrice(id, priceUpdateRequest.getPrice(), expectedVersion);
+        return ResponseEntity.ok().eTag(eTag(stock)).body("Stock price updated");
+    }
+
+    /**
+     * Updates prices of many stocks at once.
+     * Incorrect updates don't prevent the others from being applied.
+     *
+     * @param priceUpdateRequests - list of {@link StockPriceUpdateRequest}s.
+     * @return result of every update in the order of requests.
+     * @throws IncorrectRequestException when there are too many updates in the batch.
+     */
+    @PatchMapping
+    @NonNull
+    public List<PriceUpdateResult> updatePrices(@RequestBody @NonNull List<StockPriceUpdateRequest> priceUpdateRequests) {
+        return stockService.updateStockPrices(priceUpdateRequests);
     }
 
     /**
@@ -93,6 +594,20 @@ public class StockController {
                 .buildAndExpand(newStock.getId()).toUri();
         return ResponseEntity.created(newStockLocation).body("New Stock created");
     }
+
+    /**
+     * Adds many stocks at once.
+     * Incorrect stocks and stocks with taken names don't prevent the others from being added.
+     *
+     * @param newStockRequests - list of {@link NewStockRequest}s of new stocks.
+     * @return result of every stock in the order of requests.
+     * @throws IncorrectRequestException when there are too many stocks in the batch.
+     */
+    @PostMapping("/batch")
+    @NonNull
+    public List<NewStockResult> addStocks(@RequestBody @NonNull List<NewStockRequest> newStockRequests) {
+        return stockService.addNewStocks(newStockRequests);
+    }
     
     
     /**
@@ -110,6 +625,124 @@ public class StockController {
 		return ResponseEntity.ok("Stock delete successfully");
     	
     }
+    private void importStocks(StockRowReader reader, HttpServletResponse response) throws IOException {
+        response.setContentType(MediaType.APPLICATION_JSON_VALUE);
+        try (JsonGenerator json = objectMapper.getFactory().createGenerator(response.getOutputStream())) {
+            json.writeStartObject();
+            json.writeArrayFieldStart("errors");
+            ImportResult result = stockImportService.importStocks(reader, (rowNumber, name, error) -> {
+                json.writeStartObject();
+                json.writeNumberField("row", rowNumber);
+                json.writeStringField("name", name);
+                json.writeStringField("error", error);
+                json.writeEndObject();
+            });
+            json.writeEndArray();
+            json.writeNumberField("imported", result.getImported());
+            json.writeNumberField("failed", result.getFailed());
+            json.writeEndObject();
+        }
+    }
+
+    /**
+     * @param stock - stock to tag.
+     * @return entity tag of a stock, which changes on every update of the stock:
+     * id, version, last update time in nanoseconds since epoch and bits of the price in hex.
+     * The price tells apart "hot" updates, which keep the version and are timed in milliseconds.
+     */
+    private static String eTag(Stock stock) {
+        Instant lastUpdate = stock.getLastUpdate();
+        long epochNanos = Math.addExact(Math.multiplyExact(lastUpdate.getEpochSecond(), NANOS_PER_SECOND), lastUpdate.getNano());
+        return stock.getId() + "-" + stock.getVersion() + "-" + epochNanos
+                + "-" + Long.toHexString(Double.doubleToLongBits(stock.getCurrentPrice()));
+    }
+
+    /**
+     * Returns version of a stock a price update is based on: expected version from the request body
+     * or version from ETag of json or of {@link StockWireFormat} in If-Match. {@code If-Match: *} matches any version.
+     *
+     * @param id              - id of stock to update.
+     * @param expectedVersion - optional expected version from the request body.
+     * @param ifMatch         - optional If-Match header.
+     * @return expected version of the stock, null when any version matches.
+     * @throws IncorrectRequestException                               when both are given and differ.
+     * @throws payconiq.stocks.exception.StockVersionMismatchException when If-Match can't match the stock.
+     */
+    @Nullable
+    private static Long expectedVersion(long id, @Nullable Long expectedVersion, @Nullable String ifMatch) {
+        if (ifMatch == null || ifMatch.trim().equals("*")) {
+            return expectedVersion;
+        }
+        String tag = ifMatch.trim();
+        String value = tag.length() > 1 && tag.startsWith("\"") && tag.endsWith("\"") ? tag.substring(1, tag.length() - 1) : "";
+        if (value.endsWith(WIRE_ETAG_SUFFIX)) {
+            value = value.substring(0, value.length() - WIRE_ETAG_SUFFIX.length());
+        }
+        String[] parts = value.isEmpty() ? new String[0] : value.split("-");
+        Long version = null;
+        if (parts.length == 4 && parts[0].equals(Long.toString(id))) {
+            try {
+                version = Long.valueOf(parts[1]);
+            } catch (NumberFormatException e) {
+                // not a tag of this stock
+            }
+        }
+        if (version == null) {
+            throw new StockVersionMismatchException("Stock with id " + id + " doesn't match " + tag);
+        }
+        if (expectedVersion != null && !expectedVersion.equals(version)) {
+            throw new IncorrectRequestException("Expected version of stock differs from If-Match");
+        }
+        return version;
+    }
+
+    /**
+     * @param request - request to check.
+     * @return true when stocks of all nodes have to be gathered for a request in cluster mode.
+     */
+    private boolean isClusterRequest(WebRequest request) {
+        return clusterService != null && !clusterService.isForwarded(request.getHeader(ClusterService.FORWARDED_HEADER),
+                request.getHeader(ClusterService.SECRET_HEADER));
+    }
+
+    private static ResponseEntity<byte[]> json(byte[] json) {
+        return ResponseEntity.ok().contentType(MediaType.APPLICATION_JSON).body(json);
+    }
+
+    /**
+     * @param acceptEncoding - Accept-Encoding header of a request.
+     * @return whether gzip is one of accepted encodings, directly or by a wildcard, and is not excluded by zero quality.
+     */
+    private static boolean acceptsGzip(String acceptEncoding) {
+        if (acceptEncoding == null) {
+            return false;
+        }
+        for (String encoding : acceptEncoding.split(",")) {
+            String[] parameters = encoding.split(";");
+            String coding = parameters[0].trim();
+            if (!"gzip".equalsIgnoreCase(coding) && !"*".equals(coding)) {
+                continue;
+            }
+            boolean excluded = false;
+            for (int i = 1; i < parameters.length; i++) {
+                String parameter = parameters[i].trim();
+                if (parameter.startsWith("q=") && parameter.substring(2).trim().matches("0(\\.0*)?")) {
+                    excluded = true;
+                }
+            }
+            return !excluded;
+        }
+        return false;
+    }
+
+    private static boolean accepts(String accept, String mediaType) {
+        if (accept == null) {
+            return false;
+        }
+        MediaType expected = MediaType.valueOf(mediaType);
+        return MediaType.parseMediaTypes(accept).stream().anyMatch(expected::equalsTypeAndSubtype);
+    }
+
     /**
      * Get data by paging  
      * @param pageNo : data of page number its start from 0
@@ -0,0 +1,208 @@
+package payconiq.stocks.controller;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.time.Instant;
+import java.util.Collection;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Supplier;
+import java.util.zip.GZIPOutputStream;
+
+import javax.annotation.PostConstruct;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.lang.NonNull;
+import org.springframework.stereotype.Component;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import payconiq.stocks.model.Stock;
+import payconiq.stocks.service.LruEviction;
+import payconiq.stocks.service.StockEventListener;
+
+/**
+ * Ready to send json of {@link Stock}s, so that unchanged stocks are not serialized by Jackson on every request.
+ * <p>
+ * Json of the list of all stocks is kept for the current version of the collection
+ * (see {@link payconiq.stocks.service.StockService#getCollectionVersion()}) together with its gzip compressed form,
+ * which is built on the first request accepting it. A change of any stock moves the version forward,
+ * so the list is serialized again on the next request only. Concurrent requests for a new version wait
+ * for one of them to serialize it instead of serializing the same list each.
+ * <p>
+ * Json of a single stock is kept for up to {@code stocks.response-cache.max-stocks} stocks and is reused
+ * while version, price and time of the last update of the stock are the same. When the cache is full,
+ * json of least recently read stocks is evicted by {@link LruEviction}, json of a deleted stock is evicted at once.
+ * With {@code stocks.response-cache.enabled=false} every response is serialized.
+ */
+@Component
+public class StockResponseCache implements StockEventListener {
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @Value("${stocks.response-cache.enabled:true}")
+    private boolean enabled;
+
+    @Value("${stocks.response-cache.max-stocks:65536}")
+    private int maxStocks;
+
+    private final ConcurrentHashMap<Long, StockJson> stocks = new ConcurrentHashMap<>();
+
+    private LruEviction<Long, StockJson> eviction;
+
+    private final Object collectionLock = new Object();
+
+    private volatile CollectionJson collection;
+
+    @PostConstruct
+    void init() {
+        eviction = new LruEviction<>(stocks, maxStocks, json -> json.lastAccess);
+    }
+
+    /**
+     * @param stock - stock snapshot.
+     * @return UTF-8 json of the stock.
+     */
+    @NonNull
+    public byte[] stockJson(@NonNull Stock stock) {
+        if (!enabled) {
+            return serialize(stock);
+        }
+        StockJson cached = stocks.get(stock.getId());
+        if (cached != null && cached.matches(stock)) {
+            cached.lastAccess = System.nanoTime();
+            return cached.json;
+        }
+        StockJson json = new StockJson(stock, serialize(stock));
+        stocks.put(stock.getId(), json);
+        eviction.evictIfFull();
+        return json.json;
+    }
+
+    /**
+     * Returns json of the list of all stocks of a given collection version, serializing the list when the version changed.
+     *
+     * @param version   - version of the collection, read before the stocks.
+     * @param allStocks - supplies the list of all stocks.
+     * @return json of the list of all stocks.
+     */
+    @NonNull
+    public CollectionJson collectionJson(@NonNull String version, @NonNull Supplier<? extends Collection<Stock>> allStocks) {
+        if (!enabled) {
+            return new CollectionJson(version, serialize(allStocks.get()));
+        }
+        CollectionJson cached = collection;
+        if (cached != null && cached.version.equals(version)) {
+            return cached;
+        }
+        synchronized (collectionLock) {
+            cached = collection;
+            if (cached != null && cached.version.equals(version)) {
+                return cached;
+            }
+            CollectionJson json = new CollectionJson(version, serialize(allStocks.get()));
+            collection = json;
+            return json;
+        }
+    }
+
+    @Override
+    public void onStockDeleted(long id) {
+        stocks.remove(id);
+    }
+
+    private byte[] serialize(Object value) {
+        try {
+            return objectMapper.writeValueAsBytes(value);
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException("Failed to serialize stocks", e);
+        }
+    }
+
+    /**
+     * Json of the list of all stocks and its gzip compressed form.
+     */
+    public static final class CollectionJson {
+
+        private final String version;
+
+        private final byte[] json;
+
+        private volatile byte[] gzip;
+
+        private CollectionJson(String version, byte[] json) {
+            this.version = version;
+            this.json = json;
+        }
+
+        /**
+         * @return UTF-8 json, must not be modified.
+         */
+        @NonNull
+        public byte[] json() {
+            return json;
+        }
+
+        /**
+         * @return gzip compressed UTF-8 json, must not be modified.
+         */
+        @NonNull
+        public byte[] gzip() {
+            byte[] compressed = gzip;
+            if (compressed == null) {
+                synchronized (this) {
+                    compressed = gzip;
+                    if (compressed == null) {
+                        compressed = compress(json);
+                        gzip = compressed;
+                    }
+                }
+            }
+            return compressed;
+        }
+
+        private static byte[] compress(byte[] json) {
+            ByteArrayOutputStream compressed = new ByteArrayOutputStream(json.length / 4 + 64);
+            try (GZIPOutputStream gzip = new GZIPOutputStream(compressed, 8192)) {
+                gzip.write(json);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+            return compressed.toByteArray();
+        }
+    }
+
+    /**
+     * Json of a single stock with the fields it depends on, name and id of a stock never change.
+     */
+    private static final class StockJson {
+
+        private final long version;
+
+        private final double price;
+
+        private final Instant lastUpdate;
+
+        private final byte[] json;
+
+        private volatile long lastAccess;
+
+        private StockJson(Stock stock, byte[] json) {
+            this.version = stock.getVersion();
+            this.price = stock.getCurrentPrice();
+            this.lastUpdate = stock.getLastUpdate();
+            this.json = json;
+            this.lastAccess = System.nanoTime();
+        }
+
+        private boolean matches(Stock stock) {
+            return version == stock.getVersion()
+                    && Double.compare(price, stock.getCurrentPrice()) == 0
+                    && Objects.equals(lastUpdate, stock.getLastUpdate());
+        }
+    }
+}
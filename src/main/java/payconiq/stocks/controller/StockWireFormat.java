@@ -0,0 +1,287 @@
+package payconiq.stocks.controller;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+
+import org.springframework.lang.NonNull;
+import org.springframework.lang.Nullable;
+
+import payconiq.stocks.model.Stock;
+import payconiq.stocks.request.NewStockRequest;
+import payconiq.stocks.request.PriceUpdateRequest;
+
+/**
+ * Compact binary wire format of {@link StockController} requests and responses, big-endian:
+ * <ul>
+ * <li>stock: id long ({@code 0} when absent), price double, last update in nanoseconds
+ * since epoch long ({@link Long#MIN_VALUE} when absent), name;</li>
+ * <li>list of stocks: number of stocks int, then stocks;</li>
+ * <li>new stock request: price double ({@code NaN} when absent), name;</li>
+ * <li>price update request: price double ({@code NaN} when absent),
+ * expected version long ({@link Long#MIN_VALUE} when absent).</li>
+ * </ul>
+ * A name is its length in UTF-8 bytes as a short ({@code -1} for null) followed by the bytes.
+ * <p>
+ * Stocks carry the same fields as in json, versions are passed in ETags. Unlike
+ * {@link payconiq.stocks.service.bulk.StockBinaryFormat} of export and import times keep their full precision. {@link Writer} and {@link Reader} work on a single byte array
+ * and encode names without intermediate arrays, so no object is allocated per field.
+ */
+public final class StockWireFormat {
+
+    public static final String MEDIA_TYPE = "application/x-stock-wire";
+
+    private static final long ABSENT = Long.MIN_VALUE;
+
+    private static final int NULL_LENGTH = -1;
+
+    private static final long NANOS_PER_SECOND = 1_000_000_000L;
+
+    private StockWireFormat() {
+    }
+
+    /**
+     * Writer buffering encoded values in a fixed array flushed to the output stream when full.
+     */
+    public static final class Writer {
+
+        private final OutputStream out;
+
+        private final byte[] buffer;
+
+        private int position;
+
+        public Writer(@NonNull OutputStream out, int bufferSize) {
+            this.out = out;
+            this.buffer = new byte[Math.max(bufferSize, 64)];
+        }
+
+        public void writeStocks(@NonNull Collection<Stock> stocks) throws IOException {
+            putInt(stocks.size());
+            for (Stock stock : stocks) {
+                writeStock(stock);
+            }
+        }
+
+        public void writeStock(@NonNull Stock stock) throws IOException {
+            putLong(stock.getId() == null ? 0 : stock.getId());
+            putLong(Double.doubleToRawLongBits(stock.getCurrentPrice()));
+            putLong(stock.getLastUpdate() == null ? ABSENT : epochNanos(stock.getLastUpdate()));
+            putName(stock.getName());
+        }
+
+        public void writeNewStock(@NonNull NewStockRequest request) throws IOException {
+            putLong(Double.doubleToRawLongBits(request.getPrice() == null ? Double.NaN : request.getPrice()));
+            putName(request.getName());
+        }
+
+        public void writePriceUpdate(@NonNull PriceUpdateRequest request) throws IOException {
+            putLong(Double.doubleToRawLongBits(request.getPrice() == null ? Double.NaN : request.getPrice()));
+            putLong(request.getExpectedVersion() == null ? ABSENT : request.getExpectedVersion());
+        }
+
+        public void flush() throws IOException {
+            out.write(buffer, 0, position);
+            position = 0;
+            out.flush();
+        }
+
+        private void putInt(int value) throws IOException {
+            ensure(Integer.BYTES);
+            buffer[position++] = (byte) (value >>> 24);
+            buffer[position++] = (byte) (value >>> 16);
+            buffer[position++] = (byte) (value >>> 8);
+            buffer[position++] = (byte) value;
+        }
+
+        private void putLong(long value) throws IOException {
+            ensure(Long.BYTES);
+            for (int shift = 56; shift >= 0; shift -= 8) {
+                buffer[position++] = (byte) (value >>> shift);
+            }
+        }
+
+        private void putName(@Nullable String name) throws IOException {
+            ensure(Short.BYTES);
+            if (name == null) {
+                buffer[position++] = (byte) (NULL_LENGTH >>> 8);
+                buffer[position++] = (byte) NULL_LENGTH;
+                return;
+            }
+            int length = utf8Length(name);
+            if (length > Short.MAX_VALUE) {
+                throw new IOException("Name is too long for the wire format: " + length + " bytes");
+            }
+            buffer[position++] = (byte) (length >>> 8);
+            buffer[position++] = (byte) length;
+            for (int i = 0; i < name.length(); i++) {
+                ensure(4);
+                char c = name.charAt(i);
+                if (c < 0x80) {
+                    buffer[position++] = (byte) c;
+                } else if (c < 0x800) {
+                    buffer[position++] = (byte) (0xC0 | c >> 6);
+                    buffer[position++] = (byte) (0x80 | c & 0x3F);
+                } else if (Character.isHighSurrogate(c) && i + 1 < name.length()
+                        && Character.isLowSurrogate(name.charAt(i + 1))) {
+                    int codePoint = Character.toCodePoint(c, name.charAt(++i));
+                    buffer[position++] = (byte) (0xF0 | codePoint >> 18);
+                    buffer[position++] = (byte) (0x80 | codePoint >> 12 & 0x3F);
+                    buffer[position++] = (byte) (0x80 | codePoint >> 6 & 0x3F);
+                    buffer[position++] = (byte) (0x80 | codePoint & 0x3F);
+                } else if (Character.isSurrogate(c)) {
+                    buffer[position++] = '?';
+                } else {
+                    buffer[position++] = (byte) (0xE0 | c >> 12);
+                    buffer[position++] = (byte) (0x80 | c >> 6 & 0x3F);
+                    buffer[position++] = (byte) (0x80 | c & 0x3F);
+                }
+            }
+        }
+
+        private void ensure(int bytes) throws IOException {
+            if (position + bytes > buffer.length) {
+                out.write(buffer, 0, position);
+                position = 0;
+            }
+        }
+    }
+
+    /**
+     * Reader of encoded values from a byte array.
+     */
+    public static final class Reader {
+
+        private final byte[] data;
+
+        private int position;
+
+        public Reader(@NonNull byte[] data) {
+            this.data = data;
+        }
+
+        @NonNull
+        public List<Stock> readStocks() throws IOException {
+            int size = getInt();
+            if (size < 0 || size > (data.length - position) / (3 * Long.BYTES + Short.BYTES)) {
+                throw new IOException("Incorrect number of stocks: " + size);
+            }
+            List<Stock> stocks = new ArrayList<>(size);
+            for (int i = 0; i < size; i++) {
+                stocks.add(readStock());
+            }
+            return stocks;
+        }
+
+        @NonNull
+        public Stock readStock() throws IOException {
+            Stock stock = new Stock();
+            long id = getLong();
+            stock.setId(id == 0 ? null : id);
+            stock.setCurrentPrice(Double.longBitsToDouble(getLong()));
+            long lastUpdate = getLong();
+            stock.setLastUpdate(lastUpdate == ABSENT ? null : Instant.ofEpochSecond(
+                    Math.floorDiv(lastUpdate, NANOS_PER_SECOND), Math.floorMod(lastUpdate, NANOS_PER_SECOND)));
+            stock.setName(getName());
+            return stock;
+        }
+
+        @NonNull
+        public NewStockRequest readNewStock() throws IOException {
+            NewStockRequest request = new NewStockRequest();
+            double price = Double.longBitsToDouble(getLong());
+            request.setPrice(Double.isNaN(price) ? null : price);
+            request.setName(getName());
+            return request;
+        }
+
+        @NonNull
+        public PriceUpdateRequest readPriceUpdate() throws IOException {
+            PriceUpdateRequest request = new PriceUpdateRequest();
+            double price = Double.longBitsToDouble(getLong());
+            request.setPrice(Double.isNaN(price) ? null : price);
+            long expectedVersion = getLong();
+            request.setExpectedVersion(expectedVersion == ABSENT ? null : expectedVersion);
+            return request;
+        }
+
+        /**
+         * @throws IOException when there are bytes left after the last value.
+         */
+        public void checkEnd() throws IOException {
+            if (position != data.length) {
+                throw new IOException((data.length - position) + " unexpected bytes after the end");
+            }
+        }
+
+        private int getInt() throws IOException {
+            require(Integer.BYTES);
+            int value = (data[position] & 0xFF) << 24 | (data[position + 1] & 0xFF) << 16
+                    | (data[position + 2] & 0xFF) << 8 | data[position + 3] & 0xFF;
+            position += Integer.BYTES;
+            return value;
+        }
+
+        private long getLong() throws IOException {
+            require(Long.BYTES);
+            long value = 0;
+            for (int i = 0; i < Long.BYTES; i++) {
+                value = value << 8 | data[position++] & 0xFF;
+            }
+            return value;
+        }
+
+        @Nullable
+        private String getName() throws IOException {
+            require(Short.BYTES);
+            int length = (short) ((data[position] & 0xFF) << 8 | data[position + 1] & 0xFF);
+            position += Short.BYTES;
+            if (length == NULL_LENGTH) {
+                return null;
+            }
+            if (length < 0) {
+                throw new IOException("Incorrect name length: " + length);
+            }
+            require(length);
+            String name = new String(data, position, length, StandardCharsets.UTF_8);
+            position += length;
+            return name;
+        }
+
+        private void require(int bytes) throws EOFException {
+            if (data.length - position < bytes) {
+                throw new EOFException("Stock wire input is truncated");
+            }
+        }
+    }
+
+    private static long epochNanos(Instant instant) {
+        return Math.addExact(Math.multiplyExact(instant.getEpochSecond(), NANOS_PER_SECOND), instant.getNano());
+    }
+
+    private static int utf8Length(String name) {
+        int length = 0;
+        for (int i = 0; i < name.length(); i++) {
+            char c = name.charAt(i);
+            if (c < 0x80) {
+                length++;
+            } else if (c < 0x800) {
+                length += 2;
+            } else if (Character.isHighSurrogate(c) && i + 1 < name.length()
+                    && Character.isLowSurrogate(name.charAt(i + 1))) {
+                length += 4;
+                i++;
+            } else if (Character.isSurrogate(c)) {
+                length++;
+            } else {
+                length += 3;
+            }
+        }
+        return length;
+    }
+}
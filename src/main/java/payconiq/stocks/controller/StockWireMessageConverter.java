@@ -0,0 +1,87 @@
+package payconiq.stocks.controller;
+
+import java.io.IOException;
+import java.lang.reflect.Type;
+import java.util.Collection;
+
+import org.springframework.core.ResolvableType;
+import org.springframework.http.HttpInputMessage;
+import org.springframework.http.HttpOutputMessage;
+import org.springframework.http.MediaType;
+import org.springframework.http.converter.AbstractGenericHttpMessageConverter;
+import org.springframework.http.converter.HttpMessageNotReadableException;
+import org.springframework.lang.NonNull;
+import org.springframework.util.StreamUtils;
+
+import payconiq.stocks.model.Stock;
+import payconiq.stocks.request.NewStockRequest;
+import payconiq.stocks.request.PriceUpdateRequest;
+
+/**
+ * Converter of {@link StockWireFormat}: writes stocks and lists of stocks chosen by {@code Accept},
+ * reads new stock and price update requests sent with this {@code Content-Type}.
+ * Is added after the default converters, so json stays the default representation.
+ */
+public class StockWireMessageConverter extends AbstractGenericHttpMessageConverter<Object> {
+
+    public static final MediaType MEDIA_TYPE = MediaType.parseMediaType(StockWireFormat.MEDIA_TYPE);
+
+    private static final int BUFFER_SIZE = 8192;
+
+    public StockWireMessageConverter() {
+        super(MEDIA_TYPE);
+    }
+
+    @Override
+    protected boolean supports(@NonNull Class<?> clazz) {
+        return Stock.class.isAssignableFrom(clazz) || NewStockRequest.class == clazz || PriceUpdateRequest.class == clazz;
+    }
+
+    @Override
+    public boolean canRead(@NonNull Type type, Class<?> contextClass, MediaType mediaType) {
+        return (NewStockRequest.class == type || PriceUpdateRequest.class == type) && canRead(mediaType);
+    }
+
+    /**
+     * Writes a stock or a collection declared as a collection of stocks.
+     */
+    @Override
+    public boolean canWrite(Type type, @NonNull Class<?> clazz, MediaType mediaType) {
+        ResolvableType resolved = type == null ? ResolvableType.forClass(clazz) : ResolvableType.forType(type);
+        Class<?> element = resolved.asCollection() == ResolvableType.NONE
+                ? resolved.toClass() : resolved.asCollection().resolveGeneric(0);
+        return element != null && Stock.class.isAssignableFrom(element) && canWrite(mediaType);
+    }
+
+    @NonNull
+    @Override
+    public Object read(@NonNull Type type, Class<?> contextClass, @NonNull HttpInputMessage inputMessage) throws IOException {
+        return readInternal((Class<?>) type, inputMessage);
+    }
+
+    @NonNull
+    @Override
+    protected Object readInternal(@NonNull Class<?> clazz, @NonNull HttpInputMessage inputMessage) throws IOException {
+        StockWireFormat.Reader reader = new StockWireFormat.Reader(StreamUtils.copyToByteArray(inputMessage.getBody()));
+        try {
+            Object request = clazz == NewStockRequest.class ? reader.readNewStock() : reader.readPriceUpdate();
+            reader.checkEnd();
+            return request;
+        } catch (IOException e) {
+            throw new HttpMessageNotReadableException("Incorrect " + StockWireFormat.MEDIA_TYPE + " body: "
+                    + e.getMessage(), e, inputMessage);
+        }
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    protected void writeInternal(@NonNull Object body, Type type, @NonNull HttpOutputMessage outputMessage) throws IOException {
+        StockWireFormat.Writer writer = new StockWireFormat.Writer(outputMessage.getBody(), BUFFER_SIZE);
+        if (body instanceof Stock) {
+            writer.writeStock((Stock) body);
+        } else {
+            writer.writeStocks((Collection<Stock>) body);
+        }
+        writer.flush();
+    }
+}
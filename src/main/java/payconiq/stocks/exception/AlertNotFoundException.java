@@ -0,0 +1,16 @@
+package payconiq.stocks.exception;
+
+import org.springframework.http.HttpStatus;
+import org.springframework.web.bind.annotation.ResponseStatus;
+
+/**
+ * Custom exception which will be thrown when there is no such {@link payconiq.stocks.response.PriceAlert}
+ * of a stock, either it never existed, was deleted or has already fired.
+ */
+@ResponseStatus(HttpStatus.NOT_FOUND)
+public class AlertNotFoundException extends RuntimeException {
+
+    public AlertNotFoundException(String message) {
+        super(message);
+    }
+}
@@ -0,0 +1,16 @@
+package payconiq.stocks.exception;
+
+import org.springframework.http.HttpStatus;
+import org.springframework.web.bind.annotation.ResponseStatus;
+
+/**
+ * Custom exception which will be thrown when an update of {@link payconiq.stocks.model.Stock}s
+ * keeps conflicting with concurrent updates after all retries.
+ */
+@ResponseStatus(HttpStatus.CONFLICT)
+public class ConcurrentUpdateException extends RuntimeException {
+
+    public ConcurrentUpdateException(String message) {
+        super(message);
+    }
+}
@@ -0,0 +1,20 @@
+package payconiq.stocks.exception;
+
+import org.springframework.http.HttpStatus;
+import org.springframework.web.bind.annotation.ResponseStatus;
+
+/**
+ * Custom exception which will be thrown when another node of the cluster
+ * doesn't respond or responds with an error.
+ */
+@ResponseStatus(HttpStatus.BAD_GATEWAY)
+public class NodeUnavailableException extends RuntimeException {
+
+    public NodeUnavailableException(String message) {
+        super(message);
+    }
+
+    public NodeUnavailableException(String message, Throwable cause) {
+        super(message, cause);
+    }
+}
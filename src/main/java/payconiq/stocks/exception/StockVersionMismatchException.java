@@ -0,0 +1,16 @@
+package payconiq.stocks.exception;
+
+import org.springframework.http.HttpStatus;
+import org.springframework.web.bind.annotation.ResponseStatus;
+
+/**
+ * Custom exception which will be thrown on attempt to update {@link payconiq.stocks.model.Stock}
+ * which has changed since the version the update is based on.
+ */
+@ResponseStatus(HttpStatus.PRECONDITION_FAILED)
+public class StockVersionMismatchException extends RuntimeException {
+
+    public StockVersionMismatchException(String message) {
+        super(message);
+    }
+}
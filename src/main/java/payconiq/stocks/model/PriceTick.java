@@ -0,0 +1,95 @@
+package payconiq.stocks.model;
+
+import javax.persistence.Column;
+import javax.persistence.Entity;
+import javax.persistence.GeneratedValue;
+import javax.persistence.GenerationType;
+import javax.persistence.Id;
+import javax.persistence.Index;
+import javax.persistence.SequenceGenerator;
+import javax.persistence.Table;
+
+/**
+ * Append-only record of a single {@link Stock} price change.
+ * <p>
+ * H2 has no native table partitioning, so every tick carries the day it belongs to
+ * and old days are dropped as a whole through the day index.
+ * History range reads go through the (stock id, time) index.
+ */
+@Entity
+@Table(name = "price_tick", indexes = {
+        @Index(name = "idx_price_tick_stock_time", columnList = "stock_id, epoch_millis"),
+        @Index(name = "idx_price_tick_day", columnList = "partition_day")
+})
+public class PriceTick {
+
+    public static final long MILLIS_PER_DAY = 24 * 60 * 60 * 1000L;
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "price_tick_seq")
+    @SequenceGenerator(name = "price_tick_seq", sequenceName = "price_tick_seq", allocationSize = 50)
+    private Long id;
+
+    @Column(name = "stock_id", nullable = false)
+    private long stockId;
+
+    @Column(name = "price", nullable = false)
+    private double price;
+
+    @Column(name = "epoch_millis", nullable = false)
+    private long epochMillis;
+
+    @Column(name = "partition_day", nullable = false)
+    private int partitionDay;
+
+    public PriceTick() {
+    }
+
+    public PriceTick(long stockId, double price, long epochMillis) {
+        this.stockId = stockId;
+        this.price = price;
+        this.epochMillis = epochMillis;
+        this.partitionDay = partitionDay(epochMillis);
+    }
+
+    /**
+     * Returns partition (day since epoch) of a given time.
+     *
+     * @param epochMillis - time in milliseconds since epoch.
+     * @return day since epoch.
+     */
+    public static int partitionDay(long epochMillis) {
+        return (int) Math.floorDiv(epochMillis, MILLIS_PER_DAY);
+    }
+
+    public Long getId() {
+        return id;
+    }
+
+    public long getStockId() {
+        return stockId;
+    }
+
+    public double getPrice() {
+        return price;
+    }
+
+    public long getEpochMillis() {
+        return epochMillis;
+    }
+
+    public int getPartitionDay() {
+        return partitionDay;
+    }
+
+    @Override
+    public String toString() {
+        return "PriceTick{" +
+                "id=" + id +
+                ", stockId=" + stockId +
+                ", price=" + price +
+                ", epochMillis=" + epochMillis +
+                ", partitionDay=" + partitionDay +
+                '}';
+    }
+}
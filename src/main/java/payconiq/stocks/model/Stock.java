@@ -1,27 +1,56 @@
 package payconiq.stocks.model;
 
+import java.text.Normalizer;
 import java.time.Instant;
+import java.util.Locale;
+import java.util.regex.Pattern;
 
+import javax.persistence.Column;
 import javax.persistence.Entity;
 import javax.persistence.GeneratedValue;
+import javax.persistence.GenerationType;
 import javax.persistence.Id;
+import javax.persistence.Index;
+import javax.persistence.Table;
+import javax.persistence.Version;
+
+import org.hibernate.annotations.GenericGenerator;
+import org.hibernate.annotations.Parameter;
+import org.hibernate.id.enhanced.SequenceStyleGenerator;
+
+import com.fasterxml.jackson.annotation.JsonIgnore;
 
 /**
  * Stock entity which contains info about stock, its name and price.
+ * Names are unique regardless of case, width and repeated whitespaces, see {@link #normalizeName(String)}.
+ * Concurrent updates are detected by {@link #getVersion() version}, which is incremented on every update.
  */
 @Entity
+@Table(indexes = @Index(name = "uk_stock_normalized_name", columnList = "normalized_name", unique = true))
 public class Stock {
 
+    private static final Pattern WHITESPACES = Pattern.compile("\\s+");
+
     @Id
-    @GeneratedValue
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "stock_seq")
+    @GenericGenerator(name = "stock_seq", strategy = "payconiq.stocks.model.StockIdGenerator", parameters = {
+            @Parameter(name = SequenceStyleGenerator.SEQUENCE_PARAM, value = "stock_seq"),
+            @Parameter(name = SequenceStyleGenerator.INCREMENT_PARAM, value = "50")})
     private Long id;
 
     private String name;
 
+    @JsonIgnore
+    @Column(name = "normalized_name", nullable = false)
+    private String normalizedName;
+
     private double currentPrice;
 
     private Instant lastUpdate;
 
+    @JsonIgnore
+    @Version
+    private long version;
 
     public Long getId() {
         return id;
@@ -31,6 +60,10 @@ public class Stock {
         return name;
     }
 
+    public String getNormalizedName() {
+        return normalizedName;
+    }
+
     public double getCurrentPrice() {
         return currentPrice;
     }
@@ -39,6 +72,10 @@ public class Stock {
         return lastUpdate;
     }
 
+    public long getVersion() {
+        return version;
+    }
+
 
     public void setId(Long id) {
         this.id = id;
@@ -46,6 +83,7 @@ public class Stock {
 
     public void setName(String name) {
         this.name = name;
+        this.normalizedName = normalizeName(name);
     }
 
     public void setCurrentPrice(double currentPrice) {
@@ -57,6 +95,37 @@ public class Stock {
     }
 
 
+    /**
+     * Brings a name to the form in which names are compared for uniqueness:
+     * trimmed, unicode compatibility normalized, lower case, with single spaces between words.
+     *
+     * @param name - name to normalize.
+     * @return normalized name, null for null name.
+     */
+    public static String normalizeName(String name) {
+        if (name == null) {
+            return null;
+        }
+        String normalized = Normalizer.normalize(name.trim(), Normalizer.Form.NFKC);
+        return WHITESPACES.matcher(normalized).replaceAll(" ").toLowerCase(Locale.ROOT);
+    }
+
+    /**
+     * Creates a detached copy of this stock.
+     *
+     * @return copy of this stock.
+     */
+    public Stock copy() {
+        Stock copy = new Stock();
+        copy.setId(id);
+        copy.name = name;
+        copy.normalizedName = normalizedName;
+        copy.setCurrentPrice(currentPrice);
+        copy.setLastUpdate(lastUpdate);
+        copy.version = version;
+        return copy;
+    }
+
     @Override
     public String toString() {
         return "Stock{" +
@@ -64,6 +133,7 @@ public class Stock {
                 ", name='" + name + '\'' +
                 ", currentPrice=" + currentPrice +
                 ", lastUpdate=" + lastUpdate +
+                ", version=" + version +
                 '}';
     }
 }
@@ -0,0 +1,42 @@
+package payconiq.stocks.model;
+
+import java.io.Serializable;
+import java.util.Properties;
+import java.util.function.LongPredicate;
+
+import org.hibernate.engine.config.spi.ConfigurationService;
+import org.hibernate.engine.spi.SharedSessionContractImplementor;
+import org.hibernate.id.enhanced.SequenceStyleGenerator;
+import org.hibernate.service.ServiceRegistry;
+import org.hibernate.type.Type;
+
+/**
+ * Sequence generator of {@link Stock} ids which skips ids not owned by this node in cluster mode,
+ * so stocks created on different nodes never get the same id.
+ * Ownership is passed as a {@link LongPredicate} in {@value #OWNERSHIP_SETTING} Hibernate setting,
+ * without it every id is owned.
+ */
+public class StockIdGenerator extends SequenceStyleGenerator {
+
+    public static final String OWNERSHIP_SETTING = "stocks.id-ownership";
+
+    private LongPredicate ownership = id -> true;
+
+    @Override
+    public void configure(Type type, Properties params, ServiceRegistry serviceRegistry) {
+        super.configure(type, params, serviceRegistry);
+        Object setting = serviceRegistry.getService(ConfigurationService.class).getSettings().get(OWNERSHIP_SETTING);
+        if (setting instanceof LongPredicate) {
+            ownership = (LongPredicate) setting;
+        }
+    }
+
+    @Override
+    public Serializable generate(SharedSessionContractImplementor session, Object object) {
+        Serializable id;
+        do {
+            id = super.generate(session, object);
+        } while (!ownership.test(((Number) id).longValue()));
+        return id;
+    }
+}
@@ -0,0 +1,79 @@
+package payconiq.stocks.repository;
+
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+import payconiq.stocks.model.PriceTick;
+
+import java.util.List;
+
+/**
+ * Repository for {@link PriceTick} entities.
+ */
+@Repository
+public interface PriceTickRepository extends JpaRepository<PriceTick, Long> {
+
+    /**
+     * Returns ticks of a stock within a time range, newest first.
+     *
+     * @param stockId - id of stock.
+     * @param from    - start of the range, inclusive.
+     * @param to      - end of the range, inclusive.
+     * @return ticks within the range.
+     */
+    @Query("select t from PriceTick t where t.stockId = :stockId and t.epochMillis between :from and :to" +
+            " order by t.epochMillis desc, t.id desc")
+    List<PriceTick> findRange(@Param("stockId") long stockId, @Param("from") long from, @Param("to") long to);
+
+    /**
+     * Returns ticks of a stock starting from a given time, oldest first.
+     *
+     * @param stockId - id of stock.
+     * @param from    - start of the range, inclusive.
+     * @return ticks starting from a given time.
+     */
+    @Query("select t from PriceTick t where t.stockId = :stockId and t.epochMillis >= :from" +
+            " order by t.epochMillis asc, t.id asc")
+    List<PriceTick> findFrom(@Param("stockId") long stockId, @Param("from") long from);
+
+    /**
+     * Returns times of stock ticks after a given time, oldest first.
+     *
+     * @param stockId  - id of stock.
+     * @param after    - time to look after, exclusive.
+     * @param pageable - limit of returned times.
+     * @return times of ticks after a given time.
+     */
+    @Query("select t.epochMillis from PriceTick t where t.stockId = :stockId and t.epochMillis > :after" +
+            " order by t.epochMillis asc")
+    List<Long> findTimesAfter(@Param("stockId") long stockId, @Param("after") long after, Pageable pageable);
+
+    /**
+     * Returns ticks of a stock before a given time, newest first.
+     *
+     * @param stockId  - id of stock.
+     * @param before   - time to look before, exclusive.
+     * @param pageable - limit of returned ticks.
+     * @return ticks before a given time.
+     */
+    @Query("select t from PriceTick t where t.stockId = :stockId and t.epochMillis < :before" +
+            " order by t.epochMillis desc, t.id desc")
+    List<PriceTick> findBefore(@Param("stockId") long stockId, @Param("before") long before, Pageable pageable);
+
+    @Modifying
+    @Query("delete from PriceTick t where t.stockId = :stockId")
+    int deleteByStockId(@Param("stockId") long stockId);
+
+    /**
+     * Drops whole day partitions before a given day.
+     *
+     * @param day - first day to keep.
+     * @return number of deleted ticks.
+     */
+    @Modifying
+    @Query("delete from PriceTick t where t.partitionDay < :day")
+    int deletePartitionsBefore(@Param("day") int day);
+}
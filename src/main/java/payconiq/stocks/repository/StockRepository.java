@@ -1,10 +1,20 @@
 package payconiq.stocks.repository;
 
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 import payconiq.stocks.model.Stock;
 
+import java.time.Instant;
+import java.util.List;
 import java.util.Optional;
+import java.util.stream.Stream;
+
+import javax.persistence.QueryHint;
 
 /**
  * Repository for {@link Stock} entities to perform base operations.
@@ -13,4 +23,72 @@ import java.util.Optional;
 public interface StockRepository extends JpaRepository<Stock, Long> {
 
     Optional<Stock> findByName(String name);
+
+    @Query("select s.id from Stock s order by s.id")
+    List<Long> findAllIds();
+
+    /**
+     * Returns normalized names of all stocks with their ids.
+     *
+     * @return pairs of normalized name and id.
+     */
+    @Query("select s.normalizedName, s.id from Stock s")
+    List<Object[]> findAllNormalizedNames();
+
+    /**
+     * Returns stocks following a given id, ordered by id.
+     * Seeks on the primary key and doesn't count all stocks.
+     *
+     * @param id       - id to start after, exclusive.
+     * @param pageable - max number of stocks to return.
+     * @return stocks following a given id.
+     */
+    List<Stock> findByIdGreaterThanOrderByIdAsc(long id, Pageable pageable);
+
+    /**
+     * Streams all stocks ordered by id. Has to be consumed within a transaction and closed.
+     *
+     * @return stream of all stocks.
+     */
+    @QueryHints(@QueryHint(name = "org.hibernate.fetchSize", value = "500"))
+    @Query("select s from Stock s order by s.id")
+    Stream<Stock> streamAll();
+
+    /**
+     * Updates price of a stock without loading it and increments its version.
+     *
+     * @param id         - id of stock to update.
+     * @param price      - new price.
+     * @param lastUpdate - time of update.
+     * @return number of updated stocks.
+     */
+    @Modifying
+    @Query("update Stock s set s.currentPrice = :price, s.lastUpdate = :lastUpdate, s.version = s.version + 1 where s.id = :id")
+    int updatePrice(@Param("id") long id, @Param("price") double price, @Param("lastUpdate") Instant lastUpdate);
+
+    /**
+     * Inserts or overwrites a stock as is, including its id and version. Is used by replicas only.
+     *
+     * @param id             - id of stock.
+     * @param name           - name of stock.
+     * @param normalizedName - normalized name of stock.
+     * @param price          - current price.
+     * @param lastUpdate     - time of the last update.
+     * @param version        - version of stock.
+     */
+    @Modifying
+    @Query(nativeQuery = true, value = "merge into stock (id, name, normalized_name, current_price, last_update, version) key (id) " +
+            "values (:id, :name, :normalizedName, :price, :lastUpdate, :version)")
+    void mergeStock(@Param("id") long id, @Param("name") String name, @Param("normalizedName") String normalizedName,
+                    @Param("price") double price, @Param("lastUpdate") Instant lastUpdate, @Param("version") long version);
+
+    /**
+     * Deletes a stock without loading it.
+     *
+     * @param id - id of stock to delete.
+     * @return number of deleted stocks.
+     */
+    @Modifying
+    @Query("delete from Stock s where s.id = :id")
+    int deleteStockById(@Param("id") long id);
 }
@@ -0,0 +1,48 @@
+package payconiq.stocks.request;
+
+import payconiq.stocks.response.PriceAlert;
+
+/**
+ * Class containing data about incoming requests to add a price alert of a stock.
+ */
+public class NewPriceAlertRequest {
+
+    private Double price;
+
+    private PriceAlert.Direction direction;
+
+    private String callbackUrl;
+
+    public Double getPrice() {
+        return price;
+    }
+
+    public PriceAlert.Direction getDirection() {
+        return direction;
+    }
+
+    public String getCallbackUrl() {
+        return callbackUrl;
+    }
+
+    public void setPrice(Double price) {
+        this.price = price;
+    }
+
+    public void setDirection(PriceAlert.Direction direction) {
+        this.direction = direction;
+    }
+
+    public void setCallbackUrl(String callbackUrl) {
+        this.callbackUrl = callbackUrl;
+    }
+
+    @Override
+    public String toString() {
+        return "NewPriceAlertRequest{" +
+                "price=" + price +
+                ", direction=" + direction +
+                ", callbackUrl='" + callbackUrl + '\'' +
+                '}';
+    }
+}
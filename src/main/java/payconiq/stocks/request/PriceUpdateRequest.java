@@ -7,18 +7,32 @@ public class PriceUpdateRequest {
 
     private Double price;
 
+    /**
+     * Optional version of the stock the update is based on, the update is rejected when the stock has changed since.
+     */
+    private Long expectedVersion;
+
     public Double getPrice() {
         return price;
     }
 
+    public Long getExpectedVersion() {
+        return expectedVersion;
+    }
+
     public void setPrice(Double price) {
         this.price = price;
     }
 
+    public void setExpectedVersion(Long expectedVersion) {
+        this.expectedVersion = expectedVersion;
+    }
+
     @Override
     public String toString() {
         return "PriceUpdateRequest{" +
                 "price=" + price +
+                ", expectedVersion=" + expectedVersion +
                 '}';
     }
 }
@@ -0,0 +1,72 @@
+package payconiq.stocks.response;
+
+/**
+ * Class containing alert and delivery counters of {@link payconiq.stocks.service.alert.PriceAlertService}.
+ */
+public class AlertStats {
+
+    private final int pending;
+
+    private final int queueDepth;
+
+    private final int capacity;
+
+    private final long fired;
+
+    private final long delivered;
+
+    private final long failed;
+
+    private final long dropped;
+
+    public AlertStats(int pending, int queueDepth, int capacity, long fired, long delivered, long failed, long dropped) {
+        this.pending = pending;
+        this.queueDepth = queueDepth;
+        this.capacity = capacity;
+        this.fired = fired;
+        this.delivered = delivered;
+        this.failed = failed;
+        this.dropped = dropped;
+    }
+
+    public int getPending() {
+        return pending;
+    }
+
+    public int getQueueDepth() {
+        return queueDepth;
+    }
+
+    public int getCapacity() {
+        return capacity;
+    }
+
+    public long getFired() {
+        return fired;
+    }
+
+    public long getDelivered() {
+        return delivered;
+    }
+
+    public long getFailed() {
+        return failed;
+    }
+
+    public long getDropped() {
+        return dropped;
+    }
+
+    @Override
+    public String toString() {
+        return "AlertStats{" +
+                "pending=" + pending +
+                ", queueDepth=" + queueDepth +
+                ", capacity=" + capacity +
+                ", fired=" + fired +
+                ", delivered=" + delivered +
+                ", failed=" + failed +
+                ", dropped=" + dropped +
+                '}';
+    }
+}
@@ -0,0 +1,48 @@
+package payconiq.stocks.response;
+
+/**
+ * Class containing counters of {@link payconiq.stocks.service.StockCache}.
+ */
+public class CacheStats {
+
+    private final int size;
+
+    private final long hits;
+
+    private final long misses;
+
+    private final long evictions;
+
+    public CacheStats(int size, long hits, long misses, long evictions) {
+        this.size = size;
+        this.hits = hits;
+        this.misses = misses;
+        this.evictions = evictions;
+    }
+
+    public int getSize() {
+        return size;
+    }
+
+    public long getHits() {
+        return hits;
+    }
+
+    public long getMisses() {
+        return misses;
+    }
+
+    public long getEvictions() {
+        return evictions;
+    }
+
+    @Override
+    public String toString() {
+        return "CacheStats{" +
+                "size=" + size +
+                ", hits=" + hits +
+                ", misses=" + misses +
+                ", evictions=" + evictions +
+                '}';
+    }
+}
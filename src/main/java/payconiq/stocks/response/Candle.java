@@ -0,0 +1,67 @@
+package payconiq.stocks.response;
+
+import java.time.Instant;
+
+/**
+ * Class containing open/high/low/close prices of a stock within a time interval
+ * and the number of price updates in it.
+ */
+public class Candle {
+
+    private final Instant start;
+
+    private final double open;
+
+    private final double high;
+
+    private final double low;
+
+    private final double close;
+
+    private final long updates;
+
+    public Candle(Instant start, double open, double high, double low, double close, long updates) {
+        this.start = start;
+        this.open = open;
+        this.high = high;
+        this.low = low;
+        this.close = close;
+        this.updates = updates;
+    }
+
+    public Instant getStart() {
+        return start;
+    }
+
+    public double getOpen() {
+        return open;
+    }
+
+    public double getHigh() {
+        return high;
+    }
+
+    public double getLow() {
+        return low;
+    }
+
+    public double getClose() {
+        return close;
+    }
+
+    public long getUpdates() {
+        return updates;
+    }
+
+    @Override
+    public String toString() {
+        return "Candle{" +
+                "start=" + start +
+                ", open=" + open +
+                ", high=" + high +
+                ", low=" + low +
+                ", close=" + close +
+                ", updates=" + updates +
+                '}';
+    }
+}
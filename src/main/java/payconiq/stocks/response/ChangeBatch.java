@@ -0,0 +1,65 @@
+package payconiq.stocks.response;
+
+import java.util.List;
+
+import com.fasterxml.jackson.annotation.JsonCreator;
+import com.fasterxml.jackson.annotation.JsonProperty;
+
+/**
+ * Class containing changes of stocks read from the replication change log.
+ * When the requested position is no longer kept in the log, the batch is a snapshot of all stocks
+ * and {@link #isReset()} is set: stocks missing from it have to be dropped.
+ */
+public class ChangeBatch {
+
+    private final long position;
+
+    private final long head;
+
+    private final boolean reset;
+
+    private final List<StockChange> changes;
+
+    @JsonCreator
+    public ChangeBatch(@JsonProperty("position") long position,
+                       @JsonProperty("head") long head,
+                       @JsonProperty("reset") boolean reset,
+                       @JsonProperty("changes") List<StockChange> changes) {
+        this.position = position;
+        this.head = head;
+        this.reset = reset;
+        this.changes = changes;
+    }
+
+    /**
+     * @return position of the log covered by this batch, the next batch starts after it.
+     */
+    public long getPosition() {
+        return position;
+    }
+
+    /**
+     * @return latest position of the log when the batch was read.
+     */
+    public long getHead() {
+        return head;
+    }
+
+    public boolean isReset() {
+        return reset;
+    }
+
+    public List<StockChange> getChanges() {
+        return changes;
+    }
+
+    @Override
+    public String toString() {
+        return "ChangeBatch{" +
+                "position=" + position +
+                ", head=" + head +
+                ", reset=" + reset +
+                ", changes=" + changes.size() +
+                '}';
+    }
+}
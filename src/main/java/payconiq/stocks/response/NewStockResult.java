@@ -0,0 +1,48 @@
+package payconiq.stocks.response;
+
+/**
+ * Class containing result of adding a single stock in a batch of new stocks.
+ */
+public class NewStockResult {
+
+    private final Long id;
+
+    private final String name;
+
+    private final String error;
+
+    private NewStockResult(Long id, String name, String error) {
+        this.id = id;
+        this.name = name;
+        this.error = error;
+    }
+
+    public static NewStockResult created(long id, String name) {
+        return new NewStockResult(id, name, null);
+    }
+
+    public static NewStockResult failed(String name, String error) {
+        return new NewStockResult(null, name, error);
+    }
+
+    public Long getId() {
+        return id;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public String getError() {
+        return error;
+    }
+
+    @Override
+    public String toString() {
+        return "NewStockResult{" +
+                "id=" + id +
+                ", name='" + name + '\'' +
+                ", error='" + error + '\'' +
+                '}';
+    }
+}
@@ -0,0 +1,73 @@
+package payconiq.stocks.response;
+
+/**
+ * Class containing log positions and group commit counters of {@link payconiq.stocks.service.persistence.StockJournal}.
+ */
+public class PersistenceStats {
+
+    private final long position;
+
+    private final long durablePosition;
+
+    private final long snapshotPosition;
+
+    private final long records;
+
+    private final long syncs;
+
+    private final long averageSyncMicros;
+
+    private final long snapshots;
+
+    public PersistenceStats(long position, long durablePosition, long snapshotPosition, long records, long syncs,
+                            long averageSyncMicros, long snapshots) {
+        this.position = position;
+        this.durablePosition = durablePosition;
+        this.snapshotPosition = snapshotPosition;
+        this.records = records;
+        this.syncs = syncs;
+        this.averageSyncMicros = averageSyncMicros;
+        this.snapshots = snapshots;
+    }
+
+    public long getPosition() {
+        return position;
+    }
+
+    public long getDurablePosition() {
+        return durablePosition;
+    }
+
+    public long getSnapshotPosition() {
+        return snapshotPosition;
+    }
+
+    public long getRecords() {
+        return records;
+    }
+
+    public long getSyncs() {
+        return syncs;
+    }
+
+    public long getAverageSyncMicros() {
+        return averageSyncMicros;
+    }
+
+    public long getSnapshots() {
+        return snapshots;
+    }
+
+    @Override
+    public String toString() {
+        return "PersistenceStats{" +
+                "position=" + position +
+                ", durablePosition=" + durablePosition +
+                ", snapshotPosition=" + snapshotPosition +
+                ", records=" + records +
+                ", syncs=" + syncs +
+                ", averageSyncMicros=" + averageSyncMicros +
+                ", snapshots=" + snapshots +
+                '}';
+    }
+}
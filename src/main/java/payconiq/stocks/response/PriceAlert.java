@@ -0,0 +1,80 @@
+package payconiq.stocks.response;
+
+import java.time.Instant;
+
+/**
+ * Class containing a pending price alert of a stock, see {@link payconiq.stocks.service.alert.PriceAlertService}.
+ */
+public class PriceAlert {
+
+    /**
+     * Direction in which the price has to cross the alert price.
+     */
+    public enum Direction {
+        /**
+         * Alert fires when the price rises from below the alert price to it or above.
+         */
+        UP,
+        /**
+         * Alert fires when the price falls from above the alert price to it or below.
+         */
+        DOWN
+    }
+
+    private final long id;
+
+    private final long stockId;
+
+    private final double price;
+
+    private final Direction direction;
+
+    private final String callbackUrl;
+
+    private final Instant created;
+
+    public PriceAlert(long id, long stockId, double price, Direction direction, String callbackUrl, Instant created) {
+        this.id = id;
+        this.stockId = stockId;
+        this.price = price;
+        this.direction = direction;
+        this.callbackUrl = callbackUrl;
+        this.created = created;
+    }
+
+    public long getId() {
+        return id;
+    }
+
+    public long getStockId() {
+        return stockId;
+    }
+
+    public double getPrice() {
+        return price;
+    }
+
+    public Direction getDirection() {
+        return direction;
+    }
+
+    public String getCallbackUrl() {
+        return callbackUrl;
+    }
+
+    public Instant getCreated() {
+        return created;
+    }
+
+    @Override
+    public String toString() {
+        return "PriceAlert{" +
+                "id=" + id +
+                ", stockId=" + stockId +
+                ", price=" + price +
+                ", direction=" + direction +
+                ", callbackUrl='" + callbackUrl + '\'' +
+                ", created=" + created +
+                '}';
+    }
+}
@@ -0,0 +1,75 @@
+package payconiq.stocks.response;
+
+import java.time.Instant;
+
+/**
+ * Class containing a fired price alert, posted to the callback url of the alert.
+ */
+public class PriceAlertEvent {
+
+    private final long alertId;
+
+    private final long stockId;
+
+    private final double alertPrice;
+
+    private final PriceAlert.Direction direction;
+
+    private final double oldPrice;
+
+    private final double newPrice;
+
+    private final Instant lastUpdate;
+
+    public PriceAlertEvent(long alertId, long stockId, double alertPrice, PriceAlert.Direction direction,
+                           double oldPrice, double newPrice, Instant lastUpdate) {
+        this.alertId = alertId;
+        this.stockId = stockId;
+        this.alertPrice = alertPrice;
+        this.direction = direction;
+        this.oldPrice = oldPrice;
+        this.newPrice = newPrice;
+        this.lastUpdate = lastUpdate;
+    }
+
+    public long getAlertId() {
+        return alertId;
+    }
+
+    public long getStockId() {
+        return stockId;
+    }
+
+    public double getAlertPrice() {
+        return alertPrice;
+    }
+
+    public PriceAlert.Direction getDirection() {
+        return direction;
+    }
+
+    public double getOldPrice() {
+        return oldPrice;
+    }
+
+    public double getNewPrice() {
+        return newPrice;
+    }
+
+    public Instant getLastUpdate() {
+        return lastUpdate;
+    }
+
+    @Override
+    public String toString() {
+        return "PriceAlertEvent{" +
+                "alertId=" + alertId +
+                ", stockId=" + stockId +
+                ", alertPrice=" + alertPrice +
+                ", direction=" + direction +
+                ", oldPrice=" + oldPrice +
+                ", newPrice=" + newPrice +
+                ", lastUpdate=" + lastUpdate +
+                '}';
+    }
+}
@@ -0,0 +1,42 @@
+package payconiq.stocks.response;
+
+import java.time.Instant;
+
+/**
+ * Class containing a price of a stock pushed to subscribers.
+ */
+public class PriceEvent {
+
+    private final long id;
+
+    private final double price;
+
+    private final Instant lastUpdate;
+
+    public PriceEvent(long id, double price, Instant lastUpdate) {
+        this.id = id;
+        this.price = price;
+        this.lastUpdate = lastUpdate;
+    }
+
+    public long getId() {
+        return id;
+    }
+
+    public double getPrice() {
+        return price;
+    }
+
+    public Instant getLastUpdate() {
+        return lastUpdate;
+    }
+
+    @Override
+    public String toString() {
+        return "PriceEvent{" +
+                "id=" + id +
+                ", price=" + price +
+                ", lastUpdate=" + lastUpdate +
+                '}';
+    }
+}
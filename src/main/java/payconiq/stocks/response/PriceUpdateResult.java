@@ -0,0 +1,48 @@
+package payconiq.stocks.response;
+
+/**
+ * Class containing result of a single price update in a batch of price updates.
+ */
+public class PriceUpdateResult {
+
+    private final Long id;
+
+    private final boolean updated;
+
+    private final String error;
+
+    private PriceUpdateResult(Long id, boolean updated, String error) {
+        this.id = id;
+        this.updated = updated;
+        this.error = error;
+    }
+
+    public static PriceUpdateResult updated(long id) {
+        return new PriceUpdateResult(id, true, null);
+    }
+
+    public static PriceUpdateResult failed(Long id, String error) {
+        return new PriceUpdateResult(id, false, error);
+    }
+
+    public Long getId() {
+        return id;
+    }
+
+    public boolean isUpdated() {
+        return updated;
+    }
+
+    public String getError() {
+        return error;
+    }
+
+    @Override
+    public String toString() {
+        return "PriceUpdateResult{" +
+                "id=" + id +
+                ", updated=" + updated +
+                ", error='" + error + '\'' +
+                '}';
+    }
+}
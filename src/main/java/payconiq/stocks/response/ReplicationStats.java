@@ -0,0 +1,65 @@
+package payconiq.stocks.response;
+
+/**
+ * Class containing replication position and lag of a node.
+ */
+public class ReplicationStats {
+
+    private final String role;
+
+    private final long position;
+
+    private final long primaryPosition;
+
+    private final long lagChanges;
+
+    private final long lagMillis;
+
+    public ReplicationStats(String role, long position, long primaryPosition, long lagChanges, long lagMillis) {
+        this.role = role;
+        this.position = position;
+        this.primaryPosition = primaryPosition;
+        this.lagChanges = lagChanges;
+        this.lagMillis = lagMillis;
+    }
+
+    public String getRole() {
+        return role;
+    }
+
+    /**
+     * @return position of the change log applied by this node.
+     */
+    public long getPosition() {
+        return position;
+    }
+
+    /**
+     * @return latest known position of the change log of the primary.
+     */
+    public long getPrimaryPosition() {
+        return primaryPosition;
+    }
+
+    public long getLagChanges() {
+        return lagChanges;
+    }
+
+    /**
+     * @return time since the node was last up to date with the primary, 0 when it is up to date.
+     */
+    public long getLagMillis() {
+        return lagMillis;
+    }
+
+    @Override
+    public String toString() {
+        return "ReplicationStats{" +
+                "role='" + role + '\'' +
+                ", position=" + position +
+                ", primaryPosition=" + primaryPosition +
+                ", lagChanges=" + lagChanges +
+                ", lagMillis=" + lagMillis +
+                '}';
+    }
+}
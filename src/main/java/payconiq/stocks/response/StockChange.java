@@ -0,0 +1,120 @@
+package payconiq.stocks.response;
+
+import java.time.Instant;
+
+import com.fasterxml.jackson.annotation.JsonCreator;
+import com.fasterxml.jackson.annotation.JsonProperty;
+
+import payconiq.stocks.model.Stock;
+
+/**
+ * Class containing a change of a stock in the replication change log:
+ * the whole stock after it was saved or its id when it was deleted.
+ */
+public class StockChange {
+
+    private final long position;
+
+    private final long id;
+
+    private final String name;
+
+    private final Double currentPrice;
+
+    private final Instant lastUpdate;
+
+    private final long version;
+
+    private final boolean deleted;
+
+    @JsonCreator
+    public StockChange(@JsonProperty("position") long position,
+                       @JsonProperty("id") long id,
+                       @JsonProperty("name") String name,
+                       @JsonProperty("currentPrice") Double currentPrice,
+                       @JsonProperty("lastUpdate") Instant lastUpdate,
+                       @JsonProperty("version") long version,
+                       @JsonProperty("deleted") boolean deleted) {
+        this.position = position;
+        this.id = id;
+        this.name = name;
+        this.currentPrice = currentPrice;
+        this.lastUpdate = lastUpdate;
+        this.version = version;
+        this.deleted = deleted;
+    }
+
+    public static StockChange saved(long position, Stock stock) {
+        return new StockChange(position, stock.getId(), stock.getName(), stock.getCurrentPrice(), stock.getLastUpdate(),
+                stock.getVersion(), false);
+    }
+
+    public static StockChange deleted(long position, long id) {
+        return new StockChange(position, id, null, null, null, 0, true);
+    }
+
+    public long getPosition() {
+        return position;
+    }
+
+    public long getId() {
+        return id;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public Double getCurrentPrice() {
+        return currentPrice;
+    }
+
+    public Instant getLastUpdate() {
+        return lastUpdate;
+    }
+
+    public long getVersion() {
+        return version;
+    }
+
+    public boolean isDeleted() {
+        return deleted;
+    }
+
+    /**
+     * Checks whether this change is newer than a stock, so that changes applied out of order don't bring old prices back.
+     *
+     * @param stock - current state of the stock.
+     * @return true when the change is of a later version, or of the same version and not older
+     * (prices kept in memory in "hot price" mode don't change the version).
+     */
+    public boolean isNewerThan(Stock stock) {
+        return version > stock.getVersion()
+                || version == stock.getVersion() && !lastUpdate.isBefore(stock.getLastUpdate());
+    }
+
+    /**
+     * @return stock of a saved change.
+     */
+    public Stock toStock() {
+        Stock stock = new Stock();
+        stock.setId(id);
+        stock.setName(name);
+        stock.setCurrentPrice(currentPrice);
+        stock.setLastUpdate(lastUpdate);
+        return stock;
+    }
+
+    @Override
+    public String toString() {
+        return "StockChange{" +
+                "position=" + position +
+                ", id=" + id +
+                ", name='" + name + '\'' +
+                ", currentPrice=" + currentPrice +
+                ", lastUpdate=" + lastUpdate +
+                ", version=" + version +
+                ", deleted=" + deleted +
+                '}';
+    }
+}
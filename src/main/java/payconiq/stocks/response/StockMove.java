@@ -0,0 +1,67 @@
+package payconiq.stocks.response;
+
+import java.time.Instant;
+
+/**
+ * Class containing a price move of a stock since the open of the day,
+ * see {@link payconiq.stocks.service.leaderboard.StockLeaderboard}.
+ */
+public class StockMove {
+
+    private final long id;
+
+    private final double openPrice;
+
+    private final double price;
+
+    private final double changePercent;
+
+    private final long updates;
+
+    private final Instant lastUpdate;
+
+    public StockMove(long id, double openPrice, double price, long updates, Instant lastUpdate) {
+        this.id = id;
+        this.openPrice = openPrice;
+        this.price = price;
+        this.changePercent = (price - openPrice) / openPrice * 100;
+        this.updates = updates;
+        this.lastUpdate = lastUpdate;
+    }
+
+    public long getId() {
+        return id;
+    }
+
+    public double getOpenPrice() {
+        return openPrice;
+    }
+
+    public double getPrice() {
+        return price;
+    }
+
+    public double getChangePercent() {
+        return changePercent;
+    }
+
+    public long getUpdates() {
+        return updates;
+    }
+
+    public Instant getLastUpdate() {
+        return lastUpdate;
+    }
+
+    @Override
+    public String toString() {
+        return "StockMove{" +
+                "id=" + id +
+                ", openPrice=" + openPrice +
+                ", price=" + price +
+                ", changePercent=" + changePercent +
+                ", updates=" + updates +
+                ", lastUpdate=" + lastUpdate +
+                '}';
+    }
+}
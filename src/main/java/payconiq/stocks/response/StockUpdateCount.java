@@ -0,0 +1,32 @@
+package payconiq.stocks.response;
+
+/**
+ * Class containing number of price updates of a stock.
+ */
+public class StockUpdateCount {
+
+    private final long id;
+
+    private final long updates;
+
+    public StockUpdateCount(long id, long updates) {
+        this.id = id;
+        this.updates = updates;
+    }
+
+    public long getId() {
+        return id;
+    }
+
+    public long getUpdates() {
+        return updates;
+    }
+
+    @Override
+    public String toString() {
+        return "StockUpdateCount{" +
+                "id=" + id +
+                ", updates=" + updates +
+                '}';
+    }
+}
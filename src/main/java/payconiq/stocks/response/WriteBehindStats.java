@@ -0,0 +1,89 @@
+package payconiq.stocks.response;
+
+/**
+ * Class containing queue and commit counters of {@link payconiq.stocks.service.PriceWriteBehind}.
+ */
+public class WriteBehindStats {
+
+    private final int queueDepth;
+
+    private final int capacity;
+
+    private final long accepted;
+
+    private final long rejected;
+
+    private final long written;
+
+    private final long failed;
+
+    private final long commits;
+
+    private final long averageCommitMicros;
+
+    private final long maxCommitMicros;
+
+    public WriteBehindStats(int queueDepth, int capacity, long accepted, long rejected, long written, long failed,
+                            long commits, long averageCommitMicros, long maxCommitMicros) {
+        this.queueDepth = queueDepth;
+        this.capacity = capacity;
+        this.accepted = accepted;
+        this.rejected = rejected;
+        this.written = written;
+        this.failed = failed;
+        this.commits = commits;
+        this.averageCommitMicros = averageCommitMicros;
+        this.maxCommitMicros = maxCommitMicros;
+    }
+
+    public int getQueueDepth() {
+        return queueDepth;
+    }
+
+    public int getCapacity() {
+        return capacity;
+    }
+
+    public long getAccepted() {
+        return accepted;
+    }
+
+    public long getRejected() {
+        return rejected;
+    }
+
+    public long getWritten() {
+        return written;
+    }
+
+    public long getFailed() {
+        return failed;
+    }
+
+    public long getCommits() {
+        return commits;
+    }
+
+    public long getAverageCommitMicros() {
+        return averageCommitMicros;
+    }
+
+    public long getMaxCommitMicros() {
+        return maxCommitMicros;
+    }
+
+    @Override
+    public String toString() {
+        return "WriteBehindStats{" +
+                "queueDepth=" + queueDepth +
+                ", capacity=" + capacity +
+                ", accepted=" + accepted +
+                ", rejected=" + rejected +
+                ", written=" + written +
+                ", failed=" + failed +
+                ", commits=" + commits +
+                ", averageCommitMicros=" + averageCommitMicros +
+                ", maxCommitMicros=" + maxCommitMicros +
+                '}';
+    }
+}
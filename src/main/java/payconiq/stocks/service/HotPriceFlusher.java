@@ -0,0 +1,155 @@
+package payconiq.stocks.service;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Lazy;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import payconiq.stocks.repository.StockRepository;
+
+/**
+ * Periodically writes prices collected by {@link HotPriceStore} to the database.
+ * Only the latest price of each stock is written, so any number of updates
+ * of the same stock between two flushes cost a single database update.
+ * Written stocks are passed to {@link StockService}, which logs their new versions
+ * to the journal and the change log like any other save.
+ */
+@Component
+@ConditionalOnProperty(name = "stocks.hot-price.enabled", havingValue = "true")
+@Lazy(false)
+public class HotPriceFlusher {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(HotPriceFlusher.class);
+
+    @Autowired
+    private HotPriceStore hotPriceStore;
+
+    @Autowired
+    private StockRepository stockRepository;
+
+    @Autowired
+    private StockService stockService;
+
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+
+    @Value("${stocks.hot-price.flush-interval:1s}")
+    private Duration flushInterval;
+
+    private ScheduledExecutorService scheduler;
+
+    private final Batch batch = new Batch();
+
+    @PostConstruct
+    void start() {
+        scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "hot-price-flusher");
+            thread.setDaemon(true);
+            return thread;
+        });
+        long intervalMillis = flushInterval.toMillis();
+        scheduler.scheduleWithFixedDelay(this::flushSafely, intervalMillis, intervalMillis, TimeUnit.MILLISECONDS);
+    }
+
+    @PreDestroy
+    void stop() throws InterruptedException {
+        scheduler.shutdown();
+        scheduler.awaitTermination(flushInterval.toMillis() * 2, TimeUnit.MILLISECONDS);
+        flush();
+    }
+
+    /**
+     * Writes all changed prices to the database in a single transaction.
+     *
+     * @return number of written prices.
+     */
+    public synchronized int flush() {
+        batch.clear();
+        hotPriceStore.forEachDirty(batch::add);
+        if (batch.size == 0) {
+            return 0;
+        }
+        transactionTemplate.execute(status -> {
+            List<Long> written = new ArrayList<>(batch.size);
+            for (int i = 0; i < batch.size; i++) {
+                long id = batch.ids[i];
+                int updated = stockRepository.updatePrice(id, batch.prices[i], Instant.ofEpochMilli(batch.times[i]));
+                if (updated == 0) {
+                    // stock was deleted meanwhile
+                    hotPriceStore.remove(id);
+                } else {
+                    written.add(id);
+                }
+            }
+            stockService.hotPricesFlushed(written);
+            return null;
+        });
+        for (int i = 0; i < batch.size; i++) {
+            hotPriceStore.markFlushed(batch.slots[i], batch.sequences[i]);
+        }
+        return batch.size;
+    }
+
+    private void flushSafely() {
+        try {
+            flush();
+        } catch (RuntimeException e) {
+            LOGGER.error("Failed to flush hot prices, will retry on next run", e);
+        }
+    }
+
+    /**
+     * Reusable primitive buffer of prices to flush.
+     */
+    private static final class Batch {
+
+        private int size;
+
+        private int[] slots = new int[64];
+
+        private long[] sequences = new long[64];
+
+        private long[] ids = new long[64];
+
+        private double[] prices = new double[64];
+
+        private long[] times = new long[64];
+
+        private void clear() {
+            size = 0;
+        }
+
+        private void add(int slot, long sequence, long id, double price, long epochMillis) {
+            if (size == ids.length) {
+                int length = size * 2;
+                slots = Arrays.copyOf(slots, length);
+                sequences = Arrays.copyOf(sequences, length);
+                ids = Arrays.copyOf(ids, length);
+                prices = Arrays.copyOf(prices, length);
+                times = Arrays.copyOf(times, length);
+            }
+            slots[size] = slot;
+            sequences[size] = sequence;
+            ids[size] = id;
+            prices[size] = price;
+            times[size] = epochMillis;
+            size++;
+        }
+    }
+}
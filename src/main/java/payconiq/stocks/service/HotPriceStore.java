@@ -0,0 +1,237 @@
+package payconiq.stocks.service;
+
+import java.time.Instant;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.lang.NonNull;
+import org.springframework.stereotype.Component;
+
+import payconiq.stocks.model.Stock;
+
+/**
+ * Lock-free store of current stock prices used in "hot price" mode.
+ * <p>
+ * Keeps price and last update time per stock id in an open addressing table
+ * built on primitive atomic arrays, so updates neither box values nor touch the database.
+ * Each slot is guarded by a sequence number: writers make it odd with a CAS
+ * while storing price and time, readers retry until they see the same even sequence
+ * before and after reading, so price and time are always read as a consistent pair.
+ * <p>
+ * Slots are never reused, so the store can hold at most {@code stocks.hot-price.capacity}
+ * distinct stocks. Updates of other stocks are rejected and have to go to the database.
+ * Values are written to the database by {@link HotPriceFlusher}.
+ */
+@Component
+@ConditionalOnProperty(name = "stocks.hot-price.enabled", havingValue = "true")
+public class HotPriceStore {
+
+    private static final long EMPTY = 0L;
+
+    private static final long NO_VALUE = 0L;
+
+    private static final long DELETED = -1L;
+
+    private final int capacity;
+
+    private final int mask;
+
+    private final AtomicInteger claimed = new AtomicInteger();
+
+    private final AtomicLongArray keys;
+
+    private final AtomicLongArray prices;
+
+    private final AtomicLongArray times;
+
+    private final AtomicLongArray sequences;
+
+    private final long[] flushedSequences;
+
+    public HotPriceStore(@Value("${stocks.hot-price.capacity:65536}") int capacity) {
+        if (capacity <= 0) {
+            throw new IllegalArgumentException("Hot price store capacity should be greater than zero");
+        }
+        int tableSize = Integer.highestOneBit(capacity * 2 - 1) << 1;
+        this.capacity = capacity;
+        this.mask = tableSize - 1;
+        this.keys = new AtomicLongArray(tableSize);
+        this.prices = new AtomicLongArray(tableSize);
+        this.times = new AtomicLongArray(tableSize);
+        this.sequences = new AtomicLongArray(tableSize);
+        this.flushedSequences = new long[tableSize];
+    }
+
+    /**
+     * Stores current price of a stock.
+     *
+     * @param id          - id of stock.
+     * @param price       - new price.
+     * @param epochMillis - time of update.
+     * @return false when the store is full and the price was not stored.
+     */
+    public boolean update(long id, double price, long epochMillis) {
+        int slot = slot(id, true);
+        if (slot < 0) {
+            return false;
+        }
+        write(slot, Double.doubleToRawLongBits(price), epochMillis);
+        return true;
+    }
+
+    /**
+     * Forgets price of a deleted stock.
+     *
+     * @param id - id of deleted stock.
+     */
+    public void remove(long id) {
+        int slot = slot(id, false);
+        if (slot >= 0) {
+            write(slot, 0L, DELETED);
+        }
+    }
+
+    /**
+     * Returns a copy of the stock with price and last update time taken
+     * from this store, or the stock itself when the store has no price for it.
+     *
+     * @param stock - stock to apply current price to.
+     * @return stock with current price.
+     */
+    @NonNull
+    public Stock overlay(@NonNull Stock stock) {
+        int slot = slot(stock.getId(), false);
+        if (slot < 0) {
+            return stock;
+        }
+        while (true) {
+            long sequence = sequences.get(slot);
+            if ((sequence & 1) != 0) {
+                Thread.onSpinWait();
+                continue;
+            }
+            long priceBits = prices.get(slot);
+            long time = times.get(slot);
+            if (sequences.get(slot) != sequence) {
+                continue;
+            }
+            if (time <= NO_VALUE) {
+                return stock;
+            }
+            Stock current = stock.copy();
+            current.setCurrentPrice(Double.longBitsToDouble(priceBits));
+            current.setLastUpdate(Instant.ofEpochMilli(time));
+            return current;
+        }
+    }
+
+    /**
+     * Visits every stock which price has changed since it was last marked with
+     * {@link #markFlushed(int, long)}. Is expected to be called by a single flushing thread.
+     *
+     * @param visitor - visitor of changed prices.
+     */
+    public void forEachDirty(@NonNull DirtyPriceVisitor visitor) {
+        for (int slot = 0; slot <= mask; slot++) {
+            long id = keys.get(slot);
+            if (id == EMPTY) {
+                continue;
+            }
+            long sequence = sequences.get(slot);
+            if ((sequence & 1) != 0 || sequence == flushedSequences[slot]) {
+                continue;
+            }
+            long priceBits = prices.get(slot);
+            long time = times.get(slot);
+            if (sequences.get(slot) != sequence) {
+                continue;
+            }
+            if (time <= NO_VALUE) {
+                flushedSequences[slot] = sequence;
+                continue;
+            }
+            visitor.visit(slot, sequence, id, Double.longBitsToDouble(priceBits), time);
+        }
+    }
+
+    /**
+     * Marks value of a slot visited by {@link #forEachDirty(DirtyPriceVisitor)} as written to the database.
+     *
+     * @param slot     - visited slot.
+     * @param sequence - visited sequence of the slot.
+     */
+    public void markFlushed(int slot, long sequence) {
+        flushedSequences[slot] = sequence;
+    }
+
+    /**
+     * @return max number of distinct stocks this store can hold.
+     */
+    public int getCapacity() {
+        return capacity;
+    }
+
+    /**
+     * Finds slot of a stock id, optionally claiming an empty one.
+     *
+     * @param id    - id of stock.
+     * @param claim - whether empty slot should be claimed when there is no slot for the id yet.
+     * @return slot index or -1 when there is no slot for the id.
+     */
+    private int slot(long id, boolean claim) {
+        if (id == EMPTY) {
+            return -1;
+        }
+        int index = mix(id) & mask;
+        for (int probe = 0; probe <= mask; probe++) {
+            long key = keys.get(index);
+            if (key == id) {
+                return index;
+            }
+            if (key == EMPTY) {
+                if (!claim || claimed.get() >= capacity) {
+                    return -1;
+                }
+                if (keys.compareAndSet(index, EMPTY, id)) {
+                    claimed.incrementAndGet();
+                    return index;
+                }
+                if (keys.get(index) == id) {
+                    return index;
+                }
+            }
+            index = (index + 1) & mask;
+        }
+        return -1;
+    }
+
+    private void write(int slot, long priceBits, long time) {
+        long sequence;
+        while (true) {
+            sequence = sequences.get(slot);
+            if ((sequence & 1) == 0 && sequences.compareAndSet(slot, sequence, sequence + 1)) {
+                break;
+            }
+            Thread.onSpinWait();
+        }
+        prices.set(slot, priceBits);
+        times.set(slot, time);
+        sequences.set(slot, sequence + 2);
+    }
+
+    private static int mix(long id) {
+        long hash = id * 0x9E3779B97F4A7C15L;
+        return (int) (hash ^ (hash >>> 32));
+    }
+
+    /**
+     * Visitor of prices which are not written to the database yet.
+     */
+    @FunctionalInterface
+    public interface DirtyPriceVisitor {
+
+        void visit(int slot, long sequence, long id, double price, long epochMillis);
+    }
+}
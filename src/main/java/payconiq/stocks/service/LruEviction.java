@@ -0,0 +1,77 @@
+package payconiq.stocks.service;
+
+import java.util.Arrays;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.ToLongFunction;
+
+import org.springframework.lang.NonNull;
+
+/**
+ * Approximate LRU eviction of a bounded {@link ConcurrentHashMap}, which values record the time they were last read.
+ * <p>
+ * Once the map exceeds its max size, a single thread evicts the least recently read values down to 90% of the max size,
+ * so the cost of eviction is spread over many inserts. Other threads go on without waiting.
+ *
+ * @param <K> - type of keys.
+ * @param <V> - type of values.
+ */
+public final class LruEviction<K, V> {
+
+    private final ConcurrentHashMap<K, V> map;
+
+    private final int maxSize;
+
+    private final ToLongFunction<V> lastAccess;
+
+    private final ReentrantLock lock = new ReentrantLock();
+
+    /**
+     * @param map        - map to evict values of.
+     * @param maxSize    - max number of values.
+     * @param lastAccess - time a value was last read, comparable as {@link System#nanoTime()}.
+     */
+    public LruEviction(@NonNull ConcurrentHashMap<K, V> map, int maxSize, @NonNull ToLongFunction<V> lastAccess) {
+        this.map = map;
+        this.maxSize = maxSize;
+        this.lastAccess = lastAccess;
+    }
+
+    /**
+     * Evicts least recently read values when the map is full, is called after an insert.
+     *
+     * @return number of evicted values.
+     */
+    public int evictIfFull() {
+        if (map.size() <= maxSize || !lock.tryLock()) {
+            return 0;
+        }
+        try {
+            int excess = map.size() - (maxSize - maxSize / 10);
+            if (excess <= 0) {
+                return 0;
+            }
+            long[] accesses = new long[map.size()];
+            int size = 0;
+            for (V value : map.values()) {
+                if (size == accesses.length) {
+                    break;
+                }
+                accesses[size++] = lastAccess.applyAsLong(value);
+            }
+            Arrays.sort(accesses, 0, size);
+            long oldest = accesses[Math.min(excess, size) - 1];
+            int evicted = 0;
+            for (Map.Entry<K, V> entry : map.entrySet()) {
+                if (evicted < excess && lastAccess.applyAsLong(entry.getValue()) - oldest <= 0
+                        && map.remove(entry.getKey(), entry.getValue())) {
+                    evicted++;
+                }
+            }
+            return evicted;
+        } finally {
+            lock.unlock();
+        }
+    }
+}
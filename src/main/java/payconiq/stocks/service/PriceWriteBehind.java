@@ -0,0 +1,224 @@
+package payconiq.stocks.service;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.lang.NonNull;
+import org.springframework.stereotype.Component;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import payconiq.stocks.exception.TooManyRequestsException;
+import payconiq.stocks.response.WriteBehindStats;
+
+/**
+ * "Write-behind" mode of price updates: an update is validated and queued by the request thread,
+ * and written to the database later by one of {@code stocks.write-behind.writers} writer threads.
+ * <p>
+ * Updates are spread over bounded queues by stock id, so updates of the same stock are written in order
+ * by the same writer. A writer takes up to {@code stocks.write-behind.batch-size} updates at once,
+ * keeps the latest price of each stock and writes them in a single transaction.
+ * When a queue is full, an update waits for {@code stocks.write-behind.enqueue-timeout}
+ * and is rejected with {@link TooManyRequestsException} afterwards.
+ */
+@Component
+@ConditionalOnProperty(name = "stocks.write-behind.enabled", havingValue = "true")
+public class PriceWriteBehind {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(PriceWriteBehind.class);
+
+    private static final long POLL_MILLIS = 100;
+
+    @Autowired
+    private StockService stockService;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @Value("${stocks.write-behind.capacity:65536}")
+    private int capacity;
+
+    @Value("${stocks.write-behind.writers:2}")
+    private int writers;
+
+    @Value("${stocks.write-behind.batch-size:500}")
+    private int batchSize;
+
+    @Value("${stocks.write-behind.enqueue-timeout:0ms}")
+    private Duration enqueueTimeout;
+
+    private List<ArrayBlockingQueue<PendingPrice>> queues;
+
+    private ExecutorService executor;
+
+    private volatile boolean running;
+
+    private final AtomicLong accepted = new AtomicLong();
+
+    private final AtomicLong rejected = new AtomicLong();
+
+    private final AtomicLong written = new AtomicLong();
+
+    private final AtomicLong failed = new AtomicLong();
+
+    private final AtomicLong commits = new AtomicLong();
+
+    private final AtomicLong commitNanos = new AtomicLong();
+
+    private final AtomicLong maxCommitNanos = new AtomicLong();
+
+    @PostConstruct
+    void start() {
+        if (writers <= 0 || capacity < writers || batchSize <= 0) {
+            throw new IllegalArgumentException("Write-behind needs positive writers and batch size and capacity of at least one update per writer");
+        }
+        queues = new ArrayList<>(writers);
+        AtomicInteger threadNumber = new AtomicInteger();
+        executor = Executors.newFixedThreadPool(writers, runnable -> {
+            Thread thread = new Thread(runnable, "price-writer-" + threadNumber.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+        running = true;
+        for (int i = 0; i < writers; i++) {
+            ArrayBlockingQueue<PendingPrice> queue = new ArrayBlockingQueue<>(capacity / writers);
+            queues.add(queue);
+            executor.execute(() -> drain(queue));
+        }
+        Gauge.builder("stocks.write-behind.queue.depth", this, PriceWriteBehind::queueDepth)
+                .description("Number of queued price updates")
+                .register(meterRegistry);
+    }
+
+    @PreDestroy
+    void stop() throws InterruptedException {
+        running = false;
+        executor.shutdown();
+        if (!executor.awaitTermination(30, TimeUnit.SECONDS)) {
+            LOGGER.warn("Price writers didn't finish in time, {} queued price updates are lost", queueDepth());
+        }
+    }
+
+    /**
+     * Queues a validated price update.
+     *
+     * @param id    - id of existing stock.
+     * @param price - new price.
+     * @throws TooManyRequestsException when the queue stays full for {@code stocks.write-behind.enqueue-timeout}.
+     */
+    public void enqueue(long id, double price) {
+        PendingPrice update = new PendingPrice(id, price);
+        ArrayBlockingQueue<PendingPrice> queue = queues.get(Math.floorMod(Long.hashCode(id), queues.size()));
+        boolean queued;
+        try {
+            queued = running && queue.offer(update, enqueueTimeout.toNanos(), TimeUnit.NANOSECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            queued = false;
+        }
+        if (!queued) {
+            rejected.incrementAndGet();
+            throw new TooManyRequestsException("Too many price updates, try again later");
+        }
+        accepted.incrementAndGet();
+    }
+
+    /**
+     * @return number of queued updates which are not written yet.
+     */
+    public int queueDepth() {
+        int depth = 0;
+        for (ArrayBlockingQueue<PendingPrice> queue : queues) {
+            depth += queue.size();
+        }
+        return depth;
+    }
+
+    /**
+     * @return queue and commit counters.
+     */
+    @NonNull
+    public WriteBehindStats stats() {
+        long commitCount = commits.get();
+        return new WriteBehindStats(queueDepth(), capacity, accepted.get(), rejected.get(), written.get(), failed.get(),
+                commitCount,
+                commitCount == 0 ? 0 : commitNanos.get() / commitCount / 1000,
+                maxCommitNanos.get() / 1000);
+    }
+
+    private void drain(ArrayBlockingQueue<PendingPrice> queue) {
+        List<PendingPrice> batch = new ArrayList<>(batchSize);
+        Map<Long, Double> prices = new LinkedHashMap<>();
+        while (running || !queue.isEmpty()) {
+            PendingPrice first;
+            try {
+                first = queue.poll(POLL_MILLIS, TimeUnit.MILLISECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+            if (first == null) {
+                continue;
+            }
+            batch.add(first);
+            queue.drainTo(batch, batchSize - 1);
+            for (PendingPrice update : batch) {
+                prices.put(update.id, update.price);
+            }
+            write(prices, batch.size());
+            batch.clear();
+            prices.clear();
+        }
+    }
+
+    private void write(Map<Long, Double> prices, int updates) {
+        long started = System.nanoTime();
+        try {
+            Set<Long> notFound = stockService.writePrices(prices);
+            if (!notFound.isEmpty()) {
+                LOGGER.debug("Stocks {} were deleted before their prices were written", notFound);
+            }
+            written.addAndGet(updates);
+        } catch (RuntimeException e) {
+            failed.addAndGet(updates);
+            LOGGER.error("Failed to write {} queued price updates", updates, e);
+        }
+        long elapsed = System.nanoTime() - started;
+        commits.incrementAndGet();
+        commitNanos.addAndGet(elapsed);
+        maxCommitNanos.accumulateAndGet(elapsed, Math::max);
+    }
+
+    /**
+     * Price update waiting to be written.
+     */
+    private static final class PendingPrice {
+
+        private final long id;
+
+        private final double price;
+
+        private PendingPrice(long id, double price) {
+            this.id = id;
+            this.price = price;
+        }
+    }
+}
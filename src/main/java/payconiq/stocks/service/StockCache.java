@@ -0,0 +1,285 @@
+package payconiq.stocks.service;
+
+import java.time.Duration;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.lang.NonNull;
+import org.springframework.lang.Nullable;
+import org.springframework.stereotype.Component;
+
+import payconiq.stocks.model.Stock;
+import payconiq.stocks.response.CacheStats;
+
+/**
+ * Bounded, id-keyed read-through cache of {@link Stock} snapshots.
+ * <p>
+ * Entries live in a {@link ConcurrentHashMap}, so reads take no lock: a hit only records its access time.
+ * Once {@code stocks.cache.max-size} is exceeded, the least recently read entries are evicted by {@link LruEviction}.
+ * Entries expire {@code stocks.cache.ttl} after they were loaded.
+ * The full stock list is cached as a separate entry which is dropped on any change.
+ * <p>
+ * Cached snapshots are detached copies and must be treated as read-only by callers.
+ * Loads started before a change are not stored (see {@link #stamp()}), so a slow
+ * reader can't put an outdated snapshot back after a writer has committed.
+ * Committed snapshots written through the cache replace only older ones, and ids of deleted stocks
+ * are remembered for {@code stocks.cache.ttl}, so writes completing out of order keep the latest state.
+ */
+@Component
+public class StockCache {
+
+    private final int maxSize;
+
+    private final long ttlNanos;
+
+    private final ConcurrentHashMap<Long, Entry> entries = new ConcurrentHashMap<>();
+
+    /**
+     * Times of deletion of recently deleted stocks by id, in {@link System#nanoTime()}.
+     */
+    private final ConcurrentHashMap<Long, Long> deleted = new ConcurrentHashMap<>();
+
+    private final LruEviction<Long, Entry> eviction;
+
+    private final AtomicLong generation = new AtomicLong();
+
+    private volatile AllEntry all;
+
+    private final LongAdder hits = new LongAdder();
+
+    private final LongAdder misses = new LongAdder();
+
+    private final LongAdder evictions = new LongAdder();
+
+    public StockCache(@Value("${stocks.cache.max-size:10000}") int maxSize,
+                      @Value("${stocks.cache.ttl:30s}") Duration ttl) {
+        this.maxSize = maxSize;
+        this.ttlNanos = ttl.toNanos();
+        this.eviction = new LruEviction<>(entries, maxSize, entry -> entry.lastAccess);
+    }
+
+    /**
+     * @return true when caching is switched on.
+     */
+    public boolean isEnabled() {
+        return maxSize > 0 && ttlNanos > 0;
+    }
+
+    /**
+     * Returns current cache generation, which has to be taken before loading
+     * a value from the repository and passed to {@link #put(long, Stock)}.
+     *
+     * @return current cache generation.
+     */
+    public long stamp() {
+        return generation.get();
+    }
+
+    /**
+     * Returns cached {@link Stock} snapshot by its id.
+     *
+     * @param id - id of stock to lookup.
+     * @return cached snapshot or null when there is no fresh one.
+     */
+    @Nullable
+    public Stock get(long id) {
+        if (!isEnabled()) {
+            return null;
+        }
+        Entry entry = entries.get(id);
+        long now = System.nanoTime();
+        if (entry != null && entry.isExpired(now)) {
+            if (entries.remove(id, entry)) {
+                evictions.increment();
+            }
+            entry = null;
+        }
+        if (entry == null) {
+            misses.increment();
+            return null;
+        }
+        entry.lastAccess = now;
+        hits.increment();
+        return entry.stock;
+    }
+
+    /**
+     * Returns cached snapshot of all {@link Stock}s.
+     *
+     * @return cached snapshot or null when there is no fresh one.
+     */
+    @Nullable
+    public List<Stock> getAll() {
+        if (!isEnabled()) {
+            return null;
+        }
+        AllEntry current = all;
+        if (current == null || current.generation != generation.get() || current.isExpired(System.nanoTime())) {
+            misses.increment();
+            return null;
+        }
+        hits.increment();
+        return current.stocks;
+    }
+
+    /**
+     * Caches a snapshot of a loaded {@link Stock} unless the cache has changed since {@code stamp}.
+     * The generation is checked while the entry of the stock is locked, and writers change the generation
+     * before they write the entry, so an outdated snapshot is either skipped or overwritten.
+     *
+     * @param stamp - {@link #stamp()} taken before the stock was loaded.
+     * @param stock - loaded stock.
+     * @return cached snapshot.
+     */
+    @NonNull
+    public Stock put(long stamp, @NonNull Stock stock) {
+        Stock snapshot = stock.copy();
+        if (!isEnabled()) {
+            return snapshot;
+        }
+        long now = System.nanoTime();
+        entries.compute(snapshot.getId(), (id, current) ->
+                generation.get() == stamp ? new Entry(snapshot, now, now + ttlNanos) : current);
+        evictions.add(eviction.evictIfFull());
+        return snapshot;
+    }
+
+    /**
+     * Caches a snapshot of all loaded {@link Stock}s unless the cache has changed since {@code stamp}.
+     * The snapshot is kept with its generation and is not returned once the generation has changed.
+     *
+     * @param stamp  - {@link #stamp()} taken before the stocks were loaded.
+     * @param stocks - loaded stocks.
+     * @return cached snapshot.
+     */
+    @NonNull
+    public List<Stock> putAll(long stamp, @NonNull Collection<Stock> stocks) {
+        Stock[] snapshots = stocks.stream().map(Stock::copy).toArray(Stock[]::new);
+        List<Stock> snapshot = List.of(snapshots);
+        if (isEnabled() && generation.get() == stamp) {
+            all = new AllEntry(snapshot, stamp, System.nanoTime() + ttlNanos);
+        }
+        return snapshot;
+    }
+
+    /**
+     * Writes a committed {@link Stock} through the cache, unless a newer snapshot of the stock is cached
+     * or the stock has been deleted.
+     *
+     * @param stock - committed stock.
+     */
+    public void update(@NonNull Stock stock) {
+        Stock snapshot = stock.copy();
+        generation.incrementAndGet();
+        all = null;
+        if (isEnabled()) {
+            long now = System.nanoTime();
+            entries.compute(snapshot.getId(), (id, current) -> {
+                if (deleted.containsKey(id)) {
+                    return null;
+                }
+                return current == null || !isOlder(snapshot, current.stock)
+                        ? new Entry(snapshot, now, now + ttlNanos)
+                        : current;
+            });
+            evictions.add(eviction.evictIfFull());
+        }
+    }
+
+    /**
+     * Removes a deleted {@link Stock} from the cache, so that it isn't cached again by a write completed later.
+     *
+     * @param id - id of deleted stock.
+     */
+    public void deleted(long id) {
+        if (isEnabled()) {
+            long now = System.nanoTime();
+            if (deleted.size() >= maxSize) {
+                deleted.values().removeIf(deletedAt -> now - deletedAt > ttlNanos);
+            }
+            deleted.put(id, now);
+        }
+        invalidate(id);
+    }
+
+    /**
+     * Removes a {@link Stock} from the cache.
+     *
+     * @param id - id of removed stock.
+     */
+    public void invalidate(long id) {
+        generation.incrementAndGet();
+        all = null;
+        entries.remove(id);
+    }
+
+    /**
+     * Removes all cached entries.
+     */
+    public void clear() {
+        generation.incrementAndGet();
+        all = null;
+        entries.clear();
+    }
+
+    /**
+     * @return current hit/miss/eviction counters.
+     */
+    @NonNull
+    public CacheStats stats() {
+        return new CacheStats(entries.size(), hits.sum(), misses.sum(), evictions.sum());
+    }
+
+    /**
+     * @return true when a snapshot is of an earlier state of the stock than the other one.
+     */
+    private static boolean isOlder(Stock snapshot, Stock other) {
+        if (snapshot.getVersion() != other.getVersion()) {
+            return snapshot.getVersion() < other.getVersion();
+        }
+        return snapshot.getLastUpdate() != null && other.getLastUpdate() != null
+                && snapshot.getLastUpdate().isBefore(other.getLastUpdate());
+    }
+
+    private static final class Entry {
+
+        private final Stock stock;
+
+        private final long expiresAt;
+
+        private volatile long lastAccess;
+
+        private Entry(Stock stock, long loadedAt, long expiresAt) {
+            this.stock = stock;
+            this.lastAccess = loadedAt;
+            this.expiresAt = expiresAt;
+        }
+
+        private boolean isExpired(long now) {
+            return now - expiresAt >= 0;
+        }
+    }
+
+    private static final class AllEntry {
+
+        private final List<Stock> stocks;
+
+        private final long generation;
+
+        private final long expiresAt;
+
+        private AllEntry(List<Stock> stocks, long generation, long expiresAt) {
+            this.stocks = stocks;
+            this.generation = generation;
+            this.expiresAt = expiresAt;
+        }
+
+        private boolean isExpired(long now) {
+            return now - expiresAt >= 0;
+        }
+    }
+}
@@ -0,0 +1,39 @@
+package payconiq.stocks.service;
+
+import org.springframework.lang.NonNull;
+
+import payconiq.stocks.model.Stock;
+
+/**
+ * Listener of changes made by {@link StockService}.
+ * All beans implementing it are notified after the change is committed.
+ */
+public interface StockEventListener {
+
+    /**
+     * Is called when new stock is added.
+     *
+     * @param stock - snapshot of added stock.
+     */
+    default void onStockAdded(@NonNull Stock stock) {
+    }
+
+    /**
+     * Is called when price of a stock is updated.
+     *
+     * @param id          - id of updated stock.
+     * @param oldPrice    - price before the update.
+     * @param newPrice    - price after the update.
+     * @param epochMillis - time of the update.
+     */
+    default void onPriceUpdated(long id, double oldPrice, double newPrice, long epochMillis) {
+    }
+
+    /**
+     * Is called when a stock is deleted.
+     *
+     * @param id - id of deleted stock.
+     */
+    default void onStockDeleted(long id) {
+    }
+}
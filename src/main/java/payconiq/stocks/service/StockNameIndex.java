@@ -0,0 +1,106 @@
+package payconiq.stocks.service;
+
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.SmartInitializingSingleton;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.annotation.Lazy;
+import org.springframework.lang.NonNull;
+import org.springframework.stereotype.Component;
+
+import payconiq.stocks.model.Stock;
+import payconiq.stocks.repository.StockRepository;
+
+/**
+ * In-memory index of normalized {@link Stock} names to stock ids, kept in sync with inserts and deletes by {@link StockService}.
+ * <p>
+ * Answers whether a name is taken without a database query. A name is reserved before its stock is inserted,
+ * so two concurrent inserts of the same name can't both pass the check. The unique index on the name column
+ * still guards stocks written to the database bypassing the service.
+ */
+@Component
+@Lazy(false)
+public class StockNameIndex implements SmartInitializingSingleton {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(StockNameIndex.class);
+
+    /**
+     * Id of a name which stock is being inserted.
+     */
+    private static final long RESERVED = -1;
+
+    @Autowired
+    private StockRepository stockRepository;
+
+    private final ConcurrentHashMap<String, Long> ids = new ConcurrentHashMap<>();
+
+    /**
+     * Loads names of all stocks.
+     */
+    @Override
+    public void afterSingletonsInstantiated() {
+        List<Object[]> names = stockRepository.findAllNormalizedNames();
+        for (Object[] name : names) {
+            ids.put((String) name[0], (Long) name[1]);
+        }
+        LOGGER.info("Loaded {} stock names", names.size());
+    }
+
+    /**
+     * @param normalizedName - normalized name of stock.
+     * @return whether there is or is being inserted a stock with such name.
+     */
+    public boolean contains(@NonNull String normalizedName) {
+        return ids.containsKey(normalizedName);
+    }
+
+    /**
+     * Reserves a name for a stock which is about to be inserted.
+     * The reservation should end with either {@link #register(String, long)} or {@link #release(String)}.
+     *
+     * @param normalizedName - normalized name of stock.
+     * @return false when the name is already taken.
+     */
+    public boolean reserve(@NonNull String normalizedName) {
+        return ids.putIfAbsent(normalizedName, RESERVED) == null;
+    }
+
+    /**
+     * Registers name of an inserted stock.
+     *
+     * @param normalizedName - normalized name of stock.
+     * @param id             - id of stock.
+     */
+    public void register(@NonNull String normalizedName, long id) {
+        ids.put(normalizedName, id);
+    }
+
+    /**
+     * Releases a reservation of a name which stock wasn't inserted.
+     *
+     * @param normalizedName - normalized name of stock.
+     */
+    public void release(@NonNull String normalizedName) {
+        ids.remove(normalizedName, RESERVED);
+    }
+
+    /**
+     * Removes name of a deleted stock.
+     *
+     * @param normalizedName - normalized name of stock.
+     * @param id             - id of stock.
+     */
+    public void remove(@NonNull String normalizedName, long id) {
+        ids.remove(normalizedName, id);
+    }
+
+    /**
+     * @return number of taken names.
+     */
+    public int size() {
+        return ids.size();
+    }
+}
@@ -1,26 +1,61 @@
 package payconiq.stocks.service;
 
 import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.List;
-import java.util.Optional;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
 
+import javax.persistence.EntityManager;
+import javax.persistence.PersistenceContext;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.dao.OptimisticLockingFailureException;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.PageRequest;
 import org.springframework.data.domain.Pageable;
 import org.springframework.lang.NonNull;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronizationAdapter;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
 
 import com.sun.istack.Nullable;
 
+import payconiq.stocks.exception.ConcurrentUpdateException;
 import payconiq.stocks.exception.IncorrectRequestException;
 import payconiq.stocks.exception.StockAlreadyExistsException;
 import payconiq.stocks.exception.StockNotFoundException;
+import payconiq.stocks.exception.StockVersionMismatchException;
 import payconiq.stocks.model.Stock;
 import payconiq.stocks.repository.StockRepository;
 import payconiq.stocks.request.NewStockRequest;
+import payconiq.stocks.request.StockPriceUpdateRequest;
+import payconiq.stocks.response.NewStockResult;
+import payconiq.stocks.response.PriceUpdateResult;
+import payconiq.stocks.response.StockChange;
+import payconiq.stocks.service.metrics.StockMetrics;
+import payconiq.stocks.service.metrics.StockMetrics.Operation;
+import payconiq.stocks.service.persistence.StockJournal;
+import payconiq.stocks.service.replication.ReplicaSync;
+import payconiq.stocks.service.replication.StockChangeLog;
+import payconiq.stocks.service.search.StockSearchIndex;
 
 /**
  * Service to perform business logic on {@link Stock} entities.
@@ -28,50 +63,377 @@ import payconiq.stocks.request.NewStockRequest;
 @Service
 public class StockService {
 
+	private static final Logger LOGGER = LoggerFactory.getLogger(StockService.class);
+
 	@Autowired
 	private StockRepository stockRepository;
 
+	@Autowired
+	private StockCache stockCache;
+
+	@Autowired
+	private StockNameIndex stockNameIndex;
+
+	@Autowired
+	private TransactionTemplate transactionTemplate;
+
+	@Autowired
+	private StockMetrics stockMetrics;
+
+	@Autowired
+	private StockSearchIndex stockSearchIndex;
+
+	@PersistenceContext
+	private EntityManager entityManager;
+
+	/**
+	 * Is present only in "hot price" mode, see {@link HotPriceStore}.
+	 */
+	@Autowired(required = false)
+	private HotPriceStore hotPriceStore;
+
+	/**
+	 * Is present only in "write-behind" mode, see {@link PriceWriteBehind}.
+	 */
+	@Autowired(required = false)
+	private PriceWriteBehind priceWriteBehind;
+
+	/**
+	 * Is present only on the primary of replication, see {@link StockChangeLog}.
+	 */
+	@Autowired(required = false)
+	private StockChangeLog stockChangeLog;
+
+	/**
+	 * Is present only in "persistence" mode.
+	 */
+	@Autowired(required = false)
+	private StockJournal stockJournal;
+
+	@Autowired(required = false)
+	private List<StockEventListener> stockEventListeners = Collections.emptyList();
+
+	@Value("${stocks.batch.max-size:10000}")
+	private int maxBatchSize;
+
+	@Value("${stocks.page.max-size:1000}")
+	private int maxPageSize;
+
+	@Value("${stocks.search.max-limit:100}")
+	private int maxSearchLimit;
+
+	@Value("${stocks.update.max-retries:5}")
+	private int maxUpdateRetries;
+
+	/**
+	 * Distinguishes collection versions of different application runs, as the counter starts from 0 on every start.
+	 */
+	private final String instanceId = Long.toString(System.currentTimeMillis(), Character.MAX_RADIX);
+
+	/**
+	 * Version of the collection of all stocks, incremented on every committed change of any stock.
+	 */
+	private final AtomicLong collectionVersion = new AtomicLong();
+
+	private volatile long collectionLastModified = System.currentTimeMillis();
+
 	/**
 	 * Returns list of all {@link Stock}s.
+	 * Is served from {@link StockCache} when possible, so returned stocks are read-only snapshots.
 	 *
 	 * @return list of all {@link Stock}s.
 	 */
-	@Transactional
 	@NonNull
 	public Collection<Stock> getAllStocks() {
-		return stockRepository.findAll();
+		long started = System.nanoTime();
+		try {
+			List<Stock> stocks = stockCache.getAll();
+			if (stocks == null) {
+				long stamp = stockCache.stamp();
+				stocks = stockCache.putAll(stamp, stockRepository.findAll());
+			}
+			return withHotPrices(stocks);
+		} finally {
+			stockMetrics.record(Operation.GET_ALL_STOCKS, started);
+		}
+	}
+
+	/**
+	 * Returns version of the collection of all {@link Stock}s, which changes whenever any stock is added, updated or deleted.
+	 *
+	 * @return opaque version usable as an entity tag.
+	 */
+	@NonNull
+	public String getCollectionVersion() {
+		return instanceId + "-" + collectionVersion.get();
+	}
+
+	/**
+	 * @return time of the last change of any {@link Stock} in epoch millis.
+	 */
+	public long getCollectionLastModified() {
+		return collectionLastModified;
+	}
+
+	/**
+	 * Passes every {@link Stock} to a consumer in order of ids.
+	 * Stocks are read from a database cursor and detached right after they are consumed,
+	 * so the whole table is never kept in memory.
+	 *
+	 * @param consumer - consumer of stocks.
+	 */
+	@Transactional(readOnly = true)
+	public void forEachStock(@NonNull Consumer<Stock> consumer) {
+		try (Stream<Stock> stocks = stockRepository.streamAll()) {
+			stocks.forEach(stock -> {
+				consumer.accept(withHotPrice(stock));
+				entityManager.detach(stock);
+			});
+		}
+	}
+
+	/**
+	 * Returns page of {@link Stock}s following a given id, ordered by id.
+	 * Unlike {@link #findPaginated(int, int)} seeks on the id and doesn't count all stocks.
+	 *
+	 * @param after - id to start after, exclusive, or null to start from the first stock.
+	 * @param limit - max number of stocks to return.
+	 * @return page of {@link Stock}s.
+	 * @throws IncorrectRequestException when limit is not positive or too big.
+	 */
+	@NonNull
+	public List<Stock> findAfter(@Nullable Long after, int limit) {
+		if (limit <= 0 || limit > maxPageSize) {
+			throw new IncorrectRequestException("Page limit should be within 1.." + maxPageSize);
+		}
+		long afterId = after == null ? Long.MIN_VALUE : after;
+		return withHotPrices(stockRepository.findByIdGreaterThanOrderByIdAsc(afterId, PageRequest.of(0, limit)));
+	}
+
+	/**
+	 * Searches {@link Stock}s by name with {@link StockSearchIndex}, case and whitespace are ignored.
+	 * Stocks which names start with the query come first in name order, then stocks which names contain it.
+	 *
+	 * @param query - part of stock name, at least 3 characters long to match inside of names.
+	 * @param limit - max number of stocks to return.
+	 * @return matching {@link Stock}s ordered by {@link StockSearchIndex#relevance(String)}.
+	 * @throws IncorrectRequestException when query is empty or limit is not positive or too big.
+	 */
+	@NonNull
+	public List<Stock> searchStocks(@Nullable String query, int limit) {
+		long started = System.nanoTime();
+		try {
+			if (limit <= 0 || limit > maxSearchLimit) {
+				throw new IncorrectRequestException("Search limit should be within 1.." + maxSearchLimit);
+			}
+			String normalizedQuery = query == null ? "" : Stock.normalizeName(query);
+			if (normalizedQuery.isEmpty()) {
+				throw new IncorrectRequestException("Search query can't be empty");
+			}
+			long[] ids = stockSearchIndex.search(normalizedQuery, limit);
+			List<Stock> stocks = new ArrayList<>(ids.length);
+			for (long id : ids) {
+				try {
+					stocks.add(withHotPrice(cachedStock(id)));
+				} catch (StockNotFoundException e) {
+					// deleted after the search
+				}
+			}
+			return stocks;
+		} finally {
+			stockMetrics.record(Operation.SEARCH_STOCKS, started);
+		}
 	}
 
 	/**
 	 * Returns {@link Stock} by its id.
+	 * Is served from {@link StockCache} when possible, so returned stock is a read-only snapshot.
 	 *
 	 * @param id - id of stock to lookup.
 	 * @return {@link Stock} by its id.
 	 * @throws StockNotFoundException when there is no stock with such id.
 	 */
-	@Transactional
 	@NonNull
 	public Stock lookupStock(long id) {
-		return stockRepository.findById(id)
-				.orElseThrow(() -> new StockNotFoundException("Stock with id " + id + " not found"));
+		long started = System.nanoTime();
+		try {
+			return withHotPrice(cachedStock(id));
+		} finally {
+			stockMetrics.record(Operation.LOOKUP_STOCK, started);
+		}
 	}
 
 	/**
 	 * Updates a price of a given stock.
+	 * In "hot price" mode the price is kept in {@link HotPriceStore}
+	 * and written to the database later by {@link HotPriceFlusher}.
 	 *
 	 * @param id    - id of stock to update.
 	 * @param price - price to update stock with.
 	 * @return update result response.
+	 * @throws StockNotFoundException     when there is no stock with such id.
+	 * @throws IncorrectRequestException  when price is 0 or below.
+	 * @throws ConcurrentUpdateException  when the update conflicted with concurrent updates after all retries.
+	 */
+	@NonNull
+	public Stock updateStockPrice(long id, @Nullable Double price) {
+		return updateStockPrice(id, price, null);
+	}
+
+	/**
+	 * Updates a price of a given stock when the stock is still of expected version ("compare and set").
+	 * Without expected version the update is applied to the current version of the stock:
+	 * on a conflict with a concurrent update the stock is reloaded and the update is retried
+	 * up to {@code stocks.update.max-retries} times, so no update is lost and rows are never locked.
+	 *
+	 * @param id              - id of stock to update.
+	 * @param price           - price to update stock with.
+	 * @param expectedVersion - version of the stock the update is based on, any version when null.
+	 * @return updated stock.
+	 * @throws StockNotFoundException        when there is no stock with such id.
+	 * @throws IncorrectRequestException     when price is 0 or below or a version is expected in "hot price" mode.
+	 * @throws StockVersionMismatchException when the stock is not of expected version.
+	 * @throws ConcurrentUpdateException     when the update conflicted with concurrent updates after all retries.
+	 */
+	@NonNull
+	public Stock updateStockPrice(long id, @Nullable Double price, @Nullable Long expectedVersion) {
+		long started = System.nanoTime();
+		try {
+			double newPrice = validatePrice(price);
+			if (hotPriceStore != null) {
+				if (expectedVersion != null) {
+					throw new IncorrectRequestException("Expected version of stock can't be checked in \"hot price\" mode");
+				}
+				Stock stock = cachedStock(id);
+				if (updateHotPrice(stock, newPrice, System.currentTimeMillis())) {
+					return hotPriceStore.overlay(stock);
+				}
+			}
+			if (expectedVersion == null) {
+				return retryOnConflict(() -> transactionTemplate.execute(status -> savePrice(loadStock(id), newPrice)));
+			}
+			try {
+				return transactionTemplate.execute(status -> {
+					Stock stock = loadStock(id);
+					if (stock.getVersion() != expectedVersion) {
+						throw versionMismatch(id, expectedVersion);
+					}
+					return savePrice(stock, newPrice);
+				});
+			} catch (OptimisticLockingFailureException e) {
+				stockMetrics.recordConflict();
+				throw versionMismatch(id, expectedVersion);
+			}
+		} finally {
+			stockMetrics.record(Operation.UPDATE_STOCK_PRICE, started);
+		}
+	}
+
+	/**
+	 * Queues a price update of a given stock to be written later in "write-behind" mode, see {@link PriceWriteBehind}.
+	 * Does nothing when the mode is off or "hot price" mode is on, which doesn't block on the database anyway.
+	 *
+	 * @param id    - id of stock to update.
+	 * @param price - price to update stock with.
+	 * @return true when the update is queued, false when it should be applied by {@link #updateStockPrice(long, Double)}.
 	 * @throws StockNotFoundException    when there is no stock with such id.
 	 * @throws IncorrectRequestException when price is 0 or below.
+	 * @throws payconiq.stocks.exception.TooManyRequestsException when the queue is full.
+	 */
+	public boolean enqueueStockPrice(long id, @Nullable Double price) {
+		if (priceWriteBehind == null || hotPriceStore != null) {
+			return false;
+		}
+		double newPrice = validatePrice(price);
+		cachedStock(id);
+		priceWriteBehind.enqueue(id, newPrice);
+		return true;
+	}
+
+	/**
+	 * Writes prices of many stocks in a single transaction.
+	 * Is used by {@link PriceWriteBehind} to write queued prices.
+	 * The transaction is retried when it conflicts with concurrent updates.
+	 *
+	 * @param prices - validated prices by stock id.
+	 * @return ids of stocks which were not found.
+	 * @throws ConcurrentUpdateException when the transaction conflicted with concurrent updates after all retries.
 	 */
-	@Transactional
 	@NonNull
-	public Stock updateStockPrice(long id, @Nullable Double price) {
-		validatePrice(price);
-		Stock stock = lookupStock(id);
-		stock.setCurrentPrice(price);
-		return saveStock(stock);
+	public Set<Long> writePrices(@NonNull Map<Long, Double> prices) {
+		return retryOnConflict(() -> {
+			Set<Long> notFound = new HashSet<>();
+			transactionTemplate.executeWithoutResult(status -> savePrices(prices, notFound));
+			return notFound;
+		});
+	}
+
+	/**
+	 * Updates prices of many stocks at once.
+	 * Stocks are loaded with a single query and written in a single transaction,
+	 * while incorrect updates are reported per item and don't affect the others.
+	 * When the same stock is updated several times the last price wins.
+	 *
+	 * @param updates - price updates to apply.
+	 * @return result of every update in the order of input updates.
+	 * @throws IncorrectRequestException when there are more updates than allowed in a batch.
+	 */
+	@NonNull
+	public List<PriceUpdateResult> updateStockPrices(@NonNull List<StockPriceUpdateRequest> updates) {
+		long started = System.nanoTime();
+		try {
+			return applyStockPrices(updates);
+		} finally {
+			stockMetrics.record(Operation.UPDATE_STOCK_PRICES, started);
+		}
+	}
+
+	private List<PriceUpdateResult> applyStockPrices(List<StockPriceUpdateRequest> updates) {
+		if (updates.size() > maxBatchSize) {
+			throw new IncorrectRequestException("Batch can't contain more than " + maxBatchSize + " updates");
+		}
+		PriceUpdateResult[] results = new PriceUpdateResult[updates.size()];
+		Map<Long, Double> prices = new LinkedHashMap<>();
+		for (int i = 0; i < results.length; i++) {
+			StockPriceUpdateRequest update = updates.get(i);
+			if (update == null || update.getId() == null) {
+				results[i] = PriceUpdateResult.failed(null, "Stock id can't be empty");
+				continue;
+			}
+			try {
+				prices.put(update.getId(), validatePrice(update.getPrice()));
+			} catch (IncorrectRequestException e) {
+				results[i] = PriceUpdateResult.failed(update.getId(), e.getMessage());
+			}
+		}
+
+		Set<Long> notFound = new HashSet<>();
+		if (hotPriceStore != null) {
+			long now = System.currentTimeMillis();
+			prices.entrySet().removeIf(price -> {
+				Stock stock;
+				try {
+					stock = cachedStock(price.getKey());
+				} catch (StockNotFoundException e) {
+					notFound.add(price.getKey());
+					return true;
+				}
+				return updateHotPrice(stock, price.getValue(), now);
+			});
+		}
+		if (!prices.isEmpty()) {
+			notFound.addAll(writePrices(prices));
+		}
+
+		for (int i = 0; i < results.length; i++) {
+			if (results[i] == null) {
+				long id = updates.get(i).getId();
+				results[i] = notFound.contains(id)
+						? PriceUpdateResult.failed(id, "Stock with id " + id + " not found")
+						: PriceUpdateResult.updated(id);
+			}
+		}
+		return Arrays.asList(results);
 	}
 
 	/**
@@ -90,23 +452,237 @@ public class StockService {
 	@Transactional
 	@NonNull
 	public Stock addNewStock(@NonNull NewStockRequest newStockRequest) {
-		Stock newStock = new Stock();
-		newStock.setCurrentPrice(validatePrice(newStockRequest.getPrice()));
-		newStock.setName(validateName(newStockRequest.getName()));
-		return saveStock(newStock);
+		long started = System.nanoTime();
+		try {
+			Stock newStock = new Stock();
+			newStock.setCurrentPrice(validatePrice(newStockRequest.getPrice()));
+			newStock.setName(validateName(newStockRequest.getName()));
+			if (!reserveName(newStock)) {
+				throw new StockAlreadyExistsException("Stock already exists with name: " + newStock.getName());
+			}
+			Stock savedStock = saveStock(newStock);
+			flushNewStocks("Stock already exists with name: " + newStock.getName());
+			afterCommit(() -> {
+				Stock snapshot = savedStock.copy();
+				notifyListeners(listener -> listener.onStockAdded(snapshot));
+			});
+			return savedStock;
+		} finally {
+			stockMetrics.record(Operation.ADD_NEW_STOCK, started);
+		}
+	}
+
+	/**
+	 * Adds many stocks at once.
+	 * Names are checked against {@link StockNameIndex} without querying the database
+	 * and stocks are inserted in a single transaction, while incorrect stocks are reported per item
+	 * and don't affect the others.
+	 *
+	 * @param newStockRequests - {@link NewStockRequest}s of new stocks to add.
+	 * @return result of every stock in the order of requests.
+	 * @throws IncorrectRequestException   when there are more stocks than allowed in a batch.
+	 * @throws StockAlreadyExistsException when a stock with one of names was written bypassing the service.
+	 */
+	@NonNull
+	public List<NewStockResult> addNewStocks(@NonNull List<NewStockRequest> newStockRequests) {
+		if (newStockRequests.size() > maxBatchSize) {
+			throw new IncorrectRequestException("Batch can't contain more than " + maxBatchSize + " stocks");
+		}
+		NewStockResult[] results = new NewStockResult[newStockRequests.size()];
+		Stock[] insertedStocks = new Stock[results.length];
+		transactionTemplate.executeWithoutResult(status -> {
+			Instant lastUpdate = Instant.now();
+			List<Stock> newStocks = new ArrayList<>(results.length);
+			for (int i = 0; i < results.length; i++) {
+				NewStockRequest request = newStockRequests.get(i);
+				Stock newStock = new Stock();
+				try {
+					if (request == null) {
+						throw new IncorrectRequestException("Stock name can't be empty");
+					}
+					newStock.setCurrentPrice(validatePrice(request.getPrice()));
+					newStock.setName(validateName(request.getName()));
+				} catch (IncorrectRequestException e) {
+					results[i] = NewStockResult.failed(request == null ? null : request.getName(), e.getMessage());
+					continue;
+				}
+				if (!reserveName(newStock)) {
+					results[i] = NewStockResult.failed(newStock.getName(), "Stock already exists with name: " + newStock.getName());
+					continue;
+				}
+				newStock.setLastUpdate(lastUpdate);
+				newStocks.add(newStock);
+				insertedStocks[i] = newStock;
+			}
+			if (newStocks.isEmpty()) {
+				return;
+			}
+			stockRepository.saveAll(newStocks);
+			flushNewStocks("Some of stocks already exist");
+			if (stockJournal != null) {
+				newStocks.forEach(stockJournal::saved);
+			}
+			newStocks.forEach(this::logSaved);
+			afterCommit(() -> {
+				for (Stock newStock : newStocks) {
+					stockCache.update(newStock);
+				}
+				collectionChanged();
+				for (Stock newStock : newStocks) {
+					Stock snapshot = newStock.copy();
+					notifyListeners(listener -> listener.onStockAdded(snapshot));
+				}
+			});
+		});
+
+		for (int i = 0; i < results.length; i++) {
+			if (results[i] == null) {
+				results[i] = NewStockResult.created(insertedStocks[i].getId(), insertedStocks[i].getName());
+			}
+		}
+		return Arrays.asList(results);
 	}
 
 	@Transactional
 	@NonNull
 	public void deleteStock(@NonNull Long id) {
-		Stock stock = stockRepository.findById(id)
-				.orElseThrow(() -> new StockNotFoundException("Stock with id " + id + " not found"));
-		stockRepository.delete(stock);
+		long started = System.nanoTime();
+		try {
+			Stock stock = loadStock(id);
+			deleteStock(stock);
+		} finally {
+			stockMetrics.record(Operation.DELETE_STOCK, started);
+		}
+	}
+
+	/**
+	 * Stores new price of a stock in {@link HotPriceStore} and notifies listeners.
+	 *
+	 * @param stock       - snapshot of stock to update.
+	 * @param newPrice    - price to update stock with.
+	 * @param epochMillis - time of the update.
+	 * @return false when the store is full and the price has to be saved to the database.
+	 */
+	private boolean updateHotPrice(@NonNull Stock stock, double newPrice, long epochMillis) {
+		long id = stock.getId();
+		double oldPrice = hotPriceStore.overlay(stock).getCurrentPrice();
+		if (!hotPriceStore.update(id, newPrice, epochMillis)) {
+			return false;
+		}
+		Stock updatedStock = hotPriceStore.overlay(stock);
+		if (stockJournal != null) {
+			stockJournal.saved(updatedStock);
+		}
+		if (stockChangeLog != null) {
+			stockChangeLog.saved(updatedStock);
+		}
+		collectionChanged();
+		notifyListeners(listener -> listener.onPriceUpdated(id, oldPrice, newPrice, epochMillis));
+		return true;
+	}
+
+	/**
+	 * Records stocks which prices {@link HotPriceFlusher} has written to the database within current transaction.
+	 * Their prices were logged when they were updated, but the write moved their versions,
+	 * so they are logged again with current prices and versions and written through {@link StockCache} after commit.
+	 *
+	 * @param ids - ids of written stocks.
+	 */
+	void hotPricesFlushed(@NonNull Collection<Long> ids) {
+		for (Stock stock : stockRepository.findAllById(ids)) {
+			Stock currentStock = hotPriceStore.overlay(stock);
+			if (stockJournal != null) {
+				stockJournal.saved(currentStock);
+			}
+			logSaved(currentStock);
+			afterCommit(() -> stockCache.update(stock));
+		}
+		afterCommit(this::collectionChanged);
+	}
+
+	/**
+	 * Runs a transaction, which updates stocks loaded within it, again when it conflicts with a concurrent update.
+	 * Conflicts are detected on commit by {@link Stock#getVersion()}, so a retry reloads changed stocks.
+	 *
+	 * @param transaction - transaction to run.
+	 * @return result of the transaction.
+	 * @throws ConcurrentUpdateException when the transaction still conflicts after {@code stocks.update.max-retries} retries.
+	 */
+	private <T> T retryOnConflict(@NonNull Supplier<T> transaction) {
+		for (int retry = 0; ; retry++) {
+			try {
+				return transaction.get();
+			} catch (OptimisticLockingFailureException e) {
+				stockMetrics.recordConflict();
+				if (retry >= maxUpdateRetries) {
+					throw new ConcurrentUpdateException("Stock is being updated concurrently, try again later");
+				}
+				LOGGER.debug("Retrying stock update after conflict with concurrent update: {}", e.getMessage());
+			}
+		}
+	}
+
+	@NonNull
+	private static StockVersionMismatchException versionMismatch(long id, long expectedVersion) {
+		return new StockVersionMismatchException("Stock with id " + id + " is not of version " + expectedVersion);
+	}
 
+	/**
+	 * Returns {@link Stock} snapshot from {@link StockCache} loading it on cache miss.
+	 *
+	 * @param id - id of stock to lookup.
+	 * @return {@link Stock} snapshot by its id.
+	 * @throws StockNotFoundException when there is no stock with such id.
+	 */
+	@NonNull
+	private Stock cachedStock(long id) {
+		Stock cached = stockCache.get(id);
+		if (cached != null) {
+			return cached;
+		}
+		long stamp = stockCache.stamp();
+		return stockCache.put(stamp, loadStock(id));
+	}
+
+	/**
+	 * Applies price from {@link HotPriceStore} to a {@link Stock} in "hot price" mode.
+	 *
+	 * @param stock - stock loaded from the database or cache.
+	 * @return stock with its current price.
+	 */
+	@NonNull
+	private Stock withHotPrice(@NonNull Stock stock) {
+		return hotPriceStore == null ? stock : hotPriceStore.overlay(stock);
+	}
+
+	@NonNull
+	private List<Stock> withHotPrices(@NonNull List<Stock> stocks) {
+		if (hotPriceStore == null) {
+			return stocks;
+		}
+		List<Stock> currentStocks = new ArrayList<>(stocks.size());
+		for (Stock stock : stocks) {
+			currentStocks.add(hotPriceStore.overlay(stock));
+		}
+		return currentStocks;
 	}
 
 	/**
-	 * Saves a {@link Stock} and updates its
+	 * Loads managed {@link Stock} by its id bypassing {@link StockCache}.
+	 *
+	 * @param id - id of stock to load.
+	 * @return {@link Stock} by its id.
+	 * @throws StockNotFoundException when there is no stock with such id.
+	 */
+	@NonNull
+	private Stock loadStock(long id) {
+		return stockRepository.findById(id)
+				.orElseThrow(() -> new StockNotFoundException("Stock with id " + id + " not found"));
+	}
+
+	/**
+	 * Saves a {@link Stock}, updates its last update time
+	 * and writes it through {@link StockCache} after commit.
 	 *
 	 * @param stock - {@link Stock} to save.
 	 * @return saved Stock.
@@ -118,54 +694,286 @@ public class StockService {
 		stock.setLastUpdate(lastUpdate);
 
 		Stock savedStock = stockRepository.save(stock);
+		if (stockJournal != null) {
+			stockJournal.saved(savedStock);
+		}
+		logSaved(savedStock);
+		afterCommit(() -> {
+			stockCache.update(savedStock);
+			collectionChanged();
+		});
 
 		return savedStock;
 	}
 
+	/**
+	 * Loads stocks with a single query and saves their new prices within current transaction.
+	 *
+	 * @param prices   - validated prices by stock id.
+	 * @param notFound - receives ids of stocks which were not found.
+	 */
+	private void savePrices(@NonNull Map<Long, Double> prices, @NonNull Set<Long> notFound) {
+		Map<Long, Stock> stocks = new HashMap<>();
+		for (Stock stock : stockRepository.findAllById(prices.keySet())) {
+			stocks.put(stock.getId(), stock);
+		}
+		prices.forEach((id, price) -> {
+			Stock stock = stocks.get(id);
+			if (stock == null) {
+				notFound.add(id);
+				return;
+			}
+			savePrice(stock, price);
+		});
+	}
+
+	/**
+	 * Sets new price of a managed {@link Stock}, saves it and notifies listeners after commit.
+	 *
+	 * @param stock    - managed {@link Stock} to update.
+	 * @param newPrice - price to update stock with.
+	 * @return saved Stock.
+	 */
+	@NonNull
+	private Stock savePrice(@NonNull Stock stock, double newPrice) {
+		double oldPrice = stock.getCurrentPrice();
+		stock.setCurrentPrice(newPrice);
+		Stock savedStock = saveStock(stock);
+		long id = savedStock.getId();
+		long epochMillis = savedStock.getLastUpdate().toEpochMilli();
+		afterCommit(() -> notifyListeners(listener -> listener.onPriceUpdated(id, oldPrice, newPrice, epochMillis)));
+		return savedStock;
+	}
+
 	@Transactional
 	@NonNull
 	private void deleteStock(@NonNull Stock stock) {
+		long id = stock.getId();
+		String normalizedName = stock.getNormalizedName();
 		stockRepository.delete(stock);
+		if (stockJournal != null) {
+			stockJournal.deleted(id);
+		}
+		if (stockChangeLog != null) {
+			stockChangeLog.deleted(id);
+		}
+		afterCommit(() -> {
+			stockCache.deleted(id);
+			stockNameIndex.remove(normalizedName, id);
+			if (hotPriceStore != null) {
+				hotPriceStore.remove(id);
+			}
+			collectionChanged();
+			notifyListeners(listener -> listener.onStockDeleted(id));
+		});
 	}
 
 	/**
-	 * Validates that price is greater than 0.
+	 * Reserves name of a new stock in {@link StockNameIndex} until current transaction ends:
+	 * on commit the name is registered with id of the stock, on rollback it is released.
+	 *
+	 * @param newStock - stock which is about to be inserted.
+	 * @return false when the name is already taken.
+	 */
+	private boolean reserveName(@NonNull Stock newStock) {
+		String normalizedName = newStock.getNormalizedName();
+		if (!stockNameIndex.reserve(normalizedName)) {
+			return false;
+		}
+		TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronizationAdapter() {
+			@Override
+			public void afterCompletion(int status) {
+				if (status == STATUS_COMMITTED) {
+					stockNameIndex.register(normalizedName, newStock.getId());
+				} else {
+					stockNameIndex.release(normalizedName);
+				}
+			}
+		});
+		return true;
+	}
+
+	/**
+	 * Writes inserted stocks to the database, so that a violation of the unique name index
+	 * is reported here rather than on commit.
+	 *
+	 * @param message - message of exception when a name is already taken.
+	 * @throws StockAlreadyExistsException when a name is already taken.
+	 */
+	private void flushNewStocks(@NonNull String message) {
+		try {
+			stockRepository.flush();
+		} catch (DataIntegrityViolationException e) {
+			throw new StockAlreadyExistsException(message);
+		}
+	}
+
+	/**
+	 * Logs a save of a stock for replicas, within a transaction it is logged in the state it is committed in.
+	 *
+	 * @param stock - saved stock.
+	 */
+	private void logSaved(@NonNull Stock stock) {
+		if (stockChangeLog != null) {
+			stockChangeLog.saved(stock);
+		}
+	}
+
+	/**
+	 * Moves version of the collection of all stocks forward, is called after the change is visible to readers.
+	 */
+	private void collectionChanged() {
+		collectionLastModified = Math.max(System.currentTimeMillis(), collectionLastModified);
+		collectionVersion.incrementAndGet();
+	}
+
+	/**
+	 * Notifies every {@link StockEventListener} about an event.
+	 * Failure of one listener doesn't prevent the others from being notified.
+	 *
+	 * @param event - event to deliver.
+	 */
+	private void notifyListeners(@NonNull Consumer<StockEventListener> event) {
+		for (StockEventListener listener : stockEventListeners) {
+			try {
+				event.accept(listener);
+			} catch (RuntimeException e) {
+				LOGGER.error("Stock event listener {} failed", listener.getClass().getSimpleName(), e);
+			}
+		}
+	}
+
+	/**
+	 * Runs an action after current transaction is committed
+	 * or right away when there is no transaction.
+	 *
+	 * @param action - action to run.
+	 */
+	private static void afterCommit(@NonNull Runnable action) {
+		if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+			action.run();
+			return;
+		}
+		TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronizationAdapter() {
+			@Override
+			public void afterCommit() {
+				action.run();
+			}
+		});
+	}
+
+	/**
+	 * Validates that price is a finite number greater than 0.
 	 *
 	 * @param price - price to validate.
 	 * @return input price.
 	 * @throws IncorrectRequestException when price is 0 or less.
 	 */
 	private static double validatePrice(@Nullable Double price) {
-		if (price == null || price <= 0) {
+		if (price == null || !(price > 0) || price.isInfinite()) {
 			throw new IncorrectRequestException("Stock price should be greater than zero");
 		}
 		return price;
 	}
 
 	/**
-	 * Validates that name is: - not null - not empty - unique among all Stocks.
+	 * Validates that name is: - not null - not empty.
+	 * Uniqueness of names is checked by {@link StockNameIndex}.
 	 *
 	 * @param name - name to validate.
 	 * @return input name without leading and trailing whitespaces.
 	 */
 	@NonNull
-	private String validateName(@Nullable String name) {
+	private static String validateName(@Nullable String name) {
 		if (name == null || name.isEmpty() || name.isBlank()) {
 			throw new IncorrectRequestException("Stock name can't be empty");
 		}
-		String cleanName = name.trim();
-		Optional<Stock> actualStock = stockRepository.findByName(cleanName);
-		if (actualStock.isPresent()) {
-			throw new StockAlreadyExistsException("Stock already exists with name: " + cleanName);
+		return name.trim();
+	}
+
+	/**
+	 * Applies changes replicated from the primary (see {@link ReplicaSync}) in a single transaction.
+	 * A change older than the local stock is skipped, so changes may arrive out of order.
+	 * Listeners are notified about applied changes as if they were made locally.
+	 *
+	 * @param changes - changes in order of the primary change log.
+	 * @param reset   - true when changes are a snapshot of all stocks, local stocks missing from it are deleted.
+	 */
+	public void applyChanges(@NonNull List<StockChange> changes, boolean reset) {
+		if (changes.isEmpty() && !reset) {
+			return;
+		}
+		transactionTemplate.executeWithoutResult(status -> {
+			Map<Long, Stock> current = new HashMap<>();
+			Iterable<Stock> localStocks = reset
+					? stockRepository.findAll()
+					: stockRepository.findAllById(changes.stream().map(StockChange::getId).collect(Collectors.toSet()));
+			for (Stock stock : localStocks) {
+				current.put(stock.getId(), stock.copy());
+			}
+			entityManager.clear();
+
+			List<Runnable> events = new ArrayList<>();
+			if (reset) {
+				Set<Long> snapshotIds = changes.stream().map(StockChange::getId).collect(Collectors.toSet());
+				for (Long id : new ArrayList<>(current.keySet())) {
+					if (!snapshotIds.contains(id)) {
+						applyDeleted(id, current, events);
+					}
+				}
+			}
+			for (StockChange change : changes) {
+				if (change.isDeleted()) {
+					applyDeleted(change.getId(), current, events);
+					continue;
+				}
+				Stock stock = current.get(change.getId());
+				if (stock != null && !change.isNewerThan(stock)) {
+					continue;
+				}
+				Stock applied = change.toStock();
+				stockRepository.mergeStock(change.getId(), applied.getName(), applied.getNormalizedName(),
+						applied.getCurrentPrice(), applied.getLastUpdate(), change.getVersion());
+				current.put(change.getId(), applied);
+				long id = change.getId();
+				double newPrice = applied.getCurrentPrice();
+				long epochMillis = applied.getLastUpdate().toEpochMilli();
+				if (stock == null) {
+					events.add(() -> notifyListeners(listener -> listener.onStockAdded(applied.copy())));
+				} else if (stock.getCurrentPrice() != newPrice) {
+					double oldPrice = stock.getCurrentPrice();
+					events.add(() -> notifyListeners(listener -> listener.onPriceUpdated(id, oldPrice, newPrice, epochMillis)));
+				}
+			}
+			afterCommit(() -> {
+				if (reset) {
+					stockCache.clear();
+				} else {
+					for (StockChange change : changes) {
+						stockCache.invalidate(change.getId());
+					}
+				}
+				collectionChanged();
+				events.forEach(Runnable::run);
+			});
+		});
+	}
+
+	private void applyDeleted(long id, Map<Long, Stock> current, List<Runnable> events) {
+		if (current.remove(id) != null) {
+			stockRepository.deleteStockById(id);
+			events.add(() -> notifyListeners(listener -> listener.onStockDeleted(id)));
 		}
-		return cleanName;
 	}
 
 	public List<Stock> findPaginated(int pageNo, int pageSize) {
-		Pageable paging = PageRequest.of(pageNo, pageSize);
-		Page<Stock> pageResult = stockRepository.findAll(paging);
-		return pageResult.toList();
-		
-		
+		long started = System.nanoTime();
+		try {
+			Pageable paging = PageRequest.of(pageNo, pageSize);
+			Page<Stock> pageResult = stockRepository.findAll(paging);
+			return withHotPrices(pageResult.toList());
+		} finally {
+			stockMetrics.record(Operation.FIND_PAGINATED, started);
+		}
 	}
 }
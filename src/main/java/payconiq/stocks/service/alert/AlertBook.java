@@ -0,0 +1,87 @@
+package payconiq.stocks.service.alert;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.NavigableMap;
+import java.util.TreeMap;
+
+import org.springframework.lang.NonNull;
+
+import payconiq.stocks.response.PriceAlert;
+
+/**
+ * Pending price alerts of a single stock, sorted by alert price separately for each {@link PriceAlert.Direction},
+ * so that alerts crossed by a price change are found in O(log n + k) for k crossed alerts of n.
+ * Is not thread safe.
+ */
+class AlertBook {
+
+    private final TreeMap<Double, List<PriceAlert>> up = new TreeMap<>();
+
+    private final TreeMap<Double, List<PriceAlert>> down = new TreeMap<>();
+
+    private int size;
+
+    void add(@NonNull PriceAlert alert) {
+        prices(alert.getDirection()).computeIfAbsent(alert.getPrice(), price -> new ArrayList<>(1)).add(alert);
+        size++;
+    }
+
+    boolean remove(@NonNull PriceAlert alert) {
+        TreeMap<Double, List<PriceAlert>> prices = prices(alert.getDirection());
+        List<PriceAlert> alerts = prices.get(alert.getPrice());
+        if (alerts == null || !alerts.remove(alert)) {
+            return false;
+        }
+        if (alerts.isEmpty()) {
+            prices.remove(alert.getPrice());
+        }
+        size--;
+        return true;
+    }
+
+    /**
+     * Removes alerts crossed by a price change: {@link PriceAlert.Direction#UP} alerts with
+     * {@code oldPrice < price <= newPrice} and {@link PriceAlert.Direction#DOWN} alerts with
+     * {@code newPrice <= price < oldPrice}.
+     *
+     * @param oldPrice - price before the change.
+     * @param newPrice - price after the change.
+     * @param crossed  - collection to add removed alerts to.
+     */
+    void removeCrossed(double oldPrice, double newPrice, @NonNull Collection<PriceAlert> crossed) {
+        NavigableMap<Double, List<PriceAlert>> range;
+        if (newPrice > oldPrice) {
+            range = up.subMap(oldPrice, false, newPrice, true);
+        } else if (newPrice < oldPrice) {
+            range = down.subMap(newPrice, true, oldPrice, false);
+        } else {
+            return;
+        }
+        for (List<PriceAlert> alerts : range.values()) {
+            crossed.addAll(alerts);
+            size -= alerts.size();
+        }
+        range.clear();
+    }
+
+    /**
+     * @return all alerts, rising ones first, each direction in order of alert price.
+     */
+    @NonNull
+    List<PriceAlert> all() {
+        List<PriceAlert> alerts = new ArrayList<>(size);
+        up.values().forEach(alerts::addAll);
+        down.values().forEach(alerts::addAll);
+        return alerts;
+    }
+
+    int size() {
+        return size;
+    }
+
+    private TreeMap<Double, List<PriceAlert>> prices(PriceAlert.Direction direction) {
+        return direction == PriceAlert.Direction.UP ? up : down;
+    }
+}
@@ -0,0 +1,330 @@
+package payconiq.stocks.service.alert;
+
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.URI;
+import java.net.URISyntaxException;
+import java.net.UnknownHostException;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.stream.Collectors;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.lang.NonNull;
+import org.springframework.stereotype.Service;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import payconiq.stocks.exception.AlertNotFoundException;
+import payconiq.stocks.exception.IncorrectRequestException;
+import payconiq.stocks.exception.TooManyRequestsException;
+import payconiq.stocks.model.Stock;
+import payconiq.stocks.request.NewPriceAlertRequest;
+import payconiq.stocks.response.AlertStats;
+import payconiq.stocks.response.PriceAlert;
+import payconiq.stocks.response.PriceAlertEvent;
+import payconiq.stocks.service.StockEventListener;
+
+/**
+ * Service firing price alerts of {@link Stock}s when a price update crosses the alert price.
+ * <p>
+ * Pending alerts of every stock are kept in an {@link AlertBook}, so an update checks only alerts
+ * between the old and the new price instead of all alerts of the stock. An alert fires once and is removed.
+ * Fired alerts are posted to their callback urls by {@code stocks.alerts.dispatch-threads} threads
+ * from a queue of {@code stocks.alerts.queue-capacity} events. Price updates never wait for delivery:
+ * when the queue is full the event is dropped and counted, a failed delivery is not retried.
+ * <p>
+ * Alerts are kept in memory only, an alert of a deleted stock is deleted with it.
+ * <p>
+ * Callbacks are not sent to loopback, link-local, private or multicast addresses, unless the host of the callback
+ * is one of {@code stocks.alerts.allowed-hosts}. Addresses are checked when an alert is added and again on delivery.
+ */
+@Service
+public class PriceAlertService implements StockEventListener {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(PriceAlertService.class);
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @Value("${stocks.alerts.max-per-stock:1000}")
+    private int maxAlertsPerStock;
+
+    @Value("${stocks.alerts.dispatch-threads:2}")
+    private int dispatchThreads;
+
+    @Value("${stocks.alerts.queue-capacity:10000}")
+    private int queueCapacity;
+
+    @Value("${stocks.alerts.callback-timeout:5s}")
+    private Duration callbackTimeout;
+
+    @Value("${stocks.alerts.allowed-hosts:}")
+    private Set<String> allowedHosts;
+
+    private final ConcurrentHashMap<Long, AlertBook> books = new ConcurrentHashMap<>();
+
+    private final ConcurrentHashMap<Long, PriceAlert> alerts = new ConcurrentHashMap<>();
+
+    private final AtomicLong alertIds = new AtomicLong();
+
+    private final LongAdder fired = new LongAdder();
+
+    private final LongAdder delivered = new LongAdder();
+
+    private final LongAdder failed = new LongAdder();
+
+    private final LongAdder dropped = new LongAdder();
+
+    private HttpClient httpClient;
+
+    private ThreadPoolExecutor dispatcher;
+
+    @PostConstruct
+    void start() {
+        allowedHosts = allowedHosts.stream()
+                .map(host -> host.trim().toLowerCase(Locale.ROOT))
+                .filter(host -> !host.isEmpty())
+                .collect(Collectors.toSet());
+        httpClient = HttpClient.newBuilder().connectTimeout(callbackTimeout).build();
+        AtomicInteger threadNumber = new AtomicInteger();
+        dispatcher = new ThreadPoolExecutor(dispatchThreads, dispatchThreads, 0, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(queueCapacity), runnable -> {
+            Thread thread = new Thread(runnable, "price-alerts-" + threadNumber.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        }, (task, executor) -> dropped.increment());
+    }
+
+    @PreDestroy
+    void stop() {
+        dispatcher.shutdownNow();
+    }
+
+    /**
+     * Adds a price alert of a stock.
+     * When direction is not given, the alert fires on rising to a price above the current price
+     * and on falling to a price at or below it.
+     *
+     * @param stock   - current stock.
+     * @param request - price, optional direction and callback url of the alert.
+     * @return added alert.
+     * @throws IncorrectRequestException when price is 0 or below, callback url is not an absolute http(s) url
+     *                                   or points to a local or private address.
+     * @throws TooManyRequestsException  when the stock has too many alerts.
+     */
+    @NonNull
+    public PriceAlert addAlert(@NonNull Stock stock, @NonNull NewPriceAlertRequest request) {
+        Double price = request.getPrice();
+        if (price == null || price <= 0) {
+            throw new IncorrectRequestException("Alert price should be greater than zero");
+        }
+        String callbackUrl = validCallbackUrl(request.getCallbackUrl());
+        PriceAlert.Direction direction = request.getDirection();
+        if (direction == null) {
+            direction = price > stock.getCurrentPrice() ? PriceAlert.Direction.UP : PriceAlert.Direction.DOWN;
+        }
+        PriceAlert alert = new PriceAlert(alertIds.incrementAndGet(), stock.getId(), price, direction,
+                callbackUrl, Instant.now());
+        books.compute(stock.getId(), (id, book) -> {
+            AlertBook stockBook = book == null ? new AlertBook() : book;
+            if (stockBook.size() >= maxAlertsPerStock) {
+                throw new TooManyRequestsException("Stock with id " + id + " can't have more than "
+                        + maxAlertsPerStock + " alerts");
+            }
+            stockBook.add(alert);
+            alerts.put(alert.getId(), alert);
+            return stockBook;
+        });
+        return alert;
+    }
+
+    /**
+     * @param stockId - id of stock.
+     * @return pending alerts of a stock, rising ones first, each direction in order of alert price.
+     */
+    @NonNull
+    public List<PriceAlert> getAlerts(long stockId) {
+        List<PriceAlert> stockAlerts = new ArrayList<>();
+        books.computeIfPresent(stockId, (id, book) -> {
+            stockAlerts.addAll(book.all());
+            return book;
+        });
+        return stockAlerts.isEmpty() ? Collections.emptyList() : stockAlerts;
+    }
+
+    /**
+     * @param stockId - id of stock.
+     * @param alertId - id of alert.
+     * @return pending alert of a stock.
+     * @throws AlertNotFoundException when the stock has no such pending alert.
+     */
+    @NonNull
+    public PriceAlert getAlert(long stockId, long alertId) {
+        PriceAlert alert = alerts.get(alertId);
+        if (alert == null || alert.getStockId() != stockId) {
+            throw new AlertNotFoundException("There is no alert with id " + alertId + " of stock with id " + stockId);
+        }
+        return alert;
+    }
+
+    /**
+     * Deletes a pending alert of a stock.
+     *
+     * @param stockId - id of stock.
+     * @param alertId - id of alert.
+     * @throws AlertNotFoundException when the stock has no such pending alert.
+     */
+    public void deleteAlert(long stockId, long alertId) {
+        PriceAlert alert = getAlert(stockId, alertId);
+        boolean[] removed = new boolean[1];
+        books.computeIfPresent(stockId, (id, book) -> {
+            removed[0] = book.remove(alert);
+            return book.size() == 0 ? null : book;
+        });
+        if (!removed[0]) {
+            throw new AlertNotFoundException("There is no alert with id " + alertId + " of stock with id " + stockId);
+        }
+        alerts.remove(alertId);
+    }
+
+    /**
+     * @return number of pending alerts and delivery counters.
+     */
+    @NonNull
+    public AlertStats stats() {
+        return new AlertStats(alerts.size(), dispatcher.getQueue().size(), queueCapacity,
+                fired.sum(), delivered.sum(), failed.sum(), dropped.sum());
+    }
+
+    @Override
+    public void onPriceUpdated(long id, double oldPrice, double newPrice, long epochMillis) {
+        if (!books.containsKey(id)) {
+            return;
+        }
+        List<PriceAlert> crossed = new ArrayList<>();
+        books.computeIfPresent(id, (key, book) -> {
+            book.removeCrossed(oldPrice, newPrice, crossed);
+            return book.size() == 0 ? null : book;
+        });
+        Instant lastUpdate = Instant.ofEpochMilli(epochMillis);
+        for (PriceAlert alert : crossed) {
+            alerts.remove(alert.getId());
+            fired.increment();
+            PriceAlertEvent event = new PriceAlertEvent(alert.getId(), id, alert.getPrice(), alert.getDirection(),
+                    oldPrice, newPrice, lastUpdate);
+            dispatcher.execute(() -> deliver(alert, event));
+        }
+    }
+
+    @Override
+    public void onStockDeleted(long id) {
+        AlertBook book = books.remove(id);
+        if (book != null) {
+            for (PriceAlert alert : book.all()) {
+                alerts.remove(alert.getId());
+            }
+        }
+    }
+
+    private void deliver(PriceAlert alert, PriceAlertEvent event) {
+        try {
+            URI uri = URI.create(alert.getCallbackUrl());
+            if (!isAllowedHost(uri.getHost())) {
+                LOGGER.warn("Callback of alert {} resolves to a local or private address", alert.getId());
+                failed.increment();
+                return;
+            }
+            HttpRequest request = HttpRequest.newBuilder(URI.create(alert.getCallbackUrl()))
+                    .timeout(callbackTimeout)
+                    .header(HttpHeaders.CONTENT_TYPE, MediaType.APPLICATION_JSON_VALUE)
+                    .POST(HttpRequest.BodyPublishers.ofByteArray(objectMapper.writeValueAsBytes(event)))
+                    .build();
+            int status = httpClient.send(request, HttpResponse.BodyHandlers.discarding()).statusCode();
+            if (status / 100 == 2) {
+                delivered.increment();
+                return;
+            }
+            LOGGER.warn("Callback of alert {} responded with {}", alert.getId(), status);
+        } catch (JsonProcessingException e) {
+            LOGGER.error("Failed to serialize alert {}", alert.getId(), e);
+        } catch (IOException e) {
+            LOGGER.warn("Failed to deliver alert {} to {}: {}", alert.getId(), alert.getCallbackUrl(), e.toString());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        failed.increment();
+    }
+
+    private String validCallbackUrl(String callbackUrl) {
+        URI uri = null;
+        try {
+            uri = callbackUrl == null ? null : new URI(callbackUrl);
+        } catch (URISyntaxException e) {
+            // reported below
+        }
+        if (uri == null || uri.getHost() == null
+                || !"http".equalsIgnoreCase(uri.getScheme()) && !"https".equalsIgnoreCase(uri.getScheme())) {
+            throw new IncorrectRequestException("Alert callback url should be an absolute http or https url");
+        }
+        if (!isAllowedHost(uri.getHost())) {
+            throw new IncorrectRequestException("Alert callback url should point to a public address");
+        }
+        return callbackUrl;
+    }
+
+    /**
+     * @param host - host of a callback url.
+     * @return true when the host is allowed explicitly or all its addresses are public.
+     */
+    private boolean isAllowedHost(String host) {
+        if (allowedHosts.contains(host.toLowerCase(Locale.ROOT))) {
+            return true;
+        }
+        try {
+            for (InetAddress address : InetAddress.getAllByName(host)) {
+                if (!isPublic(address)) {
+                    return false;
+                }
+            }
+            return true;
+        } catch (UnknownHostException e) {
+            return false;
+        }
+    }
+
+    private static boolean isPublic(InetAddress address) {
+        if (address.isAnyLocalAddress() || address.isLoopbackAddress() || address.isLinkLocalAddress()
+                || address.isSiteLocalAddress() || address.isMulticastAddress()) {
+            return false;
+        }
+        byte[] bytes = address.getAddress();
+        // IPv6 unique local addresses fc00::/7 and IPv4 shared address space 100.64.0.0/10
+        return !(bytes.length == 16 && (bytes[0] & 0xFE) == 0xFC)
+                && !(bytes.length == 4 && (bytes[0] & 0xFF) == 100 && (bytes[1] & 0xC0) == 64);
+    }
+}
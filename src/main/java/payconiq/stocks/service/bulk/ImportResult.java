@@ -0,0 +1,24 @@
+package payconiq.stocks.service.bulk;
+
+/**
+ * Numbers of imported and failed rows of a bulk import.
+ */
+public final class ImportResult {
+
+    private final int imported;
+
+    private final int failed;
+
+    ImportResult(int imported, int failed) {
+        this.imported = imported;
+        this.failed = failed;
+    }
+
+    public int getImported() {
+        return imported;
+    }
+
+    public int getFailed() {
+        return failed;
+    }
+}
@@ -0,0 +1,57 @@
+package payconiq.stocks.service.bulk;
+
+import org.springframework.lang.Nullable;
+
+/**
+ * Single row of a bulk import: either a new stock or an error of reading it.
+ */
+public final class ImportRow {
+
+    private final int number;
+
+    private final String name;
+
+    private final Double price;
+
+    private final String error;
+
+    private ImportRow(int number, String name, Double price, String error) {
+        this.number = number;
+        this.name = name;
+        this.price = price;
+        this.error = error;
+    }
+
+    static ImportRow of(int number, @Nullable String name, @Nullable Double price) {
+        return new ImportRow(number, name, price, null);
+    }
+
+    static ImportRow invalid(int number, @Nullable String name, String error) {
+        return new ImportRow(number, name, null, error);
+    }
+
+    /**
+     * @return number of the row in the input, starting from 1.
+     */
+    public int getNumber() {
+        return number;
+    }
+
+    @Nullable
+    public String getName() {
+        return name;
+    }
+
+    @Nullable
+    public Double getPrice() {
+        return price;
+    }
+
+    /**
+     * @return error of reading the row, null when the row was read.
+     */
+    @Nullable
+    public String getError() {
+        return error;
+    }
+}
@@ -0,0 +1,168 @@
+package payconiq.stocks.service.bulk;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInput;
+import java.io.DataInputStream;
+import java.io.DataOutput;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.StreamCorruptedException;
+import java.io.UTFDataFormatException;
+import java.time.Instant;
+
+import org.springframework.lang.NonNull;
+import org.springframework.lang.Nullable;
+
+import payconiq.stocks.exception.IncorrectRequestException;
+import payconiq.stocks.model.Stock;
+
+/**
+ * Compact binary format of stocks.
+ * <p>
+ * Layout: magic int, then records, each starting with byte {@code 1}:
+ * id long ({@code 0} when absent), name in modified UTF-8 ({@link DataOutput#writeUTF(String)}), price double,
+ * last update epoch millis long ({@link Long#MIN_VALUE} when absent). The stream ends with byte {@code 0},
+ * so a truncated stream is told apart from a complete one.
+ * Import ignores ids and last update times.
+ */
+public final class StockBinaryFormat {
+
+    public static final String MEDIA_TYPE = "application/x-stock-binary";
+
+    private static final int MAGIC = 0x53544B31;
+
+    private static final byte RECORD = 1;
+
+    private static final byte END = 0;
+
+    private static final long NO_TIME = Long.MIN_VALUE;
+
+    private StockBinaryFormat() {
+    }
+
+    public static void writeHeader(@NonNull DataOutput out) throws IOException {
+        out.writeInt(MAGIC);
+    }
+
+    public static void writeStock(@NonNull DataOutput out, @NonNull Stock stock) throws IOException {
+        out.writeByte(RECORD);
+        out.writeLong(stock.getId() == null ? 0 : stock.getId());
+        out.writeUTF(stock.getName());
+        out.writeDouble(stock.getCurrentPrice());
+        out.writeLong(stock.getLastUpdate() == null ? NO_TIME : stock.getLastUpdate().toEpochMilli());
+    }
+
+    public static void writeEnd(@NonNull DataOutput out) throws IOException {
+        out.writeByte(END);
+    }
+
+    /**
+     * Reads and checks the magic int.
+     *
+     * @param in - binary input.
+     * @throws IOException when input can't be read or is not in this format.
+     */
+    public static void readHeader(@NonNull DataInput in) throws IOException {
+        if (in.readInt() != MAGIC) {
+            throw new StreamCorruptedException("Not a binary stock stream");
+        }
+    }
+
+    /**
+     * Reads next stock.
+     *
+     * @param in - binary input.
+     * @return next stock or null at the end of the stream.
+     * @throws IOException when input can't be read or is truncated.
+     */
+    @Nullable
+    public static Stock readStock(@NonNull DataInput in) throws IOException {
+        byte marker = in.readByte();
+        if (marker == END) {
+            return null;
+        }
+        if (marker != RECORD) {
+            throw new StreamCorruptedException("Unexpected record marker " + marker);
+        }
+        Stock stock = new Stock();
+        long id = in.readLong();
+        stock.setId(id == 0 ? null : id);
+        stock.setName(in.readUTF());
+        stock.setCurrentPrice(in.readDouble());
+        long lastUpdate = in.readLong();
+        stock.setLastUpdate(lastUpdate == NO_TIME ? null : Instant.ofEpochMilli(lastUpdate));
+        return stock;
+    }
+
+    /**
+     * Creates reader of new stocks reading the header right away.
+     *
+     * @param in - binary input.
+     * @return reader of new stocks.
+     * @throws IOException               when input can't be read.
+     * @throws IncorrectRequestException when input is not in this format.
+     */
+    @NonNull
+    public static StockRowReader reader(@NonNull InputStream in) throws IOException {
+        DataInputStream data = new DataInputStream(new BufferedInputStream(in));
+        try {
+            readHeader(data);
+        } catch (IOException e) {
+            throw new IncorrectRequestException("Input is not a binary stock stream");
+        }
+        return new StockRowReader() {
+
+            private int rowNumber;
+
+            private boolean ended;
+
+            @Override
+            public ImportRow next() throws IOException {
+                if (ended) {
+                    return null;
+                }
+                rowNumber++;
+                try {
+                    Stock stock = readStock(data);
+                    if (stock != null) {
+                        return ImportRow.of(rowNumber, stock.getName(), stock.getCurrentPrice());
+                    }
+                    ended = true;
+                    return null;
+                } catch (EOFException | UTFDataFormatException | StreamCorruptedException e) {
+                    ended = true;
+                    return ImportRow.invalid(rowNumber, null, "Binary stock stream is truncated or corrupted");
+                }
+            }
+        };
+    }
+
+    /**
+     * Creates writer of stocks writing the header right away.
+     *
+     * @param out - binary output.
+     * @return writer of stocks.
+     * @throws IOException when output can't be written.
+     */
+    @NonNull
+    public static StockWriter writer(@NonNull OutputStream out) throws IOException {
+        DataOutputStream data = new DataOutputStream(new BufferedOutputStream(out));
+        writeHeader(data);
+        return new StockWriter() {
+            @Override
+            public void write(@NonNull Stock stock) throws IOException {
+                writeStock(data, stock);
+            }
+
+            @Override
+            public void finish() throws IOException {
+                writeEnd(data);
+                data.flush();
+            }
+        };
+    }
+}
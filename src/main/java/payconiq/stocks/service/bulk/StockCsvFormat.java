@@ -0,0 +1,200 @@
+package payconiq.stocks.service.bulk;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.Reader;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.springframework.lang.NonNull;
+
+import payconiq.stocks.exception.IncorrectRequestException;
+import payconiq.stocks.model.Stock;
+
+/**
+ * CSV (RFC 4180) format of stocks.
+ * <p>
+ * Export writes {@code id,name,currentPrice,lastUpdate} columns with ISO-8601 times.
+ * Import requires a header with {@code name} and {@code price} (or {@code currentPrice}) columns,
+ * other columns are ignored, so an export can be imported back.
+ */
+public final class StockCsvFormat {
+
+    public static final String MEDIA_TYPE = "text/csv";
+
+    private static final String EXPORT_HEADER = "id,name,currentPrice,lastUpdate";
+
+    private StockCsvFormat() {
+    }
+
+    /**
+     * Creates reader of new stocks reading the header right away.
+     *
+     * @param in - CSV input.
+     * @return reader of new stocks.
+     * @throws IOException               when input can't be read.
+     * @throws IncorrectRequestException when there is no name or price column in the header.
+     */
+    @NonNull
+    public static StockRowReader reader(@NonNull Reader in) throws IOException {
+        CsvParser parser = new CsvParser(in);
+        List<String> header = parser.readRecord();
+        int nameColumn = -1;
+        int priceColumn = -1;
+        for (int i = 0; header != null && i < header.size(); i++) {
+            String column = header.get(i).trim();
+            if (column.equalsIgnoreCase("name")) {
+                nameColumn = i;
+            } else if (column.equalsIgnoreCase("price") || column.equalsIgnoreCase("currentPrice")) {
+                priceColumn = i;
+            }
+        }
+        if (nameColumn < 0 || priceColumn < 0) {
+            throw new IncorrectRequestException("CSV header should contain name and price columns");
+        }
+        return new CsvRowReader(parser, nameColumn, priceColumn);
+    }
+
+    /**
+     * Creates writer of stocks writing the header right away.
+     *
+     * @param out - CSV output.
+     * @return writer of stocks.
+     * @throws IOException when output can't be written.
+     */
+    @NonNull
+    public static StockWriter writer(@NonNull Writer out) throws IOException {
+        BufferedWriter writer = new BufferedWriter(out);
+        writer.write(EXPORT_HEADER);
+        writer.write("\r\n");
+        return new StockWriter() {
+            @Override
+            public void write(@NonNull Stock stock) throws IOException {
+                writer.write(Long.toString(stock.getId()));
+                writer.write(',');
+                writeField(writer, stock.getName());
+                writer.write(',');
+                writer.write(Double.toString(stock.getCurrentPrice()));
+                writer.write(',');
+                if (stock.getLastUpdate() != null) {
+                    writer.write(stock.getLastUpdate().toString());
+                }
+                writer.write("\r\n");
+            }
+
+            @Override
+            public void finish() throws IOException {
+                writer.flush();
+            }
+        };
+    }
+
+    private static void writeField(Writer writer, String value) throws IOException {
+        if (value.indexOf(',') < 0 && value.indexOf('"') < 0 && value.indexOf('\n') < 0 && value.indexOf('\r') < 0) {
+            writer.write(value);
+            return;
+        }
+        writer.write('"');
+        writer.write(value.replace("\"", "\"\""));
+        writer.write('"');
+    }
+
+    /**
+     * Reads new stocks from the name and price columns.
+     */
+    private static final class CsvRowReader implements StockRowReader {
+
+        private final CsvParser parser;
+
+        private final int nameColumn;
+
+        private final int priceColumn;
+
+        private int rowNumber;
+
+        private CsvRowReader(CsvParser parser, int nameColumn, int priceColumn) {
+            this.parser = parser;
+            this.nameColumn = nameColumn;
+            this.priceColumn = priceColumn;
+        }
+
+        @Override
+        public ImportRow next() throws IOException {
+            List<String> record;
+            do {
+                record = parser.readRecord();
+                if (record == null) {
+                    return null;
+                }
+            } while (record.size() == 1 && record.get(0).isBlank());
+            rowNumber++;
+
+            String name = nameColumn < record.size() ? record.get(nameColumn) : null;
+            if (priceColumn >= record.size()) {
+                return ImportRow.invalid(rowNumber, name, "Row should contain name and price columns");
+            }
+            String priceText = record.get(priceColumn).trim();
+            if (priceText.isEmpty()) {
+                return ImportRow.of(rowNumber, name, null);
+            }
+            try {
+                return ImportRow.of(rowNumber, name, Double.parseDouble(priceText));
+            } catch (NumberFormatException e) {
+                return ImportRow.invalid(rowNumber, name, "Stock price is not a number: " + priceText);
+            }
+        }
+    }
+
+    /**
+     * Incremental parser of CSV records, quoted fields may contain commas, quotes and line breaks.
+     */
+    private static final class CsvParser {
+
+        private final Reader in;
+
+        private final StringBuilder field = new StringBuilder();
+
+        private CsvParser(Reader in) {
+            this.in = in instanceof BufferedReader ? in : new BufferedReader(in);
+        }
+
+        /**
+         * @return fields of the next record or null at the end of input.
+         */
+        private List<String> readRecord() throws IOException {
+            int c = in.read();
+            if (c < 0) {
+                return null;
+            }
+            List<String> fields = new ArrayList<>();
+            field.setLength(0);
+            boolean quoted = false;
+            while (c >= 0) {
+                if (quoted) {
+                    if (c == '"') {
+                        c = in.read();
+                        if (c != '"') {
+                            quoted = false;
+                            continue;
+                        }
+                    }
+                    field.append((char) c);
+                } else if (c == ',') {
+                    fields.add(field.toString());
+                    field.setLength(0);
+                } else if (c == '\n') {
+                    break;
+                } else if (c == '"' && field.length() == 0) {
+                    quoted = true;
+                } else if (c != '\r') {
+                    field.append((char) c);
+                }
+                c = in.read();
+            }
+            fields.add(field.toString());
+            return fields;
+        }
+    }
+}
@@ -0,0 +1,151 @@
+package payconiq.stocks.service.bulk;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+import javax.annotation.PostConstruct;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.lang.NonNull;
+import org.springframework.lang.Nullable;
+import org.springframework.stereotype.Service;
+
+import payconiq.stocks.exception.StockAlreadyExistsException;
+import payconiq.stocks.request.NewStockRequest;
+import payconiq.stocks.response.NewStockResult;
+import payconiq.stocks.service.StockService;
+
+/**
+ * Service importing stocks from a {@link StockRowReader} in chunks of {@code stocks.import.chunk-size} rows.
+ * <p>
+ * Rows are read incrementally, so the input is never kept in memory as a whole.
+ * Every chunk is validated and inserted in its own transaction by {@link StockService#addNewStocks(List)},
+ * so chunks imported before a failure stay imported.
+ */
+@Service
+public class StockImportService {
+
+    @Autowired
+    private StockService stockService;
+
+    @Value("${stocks.import.chunk-size:1000}")
+    private int chunkSize;
+
+    @Value("${stocks.batch.max-size:10000}")
+    private int maxBatchSize;
+
+    @PostConstruct
+    void init() {
+        if (chunkSize <= 0 || chunkSize > maxBatchSize) {
+            throw new IllegalArgumentException("Import chunk size should be within 1.." + maxBatchSize);
+        }
+    }
+
+    /**
+     * Imports all rows of a reader.
+     *
+     * @param reader       - reader of new stocks.
+     * @param errorHandler - receives every row which wasn't imported, in order of rows.
+     * @return numbers of imported and failed rows.
+     * @throws IOException when input can't be read or error handler fails.
+     */
+    @NonNull
+    public ImportResult importStocks(@NonNull StockRowReader reader, @NonNull RowErrorHandler errorHandler) throws IOException {
+        Chunk chunk = new Chunk(chunkSize, errorHandler);
+        int unreadable = 0;
+        ImportRow row;
+        while ((row = reader.next()) != null) {
+            if (row.getError() != null) {
+                // errors are reported in order of rows, so rows read before go first
+                chunk.insert();
+                errorHandler.onError(row.getNumber(), row.getName(), row.getError());
+                unreadable++;
+                continue;
+            }
+            chunk.add(row);
+            if (chunk.isFull()) {
+                chunk.insert();
+            }
+        }
+        chunk.insert();
+        return new ImportResult(chunk.imported, chunk.failed + unreadable);
+    }
+
+    /**
+     * Receives rows which weren't imported.
+     */
+    @FunctionalInterface
+    public interface RowErrorHandler {
+
+        /**
+         * @param rowNumber - number of row, starting from 1.
+         * @param name      - name of stock in the row if it was read.
+         * @param error     - why the row wasn't imported.
+         * @throws IOException when the error can't be reported.
+         */
+        void onError(int rowNumber, @Nullable String name, @NonNull String error) throws IOException;
+    }
+
+    /**
+     * Rows waiting to be inserted.
+     */
+    private final class Chunk {
+
+        private final int[] rowNumbers;
+
+        private final List<NewStockRequest> requests;
+
+        private final RowErrorHandler errorHandler;
+
+        private int imported;
+
+        private int failed;
+
+        private Chunk(int size, RowErrorHandler errorHandler) {
+            this.rowNumbers = new int[size];
+            this.requests = new ArrayList<>(size);
+            this.errorHandler = errorHandler;
+        }
+
+        private void add(ImportRow row) {
+            NewStockRequest request = new NewStockRequest();
+            request.setName(row.getName());
+            request.setPrice(row.getPrice());
+            rowNumbers[requests.size()] = row.getNumber();
+            requests.add(request);
+        }
+
+        private boolean isFull() {
+            return requests.size() == rowNumbers.length;
+        }
+
+        /**
+         * Inserts rows of the chunk, reports failed ones and clears the chunk.
+         */
+        private void insert() throws IOException {
+            if (requests.isEmpty()) {
+                return;
+            }
+            try {
+                List<NewStockResult> results = stockService.addNewStocks(requests);
+                for (int i = 0; i < results.size(); i++) {
+                    NewStockResult result = results.get(i);
+                    if (result.getError() == null) {
+                        imported++;
+                    } else {
+                        errorHandler.onError(rowNumbers[i], result.getName(), result.getError());
+                        failed++;
+                    }
+                }
+            } catch (StockAlreadyExistsException e) {
+                for (int i = 0; i < requests.size(); i++) {
+                    errorHandler.onError(rowNumbers[i], requests.get(i).getName(), e.getMessage());
+                    failed++;
+                }
+            }
+            requests.clear();
+        }
+    }
+}
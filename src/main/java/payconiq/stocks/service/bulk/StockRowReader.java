@@ -0,0 +1,21 @@
+package payconiq.stocks.service.bulk;
+
+import java.io.IOException;
+
+import org.springframework.lang.Nullable;
+
+/**
+ * Incremental reader of new stocks from a bulk import input.
+ * A row which can't be read is returned with an error, an unrecoverable error ends the input.
+ */
+public interface StockRowReader {
+
+    /**
+     * Reads next row.
+     *
+     * @return next row or null at the end of input.
+     * @throws IOException when input can't be read.
+     */
+    @Nullable
+    ImportRow next() throws IOException;
+}
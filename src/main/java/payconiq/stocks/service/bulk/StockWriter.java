@@ -0,0 +1,28 @@
+package payconiq.stocks.service.bulk;
+
+import java.io.IOException;
+
+import org.springframework.lang.NonNull;
+
+import payconiq.stocks.model.Stock;
+
+/**
+ * Writer of stocks to a bulk export output.
+ */
+public interface StockWriter {
+
+    /**
+     * Writes a stock.
+     *
+     * @param stock - stock to write.
+     * @throws IOException when output can't be written.
+     */
+    void write(@NonNull Stock stock) throws IOException;
+
+    /**
+     * Finishes the output and flushes it, doesn't close the underlying stream.
+     *
+     * @throws IOException when output can't be written.
+     */
+    void finish() throws IOException;
+}
@@ -0,0 +1,156 @@
+package payconiq.stocks.service.candle;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import payconiq.stocks.response.Candle;
+
+/**
+ * Candles of a single stock for a single interval.
+ * <p>
+ * The current candle is updated in place on every price change, finished candles are sealed
+ * into a ring of primitive columns which keeps only the latest {@code capacity} of them.
+ * Columns grow with the number of sealed candles, so a stock which rarely changes doesn't hold a full ring.
+ * Intervals are aligned to the epoch, so daily candles start at midnight UTC.
+ * Is not thread safe, access is guarded by the owner.
+ */
+final class CandleSeries {
+
+    private static final int INITIAL_CAPACITY = 8;
+
+    private final long intervalMillis;
+
+    private final int capacity;
+
+    private long[] starts = new long[0];
+
+    private double[] opens = new double[0];
+
+    private double[] highs = new double[0];
+
+    private double[] lows = new double[0];
+
+    private double[] closes = new double[0];
+
+    private long[] updates = new long[0];
+
+    private int head;
+
+    private int size;
+
+    private long currentStart;
+
+    private double open;
+
+    private double high;
+
+    private double low;
+
+    private double close;
+
+    private long count;
+
+    CandleSeries(long intervalMillis, int capacity) {
+        this.intervalMillis = intervalMillis;
+        this.capacity = capacity;
+    }
+
+    /**
+     * Applies a price change.
+     * A change older than the current candle goes to the sealed candle of its time without changing its close price,
+     * it is dropped when that candle is no longer kept or had no changes.
+     *
+     * @param epochMillis - time of the change.
+     * @param price       - new price.
+     */
+    void add(long epochMillis, double price) {
+        long start = Math.floorDiv(epochMillis, intervalMillis) * intervalMillis;
+        if (count > 0 && start < currentStart) {
+            addToSealed(start, price);
+            return;
+        }
+        if (count > 0 && start > currentStart) {
+            seal();
+        }
+        if (count == 0) {
+            currentStart = start;
+            open = price;
+            high = price;
+            low = price;
+            close = price;
+            count = 1;
+            return;
+        }
+        high = Math.max(high, price);
+        low = Math.min(low, price);
+        close = price;
+        count++;
+    }
+
+    /**
+     * Returns latest candles including the current one, oldest first.
+     *
+     * @param limit - max number of candles to return.
+     * @return latest candles.
+     */
+    List<Candle> latest(int limit) {
+        int current = count > 0 ? 1 : 0;
+        int total = Math.min(limit, size + current);
+        List<Candle> candles = new ArrayList<>(Math.max(total, 0));
+        int sealed = total - current;
+        for (int i = size - sealed; i < size; i++) {
+            int index = (head + i) % starts.length;
+            candles.add(new Candle(Instant.ofEpochMilli(starts[index]), opens[index], highs[index], lows[index],
+                    closes[index], updates[index]));
+        }
+        if (current > 0 && total > 0) {
+            candles.add(new Candle(Instant.ofEpochMilli(currentStart), open, high, low, close, count));
+        }
+        return candles;
+    }
+
+    private void addToSealed(long start, double price) {
+        for (int i = size - 1; i >= 0; i--) {
+            int index = (head + i) % starts.length;
+            if (starts[index] == start) {
+                highs[index] = Math.max(highs[index], price);
+                lows[index] = Math.min(lows[index], price);
+                updates[index]++;
+                return;
+            }
+            if (starts[index] < start) {
+                return;
+            }
+        }
+    }
+
+    private void seal() {
+        if (size == starts.length && size < capacity) {
+            // the ring hasn't wrapped yet, so head is 0 and columns are copied as is
+            int length = Math.min(capacity, Math.max(INITIAL_CAPACITY, size * 2));
+            starts = Arrays.copyOf(starts, length);
+            opens = Arrays.copyOf(opens, length);
+            highs = Arrays.copyOf(highs, length);
+            lows = Arrays.copyOf(lows, length);
+            closes = Arrays.copyOf(closes, length);
+            updates = Arrays.copyOf(updates, length);
+        }
+        int index;
+        if (size < starts.length) {
+            index = (head + size) % starts.length;
+            size++;
+        } else {
+            index = head;
+            head = (head + 1) % starts.length;
+        }
+        starts[index] = currentStart;
+        opens[index] = open;
+        highs[index] = high;
+        lows[index] = low;
+        closes[index] = close;
+        updates[index] = count;
+        count = 0;
+    }
+}
@@ -0,0 +1,174 @@
+package payconiq.stocks.service.candle;
+
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+
+import javax.annotation.PostConstruct;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.SmartInitializingSingleton;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.convert.DurationStyle;
+import org.springframework.context.annotation.Lazy;
+import org.springframework.lang.NonNull;
+import org.springframework.lang.Nullable;
+import org.springframework.stereotype.Service;
+
+import payconiq.stocks.exception.IncorrectRequestException;
+import payconiq.stocks.model.Stock;
+import payconiq.stocks.repository.StockRepository;
+import payconiq.stocks.response.Candle;
+import payconiq.stocks.service.StockEventListener;
+import payconiq.stocks.service.history.PriceHistoryStore;
+
+/**
+ * Service aggregating price changes of {@link Stock}s into open/high/low/close candles
+ * of every interval from {@code stocks.candles.intervals}.
+ * <p>
+ * Every price change updates the current candle of each interval in constant time.
+ * On startup candles are rebuilt from {@link PriceHistoryStore} when {@code stocks.candles.rebuild-on-startup} is set.
+ */
+@Service
+@Lazy(false)
+public class CandleService implements StockEventListener, SmartInitializingSingleton {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(CandleService.class);
+
+    @Autowired
+    private PriceHistoryStore priceHistoryStore;
+
+    @Autowired
+    private StockRepository stockRepository;
+
+    @Value("${stocks.candles.intervals:1m,5m,1h,1d}")
+    private String[] intervalNames;
+
+    @Value("${stocks.candles.capacity:1440}")
+    private int capacity;
+
+    @Value("${stocks.candles.rebuild-on-startup:true}")
+    private boolean rebuildOnStartup;
+
+    private long[] intervals;
+
+    private final ConcurrentHashMap<Long, StockCandles> candles = new ConcurrentHashMap<>();
+
+    @PostConstruct
+    void init() {
+        if (capacity <= 0) {
+            throw new IllegalArgumentException("Candles capacity should be greater than zero");
+        }
+        intervals = new long[intervalNames.length];
+        for (int i = 0; i < intervalNames.length; i++) {
+            intervalNames[i] = intervalNames[i].trim();
+            intervals[i] = DurationStyle.detectAndParse(intervalNames[i]).toMillis();
+            if (intervals[i] <= 0) {
+                throw new IllegalArgumentException("Candle interval should be positive: " + intervalNames[i]);
+            }
+        }
+    }
+
+    /**
+     * Rebuilds candles of all stocks from the price history.
+     */
+    @Override
+    public void afterSingletonsInstantiated() {
+        if (!rebuildOnStartup) {
+            return;
+        }
+        long longestInterval = 0;
+        for (long interval : intervals) {
+            longestInterval = Math.max(longestInterval, interval);
+        }
+        long from = System.currentTimeMillis() - longestInterval * capacity;
+        List<Long> stockIds = stockRepository.findAllIds();
+        for (Long stockId : stockIds) {
+            StockCandles stockCandles = candlesOf(stockId);
+            priceHistoryStore.replay(stockId, from, stockCandles::add);
+        }
+        LOGGER.info("Rebuilt candles of {} stocks from price history", stockIds.size());
+    }
+
+    @Override
+    public void onStockAdded(@NonNull Stock stock) {
+        candlesOf(stock.getId()).add(stock.getLastUpdate().toEpochMilli(), stock.getCurrentPrice());
+    }
+
+    @Override
+    public void onPriceUpdated(long id, double oldPrice, double newPrice, long epochMillis) {
+        candlesOf(id).add(epochMillis, newPrice);
+    }
+
+    @Override
+    public void onStockDeleted(long id) {
+        candles.remove(id);
+    }
+
+    /**
+     * Returns latest candles of a stock, oldest first. The last candle is the current one.
+     *
+     * @param stockId  - id of stock.
+     * @param interval - interval of candles, one of {@code stocks.candles.intervals}.
+     * @param limit    - max number of candles, all kept candles when null.
+     * @return latest candles.
+     * @throws IncorrectRequestException when interval is not supported or limit is not positive.
+     */
+    @NonNull
+    public List<Candle> getCandles(long stockId, @NonNull String interval, @Nullable Integer limit) {
+        int series = seriesIndex(interval);
+        if (limit != null && limit <= 0) {
+            throw new IncorrectRequestException("Candles limit should be greater than zero");
+        }
+        StockCandles stockCandles = candles.get(stockId);
+        if (stockCandles == null) {
+            return List.of();
+        }
+        return stockCandles.latest(series, limit == null ? capacity : limit);
+    }
+
+    private int seriesIndex(String interval) {
+        long millis;
+        try {
+            millis = DurationStyle.detectAndParse(interval).toMillis();
+        } catch (IllegalArgumentException e) {
+            millis = -1;
+        }
+        for (int i = 0; i < intervals.length; i++) {
+            if (intervals[i] == millis) {
+                return i;
+            }
+        }
+        throw new IncorrectRequestException("Candle interval should be one of: " + String.join(", ", intervalNames));
+    }
+
+    private StockCandles candlesOf(long stockId) {
+        return candles.computeIfAbsent(stockId, id -> new StockCandles(intervals, capacity));
+    }
+
+    /**
+     * Candles of a single stock for every interval.
+     */
+    private static final class StockCandles {
+
+        private final CandleSeries[] series;
+
+        private StockCandles(long[] intervals, int capacity) {
+            series = new CandleSeries[intervals.length];
+            for (int i = 0; i < intervals.length; i++) {
+                series[i] = new CandleSeries(intervals[i], capacity);
+            }
+        }
+
+        private synchronized void add(long epochMillis, double price) {
+            for (CandleSeries candleSeries : series) {
+                candleSeries.add(epochMillis, price);
+            }
+        }
+
+        private synchronized List<Candle> latest(int series, int limit) {
+            return this.series[series].latest(limit);
+        }
+    }
+}
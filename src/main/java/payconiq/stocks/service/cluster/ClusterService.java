@@ -0,0 +1,310 @@
+package payconiq.stocks.service.cluster;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.LongPredicate;
+import java.util.function.Supplier;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import javax.servlet.http.HttpServletRequest;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.autoconfigure.orm.jpa.HibernatePropertiesCustomizer;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.lang.NonNull;
+import org.springframework.lang.Nullable;
+import org.springframework.stereotype.Service;
+
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import payconiq.stocks.exception.NodeUnavailableException;
+import payconiq.stocks.model.Stock;
+import payconiq.stocks.model.StockIdGenerator;
+
+/**
+ * Cluster mode: stocks are partitioned over {@code stocks.cluster.nodes} by consistent hashing (see {@link HashRing}).
+ * Every node keeps only stocks it owns in its own database: a stock belongs to the owner of its id,
+ * and a new stock is created by the owner of its normalized name, so names stay unique over the cluster,
+ * with an id owned by the same node (see {@link StockIdGenerator}).
+ * <p>
+ * Requests for a single stock are forwarded to its owner by {@code ClusterRoutingFilter},
+ * lists of stocks are gathered from all nodes in parallel. Membership is static:
+ * all nodes have to be started with the same list of nodes, stocks are not moved when it changes.
+ */
+@Service
+@ConditionalOnProperty(name = "stocks.cluster.enabled", havingValue = "true")
+public class ClusterService implements HibernatePropertiesCustomizer {
+
+    /**
+     * Header marking a request sent by another node, which has to be served from local stocks.
+     */
+    public static final String FORWARDED_HEADER = "X-Stocks-Forwarded-By";
+
+    /**
+     * Header carrying {@code stocks.cluster.secret} in requests between nodes.
+     */
+    public static final String SECRET_HEADER = "X-Stocks-Cluster-Secret";
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(ClusterService.class);
+
+    private static final TypeReference<List<Stock>> STOCK_LIST = new TypeReference<List<Stock>>() {
+    };
+
+    /**
+     * Headers which describe a single connection and are not passed between nodes.
+     */
+    private static final Set<String> HOP_HEADERS = Set.of("connection", "content-length", "date", "expect", "host",
+            "keep-alive", "proxy-connection", "te", "trailer", "transfer-encoding", "upgrade", "via", "warning");
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @Value("${stocks.cluster.nodes}")
+    private String[] nodes;
+
+    @Value("${stocks.cluster.self}")
+    private String self;
+
+    @Value("${stocks.cluster.secret:}")
+    private String secret;
+
+    @Value("${stocks.cluster.virtual-nodes:128}")
+    private int virtualNodes;
+
+    @Value("${stocks.cluster.timeout:5s}")
+    private Duration timeout;
+
+    private HashRing ring;
+
+    private Set<String> members;
+
+    private List<String> remoteNodes;
+
+    private ExecutorService executor;
+
+    private HttpClient httpClient;
+
+    @PostConstruct
+    void init() {
+        members = new LinkedHashSet<>();
+        for (String node : nodes) {
+            members.add(normalizeNode(node));
+        }
+        self = normalizeNode(self);
+        if (!members.contains(self)) {
+            throw new IllegalArgumentException("Node " + self + " is not one of cluster nodes " + members);
+        }
+        ring = new HashRing(members, virtualNodes);
+        remoteNodes = new ArrayList<>(members);
+        remoteNodes.remove(self);
+
+        AtomicInteger threadNumber = new AtomicInteger();
+        executor = Executors.newCachedThreadPool(runnable -> {
+            Thread thread = new Thread(runnable, "cluster-client-" + threadNumber.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+        httpClient = HttpClient.newBuilder()
+                .version(HttpClient.Version.HTTP_1_1)
+                .connectTimeout(timeout)
+                .executor(executor)
+                .build();
+        LOGGER.info("Node {} joined cluster of {} nodes", self, members.size());
+    }
+
+    @PreDestroy
+    void stop() {
+        executor.shutdownNow();
+    }
+
+    /**
+     * Makes ids of new stocks owned by this node.
+     */
+    @Override
+    public void customize(Map<String, Object> hibernateProperties) {
+        hibernateProperties.put(StockIdGenerator.OWNERSHIP_SETTING, (LongPredicate) this::isLocal);
+    }
+
+    /**
+     * @return url of this node.
+     */
+    @NonNull
+    public String getSelf() {
+        return self;
+    }
+
+    /**
+     * @param id - id of stock.
+     * @return url of the node owning a stock.
+     */
+    @NonNull
+    public String ownerOf(long id) {
+        return ring.ownerOf(id);
+    }
+
+    /**
+     * @param name - name of stock.
+     * @return url of the node where a stock with such name is created.
+     */
+    @NonNull
+    public String ownerOfName(@NonNull String name) {
+        return ring.ownerOf(Stock.normalizeName(name));
+    }
+
+    public boolean isLocal(long id) {
+        return self.equals(ownerOf(id));
+    }
+
+    public boolean isLocalName(@NonNull String name) {
+        return self.equals(ownerOfName(name));
+    }
+
+    /**
+     * A request is trusted as sent by a node only when it names one of cluster nodes
+     * and, if {@code stocks.cluster.secret} is set, carries the same secret.
+     *
+     * @param forwardedBy - value of {@link #FORWARDED_HEADER} of a request.
+     * @param secret      - value of {@link #SECRET_HEADER} of a request.
+     * @return true when a request was sent by a node of the cluster and has to be served locally.
+     */
+    public boolean isForwarded(@Nullable String forwardedBy, @Nullable String secret) {
+        if (forwardedBy == null || !members.contains(normalizeNode(forwardedBy))) {
+            return false;
+        }
+        return this.secret.isEmpty() || secret != null && MessageDigest.isEqual(
+                this.secret.getBytes(StandardCharsets.UTF_8), secret.getBytes(StandardCharsets.UTF_8));
+    }
+
+    /**
+     * Marks a request as sent by this node, so that the receiving node serves it locally.
+     *
+     * @param request - request to another node or to this node.
+     * @return the same request.
+     */
+    @NonNull
+    public HttpRequest.Builder markForwarded(@NonNull HttpRequest.Builder request) {
+        request.header(FORWARDED_HEADER, self);
+        if (!secret.isEmpty()) {
+            request.header(SECRET_HEADER, secret);
+        }
+        return request;
+    }
+
+    /**
+     * Sends a request to another node as is and returns its response.
+     *
+     * @param node    - url of node.
+     * @param request - request to forward.
+     * @param body    - body of the request.
+     * @return response of the node.
+     * @throws NodeUnavailableException when the node can't be reached.
+     */
+    @NonNull
+    public HttpResponse<byte[]> forward(@NonNull String node, @NonNull HttpServletRequest request, @NonNull byte[] body) {
+        String query = request.getQueryString();
+        String path = request.getRequestURI() + (query == null ? "" : "?" + query);
+        HttpRequest.Builder forwarded = markForwarded(HttpRequest.newBuilder(URI.create(node + path))
+                .timeout(timeout)
+                .method(request.getMethod(), body.length == 0
+                        ? HttpRequest.BodyPublishers.noBody()
+                        : HttpRequest.BodyPublishers.ofByteArray(body)));
+        for (String name : Collections.list(request.getHeaderNames())) {
+            if (!isHopHeader(name) && !FORWARDED_HEADER.equalsIgnoreCase(name) && !SECRET_HEADER.equalsIgnoreCase(name)) {
+                for (String value : Collections.list(request.getHeaders(name))) {
+                    forwarded.header(name, value);
+                }
+            }
+        }
+        try {
+            return httpClient.send(forwarded.build(), HttpResponse.BodyHandlers.ofByteArray());
+        } catch (IOException e) {
+            throw new NodeUnavailableException("Node " + node + " is unavailable", e);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new NodeUnavailableException("Interrupted while waiting for node " + node, e);
+        }
+    }
+
+    /**
+     * Gathers stocks from all nodes in parallel: sends a request to every other node
+     * and meanwhile reads local stocks.
+     *
+     * @param pathAndQuery - path and query of the request returning a json array of stocks.
+     * @param local        - reader of local stocks matching the request.
+     * @return stocks of all nodes ordered by id.
+     * @throws NodeUnavailableException when one of nodes can't be reached or responds with an error.
+     */
+    @NonNull
+    public List<Stock> gather(@NonNull String pathAndQuery, @NonNull Supplier<? extends Collection<Stock>> local) {
+        List<CompletableFuture<HttpResponse<byte[]>>> responses = new ArrayList<>(remoteNodes.size());
+        for (String node : remoteNodes) {
+            HttpRequest request = markForwarded(HttpRequest.newBuilder(URI.create(node + pathAndQuery)))
+                    .timeout(timeout)
+                    .header(HttpHeaders.ACCEPT, MediaType.APPLICATION_JSON_VALUE)
+                    .GET()
+                    .build();
+            responses.add(httpClient.sendAsync(request, HttpResponse.BodyHandlers.ofByteArray()));
+        }
+        List<Stock> stocks = new ArrayList<>(local.get());
+        for (int i = 0; i < responses.size(); i++) {
+            stocks.addAll(readStocks(remoteNodes.get(i), responses.get(i)));
+        }
+        stocks.sort(Comparator.comparingLong(Stock::getId));
+        return stocks;
+    }
+
+    private List<Stock> readStocks(String node, CompletableFuture<HttpResponse<byte[]>> pending) {
+        try {
+            HttpResponse<byte[]> response = pending.get();
+            if (response.statusCode() != 200) {
+                throw new NodeUnavailableException("Node " + node + " responded with status " + response.statusCode());
+            }
+            return objectMapper.readValue(response.body(), STOCK_LIST);
+        } catch (ExecutionException | IOException e) {
+            throw new NodeUnavailableException("Node " + node + " is unavailable", e);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new NodeUnavailableException("Interrupted while waiting for node " + node, e);
+        }
+    }
+
+    /**
+     * @param name - name of header.
+     * @return true when a header describes a single connection and is not passed between nodes.
+     */
+    public static boolean isHopHeader(@NonNull String name) {
+        return HOP_HEADERS.contains(name.toLowerCase(Locale.ROOT));
+    }
+
+    private static String normalizeNode(String node) {
+        String trimmed = node.trim();
+        return trimmed.endsWith("/") ? trimmed.substring(0, trimmed.length() - 1) : trimmed;
+    }
+}
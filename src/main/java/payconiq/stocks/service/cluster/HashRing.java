@@ -0,0 +1,77 @@
+package payconiq.stocks.service.cluster;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Collection;
+import java.util.Map;
+import java.util.TreeMap;
+
+import org.springframework.lang.NonNull;
+
+/**
+ * Consistent hashing ring of cluster nodes.
+ * Every node is placed on the ring at a number of virtual points, a key belongs to the node
+ * of the first point following the hash of the key. Adding or removing a node moves only keys
+ * between the node and its neighbours, about {@code 1/nodes} of all keys.
+ */
+final class HashRing {
+
+    private final TreeMap<Long, String> points = new TreeMap<>();
+
+    HashRing(@NonNull Collection<String> nodes, int virtualNodes) {
+        if (nodes.isEmpty() || virtualNodes <= 0) {
+            throw new IllegalArgumentException("Hash ring needs at least one node and one virtual node per node");
+        }
+        for (String node : nodes) {
+            for (int i = 0; i < virtualNodes; i++) {
+                points.put(hash(node + "#" + i), node);
+            }
+        }
+    }
+
+    /**
+     * @param id - id of stock.
+     * @return node owning a stock.
+     */
+    @NonNull
+    String ownerOf(long id) {
+        return ownerOfHash(mix(id));
+    }
+
+    /**
+     * @param key - key, e.g. normalized name of stock.
+     * @return node owning a key.
+     */
+    @NonNull
+    String ownerOf(@NonNull String key) {
+        return ownerOfHash(hash(key));
+    }
+
+    private String ownerOfHash(long hash) {
+        Map.Entry<Long, String> point = points.ceilingEntry(hash);
+        return point == null ? points.firstEntry().getValue() : point.getValue();
+    }
+
+    /**
+     * 64-bit FNV-1a hash of UTF-8 bytes of a string, mixed to spread close strings over the ring.
+     */
+    private static long hash(String key) {
+        long hash = 0xcbf29ce484222325L;
+        for (byte b : key.getBytes(StandardCharsets.UTF_8)) {
+            hash ^= b & 0xff;
+            hash *= 0x100000001b3L;
+        }
+        return mix(hash);
+    }
+
+    /**
+     * Finalization step of MurmurHash3, spreads sequential ids over the ring.
+     */
+    private static long mix(long value) {
+        value ^= value >>> 33;
+        value *= 0xff51afd7ed558ccdL;
+        value ^= value >>> 33;
+        value *= 0xc4ceb9fe1a85ec53L;
+        value ^= value >>> 33;
+        return value;
+    }
+}
@@ -0,0 +1,282 @@
+package payconiq.stocks.service.history;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.BiPredicate;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.lang.NonNull;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import payconiq.stocks.model.PriceTick;
+import payconiq.stocks.repository.PriceTickRepository;
+
+/**
+ * {@link PriceHistoryStore} keeping ticks in the {@code price_tick} table.
+ * <p>
+ * Appended ticks are buffered and inserted in JDBC batches by a background writer either when
+ * {@code stocks.history.batch-size} ticks are collected or every {@code stocks.history.flush-interval},
+ * so price updates neither pay for a separate insert each nor wait for a batch insert.
+ * Reads combine buffered ticks with the stored ones, a read and a batch insert exclude each other,
+ * so a tick is seen exactly once. Day partitions older than {@code stocks.history.retention} are dropped.
+ * <p>
+ * Ticks are appended after the stock change is committed, so every write runs in its own transaction.
+ */
+@Component
+@ConditionalOnProperty(name = "stocks.history.store", havingValue = "jpa", matchIfMissing = true)
+public class JpaPriceHistoryStore implements PriceHistoryStore {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(JpaPriceHistoryStore.class);
+
+    @Autowired
+    private PriceTickRepository priceTickRepository;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    @Value("${stocks.history.batch-size:500}")
+    private int batchSize;
+
+    @Value("${stocks.history.flush-interval:200ms}")
+    private Duration flushInterval;
+
+    @Value("${stocks.history.retention:0d}")
+    private Duration retention;
+
+    private final ConcurrentLinkedQueue<PriceTick> pending = new ConcurrentLinkedQueue<>();
+
+    private final AtomicInteger pendingCount = new AtomicInteger();
+
+    /**
+     * Read lock is held by reads, write lock by moving buffered ticks to the table.
+     */
+    private final ReentrantReadWriteLock storeLock = new ReentrantReadWriteLock();
+
+    private TransactionTemplate transactionTemplate;
+
+    private ScheduledExecutorService scheduler;
+
+    @PostConstruct
+    void start() {
+        transactionTemplate = new TransactionTemplate(transactionManager);
+        transactionTemplate.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+        scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "price-history-flusher");
+            thread.setDaemon(true);
+            return thread;
+        });
+        long intervalMillis = flushInterval.toMillis();
+        scheduler.scheduleWithFixedDelay(this::flushSafely, intervalMillis, intervalMillis, TimeUnit.MILLISECONDS);
+        if (!retention.isZero()) {
+            scheduler.scheduleWithFixedDelay(this::dropExpiredPartitions, 0, 1, TimeUnit.HOURS);
+        }
+    }
+
+    @PreDestroy
+    void stop() throws InterruptedException {
+        scheduler.shutdown();
+        scheduler.awaitTermination(flushInterval.toMillis() * 2, TimeUnit.MILLISECONDS);
+        flush();
+    }
+
+    @Override
+    public void append(long stockId, double price, long epochMillis) {
+        pending.add(new PriceTick(stockId, price, epochMillis));
+        if (pendingCount.incrementAndGet() == batchSize) {
+            scheduler.execute(this::flushSafely);
+        }
+    }
+
+    @Override
+    public void scan(long stockId, long fromMillis, long toMillis, @NonNull TickVisitor visitor) {
+        storeLock.readLock().lock();
+        try {
+            List<PriceTick> buffered = buffered(stockId, fromMillis, toMillis);
+            buffered.sort(Comparator.comparingLong(PriceTick::getEpochMillis));
+            Collections.reverse(buffered);
+            List<PriceTick> stored = priceTickRepository.findRange(stockId, fromMillis, toMillis);
+            // buffered ticks are the newer ones of the same time
+            merge(buffered, stored, (bufferedTick, storedTick) ->
+                    bufferedTick.getEpochMillis() >= storedTick.getEpochMillis(), visitor);
+        } finally {
+            storeLock.readLock().unlock();
+        }
+    }
+
+    @Override
+    public void replay(long stockId, long fromMillis, @NonNull TickVisitor visitor) {
+        storeLock.readLock().lock();
+        try {
+            List<PriceTick> buffered = buffered(stockId, fromMillis, Long.MAX_VALUE);
+            buffered.sort(Comparator.comparingLong(PriceTick::getEpochMillis));
+            List<PriceTick> stored = priceTickRepository.findFrom(stockId, fromMillis);
+            merge(buffered, stored, (bufferedTick, storedTick) ->
+                    bufferedTick.getEpochMillis() < storedTick.getEpochMillis(), visitor);
+        } finally {
+            storeLock.readLock().unlock();
+        }
+    }
+
+    @Override
+    public long firstTickAfter(long stockId, long afterMillis) {
+        storeLock.readLock().lock();
+        try {
+            long first = -1;
+            for (PriceTick tick : buffered(stockId, afterMillis + 1, Long.MAX_VALUE)) {
+                if (first == -1 || tick.getEpochMillis() < first) {
+                    first = tick.getEpochMillis();
+                }
+            }
+            List<Long> times = priceTickRepository.findTimesAfter(stockId, afterMillis, PageRequest.of(0, 1));
+            if (!times.isEmpty() && (first == -1 || times.get(0) < first)) {
+                first = times.get(0);
+            }
+            return first;
+        } finally {
+            storeLock.readLock().unlock();
+        }
+    }
+
+    @Override
+    public boolean lastTickBefore(long stockId, long beforeMillis, @NonNull TickVisitor visitor) {
+        storeLock.readLock().lock();
+        try {
+            PriceTick last = null;
+            for (PriceTick tick : buffered(stockId, Long.MIN_VALUE, beforeMillis - 1)) {
+                if (last == null || tick.getEpochMillis() >= last.getEpochMillis()) {
+                    last = tick;
+                }
+            }
+            List<PriceTick> ticks = priceTickRepository.findBefore(stockId, beforeMillis, PageRequest.of(0, 1));
+            if (!ticks.isEmpty() && (last == null || ticks.get(0).getEpochMillis() > last.getEpochMillis())) {
+                last = ticks.get(0);
+            }
+            if (last == null) {
+                return false;
+            }
+            visitor.visit(last.getEpochMillis(), last.getPrice());
+            return true;
+        } finally {
+            storeLock.readLock().unlock();
+        }
+    }
+
+    @Override
+    public void delete(long stockId) {
+        storeLock.writeLock().lock();
+        try {
+            int removed = 0;
+            for (PriceTick tick : pending) {
+                if (tick.getStockId() == stockId && pending.remove(tick)) {
+                    removed++;
+                }
+            }
+            pendingCount.addAndGet(-removed);
+            transactionTemplate.executeWithoutResult(status -> priceTickRepository.deleteByStockId(stockId));
+        } finally {
+            storeLock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Inserts all buffered ticks in JDBC batches. Is called by the background writer,
+     * reads wait for it only while the batch is inserted.
+     */
+    public void flush() {
+        if (pendingCount.get() == 0) {
+            return;
+        }
+        storeLock.writeLock().lock();
+        try {
+            List<PriceTick> ticks = new ArrayList<>(pendingCount.get());
+            PriceTick tick;
+            while ((tick = pending.poll()) != null) {
+                ticks.add(tick);
+            }
+            pendingCount.addAndGet(-ticks.size());
+            try {
+                transactionTemplate.executeWithoutResult(status -> priceTickRepository.saveAll(ticks));
+            } catch (RuntimeException e) {
+                // ticks are kept for the next attempt, reads order them by time anyway
+                pending.addAll(ticks);
+                pendingCount.addAndGet(ticks.size());
+                throw e;
+            }
+        } finally {
+            storeLock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Returns buffered ticks of a stock within a time range, in no particular order.
+     */
+    private List<PriceTick> buffered(long stockId, long fromMillis, long toMillis) {
+        List<PriceTick> ticks = new ArrayList<>();
+        if (pendingCount.get() == 0) {
+            return ticks;
+        }
+        for (PriceTick tick : pending) {
+            if (tick.getStockId() == stockId && tick.getEpochMillis() >= fromMillis && tick.getEpochMillis() <= toMillis) {
+                ticks.add(tick);
+            }
+        }
+        return ticks;
+    }
+
+    /**
+     * Visits two ordered lists of ticks in one order.
+     *
+     * @param buffered     - buffered ticks.
+     * @param stored       - stored ticks.
+     * @param beforeStored - whether a buffered tick goes before a stored one.
+     * @param visitor      - visitor of ticks.
+     */
+    private static void merge(List<PriceTick> buffered, List<PriceTick> stored,
+            BiPredicate<PriceTick, PriceTick> beforeStored, TickVisitor visitor) {
+        int b = 0;
+        int s = 0;
+        while (b < buffered.size() || s < stored.size()) {
+            PriceTick tick = s == stored.size() || b < buffered.size() && beforeStored.test(buffered.get(b), stored.get(s))
+                    ? buffered.get(b++) : stored.get(s++);
+            visitor.visit(tick.getEpochMillis(), tick.getPrice());
+        }
+    }
+
+    private void flushSafely() {
+        try {
+            flush();
+        } catch (RuntimeException e) {
+            LOGGER.error("Failed to write price history, will retry on next run", e);
+        }
+    }
+
+    private void dropExpiredPartitions() {
+        try {
+            int firstDay = PriceTick.partitionDay(System.currentTimeMillis() - retention.toMillis());
+            Integer deleted = transactionTemplate.execute(status -> priceTickRepository.deletePartitionsBefore(firstDay));
+            LOGGER.info("Dropped {} price ticks before day {}", deleted, firstDay);
+        } catch (RuntimeException e) {
+            LOGGER.error("Failed to drop expired price history", e);
+        }
+    }
+}
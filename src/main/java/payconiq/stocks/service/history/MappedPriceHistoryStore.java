@@ -0,0 +1,300 @@
+package payconiq.stocks.service.history;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import javax.annotation.PreDestroy;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.lang.NonNull;
+import org.springframework.stereotype.Component;
+
+/**
+ * {@link PriceHistoryStore} keeping ticks of every stock in a chain of memory-mapped
+ * {@link TickSegment} files under {@code stocks.history.dir/<stock id>/}.
+ * <p>
+ * Appends write straight into the mapped region and range reads binary search it,
+ * so neither of them creates objects per tick or goes through the database.
+ * A new segment is created when the last one is full. The first segment of a stock keeps
+ * {@value #INITIAL_SEGMENT_SIZE} ticks and every next one twice as many, up to {@code stocks.history.segment-size},
+ * so stocks which rarely change don't map whole segments.
+ * <p>
+ * Stock ids are only stable across restarts when stocks are recovered in "persistence" mode,
+ * so unless {@code stocks.history.keep-on-restart} is set, history left by a previous run is deleted on start
+ * rather than attached to new stocks reusing the ids.
+ */
+@Component
+@ConditionalOnProperty(name = "stocks.history.store", havingValue = "mapped")
+public class MappedPriceHistoryStore implements PriceHistoryStore {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(MappedPriceHistoryStore.class);
+
+    private static final int MAX_SEGMENT_SIZE = 1 << 24;
+
+    private static final int INITIAL_SEGMENT_SIZE = 256;
+
+    private static final String SEGMENT_SUFFIX = ".seg";
+
+    private final Path directory;
+
+    private final int segmentSize;
+
+    private final ConcurrentHashMap<Long, StockTickLog> logs = new ConcurrentHashMap<>();
+
+    public MappedPriceHistoryStore(@Value("${stocks.history.dir:${java.io.tmpdir}/stocks-history}") String directory,
+                                   @Value("${stocks.history.segment-size:65536}") int segmentSize,
+                                   @Value("${stocks.history.keep-on-restart:${stocks.persistence.enabled:false}}")
+                                           boolean keepOnRestart) {
+        if (segmentSize <= 0 || segmentSize > MAX_SEGMENT_SIZE) {
+            throw new IllegalArgumentException("Price history segment size should be within 1.." + MAX_SEGMENT_SIZE);
+        }
+        this.directory = Paths.get(directory);
+        this.segmentSize = segmentSize;
+        try {
+            Files.createDirectories(this.directory);
+            if (keepOnRestart) {
+                loadLogs();
+            } else {
+                deleteLogs();
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to open price history in " + directory, e);
+        }
+    }
+
+    @Override
+    public void append(long stockId, double price, long epochMillis) {
+        StockTickLog log = logs.computeIfAbsent(stockId, id -> new StockTickLog(directory.resolve(Long.toString(id))));
+        try {
+            log.append(epochMillis, price, segmentSize);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to append price of stock " + stockId, e);
+        }
+    }
+
+    @Override
+    public void scan(long stockId, long fromMillis, long toMillis, @NonNull TickVisitor visitor) {
+        StockTickLog log = logs.get(stockId);
+        if (log == null || fromMillis > toMillis) {
+            return;
+        }
+        TickSegment[] segments = log.segments;
+        for (int s = segments.length - 1; s >= 0; s--) {
+            TickSegment segment = segments[s];
+            int size = segment.count();
+            if (size == 0 || segment.time(0) > toMillis) {
+                continue;
+            }
+            if (segment.time(size - 1) < fromMillis) {
+                return;
+            }
+            int first = segment.search(fromMillis, true, size);
+            int last = segment.search(toMillis, false, size) - 1;
+            for (int i = last; i >= first; i--) {
+                visitor.visit(segment.time(i), segment.price(i));
+            }
+        }
+    }
+
+    @Override
+    public void replay(long stockId, long fromMillis, @NonNull TickVisitor visitor) {
+        StockTickLog log = logs.get(stockId);
+        if (log == null) {
+            return;
+        }
+        for (TickSegment segment : log.segments) {
+            int size = segment.count();
+            for (int i = segment.search(fromMillis, true, size); i < size; i++) {
+                visitor.visit(segment.time(i), segment.price(i));
+            }
+        }
+    }
+
+    @Override
+    public long firstTickAfter(long stockId, long afterMillis) {
+        StockTickLog log = logs.get(stockId);
+        if (log == null) {
+            return -1;
+        }
+        for (TickSegment segment : log.segments) {
+            int size = segment.count();
+            int index = segment.search(afterMillis, false, size);
+            if (index < size) {
+                return segment.time(index);
+            }
+        }
+        return -1;
+    }
+
+    @Override
+    public boolean lastTickBefore(long stockId, long beforeMillis, @NonNull TickVisitor visitor) {
+        StockTickLog log = logs.get(stockId);
+        if (log == null) {
+            return false;
+        }
+        TickSegment[] segments = log.segments;
+        for (int s = segments.length - 1; s >= 0; s--) {
+            TickSegment segment = segments[s];
+            int index = segment.search(beforeMillis, true, segment.count()) - 1;
+            if (index >= 0) {
+                visitor.visit(segment.time(index), segment.price(index));
+                return true;
+            }
+        }
+        return false;
+    }
+
+    @Override
+    public void delete(long stockId) {
+        StockTickLog log = logs.remove(stockId);
+        if (log == null) {
+            return;
+        }
+        try {
+            log.delete();
+        } catch (IOException e) {
+            LOGGER.error("Failed to delete price history of stock {}", stockId, e);
+        }
+    }
+
+    @PreDestroy
+    public void close() {
+        for (StockTickLog log : logs.values()) {
+            log.close();
+        }
+        logs.clear();
+    }
+
+    private void loadLogs() throws IOException {
+        try (DirectoryStream<Path> stockDirectories = Files.newDirectoryStream(directory, Files::isDirectory)) {
+            for (Path stockDirectory : stockDirectories) {
+                long stockId;
+                try {
+                    stockId = Long.parseLong(stockDirectory.getFileName().toString());
+                } catch (NumberFormatException e) {
+                    continue;
+                }
+                logs.put(stockId, StockTickLog.load(stockDirectory));
+            }
+        }
+        LOGGER.info("Opened price history of {} stocks in {}", logs.size(), directory);
+    }
+
+    /**
+     * Deletes segments of all stocks, only stock directories and segment files are touched.
+     */
+    private void deleteLogs() throws IOException {
+        int deleted = 0;
+        try (DirectoryStream<Path> stockDirectories = Files.newDirectoryStream(directory, Files::isDirectory)) {
+            for (Path stockDirectory : stockDirectories) {
+                if (!stockDirectory.getFileName().toString().chars().allMatch(Character::isDigit)) {
+                    continue;
+                }
+                try (Stream<Path> files = Files.list(stockDirectory)) {
+                    for (Path file : (Iterable<Path>) files::iterator) {
+                        if (file.getFileName().toString().endsWith(SEGMENT_SUFFIX)) {
+                            Files.delete(file);
+                        }
+                    }
+                }
+                Files.deleteIfExists(stockDirectory);
+                deleted++;
+            }
+        }
+        if (deleted > 0) {
+            LOGGER.info("Deleted price history of {} stocks of a previous run in {}", deleted, directory);
+        }
+    }
+
+    private static Path segmentPath(Path stockDirectory, int index) {
+        return stockDirectory.resolve(String.format("%010d%s", index, SEGMENT_SUFFIX));
+    }
+
+    /**
+     * Chain of segments of a single stock, oldest first.
+     */
+    private static final class StockTickLog {
+
+        private final Path directory;
+
+        private volatile TickSegment[] segments;
+
+        private long lastTime = Long.MIN_VALUE;
+
+        private StockTickLog(Path directory) {
+            this.directory = directory;
+            this.segments = new TickSegment[0];
+        }
+
+        private static StockTickLog load(Path directory) throws IOException {
+            List<Path> paths;
+            try (Stream<Path> files = Files.list(directory)) {
+                paths = files.filter(path -> path.getFileName().toString().endsWith(SEGMENT_SUFFIX))
+                        .sorted()
+                        .collect(Collectors.toList());
+            }
+            List<TickSegment> segments = new ArrayList<>(paths.size());
+            for (Path path : paths) {
+                segments.add(TickSegment.open(path));
+            }
+            StockTickLog log = new StockTickLog(directory);
+            log.segments = segments.toArray(new TickSegment[0]);
+            for (TickSegment segment : segments) {
+                if (segment.count() > 0) {
+                    log.lastTime = segment.time(segment.count() - 1);
+                }
+            }
+            return log;
+        }
+
+        private synchronized void append(long epochMillis, double price, int segmentSize) throws IOException {
+            // ticks are kept in time order for binary search, so a clock going backwards doesn't reorder them
+            long time = Math.max(epochMillis, lastTime);
+            TickSegment[] current = segments;
+            if (current.length == 0 || current[current.length - 1].isFull()) {
+                Files.createDirectories(directory);
+                int capacity = current.length == 0 ? INITIAL_SEGMENT_SIZE : current[current.length - 1].capacity() * 2;
+                TickSegment[] extended = new TickSegment[current.length + 1];
+                System.arraycopy(current, 0, extended, 0, current.length);
+                extended[current.length] = TickSegment.create(segmentPath(directory, current.length),
+                        Math.min(capacity, segmentSize));
+                segments = extended;
+                current = extended;
+            }
+            current[current.length - 1].append(time, price);
+            lastTime = time;
+        }
+
+        private synchronized void close() {
+            for (TickSegment segment : segments) {
+                try {
+                    segment.force();
+                    segment.close();
+                } catch (IOException e) {
+                    LOGGER.error("Failed to close price history segment {}", segment.path(), e);
+                }
+            }
+        }
+
+        private synchronized void delete() throws IOException {
+            close();
+            for (TickSegment segment : segments) {
+                Files.deleteIfExists(segment.path());
+            }
+            Files.deleteIfExists(directory);
+            segments = new TickSegment[0];
+        }
+    }
+}
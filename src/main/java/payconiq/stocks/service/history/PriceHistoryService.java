@@ -0,0 +1,88 @@
+package payconiq.stocks.service.history;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.time.Instant;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.lang.NonNull;
+import org.springframework.lang.Nullable;
+import org.springframework.stereotype.Service;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+
+import payconiq.stocks.model.Stock;
+import payconiq.stocks.service.StockEventListener;
+
+/**
+ * Service recording every price change of {@link Stock}s into {@link PriceHistoryStore}
+ * and building price history out of it.
+ */
+@Service
+public class PriceHistoryService implements StockEventListener {
+
+    @Autowired
+    private PriceHistoryStore priceHistoryStore;
+
+    @Override
+    public void onStockAdded(@NonNull Stock stock) {
+        priceHistoryStore.append(stock.getId(), stock.getCurrentPrice(), stock.getLastUpdate().toEpochMilli());
+    }
+
+    @Override
+    public void onPriceUpdated(long id, double oldPrice, double newPrice, long epochMillis) {
+        priceHistoryStore.append(id, newPrice, epochMillis);
+    }
+
+    @Override
+    public void onStockDeleted(long id) {
+        priceHistoryStore.delete(id);
+    }
+
+    /**
+     * Writes prices of a stock which were actual within a time range as a json array, newest first.
+     * Every price is valid from its start date till the start date of the next one, so the range opens
+     * with the last price set before its start, which was in effect at the start.
+     * Entries are written while the store is scanned, so the history is never collected in memory.
+     *
+     * @param stockId - id of stock.
+     * @param from    - start of the range or null to start from the first price.
+     * @param to      - end of the range or null to end with the current price.
+     * @param json    - generator to write history to.
+     * @throws IOException when history can't be written.
+     */
+    public void writeHistory(long stockId, @Nullable Instant from, @Nullable Instant to,
+                             @NonNull JsonGenerator json) throws IOException {
+        long fromMillis = from == null ? Long.MIN_VALUE : from.toEpochMilli();
+        long toMillis = to == null ? Long.MAX_VALUE : to.toEpochMilli();
+        long[] endMillis = {toMillis == Long.MAX_VALUE ? -1 : priceHistoryStore.firstTickAfter(stockId, toMillis)};
+        PriceHistoryStore.TickVisitor writer = (epochMillis, price) -> {
+            try {
+                json.writeStartObject();
+                json.writeNumberField("price", price);
+                json.writeStringField("startDate", Instant.ofEpochMilli(epochMillis).toString());
+                if (endMillis[0] < 0) {
+                    json.writeNullField("endDate");
+                } else {
+                    json.writeStringField("endDate", Instant.ofEpochMilli(endMillis[0]).toString());
+                }
+                json.writeEndObject();
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+            endMillis[0] = epochMillis;
+        };
+        json.writeStartArray();
+        try {
+            priceHistoryStore.scan(stockId, fromMillis, toMillis, writer);
+            // a price set exactly at the start is the one in effect, otherwise the previous price still is
+            boolean opened = endMillis[0] == fromMillis;
+            if (from != null && !opened && fromMillis <= toMillis) {
+                priceHistoryStore.lastTickBefore(stockId, fromMillis, writer);
+            }
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+        json.writeEndArray();
+    }
+}
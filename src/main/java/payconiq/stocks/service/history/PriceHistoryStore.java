@@ -0,0 +1,73 @@
+package payconiq.stocks.service.history;
+
+import org.springframework.lang.NonNull;
+
+/**
+ * Storage of stock price ticks.
+ */
+public interface PriceHistoryStore {
+
+    /**
+     * Appends a price tick of a stock. May be buffered,
+     * but has to be visible to following reads.
+     *
+     * @param stockId     - id of stock.
+     * @param price       - new price.
+     * @param epochMillis - time of the price change.
+     */
+    void append(long stockId, double price, long epochMillis);
+
+    /**
+     * Visits ticks of a stock within a time range, newest first.
+     *
+     * @param stockId    - id of stock.
+     * @param fromMillis - start of the range, inclusive.
+     * @param toMillis   - end of the range, inclusive.
+     * @param visitor    - visitor of ticks.
+     */
+    void scan(long stockId, long fromMillis, long toMillis, @NonNull TickVisitor visitor);
+
+    /**
+     * Visits ticks of a stock starting from a given time, oldest first.
+     *
+     * @param stockId    - id of stock.
+     * @param fromMillis - start of the range, inclusive.
+     * @param visitor    - visitor of ticks.
+     */
+    void replay(long stockId, long fromMillis, @NonNull TickVisitor visitor);
+
+    /**
+     * Returns time of the first tick of a stock after a given time.
+     *
+     * @param stockId     - id of stock.
+     * @param afterMillis - time to look after, exclusive.
+     * @return time of the tick or -1 when there is no such tick.
+     */
+    long firstTickAfter(long stockId, long afterMillis);
+
+    /**
+     * Visits the last tick of a stock before a given time, which holds the price in effect at that time.
+     *
+     * @param stockId      - id of stock.
+     * @param beforeMillis - time to look before, exclusive.
+     * @param visitor      - visitor of the tick.
+     * @return false when there is no such tick.
+     */
+    boolean lastTickBefore(long stockId, long beforeMillis, @NonNull TickVisitor visitor);
+
+    /**
+     * Removes all ticks of a stock.
+     *
+     * @param stockId - id of stock.
+     */
+    void delete(long stockId);
+
+    /**
+     * Visitor of stored price ticks.
+     */
+    @FunctionalInterface
+    interface TickVisitor {
+
+        void visit(long epochMillis, double price);
+    }
+}
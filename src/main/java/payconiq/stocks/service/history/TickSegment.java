@@ -0,0 +1,177 @@
+package payconiq.stocks.service.history;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Memory-mapped file keeping a fixed number of price ticks of a single stock as two columns:
+ * times (epoch millis, long) followed by prices (double).
+ * <p>
+ * File layout: 64 bytes header (magic, capacity, count), {@code capacity} times, {@code capacity} prices.
+ * Ticks are appended in time order, so a time range is found by binary search over the time column.
+ * Appends are expected from a single thread at a time, reads may run concurrently:
+ * a tick becomes visible to readers only after both of its columns are written.
+ */
+final class TickSegment implements Closeable {
+
+    private static final int MAGIC = 0x5449434B;
+
+    private static final int MAGIC_OFFSET = 0;
+
+    private static final int CAPACITY_OFFSET = 4;
+
+    private static final int COUNT_OFFSET = 8;
+
+    private static final int HEADER_SIZE = 64;
+
+    private final Path path;
+
+    private final FileChannel channel;
+
+    private final MappedByteBuffer buffer;
+
+    private final int capacity;
+
+    private final int pricesOffset;
+
+    private volatile int count;
+
+    private TickSegment(Path path, FileChannel channel, MappedByteBuffer buffer, int capacity, int count) {
+        this.path = path;
+        this.channel = channel;
+        this.buffer = buffer;
+        this.capacity = capacity;
+        this.pricesOffset = HEADER_SIZE + capacity * Long.BYTES;
+        this.count = count;
+    }
+
+    /**
+     * Creates new empty segment file.
+     *
+     * @param path     - path of the file.
+     * @param capacity - number of ticks the segment can keep.
+     * @return created segment.
+     * @throws IOException when file can't be created.
+     */
+    static TickSegment create(Path path, int capacity) throws IOException {
+        FileChannel channel = FileChannel.open(path, StandardOpenOption.CREATE_NEW,
+                StandardOpenOption.READ, StandardOpenOption.WRITE);
+        MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, fileSize(capacity));
+        buffer.putInt(MAGIC_OFFSET, MAGIC);
+        buffer.putInt(CAPACITY_OFFSET, capacity);
+        buffer.putInt(COUNT_OFFSET, 0);
+        return new TickSegment(path, channel, buffer, capacity, 0);
+    }
+
+    /**
+     * Opens existing segment file.
+     *
+     * @param path - path of the file.
+     * @return opened segment.
+     * @throws IOException when file can't be read or is not a segment file.
+     */
+    static TickSegment open(Path path) throws IOException {
+        FileChannel channel = FileChannel.open(path, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        try {
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, channel.size());
+            int capacity = buffer.getInt(CAPACITY_OFFSET);
+            if (buffer.getInt(MAGIC_OFFSET) != MAGIC || channel.size() != fileSize(capacity)) {
+                throw new IOException("Not a price tick segment: " + path);
+            }
+            int count = Math.min(buffer.getInt(COUNT_OFFSET), capacity);
+            return new TickSegment(path, channel, buffer, capacity, count);
+        } catch (IOException | RuntimeException e) {
+            channel.close();
+            throw e;
+        }
+    }
+
+    private static long fileSize(int capacity) {
+        return HEADER_SIZE + (long) capacity * (Long.BYTES + Double.BYTES);
+    }
+
+    /**
+     * Appends a tick. Times should not go backwards.
+     *
+     * @param epochMillis - time of the tick.
+     * @param price       - price of the tick.
+     * @return false when the segment is full.
+     */
+    boolean append(long epochMillis, double price) {
+        int index = count;
+        if (index == capacity) {
+            return false;
+        }
+        buffer.putLong(HEADER_SIZE + index * Long.BYTES, epochMillis);
+        buffer.putDouble(pricesOffset + index * Double.BYTES, price);
+        buffer.putInt(COUNT_OFFSET, index + 1);
+        count = index + 1;
+        return true;
+    }
+
+    /**
+     * @return number of ticks visible to readers.
+     */
+    int count() {
+        return count;
+    }
+
+    int capacity() {
+        return capacity;
+    }
+
+    boolean isFull() {
+        return count == capacity;
+    }
+
+    long time(int index) {
+        return buffer.getLong(HEADER_SIZE + index * Long.BYTES);
+    }
+
+    double price(int index) {
+        return buffer.getDouble(pricesOffset + index * Double.BYTES);
+    }
+
+    /**
+     * Finds the first tick with time greater than (or equal to, when {@code inclusive}) a given time.
+     *
+     * @param epochMillis - time to look for.
+     * @param inclusive   - whether the tick with equal time matches.
+     * @param size        - number of ticks to search in.
+     * @return index of the tick or {@code size} when there is no such tick.
+     */
+    int search(long epochMillis, boolean inclusive, int size) {
+        int low = 0;
+        int high = size;
+        while (low < high) {
+            int middle = (low + high) >>> 1;
+            long time = time(middle);
+            if (time < epochMillis || (!inclusive && time == epochMillis)) {
+                low = middle + 1;
+            } else {
+                high = middle;
+            }
+        }
+        return low;
+    }
+
+    Path path() {
+        return path;
+    }
+
+    /**
+     * Writes changes of the mapped region to the storage device.
+     */
+    void force() {
+        buffer.force();
+    }
+
+    @Override
+    public void close() throws IOException {
+        channel.close();
+    }
+}
@@ -0,0 +1,204 @@
+package payconiq.stocks.service.leaderboard;
+
+import java.time.Instant;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListSet;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.StampedLock;
+
+import javax.annotation.PostConstruct;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.lang.NonNull;
+import org.springframework.stereotype.Service;
+
+import payconiq.stocks.exception.IncorrectRequestException;
+import payconiq.stocks.model.Stock;
+import payconiq.stocks.response.StockMove;
+import payconiq.stocks.service.StockEventListener;
+
+/**
+ * Leaderboards of {@link Stock}s moved since the open of the day: by change of price and by number of updates.
+ * <p>
+ * The open price of a stock is its price before the first update of the day in {@code stocks.top.zone},
+ * stocks which haven't been updated since the open are not listed. Every price update replaces the move
+ * of its stock in two skip lists sorted by change and by updates in O(log n), so a leaderboard is read
+ * from the head or the tail of a skip list in O(top) without sorting stocks or querying the database.
+ * <p>
+ * Updates of different stocks run in parallel, updates of the same stock are serialized by {@link ConcurrentHashMap#compute}.
+ * Reads are optimistic: a read which overlapped an update is repeated holding the {@link StampedLock} exclusively,
+ * which updates share, so every leaderboard is a consistent snapshot in which a stock appears once.
+ * Moves of the previous day are dropped at once by the first update or read of a new day.
+ * <p>
+ * In cluster mode a node ranks only stocks it owns, leaderboards are not gathered from other nodes.
+ */
+@Service
+public class StockLeaderboard implements StockEventListener {
+
+    public static final String BY_CHANGE = "change";
+
+    public static final String BY_ACTIVE = "active";
+
+    private static final Comparator<StockMove> BY_CHANGE_DESC = Comparator
+            .comparingDouble(StockMove::getChangePercent).reversed().thenComparingLong(StockMove::getId);
+
+    private static final Comparator<StockMove> BY_UPDATES_DESC = Comparator
+            .comparingLong(StockMove::getUpdates).reversed().thenComparingLong(StockMove::getId);
+
+    @Value("${stocks.top.max-size:100}")
+    private int maxSize;
+
+    @Value("${stocks.top.zone:UTC}")
+    private ZoneId zone;
+
+    private final StampedLock lock = new StampedLock();
+
+    private final ConcurrentHashMap<Long, StockMove> moves = new ConcurrentHashMap<>();
+
+    private final ConcurrentSkipListSet<StockMove> byChange = new ConcurrentSkipListSet<>(BY_CHANGE_DESC);
+
+    private final ConcurrentSkipListSet<StockMove> byUpdates = new ConcurrentSkipListSet<>(BY_UPDATES_DESC);
+
+    /**
+     * Numbers of updates started and finished, equal when no update is in progress.
+     */
+    private final AtomicLong started = new AtomicLong();
+
+    private final AtomicLong finished = new AtomicLong();
+
+    /**
+     * Day of the moves, in days since epoch in {@link #zone}.
+     */
+    private volatile long day;
+
+    @PostConstruct
+    void init() {
+        day = day(System.currentTimeMillis());
+    }
+
+    /**
+     * Returns top moves of the day.
+     *
+     * @param by        - {@value #BY_CHANGE} for moves by change of price, {@value #BY_ACTIVE} for moves by number of updates.
+     * @param ascending - whether smallest values come first, e.g. biggest losers by change.
+     * @param n         - max number of moves.
+     * @return top moves, a consistent snapshot of the leaderboard.
+     * @throws IncorrectRequestException when leaderboard is unknown or n is not positive or too big.
+     */
+    @NonNull
+    public List<StockMove> top(@NonNull String by, boolean ascending, int n) {
+        if (n <= 0 || n > maxSize) {
+            throw new IncorrectRequestException("Number of top stocks should be within 1.." + maxSize);
+        }
+        ConcurrentSkipListSet<StockMove> board;
+        if (BY_CHANGE.equals(by)) {
+            board = byChange;
+        } else if (BY_ACTIVE.equals(by)) {
+            board = byUpdates;
+        } else {
+            throw new IncorrectRequestException("Top stocks can be by " + BY_CHANGE + " or " + BY_ACTIVE);
+        }
+        if (day(System.currentTimeMillis()) > day) {
+            return Collections.emptyList();
+        }
+        long updates = started.get();
+        if (finished.get() == updates) {
+            List<StockMove> top = read(board, ascending, n);
+            if (started.get() == updates) {
+                return top;
+            }
+        }
+        long stamp = lock.writeLock();
+        try {
+            return read(board, ascending, n);
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+    }
+
+    @Override
+    public void onPriceUpdated(long id, double oldPrice, double newPrice, long epochMillis) {
+        long updateDay = day(epochMillis);
+        if (updateDay > day) {
+            startDay(updateDay);
+        }
+        long stamp = lock.readLock();
+        started.incrementAndGet();
+        try {
+            if (updateDay != day) {
+                return;
+            }
+            moves.compute(id, (key, previous) -> {
+                StockMove move;
+                if (previous == null) {
+                    move = new StockMove(id, oldPrice, newPrice, 1, Instant.ofEpochMilli(epochMillis));
+                } else {
+                    byChange.remove(previous);
+                    byUpdates.remove(previous);
+                    move = new StockMove(id, previous.getOpenPrice(), newPrice, previous.getUpdates() + 1,
+                            Instant.ofEpochMilli(epochMillis));
+                }
+                byChange.add(move);
+                byUpdates.add(move);
+                return move;
+            });
+        } finally {
+            finished.incrementAndGet();
+            lock.unlockRead(stamp);
+        }
+    }
+
+    @Override
+    public void onStockDeleted(long id) {
+        long stamp = lock.readLock();
+        started.incrementAndGet();
+        try {
+            moves.computeIfPresent(id, (key, move) -> {
+                byChange.remove(move);
+                byUpdates.remove(move);
+                return null;
+            });
+        } finally {
+            finished.incrementAndGet();
+            lock.unlockRead(stamp);
+        }
+    }
+
+    /**
+     * Drops moves of the previous day, excluding updates and reads.
+     *
+     * @param newDay - day of an update, in days since epoch in {@link #zone}.
+     */
+    private void startDay(long newDay) {
+        long stamp = lock.writeLock();
+        try {
+            if (newDay > day) {
+                moves.clear();
+                byChange.clear();
+                byUpdates.clear();
+                day = newDay;
+            }
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+    }
+
+    private static List<StockMove> read(ConcurrentSkipListSet<StockMove> board, boolean ascending, int n) {
+        List<StockMove> top = new ArrayList<>(n);
+        Iterator<StockMove> moves = ascending ? board.descendingIterator() : board.iterator();
+        while (top.size() < n && moves.hasNext()) {
+            top.add(moves.next());
+        }
+        return top;
+    }
+
+    private long day(long epochMillis) {
+        return Instant.ofEpochMilli(epochMillis).atZone(zone).toLocalDate().toEpochDay();
+    }
+}
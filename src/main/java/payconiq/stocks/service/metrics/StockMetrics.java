@@ -0,0 +1,162 @@
+package payconiq.stocks.service.metrics;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.PriorityQueue;
+import java.util.concurrent.TimeUnit;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.lang.NonNull;
+import org.springframework.stereotype.Component;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import payconiq.stocks.response.StockUpdateCount;
+import payconiq.stocks.service.StockCache;
+import payconiq.stocks.service.StockEventListener;
+
+/**
+ * Metrics of stock operations published to the Micrometer registry:
+ * <ul>
+ * <li>{@code stocks.service} - latency of {@link payconiq.stocks.service.StockService} methods
+ * with p50/p99/p999 and a histogram, tagged by {@code method};</li>
+ * <li>{@code stocks.price.updates} - number of price updates, per stock counts are kept
+ * outside of the registry (see {@link StockUpdatesEndpoint}) to keep the number of time series bounded;</li>
+ * <li>{@code stocks.update.conflicts} - number of stock updates which conflicted with concurrent updates;</li>
+ * <li>{@code stocks.cache.*} - hits, misses and evictions of {@link StockCache}.</li>
+ * </ul>
+ * Meters are created once, so recording doesn't allocate.
+ */
+@Component
+public class StockMetrics implements StockEventListener {
+
+    /**
+     * Instrumented service methods.
+     */
+    public enum Operation {
+
+        GET_ALL_STOCKS("getAllStocks"),
+        LOOKUP_STOCK("lookupStock"),
+        UPDATE_STOCK_PRICE("updateStockPrice"),
+        UPDATE_STOCK_PRICES("updateStockPrices"),
+        ADD_NEW_STOCK("addNewStock"),
+        DELETE_STOCK("deleteStock"),
+        FIND_PAGINATED("findPaginated"),
+        SEARCH_STOCKS("searchStocks");
+
+        private final String method;
+
+        Operation(String method) {
+            this.method = method;
+        }
+    }
+
+    private final Timer[] timers = new Timer[Operation.values().length];
+
+    private final Counter priceUpdates;
+
+    private final Counter updateConflicts;
+
+    private final StockUpdateCounters stockUpdates;
+
+    public StockMetrics(MeterRegistry registry, StockCache stockCache,
+                        @Value("${stocks.metrics.tracked-stocks:65536}") int trackedStocks) {
+        for (Operation operation : Operation.values()) {
+            timers[operation.ordinal()] = Timer.builder("stocks.service")
+                    .description("Latency of stock service methods")
+                    .tag("method", operation.method)
+                    .publishPercentiles(0.5, 0.99, 0.999)
+                    .publishPercentileHistogram()
+                    .register(registry);
+        }
+        priceUpdates = Counter.builder("stocks.price.updates")
+                .description("Number of stock price updates")
+                .register(registry);
+        updateConflicts = Counter.builder("stocks.update.conflicts")
+                .description("Number of stock updates which conflicted with concurrent updates")
+                .register(registry);
+        stockUpdates = new StockUpdateCounters(trackedStocks);
+        Gauge.builder("stocks.price.updates.untracked", stockUpdates, StockUpdateCounters::untracked)
+                .description("Number of price updates of stocks without own counter")
+                .register(registry);
+
+        FunctionCounter.builder("stocks.cache.hits", stockCache, cache -> cache.stats().getHits())
+                .register(registry);
+        FunctionCounter.builder("stocks.cache.misses", stockCache, cache -> cache.stats().getMisses())
+                .description("Number of stock loads from the database on cache miss")
+                .register(registry);
+        FunctionCounter.builder("stocks.cache.evictions", stockCache, cache -> cache.stats().getEvictions())
+                .register(registry);
+        Gauge.builder("stocks.cache.size", stockCache, cache -> cache.stats().getSize())
+                .register(registry);
+    }
+
+    /**
+     * Records latency of a service method.
+     *
+     * @param operation    - service method.
+     * @param startedNanos - {@link System#nanoTime()} taken when the method started.
+     */
+    public void record(@NonNull Operation operation, long startedNanos) {
+        timers[operation.ordinal()].record(System.nanoTime() - startedNanos, TimeUnit.NANOSECONDS);
+    }
+
+    /**
+     * Counts a stock update which conflicted with a concurrent update.
+     */
+    public void recordConflict() {
+        updateConflicts.increment();
+    }
+
+    @Override
+    public void onPriceUpdated(long id, double oldPrice, double newPrice, long epochMillis) {
+        priceUpdates.increment();
+        stockUpdates.increment(id);
+    }
+
+    @Override
+    public void onStockDeleted(long id) {
+        stockUpdates.reset(id);
+    }
+
+    /**
+     * @param id - id of stock.
+     * @return number of price updates of a stock since start.
+     */
+    public long getUpdates(long id) {
+        return stockUpdates.get(id);
+    }
+
+    /**
+     * @return number of price updates of stocks without own counter.
+     */
+    public long getUntrackedUpdates() {
+        return stockUpdates.untracked();
+    }
+
+    /**
+     * Returns stocks with the most price updates since start.
+     *
+     * @param limit - max number of stocks.
+     * @return counts of price updates, the biggest first.
+     */
+    @NonNull
+    public List<StockUpdateCount> getTopUpdated(int limit) {
+        PriorityQueue<StockUpdateCount> top = new PriorityQueue<>(Comparator.comparingLong(StockUpdateCount::getUpdates));
+        stockUpdates.forEach((id, count) -> {
+            if (top.size() < limit) {
+                top.add(new StockUpdateCount(id, count));
+            } else if (limit > 0 && top.peek().getUpdates() < count) {
+                top.poll();
+                top.add(new StockUpdateCount(id, count));
+            }
+        });
+        List<StockUpdateCount> result = new ArrayList<>(top);
+        result.sort(Comparator.comparingLong(StockUpdateCount::getUpdates).reversed());
+        return result;
+    }
+}
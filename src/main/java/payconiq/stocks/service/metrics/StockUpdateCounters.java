@@ -0,0 +1,115 @@
+package payconiq.stocks.service.metrics;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Fixed-capacity counters of price updates per stock id, kept in primitive arrays
+ * with open addressing, so counting an update doesn't allocate.
+ * <p>
+ * Stock ids are positive, {@code 0} marks an empty slot. Slots are never freed, as stock ids are not reused:
+ * a deleted stock keeps its slot with a zero count. When all slots are taken,
+ * updates of stocks without a slot are counted together as untracked.
+ */
+final class StockUpdateCounters {
+
+    private static final long EMPTY = 0;
+
+    private final AtomicLongArray keys;
+
+    private final AtomicLongArray counts;
+
+    private final int mask;
+
+    private final LongAdder untracked = new LongAdder();
+
+    StockUpdateCounters(int capacity) {
+        if (capacity <= 0 || capacity > 1 << 30) {
+            throw new IllegalArgumentException("Number of tracked stocks should be within 1.." + (1 << 30));
+        }
+        int size = Integer.highestOneBit(capacity - 1) << 1;
+        size = Math.max(size, 1);
+        keys = new AtomicLongArray(size);
+        counts = new AtomicLongArray(size);
+        mask = size - 1;
+    }
+
+    void increment(long id) {
+        int slot = firstSlot(id);
+        for (int probe = 0; probe <= mask; probe++) {
+            long key = keys.get(slot);
+            if (key == EMPTY && keys.compareAndSet(slot, EMPTY, id)) {
+                key = id;
+            } else if (key == EMPTY) {
+                // another stock took the slot meanwhile
+                key = keys.get(slot);
+            }
+            if (key == id) {
+                counts.incrementAndGet(slot);
+                return;
+            }
+            slot = (slot + 1) & mask;
+        }
+        untracked.increment();
+    }
+
+    long get(long id) {
+        int slot = firstSlot(id);
+        for (int probe = 0; probe <= mask; probe++) {
+            long key = keys.get(slot);
+            if (key == id) {
+                return counts.get(slot);
+            }
+            if (key == EMPTY) {
+                return 0;
+            }
+            slot = (slot + 1) & mask;
+        }
+        return 0;
+    }
+
+    void reset(long id) {
+        int slot = firstSlot(id);
+        for (int probe = 0; probe <= mask; probe++) {
+            long key = keys.get(slot);
+            if (key == id) {
+                counts.set(slot, 0);
+                return;
+            }
+            if (key == EMPTY) {
+                return;
+            }
+            slot = (slot + 1) & mask;
+        }
+    }
+
+    long untracked() {
+        return untracked.sum();
+    }
+
+    /**
+     * Passes every stock with a non-zero count to a visitor.
+     *
+     * @param visitor - visitor of counts.
+     */
+    void forEach(CountVisitor visitor) {
+        for (int slot = 0; slot <= mask; slot++) {
+            long key = keys.get(slot);
+            long count = counts.get(slot);
+            if (key != EMPTY && count > 0) {
+                visitor.visit(key, count);
+            }
+        }
+    }
+
+    private int firstSlot(long id) {
+        long hash = id * 0x9E3779B97F4A7C15L;
+        return (int) (hash ^ (hash >>> 32)) & mask;
+    }
+
+    @FunctionalInterface
+    interface CountVisitor {
+
+        void visit(long id, long count);
+    }
+}
@@ -0,0 +1,47 @@
+package payconiq.stocks.service.metrics;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.actuate.endpoint.annotation.Endpoint;
+import org.springframework.boot.actuate.endpoint.annotation.ReadOperation;
+import org.springframework.boot.actuate.endpoint.annotation.Selector;
+import org.springframework.lang.Nullable;
+import org.springframework.stereotype.Component;
+
+import payconiq.stocks.response.StockUpdateCount;
+
+/**
+ * Actuator endpoint {@code /actuator/stockupdates} with numbers of price updates per stock since start.
+ */
+@Component
+@Endpoint(id = "stockupdates")
+public class StockUpdatesEndpoint {
+
+    private static final int DEFAULT_TOP = 20;
+
+    @Autowired
+    private StockMetrics stockMetrics;
+
+    /**
+     * @param top - number of the most updated stocks to return, 20 by default.
+     * @return the most updated stocks and the number of updates of stocks without own counter.
+     */
+    @ReadOperation
+    public Map<String, Object> topUpdated(@Nullable Integer top) {
+        Map<String, Object> updates = new LinkedHashMap<>();
+        updates.put("stocks", stockMetrics.getTopUpdated(top == null ? DEFAULT_TOP : Math.max(top, 0)));
+        updates.put("untracked", stockMetrics.getUntrackedUpdates());
+        return updates;
+    }
+
+    /**
+     * @param id - id of stock.
+     * @return number of price updates of a stock.
+     */
+    @ReadOperation
+    public StockUpdateCount updatesOf(@Selector long id) {
+        return new StockUpdateCount(id, stockMetrics.getUpdates(id));
+    }
+}
@@ -0,0 +1,800 @@
+package payconiq.stocks.service.persistence;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.StreamCorruptedException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.sql.Timestamp;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.stream.Stream;
+import java.util.zip.CRC32;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.SmartInitializingSingleton;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Lazy;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.lang.NonNull;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronizationAdapter;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import payconiq.stocks.model.Stock;
+import payconiq.stocks.repository.StockRepository;
+import payconiq.stocks.response.PersistenceStats;
+import payconiq.stocks.response.StockChange;
+import payconiq.stocks.service.HotPriceStore;
+import payconiq.stocks.service.bulk.StockBinaryFormat;
+
+/**
+ * Makes stocks durable across restarts in "persistence" mode: every change made by
+ * {@link payconiq.stocks.service.StockService} is appended to a write-ahead log under {@code stocks.persistence.dir}
+ * before it is committed, and a compact binary snapshot of all stocks is written every {@code stocks.persistence.snapshot-interval},
+ * after which the log it covers is deleted.
+ * <p>
+ * Changes made within a transaction are appended together right before the commit, once the transaction is flushed,
+ * and the commit waits until they are forced to disk. A single writer forces everything appended meanwhile at once
+ * ("group commit"), so concurrent commits share an fsync, {@code stocks.persistence.group-commit-delay} makes
+ * the writer wait for more changes before forcing. A transaction rolled back after its changes were appended
+ * is followed by an abort record and its changes are not replayed.
+ * <p>
+ * On startup the latest snapshot is loaded and the log following it is replayed in memory,
+ * then the resulting stocks are inserted into the database with JDBC batches, so recovery takes time
+ * proportional to the number of stocks and the length of the log tail rather than to the whole history.
+ * <p>
+ * Log segment {@code journal-<number>.log} is a sequence of records: length int, CRC32 of the body int
+ * and the body: type byte, position long, transaction long (position of its first record) and a stock
+ * in {@link StockBinaryFormat} with its version or an id of a deleted stock. A record torn by a crash
+ * at the end of the last segment is cut off. Snapshot {@code snapshot.bin} starts with a magic int and
+ * the log position it covers, followed by stocks in {@link StockBinaryFormat}, each with its version.
+ */
+@Component
+@ConditionalOnProperty(name = "stocks.persistence.enabled", havingValue = "true")
+@Lazy(false)
+public class StockJournal implements SmartInitializingSingleton {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(StockJournal.class);
+
+    private static final int SNAPSHOT_MAGIC = 0x534E5031;
+
+    private static final String SNAPSHOT_FILE = "snapshot.bin";
+
+    private static final String SEGMENT_PREFIX = "journal-";
+
+    private static final String SEGMENT_SUFFIX = ".log";
+
+    private static final byte SAVED = 1;
+
+    private static final byte DELETED = 2;
+
+    private static final byte ABORTED = 3;
+
+    /**
+     * Type, position and transaction of a record body.
+     */
+    private static final int BODY_HEADER_SIZE = 17;
+
+    private static final int MAX_RECORD_SIZE = 1 << 20;
+
+    private static final int INSERT_BATCH_SIZE = 1000;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private StockRepository stockRepository;
+
+    @Autowired(required = false)
+    private HotPriceStore hotPriceStore;
+
+    @Value("${stocks.persistence.dir:${java.io.tmpdir}/stocks-data}")
+    private String directory;
+
+    @Value("${stocks.persistence.group-commit-delay:0ms}")
+    private Duration groupCommitDelay;
+
+    @Value("${stocks.persistence.snapshot-interval:10m}")
+    private Duration snapshotInterval;
+
+    private Path dir;
+
+    private final ReentrantLock lock = new ReentrantLock();
+
+    private final Condition appended = lock.newCondition();
+
+    private final Condition forced = lock.newCondition();
+
+    /**
+     * Records appended but not yet written, guarded by {@link #lock}.
+     */
+    private List<Record> pending = new ArrayList<>();
+
+    /**
+     * Positions of the first records of transactions which are appended but not completed, guarded by {@link #lock}.
+     */
+    private final TreeSet<Long> openTransactions = new TreeSet<>();
+
+    private long head;
+
+    private long durable;
+
+    private IOException failure;
+
+    private volatile boolean running;
+
+    /**
+     * Last positions of closed log segments by segment number, guarded by {@link #segmentLock}.
+     */
+    private final TreeMap<Long, Long> closedSegments = new TreeMap<>();
+
+    private final Object segmentLock = new Object();
+
+    private long segmentNumber;
+
+    private long segmentLastPosition;
+
+    private FileChannel channel;
+
+    private long snapshotPosition;
+
+    private boolean recovered;
+
+    private long records;
+
+    private long syncs;
+
+    private long syncNanos;
+
+    private long snapshots;
+
+    private ExecutorService writer;
+
+    private ScheduledExecutorService scheduler;
+
+    /**
+     * Recovers stocks from the snapshot and the log and starts writing a new log segment.
+     * Runs before the other components load stocks from the database.
+     */
+    @PostConstruct
+    void start() throws IOException {
+        dir = Paths.get(directory);
+        Files.createDirectories(dir);
+        recover();
+        openSegment(segmentNumber + 1);
+        running = true;
+        writer = Executors.newSingleThreadExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "stock-journal-writer");
+            thread.setDaemon(true);
+            return thread;
+        });
+        writer.execute(this::write);
+        scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "stock-snapshot-writer");
+            thread.setDaemon(true);
+            return thread;
+        });
+        long intervalMillis = snapshotInterval.toMillis();
+        scheduler.scheduleWithFixedDelay(this::snapshotSafely, intervalMillis, intervalMillis, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Writes a snapshot right after startup, so that initial stocks are persisted and the replayed log is compacted.
+     */
+    @Override
+    public void afterSingletonsInstantiated() {
+        snapshotSafely();
+    }
+
+    /**
+     * Writes a snapshot so that the next startup doesn't replay the log and stops the writer.
+     */
+    @PreDestroy
+    void stop() throws InterruptedException, IOException {
+        scheduler.shutdown();
+        scheduler.awaitTermination(30, TimeUnit.SECONDS);
+        snapshotSafely();
+        lock.lock();
+        try {
+            running = false;
+            appended.signalAll();
+        } finally {
+            lock.unlock();
+        }
+        writer.shutdown();
+        if (!writer.awaitTermination(30, TimeUnit.SECONDS)) {
+            LOGGER.warn("Stock journal writer didn't finish in time");
+        }
+        synchronized (segmentLock) {
+            channel.close();
+        }
+    }
+
+    /**
+     * @return true when stocks were recovered from an earlier run, so initial stocks shouldn't be added.
+     */
+    public boolean isRecovered() {
+        return recovered;
+    }
+
+    /**
+     * Logs a save of a stock. Within a transaction the stock is logged in the state it is committed in,
+     * otherwise it is logged right away.
+     *
+     * @param stock - saved stock, may be managed by the current transaction.
+     * @throws UncheckedIOException when the log can't be written.
+     */
+    public void saved(@NonNull Stock stock) {
+        Transaction transaction = currentTransaction();
+        if (transaction == null) {
+            appendAndForce(Collections.singletonList(savedRecord(stock)), false);
+        } else {
+            transaction.stocks.add(stock);
+        }
+    }
+
+    /**
+     * Logs a deletion of a stock, within a transaction on its commit, otherwise right away.
+     *
+     * @param id - id of deleted stock.
+     * @throws UncheckedIOException when the log can't be written.
+     */
+    public void deleted(long id) {
+        Transaction transaction = currentTransaction();
+        if (transaction == null) {
+            appendAndForce(Collections.singletonList(deletedRecord(id)), false);
+        } else {
+            transaction.stocks.add(id);
+        }
+    }
+
+    /**
+     * Writes a snapshot of all stocks and deletes log segments it covers.
+     *
+     * @throws UncheckedIOException when the snapshot can't be written.
+     */
+    public synchronized void snapshot() {
+        long position;
+        lock.lock();
+        try {
+            position = openTransactions.isEmpty() ? head : openTransactions.first() - 1;
+        } finally {
+            lock.unlock();
+        }
+        long started = System.nanoTime();
+        try {
+            synchronized (segmentLock) {
+                closeSegment();
+                openSegment(segmentNumber + 1);
+            }
+            int count = writeSnapshot(position);
+            synchronized (segmentLock) {
+                Iterator<Map.Entry<Long, Long>> segments = closedSegments.entrySet().iterator();
+                while (segments.hasNext()) {
+                    Map.Entry<Long, Long> segment = segments.next();
+                    if (segment.getValue() <= position) {
+                        Files.deleteIfExists(segmentPath(segment.getKey()));
+                        segments.remove();
+                    }
+                }
+            }
+            lock.lock();
+            try {
+                snapshotPosition = position;
+                snapshots++;
+            } finally {
+                lock.unlock();
+            }
+            LOGGER.info("Wrote snapshot of {} stocks at position {} in {} ms", count, position,
+                    TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - started));
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    @NonNull
+    public PersistenceStats stats() {
+        lock.lock();
+        try {
+            return new PersistenceStats(head, durable, snapshotPosition, records, syncs,
+                    syncs == 0 ? 0 : TimeUnit.NANOSECONDS.toMicros(syncNanos / syncs), snapshots);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void snapshotSafely() {
+        try {
+            snapshot();
+        } catch (RuntimeException e) {
+            LOGGER.error("Stock snapshot failed", e);
+        }
+    }
+
+    private Transaction currentTransaction() {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            return null;
+        }
+        Transaction transaction = (Transaction) TransactionSynchronizationManager.getResource(this);
+        if (transaction == null) {
+            transaction = new Transaction();
+            TransactionSynchronizationManager.bindResource(this, transaction);
+            TransactionSynchronizationManager.registerSynchronization(transaction);
+        }
+        return transaction;
+    }
+
+    /**
+     * Appends records and waits until they are forced to disk.
+     *
+     * @param records     - records to append in order.
+     * @param transaction - true when records are of a transaction, which stays open until {@link #completed(long, boolean)}.
+     * @return position of the first record.
+     */
+    private long appendAndForce(List<Record> records, boolean transaction) {
+        long first;
+        long last;
+        lock.lock();
+        try {
+            checkFailure();
+            if (!running) {
+                throw new IllegalStateException("Stock journal is stopped");
+            }
+            first = head + 1;
+            for (Record record : records) {
+                record.position = ++head;
+                record.transaction = first;
+                pending.add(record);
+            }
+            last = head;
+            if (transaction) {
+                openTransactions.add(first);
+            }
+            appended.signal();
+            while (durable < last) {
+                checkFailure();
+                forced.awaitUninterruptibly();
+            }
+        } finally {
+            lock.unlock();
+        }
+        return first;
+    }
+
+    /**
+     * Ends a transaction, appending an abort record when it was rolled back after its records were appended.
+     */
+    private void completed(long transaction, boolean committed) {
+        lock.lock();
+        try {
+            openTransactions.remove(transaction);
+            if (!committed && failure == null) {
+                Record record = new Record(ABORTED, new byte[0]);
+                record.position = ++head;
+                record.transaction = transaction;
+                pending.add(record);
+                appended.signal();
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void checkFailure() {
+        if (failure != null) {
+            throw new UncheckedIOException("Stock journal can't be written", failure);
+        }
+    }
+
+    /**
+     * Writes appended records in batches, forcing each batch to disk once.
+     */
+    private void write() {
+        while (true) {
+            List<Record> batch;
+            lock.lock();
+            try {
+                while (pending.isEmpty() && running) {
+                    appended.awaitUninterruptibly();
+                }
+                if (pending.isEmpty()) {
+                    return;
+                }
+                long delayNanos = groupCommitDelay.toNanos();
+                while (delayNanos > 0 && running) {
+                    delayNanos = appended.awaitNanos(delayNanos);
+                }
+                batch = pending;
+                pending = new ArrayList<>();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            } finally {
+                lock.unlock();
+            }
+
+            long started = System.nanoTime();
+            IOException error = null;
+            try {
+                writeBatch(batch);
+            } catch (IOException e) {
+                LOGGER.error("Stock journal can't be written, further changes are rejected", e);
+                error = e;
+            }
+            lock.lock();
+            try {
+                if (error == null) {
+                    durable = batch.get(batch.size() - 1).position;
+                    records += batch.size();
+                    syncs++;
+                    syncNanos += System.nanoTime() - started;
+                } else {
+                    failure = error;
+                }
+                forced.signalAll();
+            } finally {
+                lock.unlock();
+            }
+            if (error != null) {
+                return;
+            }
+        }
+    }
+
+    private void writeBatch(List<Record> batch) throws IOException {
+        int size = 0;
+        for (Record record : batch) {
+            size += 8 + BODY_HEADER_SIZE + record.payload.length;
+        }
+        ByteBuffer buffer = ByteBuffer.allocate(size);
+        CRC32 crc = new CRC32();
+        for (Record record : batch) {
+            int start = buffer.position();
+            buffer.putInt(BODY_HEADER_SIZE + record.payload.length);
+            buffer.putInt(0);
+            buffer.put(record.type);
+            buffer.putLong(record.position);
+            buffer.putLong(record.transaction);
+            buffer.put(record.payload);
+            crc.reset();
+            crc.update(buffer.array(), start + 8, BODY_HEADER_SIZE + record.payload.length);
+            buffer.putInt(start + 4, (int) crc.getValue());
+        }
+        buffer.flip();
+        synchronized (segmentLock) {
+            while (buffer.hasRemaining()) {
+                channel.write(buffer);
+            }
+            channel.force(false);
+            segmentLastPosition = batch.get(batch.size() - 1).position;
+        }
+    }
+
+    private void openSegment(long number) throws IOException {
+        channel = FileChannel.open(segmentPath(number),
+                StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING);
+        segmentNumber = number;
+        segmentLastPosition = 0;
+    }
+
+    private void closeSegment() throws IOException {
+        channel.close();
+        closedSegments.put(segmentNumber, segmentLastPosition);
+    }
+
+    private Path segmentPath(long number) {
+        return dir.resolve(String.format("%s%012d%s", SEGMENT_PREFIX, number, SEGMENT_SUFFIX));
+    }
+
+    /**
+     * Writes all stocks, with prices kept in memory in "hot price" mode, to a temporary file
+     * which replaces the snapshot once it is forced to disk.
+     *
+     * @param position - log position the snapshot covers.
+     * @return number of written stocks.
+     */
+    private int writeSnapshot(long position) throws IOException {
+        Path temporary = dir.resolve(SNAPSHOT_FILE + ".tmp");
+        int[] count = new int[1];
+        try (FileChannel file = FileChannel.open(temporary,
+                StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Channels.newOutputStream(file), 1 << 16));
+            out.writeInt(SNAPSHOT_MAGIC);
+            out.writeLong(position);
+            StockBinaryFormat.writeHeader(out);
+            jdbcTemplate.query("select id, name, current_price, last_update, version from stock order by id", resultSet -> {
+                Stock stock = new Stock();
+                stock.setId(resultSet.getLong(1));
+                stock.setName(resultSet.getString(2));
+                stock.setCurrentPrice(resultSet.getDouble(3));
+                Timestamp lastUpdate = resultSet.getTimestamp(4);
+                stock.setLastUpdate(lastUpdate == null ? null : lastUpdate.toInstant());
+                if (hotPriceStore != null) {
+                    stock = hotPriceStore.overlay(stock);
+                }
+                try {
+                    StockBinaryFormat.writeStock(out, stock);
+                    out.writeLong(resultSet.getLong(5));
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+                count[0]++;
+            });
+            StockBinaryFormat.writeEnd(out);
+            out.flush();
+            file.force(false);
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+        Files.move(temporary, dir.resolve(SNAPSHOT_FILE), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        return count[0];
+    }
+
+    /**
+     * Loads the snapshot, replays the log following it and inserts recovered stocks into the database.
+     */
+    private void recover() throws IOException {
+        long started = System.nanoTime();
+        TreeMap<Long, StockChange> stocks = new TreeMap<>();
+        Path snapshot = dir.resolve(SNAPSHOT_FILE);
+        if (Files.exists(snapshot)) {
+            snapshotPosition = readSnapshot(snapshot, stocks);
+            recovered = true;
+        }
+        head = snapshotPosition;
+
+        List<LoggedChange> tail = new ArrayList<>();
+        Set<Long> aborted = new HashSet<>();
+        List<Path> segments = listSegments();
+        for (int i = 0; i < segments.size(); i++) {
+            Path segment = segments.get(i);
+            long number = segmentNumber(segment);
+            long lastPosition = readSegment(segment, i == segments.size() - 1, tail, aborted);
+            closedSegments.put(number, lastPosition);
+            segmentNumber = number;
+            head = Math.max(head, lastPosition);
+        }
+        durable = head;
+        int replayed = 0;
+        for (LoggedChange logged : tail) {
+            StockChange change = logged.change;
+            if (change.getPosition() <= snapshotPosition || aborted.contains(logged.transaction)) {
+                continue;
+            }
+            replayed++;
+            recovered = true;
+            if (change.isDeleted()) {
+                stocks.remove(change.getId());
+                continue;
+            }
+            // records are read in order of positions, which follows the order of commits
+            stocks.put(change.getId(), change);
+        }
+
+        insert(stocks);
+        LOGGER.info("Recovered {} stocks from snapshot at position {} and {} log records in {} ms", stocks.size(),
+                snapshotPosition, replayed, TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - started));
+    }
+
+    private long readSnapshot(Path snapshot, Map<Long, StockChange> stocks) throws IOException {
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(snapshot), 1 << 16))) {
+            if (in.readInt() != SNAPSHOT_MAGIC) {
+                throw new StreamCorruptedException("Not a stock snapshot: " + snapshot);
+            }
+            long position = in.readLong();
+            StockBinaryFormat.readHeader(in);
+            Stock stock;
+            while ((stock = StockBinaryFormat.readStock(in)) != null) {
+                long version = in.readLong();
+                stocks.put(stock.getId(), new StockChange(position, stock.getId(), stock.getName(), stock.getCurrentPrice(),
+                        stock.getLastUpdate(), version, false));
+            }
+            return position;
+        }
+    }
+
+    /**
+     * Reads records of a log segment: saved and deleted stocks with their transactions
+     * and, apart from them, aborted transactions.
+     *
+     * @return position of the last record of the segment.
+     * @throws StreamCorruptedException when a segment other than the last one is corrupted.
+     */
+    private long readSegment(Path segment, boolean last, List<LoggedChange> changes, Set<Long> aborted) throws IOException {
+        long offset = 0;
+        long lastPosition = 0;
+        CRC32 crc = new CRC32();
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(segment), 1 << 16))) {
+            while (true) {
+                int length;
+                try {
+                    length = in.readInt();
+                } catch (EOFException e) {
+                    return lastPosition;
+                }
+                byte[] body;
+                try {
+                    int checksum = in.readInt();
+                    if (length < BODY_HEADER_SIZE || length > MAX_RECORD_SIZE) {
+                        throw new StreamCorruptedException("Incorrect record length " + length);
+                    }
+                    body = new byte[length];
+                    in.readFully(body);
+                    crc.reset();
+                    crc.update(body);
+                    if ((int) crc.getValue() != checksum) {
+                        throw new StreamCorruptedException("Record checksum mismatch");
+                    }
+                } catch (EOFException | StreamCorruptedException e) {
+                    if (!last) {
+                        throw new StreamCorruptedException("Stock journal segment " + segment + " is corrupted at " + offset);
+                    }
+                    LOGGER.warn("Cutting off torn record at {} of {}", offset, segment);
+                    try (FileChannel file = FileChannel.open(segment, StandardOpenOption.WRITE)) {
+                        file.truncate(offset);
+                    }
+                    return lastPosition;
+                }
+                offset += 8 + length;
+                DataInputStream record = new DataInputStream(new ByteArrayInputStream(body));
+                byte type = record.readByte();
+                long position = record.readLong();
+                long transaction = record.readLong();
+                lastPosition = position;
+                if (type == SAVED) {
+                    Stock stock = StockBinaryFormat.readStock(record);
+                    long version = record.readLong();
+                    changes.add(new LoggedChange(transaction, new StockChange(position, stock.getId(), stock.getName(),
+                            stock.getCurrentPrice(), stock.getLastUpdate(), version, false)));
+                } else if (type == DELETED) {
+                    changes.add(new LoggedChange(transaction, StockChange.deleted(position, record.readLong())));
+                } else if (type == ABORTED) {
+                    aborted.add(transaction);
+                } else {
+                    throw new StreamCorruptedException("Unexpected record type " + type);
+                }
+            }
+        }
+    }
+
+    private List<Path> listSegments() throws IOException {
+        try (Stream<Path> files = Files.list(dir)) {
+            List<Path> segments = new ArrayList<>();
+            files.filter(file -> file.getFileName().toString().startsWith(SEGMENT_PREFIX)
+                    && file.getFileName().toString().endsWith(SEGMENT_SUFFIX)).forEach(segments::add);
+            segments.sort((first, second) -> Long.compare(segmentNumber(first), segmentNumber(second)));
+            return segments;
+        }
+    }
+
+    private static long segmentNumber(Path segment) {
+        String name = segment.getFileName().toString();
+        return Long.parseLong(name.substring(SEGMENT_PREFIX.length(), name.length() - SEGMENT_SUFFIX.length()));
+    }
+
+    /**
+     * Inserts recovered stocks with JDBC batches and moves the id sequence past them.
+     */
+    private void insert(TreeMap<Long, StockChange> stocks) {
+        List<StockChange> batch = new ArrayList<>(stocks.values());
+        jdbcTemplate.batchUpdate("merge into stock (id, name, normalized_name, current_price, last_update, version) key (id) " +
+                "values (?, ?, ?, ?, ?, ?)", batch, INSERT_BATCH_SIZE, (statement, change) -> {
+            statement.setLong(1, change.getId());
+            statement.setString(2, change.getName());
+            statement.setString(3, Stock.normalizeName(change.getName()));
+            statement.setDouble(4, change.getCurrentPrice());
+            statement.setTimestamp(5, change.getLastUpdate() == null ? null : Timestamp.from(change.getLastUpdate()));
+            statement.setLong(6, change.getVersion());
+        });
+        long maxId = stocks.isEmpty() ? 0 : stocks.lastKey();
+        if (maxId > 0) {
+            jdbcTemplate.execute("alter sequence stock_seq restart with " + (maxId + 51));
+        }
+    }
+
+    private Record savedRecord(Stock stock) {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(64);
+        DataOutputStream out = new DataOutputStream(bytes);
+        try {
+            StockBinaryFormat.writeStock(out, stock);
+            out.writeLong(stock.getVersion());
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return new Record(SAVED, bytes.toByteArray());
+    }
+
+    private static Record deletedRecord(long id) {
+        return new Record(DELETED, ByteBuffer.allocate(8).putLong(id).array());
+    }
+
+    private static class LoggedChange {
+
+        private final long transaction;
+
+        private final StockChange change;
+
+        private LoggedChange(long transaction, StockChange change) {
+            this.transaction = transaction;
+            this.change = change;
+        }
+    }
+
+    private static class Record {
+
+        private final byte type;
+
+        private final byte[] payload;
+
+        private long position;
+
+        private long transaction;
+
+        private Record(byte type, byte[] payload) {
+            this.type = type;
+            this.payload = payload;
+        }
+    }
+
+    /**
+     * Changes of stocks made within a transaction: saved stocks and ids of deleted ones in order.
+     */
+    private class Transaction extends TransactionSynchronizationAdapter {
+
+        private final List<Object> stocks = new ArrayList<>();
+
+        private long first;
+
+        @Override
+        public void beforeCommit(boolean readOnly) {
+            stockRepository.flush();
+            List<Record> records = new ArrayList<>(stocks.size());
+            for (Object stock : stocks) {
+                records.add(stock instanceof Stock ? savedRecord((Stock) stock) : deletedRecord((Long) stock));
+            }
+            first = appendAndForce(records, true);
+        }
+
+        @Override
+        public void afterCompletion(int status) {
+            TransactionSynchronizationManager.unbindResource(StockJournal.this);
+            if (first != 0) {
+                completed(first, status == STATUS_COMMITTED);
+            }
+        }
+    }
+}
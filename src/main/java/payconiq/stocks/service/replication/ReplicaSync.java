@@ -0,0 +1,179 @@
+package payconiq.stocks.service.replication;
+
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Lazy;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.lang.NonNull;
+import org.springframework.stereotype.Component;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import payconiq.stocks.response.ChangeBatch;
+import payconiq.stocks.response.ReplicationStats;
+import payconiq.stocks.service.StockService;
+
+/**
+ * Keeps stocks of a read-only replica up to date with the primary at {@code stocks.replication.primary-url}:
+ * polls the change log of the primary (see {@link StockChangeLog}) every {@code stocks.replication.poll-interval}
+ * and applies changes to the local database. The first poll, and a poll after the replica fell out of the log,
+ * bring a snapshot of all stocks.
+ */
+@Component
+@ConditionalOnProperty(name = "stocks.replication.role", havingValue = "replica")
+@Lazy(false)
+public class ReplicaSync implements ReplicationNode {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(ReplicaSync.class);
+
+    @Autowired
+    private StockService stockService;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @Value("${stocks.replication.primary-url}")
+    private String primaryUrl;
+
+    @Value("${stocks.replication.poll-interval:100ms}")
+    private Duration pollInterval;
+
+    @Value("${stocks.replication.batch-size:1000}")
+    private int batchSize;
+
+    @Value("${stocks.replication.timeout:5s}")
+    private Duration timeout;
+
+    private ScheduledExecutorService scheduler;
+
+    private HttpClient httpClient;
+
+    /**
+     * Applied position of the change log, -1 until the first snapshot is applied.
+     */
+    private long position = -1;
+
+    private volatile long primaryPosition = -1;
+
+    private volatile long upToDateMillis = System.currentTimeMillis();
+
+    private boolean failing;
+
+    @PostConstruct
+    void start() {
+        if (primaryUrl.isBlank() || batchSize <= 0) {
+            throw new IllegalArgumentException("Replica needs url of the primary and positive batch size");
+        }
+        primaryUrl = primaryUrl.endsWith("/") ? primaryUrl.substring(0, primaryUrl.length() - 1) : primaryUrl;
+        httpClient = HttpClient.newBuilder()
+                .version(HttpClient.Version.HTTP_1_1)
+                .connectTimeout(timeout)
+                .build();
+        scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "replica-sync");
+            thread.setDaemon(true);
+            return thread;
+        });
+        scheduler.scheduleWithFixedDelay(this::poll, 0, pollInterval.toMillis(), TimeUnit.MILLISECONDS);
+    }
+
+    @PreDestroy
+    void stop() {
+        scheduler.shutdownNow();
+    }
+
+    /**
+     * Applies all changes the primary has logged since the last poll.
+     */
+    void poll() {
+        try {
+            ChangeBatch batch;
+            do {
+                batch = fetch(position());
+                stockService.applyChanges(batch.getChanges(), batch.isReset());
+                synchronized (this) {
+                    position = batch.getPosition();
+                    notifyAll();
+                }
+                primaryPosition = batch.getHead();
+                if (batch.getPosition() >= batch.getHead()) {
+                    upToDateMillis = System.currentTimeMillis();
+                }
+            } while (!batch.isReset() && batch.getChanges().size() == batchSize);
+            if (failing) {
+                LOGGER.info("Replication from {} is restored at position {}", primaryUrl, batch.getPosition());
+                failing = false;
+            }
+        } catch (Exception e) {
+            if (!failing) {
+                LOGGER.warn("Replication from {} failed, retrying", primaryUrl, e);
+                failing = true;
+            }
+        }
+    }
+
+    private ChangeBatch fetch(long after) throws Exception {
+        String query = "?limit=" + batchSize + (after < 0 ? "" : "&after=" + after);
+        HttpRequest request = HttpRequest.newBuilder(URI.create(primaryUrl + "/api/replication/changes" + query))
+                .timeout(timeout)
+                .header(HttpHeaders.ACCEPT, MediaType.APPLICATION_JSON_VALUE)
+                .GET()
+                .build();
+        HttpResponse<byte[]> response = httpClient.send(request, HttpResponse.BodyHandlers.ofByteArray());
+        if (response.statusCode() != 200) {
+            throw new IllegalStateException("Primary responded with status " + response.statusCode());
+        }
+        return objectMapper.readValue(response.body(), ChangeBatch.class);
+    }
+
+    @Override
+    public synchronized long position() {
+        return position;
+    }
+
+    /**
+     * Waits until changes up to a given position are applied.
+     *
+     * @param target  - position of the change log, e.g. returned by the primary with a write.
+     * @param maxWait - max time to wait.
+     * @return false when the position wasn't reached in time.
+     * @throws InterruptedException when interrupted while waiting.
+     */
+    public synchronized boolean awaitPosition(long target, @NonNull Duration maxWait) throws InterruptedException {
+        long deadline = System.nanoTime() + maxWait.toNanos();
+        while (position < target) {
+            long left = deadline - System.nanoTime();
+            if (left <= 0) {
+                return false;
+            }
+            TimeUnit.NANOSECONDS.timedWait(this, left);
+        }
+        return true;
+    }
+
+    @NonNull
+    @Override
+    public ReplicationStats stats() {
+        long applied = position();
+        long primary = primaryPosition;
+        boolean upToDate = applied >= 0 && applied >= primary;
+        return new ReplicationStats("replica", applied, primary, Math.max(primary - applied, 0),
+                upToDate ? 0 : System.currentTimeMillis() - upToDateMillis);
+    }
+}
@@ -0,0 +1,28 @@
+package payconiq.stocks.service.replication;
+
+import org.springframework.lang.NonNull;
+
+import payconiq.stocks.response.ReplicationStats;
+
+/**
+ * Node taking part in replication of stocks, see {@link StockChangeLog} and {@link ReplicaSync}.
+ */
+public interface ReplicationNode {
+
+    /**
+     * Header with a position of the change log: is returned with responses of both primary and replicas,
+     * and can be sent to a replica to read only after it has applied changes up to the position.
+     */
+    String POSITION_HEADER = "X-Stocks-Position";
+
+    /**
+     * @return position of the change log this node is up to date with.
+     */
+    long position();
+
+    /**
+     * @return position and lag of this node.
+     */
+    @NonNull
+    ReplicationStats stats();
+}
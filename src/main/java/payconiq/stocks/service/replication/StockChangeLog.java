@@ -0,0 +1,249 @@
+package payconiq.stocks.service.replication;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeSet;
+
+import javax.annotation.PostConstruct;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.lang.NonNull;
+import org.springframework.lang.Nullable;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronizationAdapter;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import payconiq.stocks.exception.IncorrectRequestException;
+import payconiq.stocks.model.Stock;
+import payconiq.stocks.repository.StockRepository;
+import payconiq.stocks.response.ChangeBatch;
+import payconiq.stocks.response.ReplicationStats;
+import payconiq.stocks.response.StockChange;
+
+/**
+ * Ordered log of committed changes of stocks kept by the primary for replicas, see {@link ReplicaSync}.
+ * Every saved stock and every deleted id gets the next position. Only the latest {@code stocks.replication.log-capacity}
+ * changes are kept, a replica falling further behind starts over from a snapshot of all stocks.
+ * <p>
+ * Changes made within a transaction get their positions before commit, while the transaction still holds its rows,
+ * so conflicting changes of a stock or of a name are logged in the order they are committed.
+ * They are read by replicas only after all transactions with earlier positions are completed,
+ * positions of a rolled back transaction are skipped. A save of a stock outside of a transaction
+ * (a "hot" price) following the deletion of the stock is not logged, so a replica never brings it back.
+ */
+@Component
+@ConditionalOnProperty(name = "stocks.replication.role", havingValue = "primary")
+public class StockChangeLog implements ReplicationNode {
+
+    @Autowired
+    private StockRepository stockRepository;
+
+    @Value("${stocks.replication.log-capacity:100000}")
+    private int capacity;
+
+    private StockChange[] changes;
+
+    private long head;
+
+    /**
+     * First positions of transactions which are not completed yet.
+     */
+    private final TreeSet<Long> openTransactions = new TreeSet<>();
+
+    /**
+     * Positions of deletions kept in the log by id of deleted stock.
+     */
+    private final Map<Long, Long> deletions = new HashMap<>();
+
+    @PostConstruct
+    void init() {
+        if (capacity <= 0) {
+            throw new IllegalArgumentException("Change log capacity should be greater than zero");
+        }
+        changes = new StockChange[capacity];
+    }
+
+    /**
+     * Logs a save of a stock. Within a transaction the stock is logged in the state it is committed in,
+     * otherwise it is logged right away.
+     *
+     * @param stock - saved stock, may be managed by the current transaction.
+     */
+    public void saved(@NonNull Stock stock) {
+        Transaction transaction = currentTransaction();
+        if (transaction == null) {
+            savedNow(stock.copy());
+        } else {
+            transaction.stocks.add(stock);
+        }
+    }
+
+    /**
+     * Logs a deletion of a stock, within a transaction on its commit, otherwise right away.
+     *
+     * @param id - id of deleted stock.
+     */
+    public void deleted(long id) {
+        Transaction transaction = currentTransaction();
+        if (transaction == null) {
+            append(Collections.singletonList(id), false);
+        } else {
+            transaction.stocks.add(id);
+        }
+    }
+
+    /**
+     * @return position of the latest change, including changes of transactions which are being committed.
+     */
+    @Override
+    public synchronized long position() {
+        return head;
+    }
+
+    /**
+     * @return position up to which all changes are committed, a snapshot of stocks taken now covers them.
+     */
+    public synchronized long committedPosition() {
+        return openTransactions.isEmpty() ? head : openTransactions.first() - 1;
+    }
+
+    /**
+     * Reads committed changes following a given position.
+     *
+     * @param after - position to read after.
+     * @param limit - max number of changes.
+     * @return changes following the position or null when they are no longer kept.
+     * @throws IncorrectRequestException when the position is ahead of the log or limit is not positive.
+     */
+    @Nullable
+    public synchronized ChangeBatch read(long after, int limit) {
+        if (after < 0 || after > head) {
+            throw new IncorrectRequestException("Position should be within 0.." + head);
+        }
+        if (limit <= 0) {
+            throw new IncorrectRequestException("Changes limit should be greater than zero");
+        }
+        if (head - after > capacity) {
+            return null;
+        }
+        long last = Math.max(after, Math.min(committedPosition(), after + limit));
+        List<StockChange> batch = new ArrayList<>((int) (last - after));
+        for (long position = after + 1; position <= last; position++) {
+            StockChange change = changes[(int) (position % capacity)];
+            if (change != null) {
+                batch.add(change);
+            }
+        }
+        return new ChangeBatch(last, head, false, batch);
+    }
+
+    @NonNull
+    @Override
+    public ReplicationStats stats() {
+        long position = position();
+        return new ReplicationStats("primary", position, position, 0, 0);
+    }
+
+    private Transaction currentTransaction() {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            return null;
+        }
+        Transaction transaction = (Transaction) TransactionSynchronizationManager.getResource(this);
+        if (transaction == null) {
+            transaction = new Transaction();
+            TransactionSynchronizationManager.bindResource(this, transaction);
+            TransactionSynchronizationManager.registerSynchronization(transaction);
+        }
+        return transaction;
+    }
+
+    private synchronized void savedNow(Stock stock) {
+        if (!deletions.containsKey(stock.getId())) {
+            append(Collections.singletonList(stock), false);
+        }
+    }
+
+    /**
+     * Appends saved stocks and ids of deleted ones in order.
+     *
+     * @param stocks      - copies of saved stocks and ids of deleted ones.
+     * @param transaction - true when changes are of a transaction, which stays open until {@link #completed(long, boolean)}.
+     * @return position of the first change.
+     */
+    private synchronized long append(List<Object> stocks, boolean transaction) {
+        long first = head + 1;
+        for (Object stock : stocks) {
+            head++;
+            int slot = (int) (head % capacity);
+            StockChange overwritten = changes[slot];
+            if (overwritten != null && overwritten.isDeleted()) {
+                deletions.remove(overwritten.getId(), overwritten.getPosition());
+            }
+            if (stock instanceof Stock) {
+                changes[slot] = StockChange.saved(head, (Stock) stock);
+            } else {
+                changes[slot] = StockChange.deleted(head, (Long) stock);
+                deletions.put((Long) stock, head);
+            }
+        }
+        if (transaction && head >= first) {
+            openTransactions.add(first);
+        }
+        return first;
+    }
+
+    /**
+     * Ends a transaction, dropping its changes when it was rolled back.
+     */
+    private synchronized void completed(long first, long last, boolean committed) {
+        openTransactions.remove(first);
+        if (!committed) {
+            for (long position = Math.max(first, head - capacity + 1); position <= last; position++) {
+                int slot = (int) (position % capacity);
+                StockChange change = changes[slot];
+                if (change != null && change.isDeleted()) {
+                    deletions.remove(change.getId(), change.getPosition());
+                }
+                changes[slot] = null;
+            }
+        }
+    }
+
+    /**
+     * Changes of stocks made within a transaction: saved stocks and ids of deleted ones in order.
+     */
+    private class Transaction extends TransactionSynchronizationAdapter {
+
+        private final List<Object> stocks = new ArrayList<>();
+
+        private long first;
+
+        private long last;
+
+        @Override
+        public void beforeCommit(boolean readOnly) {
+            stockRepository.flush();
+            List<Object> copies = new ArrayList<>(stocks.size());
+            for (Object stock : stocks) {
+                copies.add(stock instanceof Stock ? ((Stock) stock).copy() : stock);
+            }
+            synchronized (StockChangeLog.this) {
+                first = append(copies, true);
+                last = head;
+            }
+        }
+
+        @Override
+        public void afterCompletion(int status) {
+            TransactionSynchronizationManager.unbindResource(StockChangeLog.this);
+            if (first != 0 && last >= first) {
+                completed(first, last, status == STATUS_COMMITTED);
+            }
+        }
+    }
+}
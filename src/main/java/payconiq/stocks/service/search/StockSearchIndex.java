@@ -0,0 +1,343 @@
+package payconiq.stocks.service.search;
+
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.SmartInitializingSingleton;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.annotation.Lazy;
+import org.springframework.lang.NonNull;
+import org.springframework.stereotype.Component;
+
+import payconiq.stocks.model.Stock;
+import payconiq.stocks.repository.StockRepository;
+import payconiq.stocks.service.StockEventListener;
+
+/**
+ * In-memory search index of normalized {@link Stock} names (see {@link Stock#normalizeName(String)}),
+ * kept up to date with added and deleted stocks as a {@link StockEventListener}.
+ * <p>
+ * Names starting with a query are found in a sorted map of names. Names containing a query are found through trigrams:
+ * every three consecutive characters of a name point to the name, so only names sharing the rarest trigram
+ * of the query are checked. Names are kept in slots of plain arrays and trigrams point to slot numbers,
+ * a deleted name leaves an empty slot until the index is compacted.
+ * <p>
+ * Matches are ordered by {@link #relevance(String)}: names starting with the query in name order,
+ * then names containing the query in the order stocks were added.
+ */
+@Component
+@Lazy(false)
+public class StockSearchIndex implements StockEventListener, SmartInitializingSingleton {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(StockSearchIndex.class);
+
+    private static final int GRAM = 3;
+
+    /**
+     * Slots are compacted once this many of them and at least half of all slots are empty.
+     */
+    private static final int MIN_DELETED_TO_COMPACT = 1024;
+
+    @Autowired
+    private StockRepository stockRepository;
+
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+
+    private final TreeMap<String, Integer> slotsByName = new TreeMap<>();
+
+    private final Map<Long, Postings> postings = new HashMap<>();
+
+    private final SlotTable slotsById = new SlotTable();
+
+    private String[] names = new String[1024];
+
+    private long[] ids = new long[1024];
+
+    private int slots;
+
+    private int deleted;
+
+    /**
+     * Loads names of all stocks in order of ids.
+     */
+    @Override
+    public void afterSingletonsInstantiated() {
+        List<Object[]> names = stockRepository.findAllNormalizedNames();
+        names.sort(Comparator.comparingLong(name -> (Long) name[1]));
+        for (Object[] name : names) {
+            add((Long) name[1], (String) name[0]);
+        }
+        LOGGER.info("Indexed {} stock names for search", names.size());
+    }
+
+    @Override
+    public void onStockAdded(@NonNull Stock stock) {
+        add(stock.getId(), stock.getNormalizedName());
+    }
+
+    @Override
+    public void onStockDeleted(long id) {
+        lock.writeLock().lock();
+        try {
+            int slot = slotsById.remove(id);
+            if (slot < 0) {
+                return;
+            }
+            slotsByName.remove(names[slot]);
+            names[slot] = null;
+            deleted++;
+            if (deleted >= MIN_DELETED_TO_COMPACT && deleted * 2 >= slots) {
+                compact();
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Finds stocks which names start with or contain a normalized query.
+     *
+     * @param normalizedQuery - normalized query, not empty.
+     * @param limit           - max number of matches.
+     * @return ids of matching stocks ordered by {@link #relevance(String)}.
+     */
+    @NonNull
+    public long[] search(@NonNull String normalizedQuery, int limit) {
+        long[] matches = new long[limit];
+        int found = 0;
+        lock.readLock().lock();
+        try {
+            for (Map.Entry<String, Integer> name : slotsByName.tailMap(normalizedQuery, true).entrySet()) {
+                if (found == limit || !name.getKey().startsWith(normalizedQuery)) {
+                    break;
+                }
+                matches[found++] = ids[name.getValue()];
+            }
+            if (found == limit || normalizedQuery.length() < GRAM) {
+                return Arrays.copyOf(matches, found);
+            }
+            Postings rarest = null;
+            for (int i = 0; i + GRAM <= normalizedQuery.length(); i++) {
+                Postings candidates = postings.get(gram(normalizedQuery, i));
+                if (candidates == null) {
+                    return Arrays.copyOf(matches, found);
+                }
+                if (rarest == null || candidates.size < rarest.size) {
+                    rarest = candidates;
+                }
+            }
+            for (int i = 0; i < rarest.size && found < limit; i++) {
+                String name = names[rarest.slots[i]];
+                if (name != null && !name.startsWith(normalizedQuery) && name.contains(normalizedQuery)) {
+                    matches[found++] = ids[rarest.slots[i]];
+                }
+            }
+            return Arrays.copyOf(matches, found);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * @return number of indexed names.
+     */
+    public int size() {
+        lock.readLock().lock();
+        try {
+            return slots - deleted;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Order of matches of a query, is used to merge matches of several nodes in cluster mode.
+     *
+     * @param normalizedQuery - normalized query.
+     * @return comparator putting names starting with the query first in name order, then the others by id.
+     */
+    @NonNull
+    public static Comparator<Stock> relevance(@NonNull String normalizedQuery) {
+        Comparator<Stock> prefixFirst = Comparator.comparing(stock -> !stock.getNormalizedName().startsWith(normalizedQuery));
+        return prefixFirst.thenComparing(stock -> stock.getNormalizedName().startsWith(normalizedQuery)
+                ? stock.getNormalizedName() : "").thenComparingLong(Stock::getId);
+    }
+
+    private void add(long id, String normalizedName) {
+        lock.writeLock().lock();
+        try {
+            if (slotsById.get(id) >= 0 || slotsByName.containsKey(normalizedName)) {
+                return;
+            }
+            if (slots == names.length) {
+                names = Arrays.copyOf(names, slots * 2);
+                ids = Arrays.copyOf(ids, slots * 2);
+            }
+            int slot = slots++;
+            names[slot] = normalizedName;
+            ids[slot] = id;
+            slotsById.put(id, slot);
+            slotsByName.put(normalizedName, slot);
+            indexGrams(slot, normalizedName);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    private void indexGrams(int slot, String normalizedName) {
+        for (int i = 0; i + GRAM <= normalizedName.length(); i++) {
+            Postings gramPostings = postings.computeIfAbsent(gram(normalizedName, i), gram -> new Postings());
+            if (gramPostings.size == 0 || gramPostings.slots[gramPostings.size - 1] != slot) {
+                gramPostings.add(slot);
+            }
+        }
+    }
+
+    /**
+     * Moves names to consecutive slots keeping their order and rebuilds trigrams.
+     */
+    private void compact() {
+        String[] oldNames = names;
+        long[] oldIds = ids;
+        int oldSlots = slots;
+        names = new String[Math.max(1024, (oldSlots - deleted) * 2)];
+        ids = new long[names.length];
+        slots = 0;
+        deleted = 0;
+        postings.clear();
+        slotsByName.clear();
+        slotsById.clear();
+        for (int i = 0; i < oldSlots; i++) {
+            if (oldNames[i] != null) {
+                int slot = slots++;
+                names[slot] = oldNames[i];
+                ids[slot] = oldIds[i];
+                slotsById.put(oldIds[i], slot);
+                slotsByName.put(oldNames[i], slot);
+                indexGrams(slot, oldNames[i]);
+            }
+        }
+        postings.values().forEach(Postings::trim);
+    }
+
+    private static long gram(String name, int start) {
+        return (long) name.charAt(start) << 32 | (long) name.charAt(start + 1) << 16 | name.charAt(start + 2);
+    }
+
+    /**
+     * Ascending slots of names containing a trigram.
+     */
+    private static class Postings {
+
+        private int[] slots = new int[4];
+
+        private int size;
+
+        private void add(int slot) {
+            if (size == slots.length) {
+                slots = Arrays.copyOf(slots, size * 2);
+            }
+            slots[size++] = slot;
+        }
+
+        private void trim() {
+            slots = Arrays.copyOf(slots, Math.max(size, 1));
+        }
+    }
+
+    /**
+     * Open addressing table of slots by stock id with linear probing, avoids boxing of ids and slots.
+     */
+    private static class SlotTable {
+
+        private static final long EMPTY = 0;
+
+        private long[] keys = new long[2048];
+
+        private int[] values = new int[2048];
+
+        private int size;
+
+        private int get(long id) {
+            int mask = keys.length - 1;
+            for (int i = index(id, mask); keys[i] != EMPTY; i = (i + 1) & mask) {
+                if (keys[i] == id) {
+                    return values[i];
+                }
+            }
+            return -1;
+        }
+
+        private void put(long id, int slot) {
+            if ((size + 1) * 2 > keys.length) {
+                resize();
+            }
+            int mask = keys.length - 1;
+            int i = index(id, mask);
+            while (keys[i] != EMPTY && keys[i] != id) {
+                i = (i + 1) & mask;
+            }
+            if (keys[i] == EMPTY) {
+                size++;
+            }
+            keys[i] = id;
+            values[i] = slot;
+        }
+
+        /**
+         * Removes an id shifting following entries of its probe sequence back, so that no tombstones are left.
+         */
+        private int remove(long id) {
+            int mask = keys.length - 1;
+            int i = index(id, mask);
+            while (keys[i] != id) {
+                if (keys[i] == EMPTY) {
+                    return -1;
+                }
+                i = (i + 1) & mask;
+            }
+            int slot = values[i];
+            size--;
+            for (int next = (i + 1) & mask; keys[next] != EMPTY; next = (next + 1) & mask) {
+                int home = index(keys[next], mask);
+                if (((next - home) & mask) >= ((next - i) & mask)) {
+                    keys[i] = keys[next];
+                    values[i] = values[next];
+                    i = next;
+                }
+            }
+            keys[i] = EMPTY;
+            return slot;
+        }
+
+        private void clear() {
+            Arrays.fill(keys, EMPTY);
+            size = 0;
+        }
+
+        private void resize() {
+            long[] oldKeys = keys;
+            int[] oldValues = values;
+            keys = new long[oldKeys.length * 2];
+            values = new int[keys.length];
+            size = 0;
+            for (int i = 0; i < oldKeys.length; i++) {
+                if (oldKeys[i] != EMPTY) {
+                    put(oldKeys[i], oldValues[i]);
+                }
+            }
+        }
+
+        private static int index(long id, int mask) {
+            long hash = id * 0x9E3779B97F4A7C15L;
+            return (int) (hash ^ (hash >>> 32)) & mask;
+        }
+    }
+}
@@ -0,0 +1,189 @@
+package payconiq.stocks.service.stream;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Collection;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArraySet;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.LongFunction;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.lang.NonNull;
+import org.springframework.stereotype.Service;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import payconiq.stocks.exception.IncorrectRequestException;
+import payconiq.stocks.exception.TooManyRequestsException;
+import payconiq.stocks.model.Stock;
+import payconiq.stocks.response.PriceEvent;
+import payconiq.stocks.service.StockEventListener;
+
+/**
+ * Service pushing price changes of {@link Stock}s to subscribers as server-sent events.
+ * <p>
+ * Every change is serialized once and handed to all subscribers of the stock,
+ * each of them conflates pending events per stock (see {@link PriceSubscriber}).
+ * Events are sent by a pool of {@code stocks.stream.dispatch-threads} threads,
+ * so price updates never wait for clients.
+ */
+@Service
+public class PriceStreamService implements StockEventListener {
+
+    private static final String PRICE_EVENT = "price";
+
+    private static final String DELETED_EVENT = "deleted";
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @Value("${stocks.stream.max-subscribers:1000}")
+    private int maxSubscribers;
+
+    @Value("${stocks.stream.max-ids:100}")
+    private int maxIds;
+
+    @Value("${stocks.stream.timeout:30m}")
+    private Duration timeout;
+
+    @Value("${stocks.stream.dispatch-threads:4}")
+    private int dispatchThreads;
+
+    private ExecutorService dispatcher;
+
+    private final ConcurrentHashMap<Long, Set<PriceSubscriber>> subscribers = new ConcurrentHashMap<>();
+
+    private final Set<PriceSubscriber> allSubscribers = ConcurrentHashMap.newKeySet();
+
+    private final AtomicInteger subscriberCount = new AtomicInteger();
+
+    @PostConstruct
+    void start() {
+        AtomicInteger threadNumber = new AtomicInteger();
+        dispatcher = Executors.newFixedThreadPool(dispatchThreads, runnable -> {
+            Thread thread = new Thread(runnable, "price-stream-" + threadNumber.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    @PreDestroy
+    void stop() {
+        dispatcher.shutdownNow();
+        for (PriceSubscriber subscriber : allSubscribers) {
+            subscriber.emitter().complete();
+            unsubscribe(subscriber);
+        }
+    }
+
+    /**
+     * Subscribes to price changes of given stocks.
+     * Current price of every stock is sent right away.
+     *
+     * @param stockIds - ids of stocks to subscribe to.
+     * @param lookup   - returns current {@link Stock} by its id.
+     * @return emitter of price events.
+     * @throws IncorrectRequestException when there are no or too many stocks.
+     * @throws TooManyRequestsException  when there are too many subscribers.
+     * @throws payconiq.stocks.exception.StockNotFoundException when there is no stock with one of ids.
+     */
+    @NonNull
+    public SseEmitter subscribe(@NonNull Collection<Long> stockIds, @NonNull LongFunction<Stock> lookup) {
+        long[] ids = stockIds.stream().mapToLong(Long::longValue).distinct().toArray();
+        if (ids.length == 0 || ids.length > maxIds) {
+            throw new IncorrectRequestException("Number of stocks to subscribe should be within 1.." + maxIds);
+        }
+        if (subscriberCount.incrementAndGet() > maxSubscribers) {
+            subscriberCount.decrementAndGet();
+            throw new TooManyRequestsException("Too many price subscribers, try again later");
+        }
+
+        SseEmitter emitter = new SseEmitter(timeout.toMillis());
+        PriceSubscriber subscriber = new PriceSubscriber(emitter, ids, dispatcher, this::unsubscribe);
+        emitter.onCompletion(() -> unsubscribe(subscriber));
+        emitter.onTimeout(() -> unsubscribe(subscriber));
+        emitter.onError(error -> unsubscribe(subscriber));
+        allSubscribers.add(subscriber);
+        for (long id : ids) {
+            subscribers.compute(id, (key, set) -> {
+                Set<PriceSubscriber> stockSubscribers = set == null ? new CopyOnWriteArraySet<>() : set;
+                stockSubscribers.add(subscriber);
+                return stockSubscribers;
+            });
+        }
+        // current prices are read after registering, so a change committed meanwhile is either in them or offered
+        try {
+            for (long id : ids) {
+                Stock stock = lookup.apply(id);
+                subscriber.offerInitial(id, priceEvent(id, stock.getCurrentPrice(), stock.getLastUpdate()));
+            }
+        } catch (RuntimeException e) {
+            unsubscribe(subscriber);
+            throw e;
+        }
+        return emitter;
+    }
+
+    /**
+     * @return number of active subscribers.
+     */
+    public int getSubscriberCount() {
+        return subscriberCount.get();
+    }
+
+    @Override
+    public void onPriceUpdated(long id, double oldPrice, double newPrice, long epochMillis) {
+        Set<PriceSubscriber> stockSubscribers = subscribers.get(id);
+        if (stockSubscribers == null || stockSubscribers.isEmpty()) {
+            return;
+        }
+        StreamEvent event = priceEvent(id, newPrice, Instant.ofEpochMilli(epochMillis));
+        for (PriceSubscriber subscriber : stockSubscribers) {
+            subscriber.offer(id, event);
+        }
+    }
+
+    @Override
+    public void onStockDeleted(long id) {
+        Set<PriceSubscriber> stockSubscribers = subscribers.remove(id);
+        if (stockSubscribers == null) {
+            return;
+        }
+        StreamEvent event = new StreamEvent(DELETED_EVENT, "{\"id\":" + id + "}");
+        for (PriceSubscriber subscriber : stockSubscribers) {
+            subscriber.offer(id, event);
+        }
+    }
+
+    private void unsubscribe(PriceSubscriber subscriber) {
+        if (!subscriber.close()) {
+            return;
+        }
+        allSubscribers.remove(subscriber);
+        for (long id : subscriber.stockIds()) {
+            subscribers.computeIfPresent(id, (key, set) -> {
+                set.remove(subscriber);
+                return set.isEmpty() ? null : set;
+            });
+        }
+        subscriberCount.decrementAndGet();
+    }
+
+    private StreamEvent priceEvent(long id, double price, Instant lastUpdate) {
+        try {
+            return new StreamEvent(PRICE_EVENT, objectMapper.writeValueAsString(new PriceEvent(id, price, lastUpdate)));
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException("Failed to serialize price of stock " + id, e);
+        }
+    }
+}
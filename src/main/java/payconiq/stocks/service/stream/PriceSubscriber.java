@@ -0,0 +1,128 @@
+package payconiq.stocks.service.stream;
+
+import java.io.IOException;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Consumer;
+
+import org.springframework.http.MediaType;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+/**
+ * Single subscriber of price events.
+ * <p>
+ * Keeps only the latest not yet sent event per stock, so a slow subscriber gets
+ * the current price instead of a backlog, and its memory is bounded by the number of subscribed stocks.
+ * Events are sent by a single dispatch task at a time, which is scheduled on the first pending event.
+ */
+final class PriceSubscriber {
+
+    private final SseEmitter emitter;
+
+    private final long[] stockIds;
+
+    private final Executor dispatcher;
+
+    private final Consumer<PriceSubscriber> onClose;
+
+    private final ConcurrentHashMap<Long, StreamEvent> pending = new ConcurrentHashMap<>();
+
+    /**
+     * Stocks which already had an event offered, their initial price is outdated.
+     */
+    private final Set<Long> offered = ConcurrentHashMap.newKeySet();
+
+    private final AtomicBoolean scheduled = new AtomicBoolean();
+
+    private final AtomicBoolean closed = new AtomicBoolean();
+
+    PriceSubscriber(SseEmitter emitter, long[] stockIds, Executor dispatcher, Consumer<PriceSubscriber> onClose) {
+        this.emitter = emitter;
+        this.stockIds = stockIds;
+        this.dispatcher = dispatcher;
+        this.onClose = onClose;
+    }
+
+    long[] stockIds() {
+        return stockIds;
+    }
+
+    SseEmitter emitter() {
+        return emitter;
+    }
+
+    /**
+     * Queues an event replacing a not yet sent event of the same stock.
+     *
+     * @param stockId - id of stock the event is about.
+     * @param event   - serialized event.
+     */
+    void offer(long stockId, StreamEvent event) {
+        if (closed.get()) {
+            return;
+        }
+        offered.add(stockId);
+        pending.put(stockId, event);
+        schedule();
+    }
+
+    /**
+     * Queues an event with the price of a stock at subscription unless a change of the stock
+     * has been offered already, which may have been sent and must not be followed by an older price.
+     *
+     * @param stockId - id of stock the event is about.
+     * @param event   - serialized event.
+     */
+    void offerInitial(long stockId, StreamEvent event) {
+        if (closed.get() || !offered.add(stockId)) {
+            return;
+        }
+        pending.putIfAbsent(stockId, event);
+        schedule();
+    }
+
+    /**
+     * Marks the subscriber as closed.
+     *
+     * @return true when the subscriber was open before.
+     */
+    boolean close() {
+        pending.clear();
+        return closed.compareAndSet(false, true);
+    }
+
+    private void schedule() {
+        if (!scheduled.compareAndSet(false, true)) {
+            return;
+        }
+        try {
+            dispatcher.execute(this::drain);
+        } catch (RejectedExecutionException e) {
+            scheduled.set(false);
+            emitter.complete();
+            onClose.accept(this);
+        }
+    }
+
+    private void drain() {
+        try {
+            do {
+                for (Long stockId : pending.keySet()) {
+                    StreamEvent event = pending.remove(stockId);
+                    if (event != null && !closed.get()) {
+                        emitter.send(SseEmitter.event().name(event.getName()).data(event.getData(), MediaType.APPLICATION_JSON));
+                    }
+                }
+                scheduled.set(false);
+            } while (!pending.isEmpty() && scheduled.compareAndSet(false, true));
+        } catch (IOException | IllegalStateException e) {
+            // client has gone or the emitter is already completed
+            scheduled.set(false);
+            emitter.completeWithError(e);
+            onClose.accept(this);
+        }
+    }
+}
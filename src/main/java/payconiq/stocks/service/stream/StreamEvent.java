@@ -0,0 +1,24 @@
+package payconiq.stocks.service.stream;
+
+/**
+ * Event serialized once and shared by all subscribers.
+ */
+final class StreamEvent {
+
+    private final String name;
+
+    private final String data;
+
+    StreamEvent(String name, String data) {
+        this.name = name;
+        this.data = data;
+    }
+
+    String getName() {
+        return name;
+    }
+
+    String getData() {
+        return data;
+    }
+}
@@ -0,0 +1,197 @@
+package payconiq.stocks.controller;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.net.ServerSocket;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import payconiq.stocks.Application;
+import payconiq.stocks.model.Stock;
+import payconiq.stocks.repository.StockRepository;
+import payconiq.stocks.request.NewStockRequest;
+import payconiq.stocks.service.cluster.ClusterService;
+
+/**
+ * Starts a cluster of three nodes on localhost, each with its own in-memory database.
+ */
+class StockControllerClusterTests {
+
+    private static final int NODES = 3;
+
+    private static final int STOCKS = 20;
+
+    private static final String SECRET = "cluster-tests";
+
+    private static final List<ConfigurableApplicationContext> contexts = new ArrayList<>();
+
+    private static final List<String> urls = new ArrayList<>();
+
+    private static final HttpClient httpClient = HttpClient.newHttpClient();
+
+    private static ObjectMapper objectMapper;
+
+    @BeforeAll
+    static void startCluster() throws Exception {
+        for (int i = 0; i < NODES; i++) {
+            urls.add("http://localhost:" + freePort());
+        }
+        for (int i = 0; i < NODES; i++) {
+            contexts.add(new SpringApplicationBuilder(Application.class).run(
+                    "--server.port=" + URI.create(urls.get(i)).getPort(),
+                    "--spring.datasource.url=jdbc:h2:mem:cluster-node-" + i,
+                    "--stocks.cluster.enabled=true",
+                    "--stocks.cluster.nodes=" + String.join(",", urls),
+                    "--stocks.cluster.self=" + urls.get(i),
+                    "--stocks.cluster.secret=" + SECRET));
+        }
+        objectMapper = contexts.get(0).getBean(ObjectMapper.class);
+        for (int i = 0; i < STOCKS; i++) {
+            HttpResponse<String> response = send(HttpRequest.newBuilder(URI.create(urls.get(0) + "/api/stocks"))
+                    .header("Content-Type", "application/json")
+                    .POST(HttpRequest.BodyPublishers.ofString("{\"name\":\"Stock " + i + "\",\"price\":" + (i + 1) + "}")));
+            assertThat(response.statusCode()).isEqualTo(201);
+        }
+    }
+
+    @AfterAll
+    static void stopCluster() {
+        contexts.forEach(ConfigurableApplicationContext::close);
+    }
+
+    @Test
+    void testStocksArePartitioned() {
+        long total = 0;
+        for (ConfigurableApplicationContext context : contexts) {
+            ClusterService clusterService = context.getBean(ClusterService.class);
+            List<Stock> localStocks = context.getBean(StockRepository.class).findAll();
+            assertThat(localStocks).allSatisfy(stock -> Assertions.assertAll(
+                    () -> assertThat(clusterService.isLocal(stock.getId())).isTrue(),
+                    () -> assertThat(clusterService.isLocalName(stock.getName())).isTrue()));
+            total += localStocks.size();
+        }
+        assertThat(total).isEqualTo(STOCKS + 2);
+    }
+
+    @Test
+    void testGetAllStocksGathersAllNodes() throws Exception {
+        for (String url : urls) {
+            List<Stock> stocks = getStocks(url + "/api/stocks");
+            assertThat(stocks).hasSize(STOCKS + 2);
+            assertThat(stocks).extracting(Stock::getId).isSorted().doesNotHaveDuplicates();
+            assertThat(stocks).extracting(Stock::getName).contains("London Stock", "NewYork Stock", "Stock 0", "Stock 19");
+        }
+    }
+
+    @Test
+    void testPagesGatherAllNodes() throws Exception {
+        List<Stock> all = getStocks(urls.get(1) + "/api/stocks");
+        List<Long> paged = new ArrayList<>();
+        Long after = null;
+        List<Stock> page;
+        do {
+            page = getStocks(urls.get(2) + "/api/stocks?limit=5" + (after == null ? "" : "&after=" + after));
+            assertThat(page.size()).isLessThanOrEqualTo(5);
+            page.forEach(stock -> paged.add(stock.getId()));
+            after = page.isEmpty() ? after : page.get(page.size() - 1).getId();
+        } while (page.size() == 5);
+        assertThat(paged).isEqualTo(all.stream().map(Stock::getId).collect(Collectors.toList()));
+    }
+
+    @Test
+    void testSingleStockRequestsAreRoutedToOwner() throws Exception {
+        for (Stock stock : getStocks(urls.get(0) + "/api/stocks")) {
+            for (String url : urls) {
+                HttpResponse<String> response = send(HttpRequest.newBuilder(URI.create(url + "/api/stocks/" + stock.getId())));
+                assertThat(response.statusCode()).isEqualTo(200);
+                assertThat(objectMapper.readValue(response.body(), Stock.class).getName()).isEqualTo(stock.getName());
+            }
+        }
+
+        Stock stock = getStocks(urls.get(0) + "/api/stocks").get(0);
+        int owner = urls.indexOf(contexts.get(0).getBean(ClusterService.class).ownerOf(stock.getId()));
+        String other = urls.get((owner + 1) % NODES);
+        HttpResponse<String> response = send(HttpRequest.newBuilder(URI.create(other + "/api/stocks/" + stock.getId()))
+                .header("Content-Type", "application/json")
+                .method("PATCH", HttpRequest.BodyPublishers.ofString("{\"price\":42.0}")));
+        assertThat(response.statusCode()).isEqualTo(200);
+        assertThat(contexts.get(owner).getBean(StockRepository.class).findById(stock.getId()))
+                .hasValueSatisfying(s -> assertThat(s.getCurrentPrice()).isEqualTo(42.0));
+
+        response = send(HttpRequest.newBuilder(URI.create(other + "/api/stocks"))
+                .header("Content-Type", "application/json")
+                .POST(HttpRequest.BodyPublishers.ofString("{\"name\":\" " + stock.getName().toUpperCase() + "\",\"price\":1.0}")));
+        assertThat(response.statusCode()).isEqualTo(400);
+    }
+
+    @Test
+    void testWireFormatStockIsCreatedByOwnerOfName() throws Exception {
+        Stock stock = getStocks(urls.get(0) + "/api/stocks").get(1);
+        int owner = urls.indexOf(contexts.get(0).getBean(ClusterService.class).ownerOfName(stock.getName()));
+        NewStockRequest newStock = new NewStockRequest();
+        newStock.setName(stock.getName().toLowerCase());
+        newStock.setPrice(1.0);
+        ByteArrayOutputStream body = new ByteArrayOutputStream();
+        StockWireFormat.Writer writer = new StockWireFormat.Writer(body, 64);
+        writer.writeNewStock(newStock);
+        writer.flush();
+
+        HttpResponse<String> response = send(HttpRequest.newBuilder(URI.create(urls.get((owner + 1) % NODES) + "/api/stocks"))
+                .header("Content-Type", StockWireFormat.MEDIA_TYPE)
+                .POST(HttpRequest.BodyPublishers.ofByteArray(body.toByteArray())));
+        assertThat(response.statusCode()).isEqualTo(400);
+    }
+
+    @Test
+    void testForwardedHeaderIsTrustedOnlyFromNodes() throws Exception {
+        for (String forwardedBy : List.of("http://localhost:1", urls.get(1))) {
+            assertThat(getStocks(HttpRequest.newBuilder(URI.create(urls.get(0) + "/api/stocks"))
+                    .header(ClusterService.FORWARDED_HEADER, forwardedBy))).hasSize(STOCKS + 2);
+            assertThat(getStocks(HttpRequest.newBuilder(URI.create(urls.get(0) + "/api/stocks"))
+                    .header(ClusterService.FORWARDED_HEADER, forwardedBy)
+                    .header(ClusterService.SECRET_HEADER, "wrong"))).hasSize(STOCKS + 2);
+        }
+        List<Stock> local = getStocks(HttpRequest.newBuilder(URI.create(urls.get(0) + "/api/stocks"))
+                .header(ClusterService.FORWARDED_HEADER, urls.get(1))
+                .header(ClusterService.SECRET_HEADER, SECRET));
+        assertThat(local).hasSize(contexts.get(0).getBean(StockRepository.class).findAll().size());
+    }
+
+    private static List<Stock> getStocks(String url) throws Exception {
+        return getStocks(HttpRequest.newBuilder(URI.create(url)));
+    }
+
+    private static List<Stock> getStocks(HttpRequest.Builder request) throws Exception {
+        HttpResponse<String> response = send(request);
+        assertThat(response.statusCode()).isEqualTo(200);
+        return objectMapper.readValue(response.body(), new TypeReference<List<Stock>>() {
+        });
+    }
+
+    private static HttpResponse<String> send(HttpRequest.Builder request) throws Exception {
+        return httpClient.send(request.build(), HttpResponse.BodyHandlers.ofString());
+    }
+
+    private static int freePort() throws IOException {
+        try (ServerSocket socket = new ServerSocket(0)) {
+            return socket.getLocalPort();
+        }
+    }
+}
@@ -0,0 +1,78 @@
+package payconiq.stocks.controller;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.io.IOException;
+import java.net.ServerSocket;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import payconiq.stocks.Application;
+
+/**
+ * Starts the application on localhost with the fast-startup profile: lazy beans and a warm-up before it reports UP.
+ */
+class StockControllerFastStartupTests {
+
+    private static final HttpClient httpClient = HttpClient.newHttpClient();
+
+    private static ConfigurableApplicationContext application;
+
+    private static String url;
+
+    @BeforeAll
+    static void startApplication() throws Exception {
+        int port = freePort();
+        url = "http://localhost:" + port;
+        application = new SpringApplicationBuilder(Application.class).run(
+                "--server.port=" + port,
+                "--spring.datasource.url=jdbc:h2:mem:fast-startup",
+                "--spring.profiles.active=fast-startup",
+                "--stocks.warm-up.requests=50");
+    }
+
+    @AfterAll
+    static void stopApplication() {
+        application.close();
+    }
+
+    @Test
+    void testApplicationIsUpAfterWarmUp() throws Exception {
+        HttpResponse<String> health = send(HttpRequest.newBuilder(URI.create(url + "/actuator/health")));
+        assertThat(health.statusCode()).isEqualTo(200);
+        assertThat(health.body()).contains("\"status\":\"UP\"");
+
+        HttpResponse<String> cache = send(HttpRequest.newBuilder(URI.create(url + "/api/stats/cache")));
+        assertThat(cache.body()).contains("\"size\":2");
+    }
+
+    @Test
+    void testInitialStocksAndNamesAreLoaded() throws Exception {
+        HttpResponse<String> stock = send(HttpRequest.newBuilder(URI.create(url + "/api/stocks/1")));
+        assertThat(stock.statusCode()).isEqualTo(200);
+        assertThat(stock.body()).contains("\"name\":\"London Stock\"");
+
+        HttpResponse<String> duplicate = send(HttpRequest.newBuilder(URI.create(url + "/api/stocks"))
+                .header("Content-Type", "application/json")
+                .POST(HttpRequest.BodyPublishers.ofString("{\"name\":\"london  stock\",\"price\":3.0}")));
+        assertThat(duplicate.statusCode()).isEqualTo(400);
+    }
+
+    private static HttpResponse<String> send(HttpRequest.Builder request) throws Exception {
+        return httpClient.send(request.build(), HttpResponse.BodyHandlers.ofString());
+    }
+
+    private static int freePort() throws IOException {
+        try (ServerSocket socket = new ServerSocket(0)) {
+            return socket.getLocalPort();
+        }
+    }
+}
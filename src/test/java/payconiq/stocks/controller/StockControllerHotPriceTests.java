@@ -0,0 +1,119 @@
+package payconiq.stocks.controller;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.hamcrest.Matchers.not;
+import static org.hamcrest.Matchers.startsWith;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.*;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.content;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.header;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.annotation.DirtiesContext;
+import org.springframework.test.context.junit.jupiter.SpringExtension;
+import org.springframework.test.web.servlet.MockMvc;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import payconiq.stocks.model.Stock;
+import payconiq.stocks.repository.StockRepository;
+import payconiq.stocks.request.PriceUpdateRequest;
+import payconiq.stocks.service.HotPriceFlusher;
+import payconiq.stocks.service.HotPriceStore;
+
+@ExtendWith(SpringExtension.class)
+@SpringBootTest(properties = {"stocks.hot-price.enabled=true", "stocks.hot-price.flush-interval=1h"})
+@AutoConfigureMockMvc
+@DirtiesContext(classMode = DirtiesContext.ClassMode.BEFORE_EACH_TEST_METHOD)
+class StockControllerHotPriceTests {
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @Autowired
+    private StockRepository stockRepository;
+
+    @Autowired
+    private HotPriceFlusher hotPriceFlusher;
+
+    @Autowired
+    private HotPriceStore hotPriceStore;
+
+    @Test
+    void testUpdatedPriceIsServedBeforeFlush() throws Exception {
+        updatePrice(2, 2.2);
+        updatePrice(2, 2.3);
+
+        mockMvc.perform(
+                get("/api/stocks/2"))
+                .andExpect(status().isOk())
+                .andExpect(content().json("{\"id\":2,\"name\":\"NewYork Stock\",\"currentPrice\":2.3}"));
+        mockMvc.perform(
+                get("/api/stocks"))
+                .andExpect(status().isOk())
+                .andExpect(content().json("[{\"id\":1,\"currentPrice\":2.0},{\"id\":2,\"currentPrice\":2.3}]"));
+        assertThat(stockRepository.findById(2L)).hasValueSatisfying(s -> assertThat(s.getCurrentPrice()).isEqualTo(1.9));
+    }
+
+    @Test
+    void testFlushWritesLatestPriceOnce() throws Exception {
+        updatePrice(1, 3.1);
+        updatePrice(1, 3.2);
+        updatePrice(1, 3.3);
+
+        mockMvc.perform(get("/api/stocks/1")).andExpect(status().isOk());
+
+        assertThat(hotPriceFlusher.flush()).isEqualTo(1);
+        assertThat(hotPriceFlusher.flush()).isZero();
+        Stock flushed = stockRepository.findById(1L).orElseThrow();
+        assertThat(flushed.getCurrentPrice()).isEqualTo(3.3);
+        mockMvc.perform(
+                get("/api/stocks/1"))
+                .andExpect(status().isOk())
+                .andExpect(header().string("ETag", startsWith("\"1-" + flushed.getVersion() + "-")));
+    }
+
+    @Test
+    void testUpdatesWithinMillisecondGetOwnETags() throws Exception {
+        long epochMillis = System.currentTimeMillis();
+        hotPriceStore.update(1, 3.1, epochMillis);
+        String eTag = mockMvc.perform(
+                get("/api/stocks/1"))
+                .andExpect(status().isOk())
+                .andReturn()
+                .getResponse()
+                .getHeader("ETag");
+
+        hotPriceStore.update(1, 3.2, epochMillis);
+        mockMvc.perform(
+                get("/api/stocks/1").header("If-None-Match", eTag))
+                .andExpect(status().isOk())
+                .andExpect(content().json("{\"id\":1,\"currentPrice\":3.2}"))
+                .andExpect(header().string("ETag", not(eTag)));
+    }
+
+    @Test
+    void testUpdateIncorrectId() throws Exception {
+        PriceUpdateRequest priceUpdateRequest = new PriceUpdateRequest();
+        priceUpdateRequest.setPrice(3d);
+        mockMvc.perform(
+                patch("/api/stocks/6")
+                        .contentType("application/json")
+                        .content(new ObjectMapper().writeValueAsString(priceUpdateRequest)))
+                .andExpect(status().isNotFound());
+    }
+
+    private void updatePrice(long id, double price) throws Exception {
+        PriceUpdateRequest priceUpdateRequest = new PriceUpdateRequest();
+        priceUpdateRequest.setPrice(price);
+        mockMvc.perform(
+                patch("/api/stocks/" + id)
+                        .contentType("application/json")
+                        .content(new ObjectMapper().writeValueAsString(priceUpdateRequest)))
+                .andExpect(status().isOk());
+    }
+}
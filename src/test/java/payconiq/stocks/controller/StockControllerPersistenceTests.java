@@ -0,0 +1,153 @@
+package payconiq.stocks.controller;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.io.IOException;
+import java.net.ServerSocket;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.stream.Stream;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import payconiq.stocks.Application;
+import payconiq.stocks.model.Stock;
+import payconiq.stocks.response.PersistenceStats;
+import payconiq.stocks.service.persistence.StockJournal;
+
+/**
+ * Starts the application in "persistence" mode on localhost and starts it again on the same data
+ * with a new in-memory database, after a graceful stop or on a copy of the data taken while it was running.
+ */
+class StockControllerPersistenceTests {
+
+    private static final HttpClient httpClient = HttpClient.newHttpClient();
+
+    private final ObjectMapper objectMapper = new ObjectMapper().findAndRegisterModules();
+
+    @TempDir
+    Path dataDir;
+
+    @Test
+    void testStocksAreRecoveredFromLogAfterCrash() throws Exception {
+        Path copyDir = dataDir.resolve("copy");
+        try (Node node = new Node(dataDir.resolve("data"), "persistence-crashed")) {
+            long id = node.addStock("Persisted Stock", 3.0);
+            assertThat(node.send(HttpRequest.newBuilder(URI.create(node.url + "/api/stocks/" + id))
+                    .header("Content-Type", "application/json")
+                    .method("PATCH", HttpRequest.BodyPublishers.ofString("{\"price\":4.5}"))).statusCode()).isEqualTo(200);
+            long deletedId = node.addStock("Deleted Stock", 1.0);
+            assertThat(node.send(HttpRequest.newBuilder(URI.create(node.url + "/api/stocks/" + deletedId)).DELETE())
+                    .statusCode()).isEqualTo(200);
+            assertThat(node.send(HttpRequest.newBuilder(URI.create(node.url + "/api/stocks"))
+                    .header("Content-Type", "application/json")
+                    .POST(HttpRequest.BodyPublishers.ofString("{\"name\":\"Persisted Stock\",\"price\":5.0}"))).statusCode())
+                    .isEqualTo(400);
+
+            PersistenceStats stats = node.context.getBean(StockJournal.class).stats();
+            assertThat(stats.getDurablePosition()).isEqualTo(stats.getPosition()).isGreaterThan(stats.getSnapshotPosition());
+            assertThat(stats.getSyncs()).isPositive().isLessThanOrEqualTo(stats.getRecords());
+            copy(dataDir.resolve("data"), copyDir);
+        }
+
+        try (Node node = new Node(copyDir, "persistence-recovered")) {
+            List<Stock> stocks = node.getStocks();
+            assertThat(stocks).extracting(Stock::getName)
+                    .containsExactlyInAnyOrder("London Stock", "NewYork Stock", "Persisted Stock");
+            assertThat(stocks).filteredOn(stock -> stock.getName().equals("Persisted Stock"))
+                    .extracting(Stock::getCurrentPrice).containsExactly(4.5);
+            assertThat(node.context.getBean(StockJournal.class).isRecovered()).isTrue();
+        }
+    }
+
+    @Test
+    void testStocksAreRecoveredFromSnapshotAfterRestart() throws Exception {
+        Path data = dataDir.resolve("data");
+        long id;
+        try (Node node = new Node(data, "persistence-stopped")) {
+            id = node.addStock("Snapshot Stock", 2.5);
+        }
+        try (Node node = new Node(data, "persistence-restarted")) {
+            List<Stock> stocks = node.getStocks();
+            assertThat(stocks).extracting(Stock::getName)
+                    .containsExactlyInAnyOrder("London Stock", "NewYork Stock", "Snapshot Stock");
+            assertThat(stocks).filteredOn(stock -> stock.getName().equals("Snapshot Stock"))
+                    .extracting(Stock::getId).containsExactly(id);
+            assertThat(node.context.getBean(StockJournal.class).stats().getRecords()).isZero();
+
+            long newId = node.addStock("Next Stock", 1.5);
+            assertThat(newId).isGreaterThan(id);
+        }
+        try (Stream<Path> files = Files.list(data)) {
+            assertThat(files.filter(file -> file.getFileName().toString().startsWith("journal-"))).hasSize(1);
+        }
+    }
+
+    private static void copy(Path from, Path to) throws IOException {
+        Files.createDirectories(to);
+        try (Stream<Path> files = Files.list(from)) {
+            for (Path file : (Iterable<Path>) files::iterator) {
+                Files.copy(file, to.resolve(file.getFileName()));
+            }
+        }
+    }
+
+    private class Node implements AutoCloseable {
+
+        private final ConfigurableApplicationContext context;
+
+        private final String url;
+
+        Node(Path dir, String database) throws IOException {
+            int port = freePort();
+            url = "http://localhost:" + port;
+            context = new SpringApplicationBuilder(Application.class).run(
+                    "--server.port=" + port,
+                    "--spring.datasource.url=jdbc:h2:mem:" + database,
+                    "--stocks.persistence.enabled=true",
+                    "--stocks.persistence.dir=" + dir);
+        }
+
+        long addStock(String name, double price) throws Exception {
+            HttpResponse<String> added = send(HttpRequest.newBuilder(URI.create(url + "/api/stocks"))
+                    .header("Content-Type", "application/json")
+                    .POST(HttpRequest.BodyPublishers.ofString("{\"name\":\"" + name + "\",\"price\":" + price + "}")));
+            assertThat(added.statusCode()).isEqualTo(201);
+            String location = added.headers().firstValue("Location").orElseThrow();
+            return Long.parseLong(location.substring(location.lastIndexOf('/') + 1));
+        }
+
+        List<Stock> getStocks() throws Exception {
+            HttpResponse<String> response = send(HttpRequest.newBuilder(URI.create(url + "/api/stocks")));
+            assertThat(response.statusCode()).isEqualTo(200);
+            return objectMapper.readValue(response.body(), new TypeReference<List<Stock>>() {
+            });
+        }
+
+        HttpResponse<String> send(HttpRequest.Builder request) throws Exception {
+            return httpClient.send(request.build(), HttpResponse.BodyHandlers.ofString());
+        }
+
+        @Override
+        public void close() {
+            context.close();
+        }
+    }
+
+    private static int freePort() throws IOException {
+        try (ServerSocket socket = new ServerSocket(0)) {
+            return socket.getLocalPort();
+        }
+    }
+}
@@ -0,0 +1,80 @@
+package payconiq.stocks.controller;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.patch;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.content;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.annotation.DirtiesContext;
+import org.springframework.test.context.junit.jupiter.SpringExtension;
+import org.springframework.test.web.servlet.MockMvc;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import payconiq.stocks.repository.PriceTickRepository;
+import payconiq.stocks.request.PriceUpdateRequest;
+import payconiq.stocks.service.history.JpaPriceHistoryStore;
+
+@ExtendWith(SpringExtension.class)
+@SpringBootTest(properties = {"stocks.history.store=jpa", "stocks.history.flush-interval=1h"})
+@AutoConfigureMockMvc
+@DirtiesContext(classMode = DirtiesContext.ClassMode.BEFORE_EACH_TEST_METHOD)
+class StockControllerPriceHistoryTests {
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @Autowired
+    private PriceTickRepository priceTickRepository;
+
+    @Autowired
+    private JpaPriceHistoryStore priceHistoryStore;
+
+    @Test
+    void testHistoryIsReadBeforeFlush() throws Exception {
+        long stored = priceTickRepository.count();
+        updatePrice(2, 2.1);
+        updatePrice(2, 2.2);
+
+        mockMvc.perform(
+                get("/api/stocks/2/history"))
+                .andExpect(status().isOk())
+                .andExpect(content().json("[{\"price\":2.2,\"endDate\":null},{\"price\":2.1}]"));
+        assertThat(priceTickRepository.count()).isEqualTo(stored);
+    }
+
+    @Test
+    void testHistoryCombinesStoredAndBufferedTicks() throws Exception {
+        long stored = priceTickRepository.count();
+        updatePrice(2, 2.1);
+        priceHistoryStore.flush();
+        updatePrice(2, 2.2);
+
+        assertThat(priceTickRepository.count()).isEqualTo(stored + 1);
+        mockMvc.perform(
+                get("/api/stocks/2/history"))
+                .andExpect(status().isOk())
+                .andExpect(content().json("[{\"price\":2.2,\"endDate\":null},{\"price\":2.1}]"));
+        priceHistoryStore.flush();
+        mockMvc.perform(
+                get("/api/stocks/2/history"))
+                .andExpect(status().isOk())
+                .andExpect(content().json("[{\"price\":2.2,\"endDate\":null},{\"price\":2.1}]"));
+    }
+
+    private void updatePrice(long id, double price) throws Exception {
+        PriceUpdateRequest priceUpdateRequest = new PriceUpdateRequest();
+        priceUpdateRequest.setPrice(price);
+        mockMvc.perform(
+                patch("/api/stocks/" + id)
+                        .contentType("application/json")
+                        .content(new ObjectMapper().writeValueAsString(priceUpdateRequest)))
+                .andExpect(status().isOk());
+    }
+}
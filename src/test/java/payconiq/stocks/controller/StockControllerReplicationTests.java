@@ -0,0 +1,171 @@
+package payconiq.stocks.controller;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.tuple;
+
+import java.io.IOException;
+import java.net.ServerSocket;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.util.List;
+
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import payconiq.stocks.Application;
+import payconiq.stocks.model.Stock;
+import payconiq.stocks.response.ChangeBatch;
+import payconiq.stocks.response.ReplicationStats;
+import payconiq.stocks.response.StockChange;
+import payconiq.stocks.service.replication.ReplicationNode;
+import payconiq.stocks.service.replication.StockChangeLog;
+
+/**
+ * Starts a primary and a replica on localhost, each with its own in-memory database.
+ */
+class StockControllerReplicationTests {
+
+    private static final HttpClient httpClient = HttpClient.newHttpClient();
+
+    private static ConfigurableApplicationContext primary;
+
+    private static ConfigurableApplicationContext replica;
+
+    private static String primaryUrl;
+
+    private static String replicaUrl;
+
+    private static ObjectMapper objectMapper;
+
+    @BeforeAll
+    static void startNodes() throws Exception {
+        int primaryPort = freePort();
+        primaryUrl = "http://localhost:" + primaryPort;
+        primary = new SpringApplicationBuilder(Application.class).run(
+                "--server.port=" + primaryPort,
+                "--spring.datasource.url=jdbc:h2:mem:replication-primary",
+                "--stocks.replication.role=primary");
+        int replicaPort = freePort();
+        replicaUrl = "http://localhost:" + replicaPort;
+        replica = new SpringApplicationBuilder(Application.class).run(
+                "--server.port=" + replicaPort,
+                "--spring.datasource.url=jdbc:h2:mem:replication-replica",
+                "--stocks.replication.role=replica",
+                "--stocks.replication.primary-url=" + primaryUrl,
+                "--stocks.replication.poll-interval=50ms",
+                "--stocks.replication.max-wait=5s");
+        objectMapper = primary.getBean(ObjectMapper.class);
+    }
+
+    @AfterAll
+    static void stopNodes() {
+        replica.close();
+        primary.close();
+    }
+
+    @Test
+    void testReplicaReadsItsWrites() throws Exception {
+        HttpResponse<String> update = send(HttpRequest.newBuilder(URI.create(primaryUrl + "/api/stocks/1"))
+                .header("Content-Type", "application/json")
+                .method("PATCH", HttpRequest.BodyPublishers.ofString("{\"price\":7.5}")));
+        assertThat(update.statusCode()).isEqualTo(200);
+        String position = update.headers().firstValue(ReplicationNode.POSITION_HEADER).orElseThrow();
+
+        HttpResponse<String> read = send(HttpRequest.newBuilder(URI.create(replicaUrl + "/api/stocks/1"))
+                .header(ReplicationNode.POSITION_HEADER, position));
+        assertThat(read.statusCode()).isEqualTo(200);
+        assertThat(objectMapper.readValue(read.body(), Stock.class).getCurrentPrice()).isEqualTo(7.5);
+        assertThat(Long.parseLong(read.headers().firstValue(ReplicationNode.POSITION_HEADER).orElseThrow()))
+                .isGreaterThanOrEqualTo(Long.parseLong(position));
+    }
+
+    @Test
+    void testAddedAndDeletedStocksAreReplicated() throws Exception {
+        HttpResponse<String> added = send(HttpRequest.newBuilder(URI.create(primaryUrl + "/api/stocks"))
+                .header("Content-Type", "application/json")
+                .POST(HttpRequest.BodyPublishers.ofString("{\"name\":\"Replicated Stock\",\"price\":3.0}")));
+        assertThat(added.statusCode()).isEqualTo(201);
+        String location = added.headers().firstValue("Location").orElseThrow();
+        long id = Long.parseLong(location.substring(location.lastIndexOf('/') + 1));
+
+        List<Stock> stocks = getStocks(replicaUrl, added.headers().firstValue(ReplicationNode.POSITION_HEADER).orElseThrow());
+        assertThat(stocks).extracting(Stock::getName).contains("London Stock", "NewYork Stock", "Replicated Stock");
+
+        HttpResponse<String> deleted = send(HttpRequest.newBuilder(URI.create(primaryUrl + "/api/stocks/" + id)).DELETE());
+        assertThat(deleted.statusCode()).isEqualTo(200);
+        stocks = getStocks(replicaUrl, deleted.headers().firstValue(ReplicationNode.POSITION_HEADER).orElseThrow());
+        assertThat(stocks).extracting(Stock::getId).doesNotContain(id);
+    }
+
+    @Test
+    void testReplicaIsReadOnly() throws Exception {
+        HttpResponse<String> response = send(HttpRequest.newBuilder(URI.create(replicaUrl + "/api/stocks/1"))
+                .header("Content-Type", "application/json")
+                .method("PATCH", HttpRequest.BodyPublishers.ofString("{\"price\":9.9}")));
+        assertThat(response.statusCode()).isEqualTo(405);
+    }
+
+    @Test
+    void testReplicationStats() throws Exception {
+        long position = Long.parseLong(send(HttpRequest.newBuilder(URI.create(primaryUrl + "/api/stocks")))
+                .headers().firstValue(ReplicationNode.POSITION_HEADER).orElseThrow());
+        getStocks(replicaUrl, Long.toString(position));
+        HttpResponse<String> response = send(HttpRequest.newBuilder(URI.create(replicaUrl + "/api/stats/replication")));
+        assertThat(response.statusCode()).isEqualTo(200);
+        assertThat(response.body()).contains("\"role\":\"replica\"");
+
+        ReplicationStats stats = primary.getBean(ReplicationNode.class).stats();
+        assertThat(stats.getRole()).isEqualTo("primary");
+        assertThat(replica.getBean(ReplicationNode.class).position()).isGreaterThanOrEqualTo(position);
+    }
+
+    @Test
+    void testChangesAreLoggedOnCommit() {
+        StockChangeLog changeLog = primary.getBean(StockChangeLog.class);
+        long id = Long.MAX_VALUE - 1;
+        long before = primary.getBean(TransactionTemplate.class).execute(status -> {
+            long position = changeLog.position();
+            changeLog.deleted(id);
+            assertThat(changeLog.position()).isEqualTo(position);
+            return position;
+        });
+        ChangeBatch batch = changeLog.read(before, 100);
+        assertThat(batch.getChanges()).extracting(StockChange::getId, StockChange::isDeleted).contains(tuple(id, true));
+        assertThat(changeLog.committedPosition()).isEqualTo(changeLog.position());
+
+        Stock stock = new Stock();
+        stock.setId(id);
+        stock.setName("Deleted Stock");
+        stock.setCurrentPrice(1.0);
+        long afterDeletion = changeLog.position();
+        changeLog.saved(stock);
+        assertThat(changeLog.read(afterDeletion, 100).getChanges()).extracting(StockChange::getId).doesNotContain(id);
+    }
+
+    private static List<Stock> getStocks(String url, String position) throws Exception {
+        HttpResponse<String> response = send(HttpRequest.newBuilder(URI.create(url + "/api/stocks"))
+                .header(ReplicationNode.POSITION_HEADER, position));
+        assertThat(response.statusCode()).isEqualTo(200);
+        return objectMapper.readValue(response.body(), new TypeReference<List<Stock>>() {
+        });
+    }
+
+    private static HttpResponse<String> send(HttpRequest.Builder request) throws Exception {
+        return httpClient.send(request.build(), HttpResponse.BodyHandlers.ofString());
+    }
+
+    private static int freePort() throws IOException {
+        try (ServerSocket socket = new ServerSocket(0)) {
+            return socket.getLocalPort();
+        }
+    }
+}
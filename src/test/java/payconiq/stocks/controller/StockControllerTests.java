@@ -1,12 +1,32 @@
 package payconiq.stocks.controller;
 
 import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.tuple;
+import static org.hamcrest.Matchers.startsWith;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.*;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.content;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.request;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.header;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
 
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.InputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
 import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
 import java.util.Optional;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.zip.GZIPInputStream;
 
 import org.junit.jupiter.api.Assertions;
 import org.junit.jupiter.api.Test;
@@ -17,20 +37,30 @@ import org.springframework.boot.test.context.SpringBootTest;
 import org.springframework.test.annotation.DirtiesContext;
 import org.springframework.test.context.junit.jupiter.SpringExtension;
 import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+import org.springframework.test.web.servlet.ResultMatcher;
 import org.springframework.web.method.annotation.MethodArgumentTypeMismatchException;
 
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.sun.net.httpserver.HttpServer;
 
+import payconiq.stocks.exception.AlertNotFoundException;
+import payconiq.stocks.exception.ConcurrentUpdateException;
 import payconiq.stocks.exception.IncorrectRequestException;
 import payconiq.stocks.exception.StockAlreadyExistsException;
 import payconiq.stocks.exception.StockNotFoundException;
+import payconiq.stocks.exception.StockVersionMismatchException;
 import payconiq.stocks.model.Stock;
 import payconiq.stocks.repository.StockRepository;
 import payconiq.stocks.request.NewStockRequest;
 import payconiq.stocks.request.PriceUpdateRequest;
+import payconiq.stocks.service.StockService;
+import payconiq.stocks.service.metrics.StockMetrics;
 
 @ExtendWith(SpringExtension.class)
-@SpringBootTest
+@SpringBootTest(properties = "stocks.alerts.allowed-hosts=localhost")
 @AutoConfigureMockMvc
 @DirtiesContext(classMode = DirtiesContext.ClassMode.BEFORE_EACH_TEST_METHOD)
 class StockControllerTests {
@@ -41,6 +71,12 @@ class StockControllerTests {
     @Autowired
     private StockRepository stockRepository;
 
+    @Autowired
+    private StockService stockService;
+
+    @Autowired
+    private StockMetrics stockMetrics;
+
     @Test
     void testGetAllStocks() throws Exception {
         mockMvc.perform(
@@ -180,6 +216,85 @@ class StockControllerTests {
         assertException(exception, StockAlreadyExistsException.class, "Stock already exists with name: London Stock");
     }
 
+    @Test
+    void testPostNewStockAlreadyExistsNormalized() throws Exception {
+        NewStockRequest newStockRequest = new NewStockRequest();
+        newStockRequest.setName("LONDON   stock");
+        newStockRequest.setPrice(10d);
+
+        Exception exception = mockMvc.perform(
+                post("/api/stocks")
+                        .contentType("application/json")
+                        .content(new ObjectMapper().writeValueAsString(newStockRequest)))
+                .andExpect(status().isBadRequest())
+                .andReturn()
+                .getResolvedException();
+
+        assertException(exception, StockAlreadyExistsException.class, "Stock already exists with name: LONDON   stock");
+    }
+
+    @Test
+    void testPostNewStockAlreadyExistsInDatabase() throws Exception {
+        Stock stock = new Stock();
+        stock.setName("Tokyo Stock");
+        stock.setCurrentPrice(3d);
+        stock.setLastUpdate(Instant.now());
+        stockRepository.saveAndFlush(stock);
+
+        NewStockRequest newStockRequest = new NewStockRequest();
+        newStockRequest.setName("tokyo stock");
+        newStockRequest.setPrice(10d);
+
+        Exception exception = mockMvc.perform(
+                post("/api/stocks")
+                        .contentType("application/json")
+                        .content(new ObjectMapper().writeValueAsString(newStockRequest)))
+                .andExpect(status().isBadRequest())
+                .andReturn()
+                .getResolvedException();
+
+        assertException(exception, StockAlreadyExistsException.class, "Stock already exists with name: tokyo stock");
+    }
+
+    @Test
+    void testPostNewStockAfterDelete() throws Exception {
+        mockMvc.perform(
+                delete("/api/stocks/1"))
+                .andExpect(status().isOk());
+
+        NewStockRequest newStockRequest = new NewStockRequest();
+        newStockRequest.setName("London Stock");
+        newStockRequest.setPrice(10d);
+        mockMvc.perform(
+                post("/api/stocks")
+                        .contentType("application/json")
+                        .content(new ObjectMapper().writeValueAsString(newStockRequest)))
+                .andExpect(status().isCreated());
+    }
+
+    @Test
+    void testPostNewStocksBatch() throws Exception {
+        mockMvc.perform(
+                post("/api/stocks/batch")
+                        .contentType("application/json")
+                        .content("[" +
+                                "{\"name\":\"Tokyo Stock\",\"price\":3.0}," +
+                                "{\"name\":\"london stock\",\"price\":3.0}," +
+                                "{\"name\":\" TOKYO STOCK \",\"price\":3.0}," +
+                                "{\"name\":\"Paris Stock\",\"price\":0}" +
+                                "]"))
+                .andExpect(status().isOk())
+                .andExpect(content().json("[" +
+                        "{\"name\":\"Tokyo Stock\",\"error\":null}," +
+                        "{\"id\":null,\"name\":\"london stock\",\"error\":\"Stock already exists with name: london stock\"}," +
+                        "{\"id\":null,\"name\":\"TOKYO STOCK\",\"error\":\"Stock already exists with name: TOKYO STOCK\"}," +
+                        "{\"id\":null,\"name\":\"Paris Stock\",\"error\":\"Stock price should be greater than zero\"}" +
+                        "]"));
+
+        assertThat(stockRepository.findByName("Tokyo Stock")).isPresent();
+        assertThat(stockRepository.count()).isEqualTo(3);
+    }
+
     @Test
     void testUpdateNewPrice() throws Exception {
         double newPrice = 2.1;
@@ -267,6 +382,874 @@ class StockControllerTests {
                 ));
     }
 
+    @Test
+    void testGetStockAfterPriceUpdate() throws Exception {
+        mockMvc.perform(get("/api/stocks/2")).andExpect(status().isOk());
+
+        PriceUpdateRequest priceUpdateRequest = new PriceUpdateRequest();
+        priceUpdateRequest.setPrice(2.5);
+        mockMvc.perform(
+                patch("/api/stocks/2")
+                        .contentType("application/json")
+                        .content(new ObjectMapper().writeValueAsString(priceUpdateRequest)))
+                .andExpect(status().isOk());
+
+        mockMvc.perform(
+                get("/api/stocks/2"))
+                .andExpect(status().isOk())
+                .andExpect(content().json("{\"id\":2,\"name\":\"NewYork Stock\",\"currentPrice\":2.5}"));
+    }
+
+    @Test
+    void testGetStockAfterDelete() throws Exception {
+        mockMvc.perform(get("/api/stocks/2")).andExpect(status().isOk());
+        mockMvc.perform(delete("/api/stocks/2")).andExpect(status().isOk());
+        mockMvc.perform(get("/api/stocks/2")).andExpect(status().isNotFound());
+    }
+
+    @Test
+    void testCacheStats() throws Exception {
+        mockMvc.perform(get("/api/stocks/1")).andExpect(status().isOk());
+        mockMvc.perform(get("/api/stocks/1")).andExpect(status().isOk());
+
+        mockMvc.perform(
+                get("/api/stats/cache"))
+                .andExpect(status().isOk())
+                .andExpect(content().json("{\"size\":1,\"hits\":1,\"misses\":1,\"evictions\":0}", true));
+    }
+
+    @Test
+    void testUpdatePricesBatch() throws Exception {
+        mockMvc.perform(
+                patch("/api/stocks")
+                        .contentType("application/json")
+                        .content("[{\"id\":1,\"price\":2.1},{\"id\":7,\"price\":3.0},{\"id\":2,\"price\":-1.0}]"))
+                .andExpect(status().isOk())
+                .andExpect(content().json(
+                        "[" +
+                                "{\"id\":1,\"updated\":true,\"error\":null}," +
+                                "{\"id\":7,\"updated\":false,\"error\":\"Stock with id 7 not found\"}," +
+                                "{\"id\":2,\"updated\":false,\"error\":\"Stock price should be greater than zero\"}" +
+                                "]",
+                        true
+                ));
+
+        assertThat(stockRepository.findById(1L)).hasValueSatisfying(s -> assertThat(s.getCurrentPrice()).isEqualTo(2.1));
+        assertThat(stockRepository.findById(2L)).hasValueSatisfying(s -> assertThat(s.getCurrentPrice()).isEqualTo(1.9));
+    }
+
+    @Test
+    void testGetPriceHistory() throws Exception {
+        for (double price : new double[]{2.1, 2.2}) {
+            PriceUpdateRequest priceUpdateRequest = new PriceUpdateRequest();
+            priceUpdateRequest.setPrice(price);
+            mockMvc.perform(
+                    patch("/api/stocks/2")
+                            .contentType("application/json")
+                            .content(new ObjectMapper().writeValueAsString(priceUpdateRequest)))
+                    .andExpect(status().isOk());
+        }
+
+        mockMvc.perform(
+                get("/api/stocks/2/history"))
+                .andExpect(status().isOk())
+                .andExpect(content().json("[{\"price\":2.2,\"endDate\":null},{\"price\":2.1}]"));
+        mockMvc.perform(
+                get("/api/stocks/2/history").param("to", "2019-12-31T00:00:00Z"))
+                .andExpect(status().isOk())
+                .andExpect(content().json("[]", true));
+        mockMvc.perform(
+                get("/api/stocks/2/history").param("from", "2100-01-01T00:00:00Z"))
+                .andExpect(status().isOk())
+                .andExpect(content().json("[{\"price\":2.2,\"endDate\":null}]"));
+    }
+
+    @Test
+    void testGetPriceHistoryIncorrectId() throws Exception {
+        Exception exception = mockMvc.perform(
+                get("/api/stocks/3/history"))
+                .andExpect(status().isNotFound())
+                .andReturn()
+                .getResolvedException();
+        assertException(exception, StockNotFoundException.class, "Stock with id 3 not found");
+    }
+
+    @Test
+    void testGetCandles() throws Exception {
+        for (double price : new double[]{2.5, 3.0, 2.2}) {
+            PriceUpdateRequest priceUpdateRequest = new PriceUpdateRequest();
+            priceUpdateRequest.setPrice(price);
+            mockMvc.perform(
+                    patch("/api/stocks/1")
+                            .contentType("application/json")
+                            .content(new ObjectMapper().writeValueAsString(priceUpdateRequest)))
+                    .andExpect(status().isOk());
+        }
+
+        mockMvc.perform(
+                get("/api/stocks/1/candles").param("interval", "1d"))
+                .andExpect(status().isOk())
+                .andExpect(content().json("[{\"open\":2.5,\"high\":3.0,\"low\":2.2,\"close\":2.2,\"updates\":3}]"));
+    }
+
+    @Test
+    void testGetCandlesIncorrectInterval() throws Exception {
+        Exception exception = mockMvc.perform(
+                get("/api/stocks/1/candles").param("interval", "7m"))
+                .andExpect(status().isBadRequest())
+                .andReturn()
+                .getResolvedException();
+        assertException(exception, IncorrectRequestException.class, "Candle interval should be one of: 1m, 5m, 1h, 1d");
+    }
+
+    @Test
+    void testGetStocksAfter() throws Exception {
+        mockMvc.perform(
+                get("/api/stocks").param("limit", "1"))
+                .andExpect(status().isOk())
+                .andExpect(header().string("Link", "<http://localhost/api/stocks?after=1&limit=1>; rel=\"next\""))
+                .andExpect(content().json("[{\"id\":1,\"name\":\"London Stock\"}]"));
+        mockMvc.perform(
+                get("/api/stocks").param("after", "1").param("limit", "2"))
+                .andExpect(status().isOk())
+                .andExpect(header().doesNotExist("Link"))
+                .andExpect(content().json(
+                        "[{\"id\":2,\"name\":\"NewYork Stock\",\"currentPrice\":1.9,\"lastUpdate\":\"2019-12-11T23:59:56Z\"}]",
+                        true
+                ));
+    }
+
+    @Test
+    void testGetStocksAfterIncorrectLimit() throws Exception {
+        Exception exception = mockMvc.perform(
+                get("/api/stocks").param("limit", "0"))
+                .andExpect(status().isBadRequest())
+                .andReturn()
+                .getResolvedException();
+        assertException(exception, IncorrectRequestException.class, "Page limit should be within 1..1000");
+    }
+
+    @Test
+    void testStreamStocks() throws Exception {
+        mockMvc.perform(
+                get("/api/stocks/stream"))
+                .andExpect(status().isOk())
+                .andExpect(content().json(
+                        "[" +
+                                "{\"id\":1,\"name\":\"London Stock\",\"currentPrice\":2.0,\"lastUpdate\":\"2019-12-11T22:58:34Z\"}," +
+                                "{\"id\":2,\"name\":\"NewYork Stock\",\"currentPrice\":1.9,\"lastUpdate\":\"2019-12-11T23:59:56Z\"}" +
+                                "]",
+                        true
+                ));
+    }
+
+    @Test
+    void testSubscribeToPrices() throws Exception {
+        MvcResult result = mockMvc.perform(
+                get("/api/stocks/subscribe").param("ids", "1"))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+        awaitContent(result, "data:{\"id\":1,\"price\":2.0,\"lastUpdate\":\"2019-12-11T22:58:34Z\"}");
+
+        PriceUpdateRequest priceUpdateRequest = new PriceUpdateRequest();
+        priceUpdateRequest.setPrice(2.5);
+        mockMvc.perform(
+                patch("/api/stocks/1")
+                        .contentType("application/json")
+                        .content(new ObjectMapper().writeValueAsString(priceUpdateRequest)))
+                .andExpect(status().isOk());
+        awaitContent(result, "data:{\"id\":1,\"price\":2.5,");
+        assertThat(result.getResponse().getContentAsString()).doesNotContain("\"id\":2");
+    }
+
+    @Test
+    void testSubscribeToPricesIncorrectId() throws Exception {
+        Exception exception = mockMvc.perform(
+                get("/api/stocks/subscribe").param("ids", "1", "3"))
+                .andExpect(status().isNotFound())
+                .andReturn()
+                .getResolvedException();
+        assertException(exception, StockNotFoundException.class, "Stock with id 3 not found");
+    }
+
+    @Test
+    void testGetStockNotModified() throws Exception {
+        String eTag = mockMvc.perform(
+                get("/api/stocks/1"))
+                .andExpect(status().isOk())
+                .andExpect(header().string("ETag", "\"1-0-1576105114000000000-4000000000000000\""))
+                .andExpect(header().string("Last-Modified", "Wed, 11 Dec 2019 22:58:34 GMT"))
+                .andReturn()
+                .getResponse()
+                .getHeader("ETag");
+        mockMvc.perform(
+                get("/api/stocks/1").header("If-None-Match", eTag))
+                .andExpect(status().isNotModified())
+                .andExpect(content().string(""));
+        mockMvc.perform(
+                get("/api/stocks/1").header("If-Modified-Since", "Wed, 11 Dec 2019 22:58:34 GMT"))
+                .andExpect(status().isNotModified());
+
+        PriceUpdateRequest priceUpdateRequest = new PriceUpdateRequest();
+        priceUpdateRequest.setPrice(2.5);
+        mockMvc.perform(
+                patch("/api/stocks/1")
+                        .contentType("application/json")
+                        .content(new ObjectMapper().writeValueAsString(priceUpdateRequest)))
+                .andExpect(status().isOk());
+        mockMvc.perform(
+                get("/api/stocks/1").header("If-None-Match", eTag))
+                .andExpect(status().isOk())
+                .andExpect(content().json("{\"id\":1,\"currentPrice\":2.5}"));
+    }
+
+    @Test
+    void testGetAllStocksNotModified() throws Exception {
+        String eTag = mockMvc.perform(
+                get("/api/stocks"))
+                .andExpect(status().isOk())
+                .andReturn()
+                .getResponse()
+                .getHeader("ETag");
+        assertThat(eTag).isNotNull();
+        mockMvc.perform(
+                get("/api/stocks").header("If-None-Match", eTag))
+                .andExpect(status().isNotModified())
+                .andExpect(content().string(""));
+
+        mockMvc.perform(
+                delete("/api/stocks/2"))
+                .andExpect(status().isOk());
+        mockMvc.perform(
+                get("/api/stocks").header("If-None-Match", eTag))
+                .andExpect(status().isOk())
+                .andExpect(content().json("[{\"id\":1}]"));
+    }
+
+    @Test
+    void testImportCsv() throws Exception {
+        mockMvc.perform(
+                post("/api/stocks/import")
+                        .contentType("text/csv")
+                        .content("name,price\n" +
+                                "Tokyo Stock,3.5\n" +
+                                "\"Paris, \"\"Euronext\"\"\",2\r\n" +
+                                "london stock,1\n" +
+                                "Berlin Stock,abc\n"))
+                .andExpect(status().isOk())
+                .andExpect(content().json("{" +
+                        "\"errors\":[" +
+                        "{\"row\":3,\"name\":\"london stock\",\"error\":\"Stock already exists with name: london stock\"}," +
+                        "{\"row\":4,\"name\":\"Berlin Stock\",\"error\":\"Stock price is not a number: abc\"}" +
+                        "]," +
+                        "\"imported\":2," +
+                        "\"failed\":2" +
+                        "}", true));
+
+        assertThat(stockRepository.findByName("Paris, \"Euronext\"")).isPresent();
+        assertThat(stockRepository.count()).isEqualTo(4);
+    }
+
+    @Test
+    void testExportCsv() throws Exception {
+        mockMvc.perform(
+                get("/api/stocks/export"))
+                .andExpect(status().isOk())
+                .andExpect(content().contentTypeCompatibleWith("text/csv"))
+                .andExpect(content().string("id,name,currentPrice,lastUpdate\r\n" +
+                        "1,London Stock,2.0,2019-12-11T22:58:34Z\r\n" +
+                        "2,NewYork Stock,1.9,2019-12-11T23:59:56Z\r\n"));
+    }
+
+    @Test
+    void testExportImportBinary() throws Exception {
+        byte[] exported = mockMvc.perform(
+                get("/api/stocks/export").accept("application/x-stock-binary"))
+                .andExpect(status().isOk())
+                .andExpect(content().contentType("application/x-stock-binary"))
+                .andReturn()
+                .getResponse()
+                .getContentAsByteArray();
+
+        mockMvc.perform(
+                delete("/api/stocks/1"))
+                .andExpect(status().isOk());
+
+        mockMvc.perform(
+                post("/api/stocks/import")
+                        .contentType("application/x-stock-binary")
+                        .content(exported))
+                .andExpect(status().isOk())
+                .andExpect(content().json("{" +
+                        "\"errors\":[{\"row\":2,\"name\":\"NewYork Stock\",\"error\":\"Stock already exists with name: NewYork Stock\"}]," +
+                        "\"imported\":1," +
+                        "\"failed\":1" +
+                        "}", true));
+        assertThat(stockRepository.findByName("London Stock"))
+                .hasValueSatisfying(s -> assertThat(s.getCurrentPrice()).isEqualTo(2.0));
+    }
+
+    @Test
+    void testMetrics() throws Exception {
+        mockMvc.perform(
+                get("/api/stocks/1"))
+                .andExpect(status().isOk());
+        for (double price : new double[]{2.5, 2.6}) {
+            PriceUpdateRequest priceUpdateRequest = new PriceUpdateRequest();
+            priceUpdateRequest.setPrice(price);
+            mockMvc.perform(
+                    patch("/api/stocks/2")
+                            .contentType("application/json")
+                            .content(new ObjectMapper().writeValueAsString(priceUpdateRequest)))
+                    .andExpect(status().isOk());
+        }
+
+        String lookupMetrics = mockMvc.perform(
+                get("/actuator/metrics/stocks.service").param("tag", "method:lookupStock"))
+                .andExpect(status().isOk())
+                .andReturn()
+                .getResponse()
+                .getContentAsString();
+        assertThat(lookupMetrics).contains("{\"statistic\":\"COUNT\",\"value\":1.0}");
+        mockMvc.perform(
+                get("/actuator/metrics/stocks.transactions").param("tag", "outcome:commit"))
+                .andExpect(status().isOk());
+        mockMvc.perform(
+                get("/actuator/stockupdates"))
+                .andExpect(status().isOk())
+                .andExpect(content().json("{\"stocks\":[{\"id\":2,\"updates\":2}],\"untracked\":0}", true));
+        mockMvc.perform(
+                get("/actuator/stockupdates/1"))
+                .andExpect(status().isOk())
+                .andExpect(content().json("{\"id\":1,\"updates\":0}", true));
+    }
+
+    @Test
+    void testUpdatePriceIfMatch() throws Exception {
+        String eTag = mockMvc.perform(
+                get("/api/stocks/1"))
+                .andExpect(status().isOk())
+                .andReturn()
+                .getResponse()
+                .getHeader("ETag");
+
+        PriceUpdateRequest priceUpdateRequest = new PriceUpdateRequest();
+        priceUpdateRequest.setPrice(2.5);
+        mockMvc.perform(
+                patch("/api/stocks/1")
+                        .header("If-Match", eTag)
+                        .contentType("application/json")
+                        .content(new ObjectMapper().writeValueAsString(priceUpdateRequest)))
+                .andExpect(status().isOk())
+                .andExpect(header().string("ETag", startsWith("\"1-1-")));
+
+        priceUpdateRequest.setPrice(2.6);
+        MvcResult result = mockMvc.perform(
+                patch("/api/stocks/1")
+                        .header("If-Match", eTag)
+                        .contentType("application/json")
+                        .content(new ObjectMapper().writeValueAsString(priceUpdateRequest)))
+                .andExpect(status().isPreconditionFailed())
+                .andReturn();
+        assertException(result.getResolvedException(), StockVersionMismatchException.class,
+                "Stock with id 1 is not of version 0");
+
+        priceUpdateRequest.setExpectedVersion(1L);
+        mockMvc.perform(
+                patch("/api/stocks/1")
+                        .contentType("application/json")
+                        .content(new ObjectMapper().writeValueAsString(priceUpdateRequest)))
+                .andExpect(status().isOk());
+        assertThat(stockRepository.findById(1L)).hasValueSatisfying(s -> Assertions.assertAll(
+                () -> assertThat(s.getCurrentPrice()).isEqualTo(2.6),
+                () -> assertThat(s.getVersion()).isEqualTo(2)));
+    }
+
+    @Test
+    void testConcurrentPriceUpdatesAreNotLost() throws Exception {
+        int threads = 4;
+        int updatesPerThread = 25;
+        AtomicInteger updated = new AtomicInteger();
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        try {
+            List<Future<?>> futures = new ArrayList<>();
+            for (int t = 0; t < threads; t++) {
+                futures.add(executor.submit(() -> {
+                    for (int i = 1; i <= updatesPerThread; i++) {
+                        try {
+                            stockService.updateStockPrice(1, 2.0 + i);
+                            updated.incrementAndGet();
+                        } catch (ConcurrentUpdateException e) {
+                            // too many conflicts in a row, the update is rejected as a whole
+                        }
+                    }
+                }));
+            }
+            for (Future<?> future : futures) {
+                future.get(30, TimeUnit.SECONDS);
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+
+        assertThat(updated.get()).isPositive();
+        assertThat(stockRepository.findById(1L))
+                .hasValueSatisfying(s -> assertThat(s.getVersion()).isEqualTo(updated.get()));
+        assertThat(stockMetrics.getUpdates(1)).isEqualTo(updated.get());
+    }
+
+    @Test
+    void testSearchStocks() throws Exception {
+        for (String name : new String[]{"Stockholm Exchange", "Tokyo  STOCK", "Euronext"}) {
+            NewStockRequest newStockRequest = new NewStockRequest();
+            newStockRequest.setName(name);
+            newStockRequest.setPrice(1d);
+            stockService.addNewStock(newStockRequest);
+        }
+
+        assertThat(searchStocks("q=STOCK")).extracting(Stock::getName)
+                .containsExactly("Stockholm Exchange", "London Stock", "NewYork Stock", "Tokyo  STOCK");
+        assertThat(searchStocks("q=tokyo stock")).extracting(Stock::getName).containsExactly("Tokyo  STOCK");
+        assertThat(searchStocks("q=Lon&limit=1")).extracting(Stock::getId).containsExactly(1L);
+        assertThat(searchStocks("q=ck&limit=5")).isEmpty();
+
+        mockMvc.perform(
+                delete("/api/stocks/1"))
+                .andExpect(status().isOk());
+        assertThat(searchStocks("q=ondon")).isEmpty();
+    }
+
+    @Test
+    void testSearchStocksIncorrectRequest() throws Exception {
+        Exception exception = mockMvc.perform(
+                get("/api/stocks/search").param("q", "  "))
+                .andExpect(status().isBadRequest())
+                .andReturn()
+                .getResolvedException();
+        assertException(exception, IncorrectRequestException.class, "Search query can't be empty");
+
+        exception = mockMvc.perform(
+                get("/api/stocks/search").param("q", "stock").param("limit", "101"))
+                .andExpect(status().isBadRequest())
+                .andReturn()
+                .getResolvedException();
+        assertException(exception, IncorrectRequestException.class, "Search limit should be within 1..100");
+    }
+
+    @Test
+    void testPriceAlertsFireOnCrossingPrice() throws Exception {
+        BlockingQueue<JsonNode> callbacks = new LinkedBlockingQueue<>();
+        HttpServer callbackServer = HttpServer.create(new InetSocketAddress("localhost", 0), 0);
+        callbackServer.createContext("/alerts", exchange -> {
+            callbacks.add(new ObjectMapper().readTree(exchange.getRequestBody()));
+            exchange.sendResponseHeaders(204, -1);
+            exchange.close();
+        });
+        callbackServer.start();
+        try {
+            String callbackUrl = "http://localhost:" + callbackServer.getAddress().getPort() + "/alerts";
+            long rising = addAlert(1, "{\"price\":2.5,\"callbackUrl\":\"" + callbackUrl + "\"}");
+            long higher = addAlert(1, "{\"price\":3.0,\"callbackUrl\":\"" + callbackUrl + "\"}");
+            long falling = addAlert(1, "{\"price\":1.5,\"direction\":\"DOWN\",\"callbackUrl\":\"" + callbackUrl + "\"}");
+            addAlert(2, "{\"price\":2.5,\"callbackUrl\":\"" + callbackUrl + "\"}");
+
+            stockService.updateStockPrice(1, 2.6);
+            JsonNode fired = callbacks.poll(5, TimeUnit.SECONDS);
+            assertThat(fired).isNotNull();
+            assertThat(fired.get("alertId").asLong()).isEqualTo(rising);
+            assertThat(fired.get("direction").asText()).isEqualTo("UP");
+            assertThat(fired.get("oldPrice").asDouble()).isEqualTo(2.0);
+            assertThat(fired.get("newPrice").asDouble()).isEqualTo(2.6);
+            mockMvc.perform(
+                    get("/api/stocks/1/alerts/" + rising))
+                    .andExpect(status().isNotFound());
+            mockMvc.perform(
+                    get("/api/stocks/1/alerts"))
+                    .andExpect(status().isOk())
+                    .andExpect(content().json("[{\"id\":" + higher + ",\"direction\":\"UP\"},"
+                            + "{\"id\":" + falling + ",\"direction\":\"DOWN\"}]"));
+
+            stockService.updateStockPrice(1, 1.5);
+            fired = callbacks.poll(5, TimeUnit.SECONDS);
+            assertThat(fired).isNotNull();
+            assertThat(fired.get("alertId").asLong()).isEqualTo(falling);
+            stockService.updateStockPrice(1, 1.2);
+            assertThat(callbacks.poll(200, TimeUnit.MILLISECONDS)).isNull();
+
+            mockMvc.perform(
+                    get("/api/stats/alerts"))
+                    .andExpect(status().isOk())
+                    .andExpect(content().json("{\"pending\":2,\"fired\":2,\"delivered\":2,\"failed\":0,\"dropped\":0}"));
+        } finally {
+            callbackServer.stop(0);
+        }
+    }
+
+    @Test
+    void testPriceAlertsIncorrectRequest() throws Exception {
+        Exception exception = mockMvc.perform(
+                post("/api/stocks/1/alerts")
+                        .contentType("application/json")
+                        .content("{\"price\":0,\"callbackUrl\":\"http://localhost:9000/alerts\"}"))
+                .andExpect(status().isBadRequest())
+                .andReturn()
+                .getResolvedException();
+        assertException(exception, IncorrectRequestException.class, "Alert price should be greater than zero");
+
+        exception = mockMvc.perform(
+                post("/api/stocks/1/alerts")
+                        .contentType("application/json")
+                        .content("{\"price\":2.5,\"callbackUrl\":\"file:///tmp/alerts\"}"))
+                .andExpect(status().isBadRequest())
+                .andReturn()
+                .getResolvedException();
+        assertException(exception, IncorrectRequestException.class,
+                "Alert callback url should be an absolute http or https url");
+
+        for (String callbackUrl : List.of("http://127.0.0.1:9000/alerts", "http://169.254.169.254/latest",
+                "http://10.0.0.1/alerts", "http://[::1]:9000/alerts")) {
+            exception = mockMvc.perform(
+                    post("/api/stocks/1/alerts")
+                            .contentType("application/json")
+                            .content("{\"price\":2.5,\"callbackUrl\":\"" + callbackUrl + "\"}"))
+                    .andExpect(status().isBadRequest())
+                    .andReturn()
+                    .getResolvedException();
+            assertException(exception, IncorrectRequestException.class,
+                    "Alert callback url should point to a public address");
+        }
+
+        mockMvc.perform(
+                post("/api/stocks/7/alerts")
+                        .contentType("application/json")
+                        .content("{\"price\":2.5,\"callbackUrl\":\"http://localhost:9000/alerts\"}"))
+                .andExpect(status().isNotFound());
+
+        long alertId = addAlert(1, "{\"price\":2.5,\"callbackUrl\":\"http://localhost:9000/alerts\"}");
+        mockMvc.perform(
+                delete("/api/stocks/2/alerts/" + alertId))
+                .andExpect(status().isNotFound());
+        mockMvc.perform(
+                delete("/api/stocks/1/alerts/" + alertId))
+                .andExpect(status().isNoContent());
+        exception = mockMvc.perform(
+                get("/api/stocks/1/alerts/" + alertId))
+                .andExpect(status().isNotFound())
+                .andReturn()
+                .getResolvedException();
+        assertException(exception, AlertNotFoundException.class,
+                "There is no alert with id " + alertId + " of stock with id 1");
+    }
+
+    @Test
+    void testCachedJsonIsRefreshedOnChange() throws Exception {
+        String stocks = mockMvc.perform(
+                get("/api/stocks"))
+                .andExpect(status().isOk())
+                .andExpect(header().doesNotExist("Content-Encoding"))
+                .andReturn()
+                .getResponse()
+                .getContentAsString();
+        byte[] compressed = mockMvc.perform(
+                get("/api/stocks").header("Accept-Encoding", "deflate, gzip;q=0.8"))
+                .andExpect(status().isOk())
+                .andExpect(header().string("Content-Encoding", "gzip"))
+                .andExpect(header().string("Vary", "Accept, Accept-Encoding"))
+                .andReturn()
+                .getResponse()
+                .getContentAsByteArray();
+        try (InputStream gzip = new GZIPInputStream(new ByteArrayInputStream(compressed))) {
+            assertThat(new String(gzip.readAllBytes(), StandardCharsets.UTF_8)).isEqualTo(stocks);
+        }
+        String eTag = mockMvc.perform(
+                get("/api/stocks"))
+                .andExpect(header().string("Vary", "Accept, Accept-Encoding"))
+                .andReturn()
+                .getResponse()
+                .getHeader("ETag");
+        String gzipETag = mockMvc.perform(
+                get("/api/stocks").header("Accept-Encoding", "gzip"))
+                .andExpect(header().string("ETag", eTag.substring(0, eTag.length() - 1) + "-gz\""))
+                .andReturn()
+                .getResponse()
+                .getHeader("ETag");
+        mockMvc.perform(
+                get("/api/stocks").header("Accept-Encoding", "gzip").header("If-None-Match", eTag))
+                .andExpect(status().isOk())
+                .andExpect(header().string("Content-Encoding", "gzip"));
+        mockMvc.perform(
+                get("/api/stocks").header("Accept-Encoding", "gzip").header("If-None-Match", gzipETag))
+                .andExpect(status().isNotModified());
+        mockMvc.perform(
+                get("/api/stocks").header("Accept-Encoding", "gzip;q=0"))
+                .andExpect(status().isOk())
+                .andExpect(header().doesNotExist("Content-Encoding"));
+        mockMvc.perform(
+                get("/api/stocks/1"))
+                .andExpect(status().isOk())
+                .andExpect(content().json("{\"id\":1,\"currentPrice\":2.0}"));
+
+        stockService.updateStockPrice(1, 2.7);
+
+        mockMvc.perform(
+                get("/api/stocks"))
+                .andExpect(status().isOk())
+                .andExpect(content().json("[{\"id\":1,\"currentPrice\":2.7},{\"id\":2,\"currentPrice\":1.9}]"));
+        compressed = mockMvc.perform(
+                get("/api/stocks").header("Accept-Encoding", "gzip"))
+                .andExpect(status().isOk())
+                .andReturn()
+                .getResponse()
+                .getContentAsByteArray();
+        try (InputStream gzip = new GZIPInputStream(new ByteArrayInputStream(compressed))) {
+            assertThat(new String(gzip.readAllBytes(), StandardCharsets.UTF_8)).contains("\"currentPrice\":2.7");
+        }
+        mockMvc.perform(
+                get("/api/stocks/1"))
+                .andExpect(status().isOk())
+                .andExpect(content().json("{\"id\":1,\"currentPrice\":2.7}"));
+    }
+
+    @Test
+    void testTopStocks() throws Exception {
+        mockMvc.perform(
+                get("/api/stocks/top"))
+                .andExpect(status().isOk())
+                .andExpect(content().json("[]", true));
+
+        stockService.updateStockPrice(1, 2.2);
+        stockService.updateStockPrice(1, 2.5);
+        stockService.updateStockPrice(2, 1.52);
+
+        mockMvc.perform(
+                get("/api/stocks/top").param("by", "change"))
+                .andExpect(status().isOk())
+                .andExpect(content().json("[{\"id\":1,\"openPrice\":2.0,\"price\":2.5,\"changePercent\":25.0,\"updates\":2},"
+                        + "{\"id\":2,\"openPrice\":1.9,\"price\":1.52,\"updates\":1}]"))
+                .andExpect(jsonIds(1, 2));
+        mockMvc.perform(
+                get("/api/stocks/top").param("by", "change").param("order", "asc").param("n", "1"))
+                .andExpect(status().isOk())
+                .andExpect(jsonIds(2));
+
+        stockService.updateStockPrice(2, 1.6);
+        stockService.updateStockPrice(2, 1.7);
+        mockMvc.perform(
+                get("/api/stocks/top").param("by", "active"))
+                .andExpect(status().isOk())
+                .andExpect(jsonIds(2, 1));
+
+        mockMvc.perform(
+                delete("/api/stocks/2"))
+                .andExpect(status().isOk());
+        mockMvc.perform(
+                get("/api/stocks/top").param("by", "active"))
+                .andExpect(status().isOk())
+                .andExpect(jsonIds(1));
+    }
+
+    @Test
+    void testTopStocksIncorrectRequest() throws Exception {
+        Exception exception = mockMvc.perform(
+                get("/api/stocks/top").param("by", "volume"))
+                .andExpect(status().isBadRequest())
+                .andReturn()
+                .getResolvedException();
+        assertException(exception, IncorrectRequestException.class, "Top stocks can be by change or active");
+
+        exception = mockMvc.perform(
+                get("/api/stocks/top").param("n", "101"))
+                .andExpect(status().isBadRequest())
+                .andReturn()
+                .getResolvedException();
+        assertException(exception, IncorrectRequestException.class, "Number of top stocks should be within 1..100");
+
+        exception = mockMvc.perform(
+                get("/api/stocks/top").param("order", "up"))
+                .andExpect(status().isBadRequest())
+                .andReturn()
+                .getResolvedException();
+        assertException(exception, IncorrectRequestException.class, "Order of top stocks should be asc or desc");
+    }
+
+    @Test
+    void testStockWireFormat() throws Exception {
+        byte[] stocks = mockMvc.perform(
+                get("/api/stocks").accept(StockWireFormat.MEDIA_TYPE))
+                .andExpect(status().isOk())
+                .andExpect(content().contentType(StockWireFormat.MEDIA_TYPE))
+                .andReturn()
+                .getResponse()
+                .getContentAsByteArray();
+        StockWireFormat.Reader reader = new StockWireFormat.Reader(stocks);
+        assertThat(reader.readStocks()).extracting(Stock::getId, Stock::getName, Stock::getCurrentPrice, Stock::getLastUpdate)
+                .containsExactly(
+                        tuple(1L, "London Stock", 2.0, Instant.parse("2019-12-11T22:58:34Z")),
+                        tuple(2L, "NewYork Stock", 1.9, Instant.parse("2019-12-11T23:59:56Z")));
+        reader.checkEnd();
+        mockMvc.perform(
+                get("/api/stocks"))
+                .andExpect(status().isOk())
+                .andExpect(content().contentTypeCompatibleWith("application/json"));
+
+        NewStockRequest newStock = new NewStockRequest();
+        newStock.setName("Zürich Stock");
+        newStock.setPrice(3.25);
+        String location = mockMvc.perform(
+                post("/api/stocks")
+                        .contentType(StockWireFormat.MEDIA_TYPE)
+                        .content(encode(writer -> writer.writeNewStock(newStock))))
+                .andExpect(status().isCreated())
+                .andReturn()
+                .getResponse()
+                .getHeader("Location");
+
+        PriceUpdateRequest priceUpdate = new PriceUpdateRequest();
+        priceUpdate.setPrice(3.5);
+        mockMvc.perform(
+                patch(location)
+                        .contentType(StockWireFormat.MEDIA_TYPE)
+                        .content(encode(writer -> writer.writePriceUpdate(priceUpdate))))
+                .andExpect(status().isOk());
+
+        byte[] stock = mockMvc.perform(
+                get(location).accept(StockWireFormat.MEDIA_TYPE))
+                .andExpect(status().isOk())
+                .andExpect(header().exists("ETag"))
+                .andReturn()
+                .getResponse()
+                .getContentAsByteArray();
+        Stock updated = new StockWireFormat.Reader(stock).readStock();
+        assertThat(updated.getName()).isEqualTo("Zürich Stock");
+        assertThat(updated.getCurrentPrice()).isEqualTo(3.5);
+        assertThat(updated.getLastUpdate()).isEqualTo(stockService.lookupStock(updated.getId()).getLastUpdate());
+    }
+
+    @Test
+    void testStockWireFormatHasOwnETag() throws Exception {
+        String jsonETag = mockMvc.perform(
+                get("/api/stocks/1"))
+                .andExpect(status().isOk())
+                .andExpect(header().string("Vary", "Accept"))
+                .andReturn()
+                .getResponse()
+                .getHeader("ETag");
+        String wireETag = mockMvc.perform(
+                get("/api/stocks/1").accept(StockWireFormat.MEDIA_TYPE).header("If-None-Match", jsonETag))
+                .andExpect(status().isOk())
+                .andExpect(content().contentType(StockWireFormat.MEDIA_TYPE))
+                .andExpect(header().string("Vary", "Accept"))
+                .andReturn()
+                .getResponse()
+                .getHeader("ETag");
+        assertThat(wireETag).isEqualTo(jsonETag.substring(0, jsonETag.length() - 1) + "-wire\"");
+        mockMvc.perform(
+                get("/api/stocks/1").accept(StockWireFormat.MEDIA_TYPE).header("If-None-Match", wireETag))
+                .andExpect(status().isNotModified());
+        mockMvc.perform(
+                get("/api/stocks/1").header("If-None-Match", wireETag))
+                .andExpect(status().isOk());
+
+        String listETag = mockMvc.perform(
+                get("/api/stocks"))
+                .andExpect(status().isOk())
+                .andReturn()
+                .getResponse()
+                .getHeader("ETag");
+        mockMvc.perform(
+                get("/api/stocks").accept(StockWireFormat.MEDIA_TYPE).header("If-None-Match", listETag))
+                .andExpect(status().isOk())
+                .andExpect(content().contentType(StockWireFormat.MEDIA_TYPE))
+                .andExpect(header().string("Vary", "Accept, Accept-Encoding"));
+
+        mockMvc.perform(
+                patch("/api/stocks/1")
+                        .contentType("application/json")
+                        .header("If-Match", wireETag)
+                        .content("{\"price\":2.2}"))
+                .andExpect(status().isOk());
+    }
+
+    @Test
+    void testStockWireFormatIncorrectBody() throws Exception {
+        mockMvc.perform(
+                post("/api/stocks")
+                        .contentType(StockWireFormat.MEDIA_TYPE)
+                        .content(new byte[]{0, 1, 2}))
+                .andExpect(status().isBadRequest());
+        PriceUpdateRequest priceUpdate = new PriceUpdateRequest();
+        priceUpdate.setPrice(3.5);
+        byte[] trailing = Arrays.copyOf(encode(writer -> writer.writePriceUpdate(priceUpdate)), 17);
+        mockMvc.perform(
+                patch("/api/stocks/1")
+                        .contentType(StockWireFormat.MEDIA_TYPE)
+                        .content(trailing))
+                .andExpect(status().isBadRequest());
+        mockMvc.perform(
+                get("/api/stocks/top").accept(StockWireFormat.MEDIA_TYPE))
+                .andExpect(status().isNotAcceptable());
+    }
+
+    /**
+     * Checks ids of a json array of objects in order.
+     */
+    private static ResultMatcher jsonIds(long... ids) {
+        return result -> {
+            JsonNode array = new ObjectMapper().readTree(result.getResponse().getContentAsString());
+            List<Long> actual = new ArrayList<>();
+            array.forEach(node -> actual.add(node.get("id").asLong()));
+            assertThat(actual).containsExactly(Arrays.stream(ids).boxed().toArray(Long[]::new));
+        };
+    }
+
+    private long addAlert(long stockId, String json) throws Exception {
+        String response = mockMvc.perform(
+                post("/api/stocks/" + stockId + "/alerts")
+                        .contentType("application/json")
+                        .content(json))
+                .andExpect(status().isCreated())
+                .andExpect(header().string("Location", startsWith("http://localhost/api/stocks/" + stockId + "/alerts/")))
+                .andReturn()
+                .getResponse()
+                .getContentAsString();
+        return new ObjectMapper().readTree(response).get("id").asLong();
+    }
+
+    private List<Stock> searchStocks(String query) throws Exception {
+        String json = mockMvc.perform(
+                get("/api/stocks/search?" + query))
+                .andExpect(status().isOk())
+                .andReturn()
+                .getResponse()
+                .getContentAsString();
+        return new ObjectMapper().findAndRegisterModules().readValue(json, new TypeReference<List<Stock>>() {
+        });
+    }
+
+    /**
+     * Encodes a request in {@link StockWireFormat}.
+     */
+    private static byte[] encode(WireEncoder encoder) throws Exception {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        StockWireFormat.Writer writer = new StockWireFormat.Writer(out, 64);
+        encoder.encode(writer);
+        writer.flush();
+        return out.toByteArray();
+    }
+
+    private interface WireEncoder {
+
+        void encode(StockWireFormat.Writer writer) throws Exception;
+    }
+
+    private static void awaitContent(MvcResult result, String expected) throws Exception {
+        long deadline = System.currentTimeMillis() + 5000;
+        while (!result.getResponse().getContentAsString().contains(expected) && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+        assertThat(result.getResponse().getContentAsString()).contains(expected);
+    }
+
     private static void assertException(Exception exception, Class<? extends Throwable> exceptionClass, String message) {
         assertThat(exception).isNotNull();
         assertThat(exception).isExactlyInstanceOf(exceptionClass);
@@ -0,0 +1,85 @@
+package payconiq.stocks.controller;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.*;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.content;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.annotation.DirtiesContext;
+import org.springframework.test.context.junit.jupiter.SpringExtension;
+import org.springframework.test.web.servlet.MockMvc;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import payconiq.stocks.repository.StockRepository;
+import payconiq.stocks.request.PriceUpdateRequest;
+import payconiq.stocks.service.PriceWriteBehind;
+
+@ExtendWith(SpringExtension.class)
+@SpringBootTest(properties = "stocks.write-behind.enabled=true")
+@AutoConfigureMockMvc
+@DirtiesContext(classMode = DirtiesContext.ClassMode.BEFORE_EACH_TEST_METHOD)
+class StockControllerWriteBehindTests {
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @Autowired
+    private StockRepository stockRepository;
+
+    @Autowired
+    private PriceWriteBehind priceWriteBehind;
+
+    @Test
+    void testUpdateIsAcceptedAndWrittenLater() throws Exception {
+        mockMvc.perform(
+                patch("/api/stocks/1")
+                        .contentType("application/json")
+                        .content(priceUpdate(3.1)))
+                .andExpect(status().isAccepted());
+        mockMvc.perform(
+                patch("/api/stocks/1")
+                        .contentType("application/json")
+                        .content(priceUpdate(3.2)))
+                .andExpect(status().isAccepted());
+
+        long deadline = System.currentTimeMillis() + 5000;
+        while (priceWriteBehind.stats().getWritten() < 2 && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+        assertThat(stockRepository.findById(1L)).hasValueSatisfying(s -> assertThat(s.getCurrentPrice()).isEqualTo(3.2));
+        mockMvc.perform(
+                get("/api/stats/write-behind"))
+                .andExpect(status().isOk())
+                .andExpect(content().json("{\"queueDepth\":0,\"accepted\":2,\"rejected\":0,\"written\":2,\"failed\":0}"));
+    }
+
+    @Test
+    void testUpdateIncorrectId() throws Exception {
+        mockMvc.perform(
+                patch("/api/stocks/6")
+                        .contentType("application/json")
+                        .content(priceUpdate(3d)))
+                .andExpect(status().isNotFound());
+    }
+
+    @Test
+    void testUpdateNegativePrice() throws Exception {
+        mockMvc.perform(
+                patch("/api/stocks/1")
+                        .contentType("application/json")
+                        .content(priceUpdate(-1d)))
+                .andExpect(status().isBadRequest());
+    }
+
+    private static String priceUpdate(double price) throws Exception {
+        PriceUpdateRequest priceUpdateRequest = new PriceUpdateRequest();
+        priceUpdateRequest.setPrice(price);
+        return new ObjectMapper().writeValueAsString(priceUpdateRequest);
+    }
+}
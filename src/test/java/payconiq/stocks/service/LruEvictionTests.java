@@ -0,0 +1,24 @@
+package payconiq.stocks.service;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.junit.jupiter.api.Test;
+
+class LruEvictionTests {
+
+    @Test
+    void testLeastRecentlyReadValuesAreEvicted() {
+        ConcurrentHashMap<Long, Long> lastReads = new ConcurrentHashMap<>();
+        LruEviction<Long, Long> eviction = new LruEviction<>(lastReads, 10, Long::longValue);
+        for (long id = 1; id <= 10; id++) {
+            lastReads.put(id, id);
+        }
+        assertThat(eviction.evictIfFull()).isZero();
+
+        lastReads.put(11L, 11L);
+        assertThat(eviction.evictIfFull()).isEqualTo(2);
+        assertThat(lastReads).hasSize(9).doesNotContainKeys(1L, 2L);
+    }
+}
@@ -0,0 +1,41 @@
+package payconiq.stocks.service;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.time.Duration;
+import java.time.Instant;
+
+import org.junit.jupiter.api.Test;
+
+import payconiq.stocks.model.Stock;
+
+class StockCacheTests {
+
+    @Test
+    void testOlderWriteDoesNotReplaceNewerOne() {
+        StockCache cache = new StockCache(10, Duration.ofMinutes(1));
+        cache.update(stock(1, 3.0, Instant.ofEpochSecond(2)));
+        cache.update(stock(1, 2.0, Instant.ofEpochSecond(1)));
+
+        assertThat(cache.get(1).getCurrentPrice()).isEqualTo(3.0);
+    }
+
+    @Test
+    void testWriteAfterDeletionIsNotCached() {
+        StockCache cache = new StockCache(10, Duration.ofMinutes(1));
+        cache.update(stock(1, 2.0, Instant.ofEpochSecond(1)));
+        cache.deleted(1);
+        cache.update(stock(1, 3.0, Instant.ofEpochSecond(2)));
+
+        assertThat(cache.get(1)).isNull();
+    }
+
+    private static Stock stock(long id, double price, Instant lastUpdate) {
+        Stock stock = new Stock();
+        stock.setId(id);
+        stock.setName("Stock " + id);
+        stock.setCurrentPrice(price);
+        stock.setLastUpdate(lastUpdate);
+        return stock;
+    }
+}
@@ -0,0 +1,40 @@
+package payconiq.stocks.service.candle;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.tuple;
+
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+
+import payconiq.stocks.response.Candle;
+
+class CandleSeriesTests {
+
+    @Test
+    void testOlderChangeGoesToItsSealedCandle() {
+        CandleSeries series = new CandleSeries(1000, 4);
+        series.add(1000, 2.0);
+        series.add(1500, 2.5);
+        series.add(2100, 3.0);
+        series.add(1900, 1.0);
+        series.add(500, 9.0);
+
+        List<Candle> candles = series.latest(10);
+        assertThat(candles).extracting(Candle::getOpen, Candle::getHigh, Candle::getLow, Candle::getClose, Candle::getUpdates)
+                .containsExactly(
+                        tuple(2.0, 2.5, 1.0, 2.5, 3L),
+                        tuple(3.0, 3.0, 3.0, 3.0, 1L));
+    }
+
+    @Test
+    void testOnlyLatestCandlesAreKept() {
+        CandleSeries series = new CandleSeries(1000, 3);
+        for (int i = 0; i < 20; i++) {
+            series.add(i * 1000L, i);
+        }
+
+        assertThat(series.latest(10)).extracting(Candle::getOpen).containsExactly(16.0, 17.0, 18.0, 19.0);
+        assertThat(series.latest(2)).extracting(Candle::getOpen).containsExactly(18.0, 19.0);
+    }
+}
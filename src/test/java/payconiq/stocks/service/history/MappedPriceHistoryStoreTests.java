@@ -0,0 +1,134 @@
+package payconiq.stocks.service.history;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Stream;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+class MappedPriceHistoryStoreTests {
+
+    @TempDir
+    Path directory;
+
+    @Test
+    void testScanNewestFirstAcrossSegments() {
+        MappedPriceHistoryStore store = new MappedPriceHistoryStore(directory.toString(), 2, true);
+        for (int i = 1; i <= 5; i++) {
+            store.append(1, i, i * 1000L);
+        }
+        store.append(2, 100, 1500L);
+
+        assertThat(scan(store, 1, 2000L, 4000L)).containsExactly("4000=4.0", "3000=3.0", "2000=2.0");
+        assertThat(scan(store, 1, Long.MIN_VALUE, Long.MAX_VALUE)).hasSize(5);
+        assertThat(scan(store, 2, Long.MIN_VALUE, Long.MAX_VALUE)).containsExactly("1500=100.0");
+        assertThat(scan(store, 3, Long.MIN_VALUE, Long.MAX_VALUE)).isEmpty();
+        store.close();
+    }
+
+    @Test
+    void testReplayOldestFirst() {
+        MappedPriceHistoryStore store = new MappedPriceHistoryStore(directory.toString(), 2, true);
+        for (int i = 1; i <= 5; i++) {
+            store.append(1, i, i * 1000L);
+        }
+
+        List<String> ticks = new ArrayList<>();
+        store.replay(1, 2500L, (epochMillis, price) -> ticks.add(epochMillis + "=" + price));
+        assertThat(ticks).containsExactly("3000=3.0", "4000=4.0", "5000=5.0");
+        store.close();
+    }
+
+    @Test
+    void testFirstTickAfter() {
+        MappedPriceHistoryStore store = new MappedPriceHistoryStore(directory.toString(), 2, true);
+        for (int i = 1; i <= 5; i++) {
+            store.append(1, i, i * 1000L);
+        }
+
+        assertThat(store.firstTickAfter(1, 2000L)).isEqualTo(3000L);
+        assertThat(store.firstTickAfter(1, 2500L)).isEqualTo(3000L);
+        assertThat(store.firstTickAfter(1, 5000L)).isEqualTo(-1);
+        assertThat(store.firstTickAfter(2, 0L)).isEqualTo(-1);
+        store.close();
+    }
+
+    @Test
+    void testLastTickBefore() {
+        MappedPriceHistoryStore store = new MappedPriceHistoryStore(directory.toString(), 2, true);
+        for (int i = 1; i <= 5; i++) {
+            store.append(1, i, i * 1000L);
+        }
+
+        List<String> ticks = new ArrayList<>();
+        assertThat(store.lastTickBefore(1, 3000L, (epochMillis, price) -> ticks.add(epochMillis + "=" + price))).isTrue();
+        assertThat(store.lastTickBefore(1, 9000L, (epochMillis, price) -> ticks.add(epochMillis + "=" + price))).isTrue();
+        assertThat(ticks).containsExactly("2000=2.0", "5000=5.0");
+        assertThat(store.lastTickBefore(1, 1000L, (epochMillis, price) -> ticks.add(epochMillis + "=" + price))).isFalse();
+        assertThat(store.lastTickBefore(2, 9000L, (epochMillis, price) -> ticks.add(epochMillis + "=" + price))).isFalse();
+        store.close();
+    }
+
+    @Test
+    void testHistoryIsKeptAfterReopen() {
+        MappedPriceHistoryStore store = new MappedPriceHistoryStore(directory.toString(), 2, true);
+        store.append(1, 1.5, 1000L);
+        store.append(1, 2.5, 2000L);
+        store.append(1, 3.5, 3000L);
+        store.close();
+
+        MappedPriceHistoryStore reopened = new MappedPriceHistoryStore(directory.toString(), 2, true);
+        reopened.append(1, 4.5, 4000L);
+        assertThat(scan(reopened, 1, Long.MIN_VALUE, Long.MAX_VALUE))
+                .containsExactly("4000=4.5", "3000=3.5", "2000=2.5", "1000=1.5");
+        reopened.close();
+    }
+
+    @Test
+    void testHistoryOfPreviousRunIsDeleted() {
+        MappedPriceHistoryStore store = new MappedPriceHistoryStore(directory.toString(), 2, false);
+        store.append(1, 1.5, 1000L);
+        store.close();
+
+        MappedPriceHistoryStore reopened = new MappedPriceHistoryStore(directory.toString(), 2, false);
+        assertThat(scan(reopened, 1, Long.MIN_VALUE, Long.MAX_VALUE)).isEmpty();
+        assertThat(directory.resolve("1")).doesNotExist();
+        reopened.close();
+    }
+
+    @Test
+    void testSegmentsGrowUpToSegmentSize() throws Exception {
+        MappedPriceHistoryStore store = new MappedPriceHistoryStore(directory.toString(), 1024, false);
+        for (int i = 1; i <= 1000; i++) {
+            store.append(1, i, i * 1000L);
+        }
+
+        try (Stream<Path> segments = Files.list(directory.resolve("1"))) {
+            assertThat(segments.map(segment -> segment.toFile().length())).containsExactlyInAnyOrder(64 + 256 * 16L, 64 + 512 * 16L, 64 + 1024 * 16L);
+        }
+        assertThat(scan(store, 1, Long.MIN_VALUE, Long.MAX_VALUE)).hasSize(1000);
+        store.close();
+    }
+
+    @Test
+    void testDelete() {
+        MappedPriceHistoryStore store = new MappedPriceHistoryStore(directory.toString(), 2, true);
+        store.append(1, 1.5, 1000L);
+        store.delete(1);
+
+        assertThat(scan(store, 1, Long.MIN_VALUE, Long.MAX_VALUE)).isEmpty();
+        assertThat(directory.resolve("1")).doesNotExist();
+        store.close();
+    }
+
+    private static List<String> scan(PriceHistoryStore store, long stockId, long from, long to) {
+        List<String> ticks = new ArrayList<>();
+        store.scan(stockId, from, to, (epochMillis, price) -> ticks.add(epochMillis + "=" + price));
+        return ticks;
+    }
+}